@@ -3,13 +3,25 @@ package com.springboot.store.controller;
 import com.springboot.store.entity.Media;
 import com.springboot.store.entity.Product;
 import com.springboot.store.payload.ProductDTO;
+import com.springboot.store.payload.ProductFilter;
+import com.springboot.store.payload.ProductImportResult;
+import com.springboot.store.payload.ProductListItemDTO;
+import com.springboot.store.payload.ProductScanCacheStats;
+import com.springboot.store.payload.ProductScanDTO;
+import com.springboot.store.payload.ProductSearchHit;
+import com.springboot.store.payload.report.CursorPage;
 import com.springboot.store.repository.ProductRepository;
 import com.springboot.store.service.FileService;
+import com.springboot.store.service.ProductImportService;
+import com.springboot.store.service.ProductScanCacheService;
+import com.springboot.store.service.ProductSearchService;
 import com.springboot.store.service.ProductService;
+import com.springboot.store.utils.ImportFormat;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -20,6 +32,9 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ProductController {
     private final ProductService productService;
+    private final ProductSearchService productSearchService;
+    private final ProductScanCacheService productScanCacheService;
+    private final ProductImportService productImportService;
 
 
     @GetMapping("/{productId}")
@@ -34,6 +49,44 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<CursorPage<ProductListItemDTO>> getProductPage(
+            @RequestParam(name = "groupId", required = false) Integer groupId,
+            @RequestParam(name = "brandId", required = false) Integer brandId,
+            @RequestParam(name = "locationId", required = false) Integer locationId,
+            @RequestParam(name = "status", required = false) String status,
+            @RequestParam(name = "lowStock", defaultValue = "false") boolean lowStock,
+            @RequestParam(name = "deleted", required = false) Boolean deleted,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "50") int size
+    ) {
+        ProductFilter filter = ProductFilter.builder()
+                .groupId(groupId)
+                .brandId(brandId)
+                .locationId(locationId)
+                .status(status)
+                .lowStock(lowStock)
+                .deleted(deleted)
+                .build();
+        return ResponseEntity.ok(productService.getProductPage(filter, cursor, size));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<ProductSearchHit>> searchProducts(@RequestParam(name = "q") String query,
+                                                                 @RequestParam(name = "limit", defaultValue = "20") int limit) {
+        return ResponseEntity.ok(productSearchService.search(query, limit));
+    }
+
+    @GetMapping("/by-barcode/{code}")
+    public ResponseEntity<ProductScanDTO> getProductByBarcode(@PathVariable String code) {
+        return ResponseEntity.ok(productScanCacheService.getByBarcode(code));
+    }
+
+    @GetMapping("/scan-cache/stats")
+    public ResponseEntity<ProductScanCacheStats> getScanCacheStats() {
+        return ResponseEntity.ok(productScanCacheService.getStats());
+    }
+
     @PostMapping
     public ResponseEntity<List<ProductDTO>> createProduct(@RequestPart(value = "files", required = false) MultipartFile[] files,
                                                     @RequestPart("data") List<ProductDTO> productDTO) {
@@ -41,6 +94,14 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(createdProduct);
     }
 
+    // the format is taken from the file name when it is not given
+    @PostMapping("/import")
+    public ResponseEntity<ProductImportResult> importProducts(@RequestPart("file") MultipartFile file,
+                                                              @RequestParam(name = "format", required = false) String format) {
+        ImportFormat importFormat = ImportFormat.fromParam(format != null ? format : StringUtils.getFilenameExtension(file.getOriginalFilename()));
+        return ResponseEntity.ok(productImportService.importProducts(file, importFormat));
+    }
+
     @PutMapping("/{productId}")
     public ResponseEntity<ProductDTO> updateProduct(@PathVariable int productId,
                                                     @RequestPart(value = "files", required = false) MultipartFile[] files,
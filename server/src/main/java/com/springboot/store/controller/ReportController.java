@@ -1,22 +1,44 @@
 package com.springboot.store.controller;
 
+import com.springboot.store.payload.InvoiceInRecordOfProductSellDTO;
 import com.springboot.store.payload.ListBonusAndPunishForStaffDTO;
+import com.springboot.store.payload.MessageDTO;
 import com.springboot.store.payload.RecordOfProductDTO;
 import com.springboot.store.payload.RecordOfProductSellDTO;
 import com.springboot.store.payload.RecordOfSaleDTO;
+import com.springboot.store.payload.ReturnInRecordOfProductSellDTO;
+import com.springboot.store.payload.report.CursorPage;
+import com.springboot.store.payload.report.DashboardDTO;
+import com.springboot.store.payload.report.FinancialPeriodDTO;
+import com.springboot.store.payload.report.ReportCacheStats;
+import com.springboot.store.payload.report.ReportJobDTO;
+import com.springboot.store.payload.report.SalesSliceRow;
 import com.springboot.store.service.*;
+import com.springboot.store.utils.ExportFormat;
+import com.springboot.store.utils.RankingMetric;
+import com.springboot.store.utils.SliceDimension;
+import com.springboot.store.utils.TimeGranularity;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/reports")
@@ -28,93 +50,311 @@ public class ReportController {
     private final RecordOfSaleService recordOfSaleService;
     private final RecordOfProductService recordOfProductService;
     private final RecordOfSupplierService recordOfSupplierService;
+    private final ReportExportService reportExportService;
+    private final ReportJobService reportJobService;
+    private final ReportCacheService reportCacheService;
+    private final SalesFactService salesFactService;
+    private final FinancialPeriodService financialPeriodService;
+    private final DashboardService dashboardService;
 
     @GetMapping("/bonus-and-punish")
-    public ResponseEntity<List<ListBonusAndPunishForStaffDTO>> getAllListBonusAndPunishForStaff() {
-        List<ListBonusAndPunishForStaffDTO> listBonusAndPunishForStaffDTOs = listBonusAndPunishForStaffService.getAllListBonusAndPunishForStaff();
+    public ResponseEntity<?> getAllListBonusAndPunishForStaff(
+            @RequestParam(name = "month", required = false) @DateTimeFormat(pattern = "yyyy-MM") Date month,
+            @RequestParam(name = "format", required = false) String format
+    ) {
+        List<ListBonusAndPunishForStaffDTO> listBonusAndPunishForStaffDTOs = listBonusAndPunishForStaffService.getAllListBonusAndPunishForStaff(month);
+        if (format != null) {
+            return export("bonus-and-punish", null, null, format, exportFormat -> reportExportService.exportRows(listBonusAndPunishForStaffDTOs, exportFormat));
+        }
         return ResponseEntity.ok(listBonusAndPunishForStaffDTOs);
     }
 
     @GetMapping("/sales")
     public ResponseEntity<?> getSalesReport(
             @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
-            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "format", required = false) String format
     ) {
+        if (format != null) {
+            return export("sales", start, end, format, exportFormat -> reportExportService.exportSales(start, end, exportFormat));
+        }
         return ResponseEntity.ok(reportService.getSalesReport(start, end));
     }
 
     @GetMapping("/sales-with-profit")
     public ResponseEntity<?> getSalesReportWithProfit(
             @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
-            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "granularity", required = false) String granularity,
+            @RequestParam(name = "format", required = false) String format
     ) {
-        return ResponseEntity.ok(reportService.getSalesReportWithProfit(start, end));
+        TimeGranularity timeGranularity = TimeGranularity.fromParam(granularity);
+        if (format != null) {
+            return export("sales-with-profit", start, end, format, exportFormat -> reportExportService.exportRows(reportService.getSalesReportWithProfit(start, end, timeGranularity), exportFormat));
+        }
+        return ResponseEntity.ok(reportService.getSalesReportWithProfit(start, end, timeGranularity));
     }
 
     @GetMapping("/sales-of-staff")
     public ResponseEntity<?> getSalesReportOfStaff(
             @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
-            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "format", required = false) String format
     ) {
+        if (format != null) {
+            return export("sales-of-staff", start, end, format, exportFormat -> reportExportService.exportRows(reportService.getSalesReportOfStaff(start, end), exportFormat));
+        }
         return ResponseEntity.ok(reportService.getSalesReportOfStaff(start, end));
     }
 
     @GetMapping("/sales-product-profit")
     public ResponseEntity<?> getSalesProductProfit(
             @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
-            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "exactCustomers", required = false) Boolean exactCustomers,
+            @RequestParam(name = "format", required = false) String format
     ) {
-        return ResponseEntity.ok(reportService.getSalesProductProfit(start, end));
+        if (format != null) {
+            return export("sales-product-profit", start, end, format, exportFormat -> reportExportService.exportRows(reportService.getSalesProductProfit(start, end, exactCustomers), exportFormat));
+        }
+        return ResponseEntity.ok(reportService.getSalesProductProfit(start, end, exactCustomers));
     }
 
     @GetMapping("/sales-of-customer")
     public ResponseEntity<?> getSalesReportOfCustomer(
             @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
-            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "format", required = false) String format
     ) {
+        if (format != null) {
+            return export("sales-of-customer", start, end, format, exportFormat -> reportExportService.exportRows(reportService.getSalesReportOfCustomer(start, end), exportFormat));
+        }
         return ResponseEntity.ok(reportService.getSalesReportOfCustomer(start, end));
     }
 
+    @GetMapping("/top-products")
+    public ResponseEntity<?> getTopProducts(
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "metric", required = false) String metric,
+            @RequestParam(name = "limit", defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(reportService.getTopProducts(start, end, RankingMetric.fromParam(metric), limit));
+    }
+
+    @GetMapping("/top-customers")
+    public ResponseEntity<?> getTopCustomers(
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "metric", required = false) String metric,
+            @RequestParam(name = "limit", defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(reportService.getTopCustomers(start, end, RankingMetric.fromParam(metric), limit));
+    }
+
+    @GetMapping("/top-staff")
+    public ResponseEntity<?> getTopStaff(
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "metric", required = false) String metric,
+            @RequestParam(name = "limit", defaultValue = "10") int limit
+    ) {
+        return ResponseEntity.ok(reportService.getTopStaff(start, end, RankingMetric.fromParam(metric), limit));
+    }
+
     @GetMapping("/financial-report")
     public ResponseEntity<?> getFinancialReport(
             @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
-            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "format", required = false) String format
     ) {
+        if (format != null) {
+            return export("financial-report", start, end, format, exportFormat -> reportExportService.exportRows(List.of(reportService.getFinancialReport(start, end)), exportFormat));
+        }
         return ResponseEntity.ok(reportService.getFinancialReport(start, end));
     }
 
     @GetMapping("/record-of-product-sell")
-    public ResponseEntity<List<RecordOfProductSellDTO>> getAllRecordOfProductSell(@RequestParam(name = "start") @DateTimeFormat(pattern = "yyy-MM-dd") Date start, @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end) {
+    public ResponseEntity<?> getAllRecordOfProductSell(@RequestParam(name = "start") @DateTimeFormat(pattern = "yyy-MM-dd") Date start, @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end, @RequestParam(name = "format", required = false) String format) {
+        if (format != null) {
+            return export("record-of-product-sell", start, end, format, exportFormat -> reportExportService.exportRecordOfProductSell(start, end, exportFormat));
+        }
         List<RecordOfProductSellDTO> recordOfProductSellDTOs = recordOfProductSellService.getAllRecordOfProductSell(start, end);
         return ResponseEntity.ok(recordOfProductSellDTOs);
     }
 
-    @GetMapping("/record-of-sale")
-    public ResponseEntity<List<RecordOfSaleDTO>> getAllRecordOfSale(
+    @GetMapping("/record-of-product-sell/summary")
+    public ResponseEntity<List<RecordOfProductSellDTO>> getRecordOfProductSellSummary(
             @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
             @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
     ) {
+        return ResponseEntity.ok(recordOfProductSellService.getRecordOfProductSellSummary(start, end));
+    }
 
-        List<RecordOfSaleDTO> recordOfSaleDTOs = recordOfSaleService.getAllRecordOfSale(start, end);
+    @GetMapping("/record-of-product-sell/{productId}/invoices")
+    public ResponseEntity<CursorPage<InvoiceInRecordOfProductSellDTO>> getRecordOfProductSellInvoices(
+            @PathVariable int productId,
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(recordOfProductSellService.getInvoiceLines(productId, start, end, cursor, size));
+    }
+
+    @GetMapping("/record-of-product-sell/{productId}/returns")
+    public ResponseEntity<CursorPage<ReturnInRecordOfProductSellDTO>> getRecordOfProductSellReturns(
+            @PathVariable int productId,
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "50") int size
+    ) {
+        return ResponseEntity.ok(recordOfProductSellService.getReturnLines(productId, start, end, cursor, size));
+    }
+
+    @GetMapping("/record-of-sale")
+    public ResponseEntity<?> getAllRecordOfSale(
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "granularity", required = false) String granularity,
+            @RequestParam(name = "format", required = false) String format
+    ) {
+        TimeGranularity timeGranularity = TimeGranularity.fromParam(granularity);
+        if (format != null) {
+            return export("record-of-sale", start, end, format, exportFormat -> reportExportService.exportRows(recordOfSaleService.getAllRecordOfSale(start, end, timeGranularity), exportFormat));
+        }
+        List<RecordOfSaleDTO> recordOfSaleDTOs = recordOfSaleService.getAllRecordOfSale(start, end, timeGranularity);
         return ResponseEntity.ok(recordOfSaleDTOs);
     }
 
     @GetMapping("/record-of-product")
-    public ResponseEntity<List<RecordOfProductDTO>> getAllRecordOfProduct(
+    public ResponseEntity<?> getAllRecordOfProduct(
             @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
-            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "format", required = false) String format
     ) {
-
+        if (format != null) {
+            return export("record-of-product", start, end, format, exportFormat -> reportExportService.exportRows(recordOfProductService.getAllRecordOfProduct(start, end), exportFormat));
+        }
         List<RecordOfProductDTO> recordOfProductDTOs = recordOfProductService.getAllRecordOfProduct(start, end);
         return ResponseEntity.ok(recordOfProductDTOs);
     }
 
+    @GetMapping("/dashboard")
+    public ResponseEntity<DashboardDTO> getDashboard(
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "granularity", required = false) String granularity
+    ) {
+        return ResponseEntity.ok(dashboardService.getDashboard(start, end, TimeGranularity.fromParam(granularity)));
+    }
+
     @GetMapping("/record-of-supplier")
     public ResponseEntity<?> getAllRecordOfSupplier(
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "format", required = false) String format
+    ) {
+        if (format != null) {
+            return export("record-of-supplier", start, end, format, exportFormat -> reportExportService.exportRecordOfSupplier(start, end, exportFormat));
+        }
+        return ResponseEntity.ok(recordOfSupplierService.getAllRecordOfSupplier(start, end));
+    }
+
+    @PostMapping("/daily-sales/rebuild")
+    public ResponseEntity<MessageDTO> rebuildDailySalesRollup(
             @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
             @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
     ) {
+        int days = reportService.rebuildDailySalesRollup(start, end);
+        return ResponseEntity.ok(new MessageDTO("Rebuilt daily sales rollup for " + days + " days", new Date()));
+    }
+
+    @GetMapping("/financial-periods")
+    public ResponseEntity<List<FinancialPeriodDTO>> getClosedFinancialPeriods() {
+        return ResponseEntity.ok(financialPeriodService.getClosedPeriods());
+    }
+
+    @PostMapping("/financial-periods/close")
+    public ResponseEntity<FinancialPeriodDTO> closeFinancialPeriod(
+            @RequestParam(name = "month") @DateTimeFormat(pattern = "yyyy-MM") Date month
+    ) {
+        return ResponseEntity.ok(financialPeriodService.closeMonth(month));
+    }
 
-        return ResponseEntity.ok(recordOfSupplierService.getAllRecordOfSupplier(start, end));
+    @PostMapping("/financial-periods/reopen")
+    public ResponseEntity<FinancialPeriodDTO> reopenFinancialPeriod(
+            @RequestParam(name = "month") @DateTimeFormat(pattern = "yyyy-MM") Date month
+    ) {
+        return ResponseEntity.ok(financialPeriodService.reopenMonth(month));
+    }
+
+    @PostMapping("/jobs")
+    public ResponseEntity<ReportJobDTO> submitReportJob(
+            @RequestParam(name = "type") String type,
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end
+    ) {
+        return ResponseEntity.accepted().body(reportJobService.submitJob(type, start, end));
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ReportJobDTO> getReportJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(reportJobService.getJob(jobId));
+    }
+
+    @GetMapping("/jobs/{jobId}/result")
+    public ResponseEntity<?> getReportJobResult(@PathVariable String jobId) {
+        return ResponseEntity.ok(reportJobService.getJobResult(jobId));
+    }
+
+    @DeleteMapping("/jobs/{jobId}")
+    public ResponseEntity<ReportJobDTO> cancelReportJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(reportJobService.cancelJob(jobId));
+    }
+
+    @GetMapping("/slice")
+    public ResponseEntity<List<SalesSliceRow>> getSalesSlice(
+            @RequestParam(name = "start") @DateTimeFormat(pattern = "yyyy-MM-dd") Date start,
+            @RequestParam(name = "end") @DateTimeFormat(pattern = "yyyy-MM-dd") Date end,
+            @RequestParam(name = "groupBy", required = false) String groupBy,
+            @RequestParam(name = "product", required = false) Integer product,
+            @RequestParam(name = "group", required = false) Integer group,
+            @RequestParam(name = "brand", required = false) Integer brand,
+            @RequestParam(name = "staff", required = false) Integer staff,
+            @RequestParam(name = "customer", required = false) Integer customer,
+            @RequestParam(name = "hour", required = false) Integer hour
+    ) {
+        Map<SliceDimension, Integer> filters = new EnumMap<>(SliceDimension.class);
+        if (product != null) filters.put(SliceDimension.PRODUCT, product);
+        if (group != null) filters.put(SliceDimension.GROUP, group);
+        if (brand != null) filters.put(SliceDimension.BRAND, brand);
+        if (staff != null) filters.put(SliceDimension.STAFF, staff);
+        if (customer != null) filters.put(SliceDimension.CUSTOMER, customer);
+        if (hour != null) filters.put(SliceDimension.HOUR, hour);
+        return ResponseEntity.ok(salesFactService.slice(start, end, groupBy == null ? null : SliceDimension.fromParam(groupBy), filters));
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<ReportCacheStats> getReportCacheStats() {
+        return ResponseEntity.ok(reportCacheService.getStats());
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(String report, Date start, Date end, String format,
+                                                         Function<ExportFormat, StreamingResponseBody> body) {
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        String fileName = report;
+        if (start != null && end != null) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+            fileName += "_" + dateFormat.format(start) + "_" + dateFormat.format(end);
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileName + "." + exportFormat.getExtension())
+                        .build()
+                        .toString())
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .body(body.apply(exportFormat));
     }
 }
@@ -0,0 +1,35 @@
+package com.springboot.store.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+
+// distinct customers who bought a product on one day, as a HyperLogLog sketch
+@Entity
+@Table(name = "daily_product_sketches", uniqueConstraints = @UniqueConstraint(columnNames = {"store_id", "product_id", "date"}))
+public class DailyProductSketch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "date", nullable = false)
+    private Date date;
+
+    @Column(name = "product_id", nullable = false)
+    private int productId;
+
+    @Column(name = "customers", length = 1025)
+    private byte[] customers;
+
+    @ManyToOne()
+    @JoinColumn(name = "store_id")
+    private Store store;
+}
@@ -0,0 +1,55 @@
+package com.springboot.store.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+
+@Entity
+@Table(name = "daily_sales_rollups", uniqueConstraints = @UniqueConstraint(columnNames = {"store_id", "date"}))
+public class DailySalesRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "date", nullable = false)
+    private Date date;
+
+    @Column(name = "revenue")
+    private double revenue;
+
+    @Column(name = "return_revenue")
+    private double returnRevenue;
+
+    @Column(name = "discount")
+    private double discount;
+
+    @Column(name = "cost_of_goods_sold")
+    private double costOfGoodsSold;
+
+    @Column(name = "return_cost_of_goods")
+    private double returnCostOfGoods;
+
+    @Column(name = "invoice_count")
+    private int invoiceCount;
+
+    @Column(name = "return_count")
+    private int returnCount;
+
+    @Column(name = "item_count")
+    private int itemCount;
+
+    @Column(name = "return_item_count")
+    private int returnItemCount;
+
+    @ManyToOne()
+    @JoinColumn(name = "store_id")
+    private Store store;
+}
@@ -0,0 +1,60 @@
+package com.springboot.store.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+
+// figures of one closed month, never updated: reopening the month deletes the row and writes a new one
+@Entity
+@Immutable
+@Table(name = "financial_snapshots", uniqueConstraints = @UniqueConstraint(columnNames = {"store_id", "period_start"}))
+public class FinancialSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "period_start", nullable = false)
+    private Date periodStart;
+
+    // exclusive, the first day of the next month
+    @Temporal(TemporalType.DATE)
+    @Column(name = "period_end", nullable = false)
+    private Date periodEnd;
+
+    @Column(name = "sales_revenue")
+    private double salesRevenue;
+
+    @Column(name = "adjustment_discount")
+    private double adjustmentDiscount;
+
+    @Column(name = "adjustment_return")
+    private double adjustmentReturn;
+
+    @Column(name = "cost_of_goods_sold")
+    private double costOfGoodsSold;
+
+    @Column(name = "salary_staff")
+    private double salaryStaff;
+
+    @Column(name = "bonus_staff")
+    private double bonusStaff;
+
+    @Column(name = "penalty_staff")
+    private double penaltyStaff;
+
+    @Column(name = "closed_at", nullable = false)
+    private Date closedAt;
+
+    @ManyToOne()
+    @JoinColumn(name = "store_id")
+    private Store store;
+}
@@ -15,7 +15,7 @@ import java.util.Set;
 @Builder
 
 @Entity
-@Table(name = "invoices")
+@Table(name = "invoices", indexes = @Index(name = "idx_invoices_store_created_at", columnList = "store_id, created_at"))
 public class Invoice {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,6 +25,10 @@ public class InvoiceDetail {
     @Column(name = "discount")
     private double discount;
 
+    // original price of the product when the invoice was created
+    @Column(name = "unit_cost")
+    private Double unitCost;
+
     @ManyToOne()
     @JoinColumn(name = "store_id")
     private Store store;
@@ -0,0 +1,42 @@
+package com.springboot.store.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+
+// progress of one store in a payroll run, advanced in the same transaction as the chunk it covers
+@Entity
+@Table(name = "payroll_checkpoints", uniqueConstraints = @UniqueConstraint(columnNames = {"payroll_run_id", "store_id"}))
+public class PayrollCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne()
+    @JoinColumn(name = "payroll_run_id", nullable = false)
+    private PayrollRun payrollRun;
+
+    @ManyToOne()
+    @JoinColumn(name = "store_id", nullable = false)
+    private Store store;
+
+    // staff are processed in id order, every staff up to this id is done
+    @Column(name = "last_staff_id")
+    private int lastStaffId;
+
+    @Column(name = "staff_updated")
+    private int staffUpdated;
+
+    @Column(name = "completed")
+    private boolean completed;
+
+    @Column(name = "updated_at")
+    private Date updatedAt;
+}
@@ -0,0 +1,46 @@
+package com.springboot.store.entity;
+
+import com.springboot.store.utils.PayrollRunStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+
+// one month-end payroll run over every store, a run left RUNNING or FAILED is resumed from its checkpoints
+@Entity
+@Table(name = "payroll_runs", uniqueConstraints = @UniqueConstraint(columnNames = {"period_start"}))
+public class PayrollRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "period_start", nullable = false)
+    private Date periodStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private PayrollRunStatus status;
+
+    // of the last attempt
+    @Column(name = "started_at", nullable = false)
+    private Date startedAt;
+
+    @Column(name = "finished_at")
+    private Date finishedAt;
+
+    @Column(name = "staff_updated")
+    private int staffUpdated;
+
+    @Column(name = "duration_ms")
+    private long durationMs;
+
+    @Column(name = "rows_per_second")
+    private double rowsPerSecond;
+}
@@ -2,6 +2,7 @@ package com.springboot.store.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.BatchSize;
 
 import java.util.Date;
 import java.util.List;
@@ -14,9 +15,28 @@ import java.util.Set;
 @Builder
 
 
+// "list" joins the to-one associations, "detail" also joins the properties with their names.
+// The other collections are loaded for a whole page at once through their batch size
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = @Index(name = "idx_products_store_barcode", columnList = "store_id, barcode"))
+@NamedEntityGraph(name = Product.LIST_GRAPH, attributeNodes = {
+        @NamedAttributeNode("productGroup"),
+        @NamedAttributeNode("productBrand"),
+        @NamedAttributeNode("location"),
+        @NamedAttributeNode("salesUnits")
+})
+@NamedEntityGraph(name = Product.DETAIL_GRAPH, attributeNodes = {
+        @NamedAttributeNode("productGroup"),
+        @NamedAttributeNode("productBrand"),
+        @NamedAttributeNode("location"),
+        @NamedAttributeNode("salesUnits"),
+        @NamedAttributeNode(value = "properties", subgraph = "properties")
+}, subgraphs = @NamedSubgraph(name = "properties", attributeNodes = @NamedAttributeNode("propertyName")))
 public class Product {
+    public static final String LIST_GRAPH = "Product.list";
+    public static final String DETAIL_GRAPH = "Product.detail";
+    // the largest page read through the list graph, one page initializes each collection in a single statement
+    public static final int FETCH_BATCH_SIZE = 500;
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -52,9 +72,11 @@ public class Product {
     @Column(name = "is_deleted")
     private Boolean isDeleted;
 
+    @BatchSize(size = FETCH_BATCH_SIZE)
     @OneToMany(cascade = CascadeType.ALL)
     private List<OriginalPrice> originalPrices;
 
+    @BatchSize(size = FETCH_BATCH_SIZE)
     @OneToMany(cascade = CascadeType.ALL)
     private List<ProductPrice> productPrices;
 
@@ -69,9 +91,11 @@ public class Product {
     @JoinColumn(name = "product_brand_id")
     private ProductBrand productBrand;
 
+    @BatchSize(size = FETCH_BATCH_SIZE)
     @OneToMany(cascade = CascadeType.ALL)
     private List<ProductProperty> properties;
 
+    @BatchSize(size = FETCH_BATCH_SIZE)
     @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Media> images;
 
@@ -18,6 +18,8 @@ public class ReturnDetail {
     private int quantity;
     private int price;
     private String description;
+    // original price of the product when the return was created
+    private Double unitCost;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
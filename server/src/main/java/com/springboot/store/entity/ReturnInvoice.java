@@ -13,7 +13,7 @@ import java.util.List;
 @Builder
 
 @Entity
-@Table(name = "return_invoices")
+@Table(name = "return_invoices", indexes = @Index(name = "idx_return_invoices_store_created_at", columnList = "store_id, created_at"))
 public class ReturnInvoice {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,6 +23,7 @@ public class ReturnInvoice {
     private double discountValue;
     private String paymentMethod;
     private String note;
+    @Column(name = "created_at")
     private Date createdAt;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -14,7 +14,7 @@ import java.util.List;
 @Builder
 
 @Entity
-@Table(name = "shift_attendance_records")
+@Table(name = "shift_attendance_records", indexes = @Index(name = "idx_shift_attendance_records_staff_date", columnList = "staff_id, date"))
 public class ShiftAttendanceRecord {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,41 @@
+package com.springboot.store.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+
+// running payroll totals of one staff in one month, moved by deltas on every attendance write
+// and checked against the attendance records by the reconciliation
+@Entity
+@Table(name = "staff_payroll_months", uniqueConstraints = @UniqueConstraint(columnNames = {"staff_id", "period_start"}))
+public class StaffPayrollMonth {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @Column(name = "staff_id", nullable = false)
+    private int staffId;
+
+    @Temporal(TemporalType.DATE)
+    @Column(name = "period_start", nullable = false)
+    private Date periodStart;
+
+    @Column(name = "attended_shifts")
+    private int attendedShifts;
+
+    @Column(name = "bonus")
+    private long bonus;
+
+    @Column(name = "penalty")
+    private long penalty;
+
+    @Column(name = "updated_at")
+    private Date updatedAt;
+}
@@ -0,0 +1,22 @@
+package com.springboot.store.payload;
+
+import com.springboot.store.utils.PayrollRunStatus;
+import lombok.*;
+
+import java.util.Date;
+
+@Data
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PayrollRunDTO {
+    private Date periodStart;
+    private PayrollRunStatus status;
+    private Date startedAt;
+    private Date finishedAt;
+    private int staffUpdated;
+    private long durationMs;
+    private double rowsPerSecond;
+}
@@ -0,0 +1,20 @@
+package com.springboot.store.payload;
+
+import lombok.*;
+
+// null fields do not filter
+@Data
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductFilter {
+    private Integer groupId;
+    private Integer brandId;
+    private Integer locationId;
+    private String status;
+    // stock under the minimum stock
+    private boolean lowStock;
+    private Boolean deleted;
+}
@@ -0,0 +1,14 @@
+package com.springboot.store.payload;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductImportError {
+    // row of the file, the header is row 1
+    private int row;
+    private String message;
+}
@@ -0,0 +1,17 @@
+package com.springboot.store.payload;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductImportResult {
+    private int imported;
+    private int failed;
+    // the first errors in row order, failed counts all of them
+    private List<ProductImportError> errors;
+}
@@ -0,0 +1,25 @@
+package com.springboot.store.payload;
+
+import lombok.*;
+
+@Data
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductListItemDTO {
+    private int id;
+    private String name;
+    private String barcode;
+    private String status;
+    private int stock;
+    private int minStock;
+    private int maxStock;
+    private Boolean isDeleted;
+    private String location;
+    private String productGroup;
+    private String productBrand;
+    private double originalPrice;
+    private double productPrice;
+}
@@ -0,0 +1,21 @@
+package com.springboot.store.payload;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ProductScanCacheStats {
+    private int entries;
+    private long lookups;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+    private long invalidations;
+    // lookup latencies since startup, hits and misses together
+    private double p50Micros;
+    private double p99Micros;
+}
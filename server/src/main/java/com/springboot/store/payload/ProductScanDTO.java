@@ -0,0 +1,20 @@
+package com.springboot.store.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+// what the checkout needs from a scanned product. Immutable, the same instance is shared by every cached lookup
+@Getter
+@AllArgsConstructor
+@Builder
+public class ProductScanDTO {
+    private final int id;
+    private final String name;
+    private final String barcode;
+    private final double productPrice;
+    private final int stock;
+    private final String salesUnit;
+    private final String basicUnit;
+    private final double exchangeValue;
+}
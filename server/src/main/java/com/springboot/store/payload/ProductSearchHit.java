@@ -0,0 +1,18 @@
+package com.springboot.store.payload;
+
+import com.springboot.store.utils.ProductMatch;
+import lombok.*;
+
+@Data
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductSearchHit {
+    private int id;
+    private String name;
+    private String barcode;
+    // how the product matched the query
+    private ProductMatch match;
+}
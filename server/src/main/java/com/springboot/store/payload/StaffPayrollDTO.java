@@ -0,0 +1,20 @@
+package com.springboot.store.payload;
+
+import lombok.*;
+
+@Data
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StaffPayrollDTO {
+    private int staffId;
+    private String salaryType;
+    private int baseSalary;
+    private int attendedShifts;
+    private int bonus;
+    private int penalty;
+    // null when the staff has no known salary type
+    private Integer salary;
+}
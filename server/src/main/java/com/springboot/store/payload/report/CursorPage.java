@@ -0,0 +1,16 @@
+package com.springboot.store.payload.report;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CursorPage<T> {
+    private List<T> items;
+    // passed back as cursor to read the next page, null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,20 @@
+package com.springboot.store.payload.report;
+
+import com.springboot.store.payload.RecordOfProductDTO;
+import com.springboot.store.payload.RecordOfProductSellDTO;
+import com.springboot.store.payload.RecordOfSaleDTO;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DashboardDTO {
+    private List<RecordOfSaleDTO> recordOfSale;
+    private List<SalesReportWithProfit> salesWithProfit;
+    private List<RecordOfProductDTO> recordOfProduct;
+    private List<RecordOfProductSellDTO> recordOfProductSell;
+}
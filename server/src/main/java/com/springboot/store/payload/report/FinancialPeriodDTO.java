@@ -0,0 +1,18 @@
+package com.springboot.store.payload.report;
+
+import lombok.*;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class FinancialPeriodDTO {
+    private Date periodStart;
+    // exclusive
+    private Date periodEnd;
+    private Date closedAt;
+    private FinancialReport report;
+}
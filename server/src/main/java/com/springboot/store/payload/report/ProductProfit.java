@@ -9,7 +9,10 @@ import lombok.*;
 @Builder
 public class ProductProfit {
     private Integer productId;
+    // distinct identified customers, walk-in sales are not counted
     private int totalCustomer;
+    // relative standard error of totalCustomer, 0 when it was counted exactly
+    private double totalCustomerError;
     private int totalQuantity;
     private double revenue;
     private int totalReturn;
@@ -0,0 +1,19 @@
+package com.springboot.store.payload.report;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReportCacheStats {
+    private int entries;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    // loads of today's rows, never cached
+    private long liveLoads;
+    private long evictions;
+    private long invalidations;
+}
@@ -0,0 +1,23 @@
+package com.springboot.store.payload.report;
+
+import com.springboot.store.utils.ReportJobStatus;
+import lombok.*;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReportJobDTO {
+    private String jobId;
+    private String type;
+    private Date start;
+    private Date end;
+    private ReportJobStatus status;
+    private Date createdAt;
+    private Date startedAt;
+    private Date finishedAt;
+    private String error;
+}
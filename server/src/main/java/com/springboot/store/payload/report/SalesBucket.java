@@ -0,0 +1,17 @@
+package com.springboot.store.payload.report;
+
+import lombok.*;
+
+// sales of one time bucket, the key is a TimeGranularity key
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SalesBucket {
+    private int key;
+    private double revenue;
+    private double returnRevenue;
+    private double costOfGoodsSold;
+    private double returnCostOfGoods;
+}
@@ -0,0 +1,18 @@
+package com.springboot.store.payload.report;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SalesSliceRow {
+    // id of the grouped dimension (hour of day for hours), null for lines without one
+    private Integer key;
+    private int lines;
+    private long quantity;
+    private double revenue;
+    private double cost;
+    private double profit;
+}
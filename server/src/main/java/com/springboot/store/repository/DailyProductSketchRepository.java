@@ -0,0 +1,48 @@
+package com.springboot.store.repository;
+
+import com.springboot.store.entity.DailyProductSketch;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.TemporalType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface DailyProductSketchRepository extends JpaRepository<DailyProductSketch, Integer> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM DailyProductSketch s WHERE s.store.id = :storeId AND s.productId = :productId AND s.date = :date")
+    Optional<DailyProductSketch> findForUpdate(
+            @Param("storeId") Integer storeId,
+            @Param("productId") Integer productId,
+            @Param("date") @Temporal(TemporalType.DATE) Date date);
+
+    // creates the row when it is missing so that it can be locked, like the daily rollup
+    @Modifying
+    @Query(value = "INSERT INTO daily_product_sketches (store_id, product_id, date) VALUES (:storeId, :productId, :date) " +
+            "ON DUPLICATE KEY UPDATE store_id = store_id", nativeQuery = true)
+    void insertIfMissing(
+            @Param("storeId") Integer storeId,
+            @Param("productId") Integer productId,
+            @Param("date") @Temporal(TemporalType.DATE) Date date);
+
+    @Query("SELECT s " +
+            "FROM DailyProductSketch s " +
+            "WHERE s.store.id = :storeId AND s.date >= :startDate AND s.date < :endDate")
+    List<DailyProductSketch> findByStoreIdAndDateRange(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") @Temporal(TemporalType.DATE) Date startDate,
+            @Param("endDate") @Temporal(TemporalType.DATE) Date endDate);
+
+    @Modifying
+    @Query("DELETE FROM DailyProductSketch s WHERE s.store.id = :storeId AND s.date >= :startDate AND s.date < :endDate")
+    int deleteByStoreIdAndDateRange(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") @Temporal(TemporalType.DATE) Date startDate,
+            @Param("endDate") @Temporal(TemporalType.DATE) Date endDate);
+}
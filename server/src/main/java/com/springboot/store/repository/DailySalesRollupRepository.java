@@ -0,0 +1,46 @@
+package com.springboot.store.repository;
+
+import com.springboot.store.entity.DailySalesRollup;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.TemporalType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, Integer> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM DailySalesRollup r WHERE r.store.id = :storeId AND r.date = :date")
+    Optional<DailySalesRollup> findByStoreIdAndDateForUpdate(@Param("storeId") Integer storeId, @Param("date") @Temporal(TemporalType.DATE) Date date);
+
+    // creates the day's row when it is missing so that it can be locked, the first two invoices of a day
+    // would otherwise both insert it and one of them fail on the unique key
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_rollups (store_id, date, revenue, return_revenue, discount, cost_of_goods_sold, " +
+            "return_cost_of_goods, invoice_count, return_count, item_count, return_item_count) " +
+            "VALUES (:storeId, :date, 0, 0, 0, 0, 0, 0, 0, 0, 0) " +
+            "ON DUPLICATE KEY UPDATE store_id = store_id", nativeQuery = true)
+    void insertIfMissing(@Param("storeId") Integer storeId, @Param("date") @Temporal(TemporalType.DATE) Date date);
+
+    @Query("SELECT r " +
+            "FROM DailySalesRollup r " +
+            "WHERE r.store.id = :storeId AND r.date >= :startDate AND r.date < :endDate " +
+            "ORDER BY r.date ASC")
+    List<DailySalesRollup> findByStoreIdAndDateRange(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") @Temporal(TemporalType.DATE) Date startDate,
+            @Param("endDate") @Temporal(TemporalType.DATE) Date endDate);
+
+    @Modifying
+    @Query("DELETE FROM DailySalesRollup r WHERE r.store.id = :storeId AND r.date >= :startDate AND r.date < :endDate")
+    int deleteByStoreIdAndDateRange(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") @Temporal(TemporalType.DATE) Date startDate,
+            @Param("endDate") @Temporal(TemporalType.DATE) Date endDate);
+}
@@ -0,0 +1,37 @@
+package com.springboot.store.repository;
+
+import com.springboot.store.entity.FinancialSnapshot;
+import jakarta.persistence.TemporalType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+public interface FinancialSnapshotRepository extends JpaRepository<FinancialSnapshot, Integer> {
+    // snapshots lying wholly inside [startDate, endDate)
+    @Query("SELECT s " +
+            "FROM FinancialSnapshot s " +
+            "WHERE s.store.id = :storeId AND s.periodStart >= :startDate AND s.periodEnd <= :endDate " +
+            "ORDER BY s.periodStart ASC")
+    List<FinancialSnapshot> findWithinRange(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") @Temporal(TemporalType.DATE) Date startDate,
+            @Param("endDate") @Temporal(TemporalType.DATE) Date endDate);
+
+    List<FinancialSnapshot> findByStoreIdOrderByPeriodStartDesc(Integer storeId);
+
+    @Query("SELECT COUNT(s) > 0 FROM FinancialSnapshot s WHERE s.store.id = :storeId AND s.periodStart = :periodStart")
+    boolean existsByStoreIdAndPeriodStart(
+            @Param("storeId") Integer storeId,
+            @Param("periodStart") @Temporal(TemporalType.DATE) Date periodStart);
+
+    @Modifying
+    @Query("DELETE FROM FinancialSnapshot s WHERE s.store.id = :storeId AND s.periodStart = :periodStart")
+    int deleteByStoreIdAndPeriodStart(
+            @Param("storeId") Integer storeId,
+            @Param("periodStart") @Temporal(TemporalType.DATE) Date periodStart);
+}
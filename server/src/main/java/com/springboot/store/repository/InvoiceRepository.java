@@ -1,16 +1,39 @@
 package com.springboot.store.repository;
 
 import com.springboot.store.entity.Invoice;
+import com.springboot.store.repository.projection.*;
+import jakarta.persistence.QueryHint;
 import jakarta.persistence.TemporalType;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.jpa.repository.Temporal;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface InvoiceRepository extends JpaRepository<Invoice, Integer> {
+    String PRODUCT_SALE_LINES_QUERY = "SELECT d.productId AS productId, p.name AS productName, i.createdAt AS createdAt, c.name AS customerName, " +
+            "d.quantity AS quantity, d.price * d.quantity AS total " +
+            "FROM Invoice i JOIN i.invoiceDetails d LEFT JOIN Product p ON p.id = d.productId LEFT JOIN i.customer c " +
+            "WHERE i.store.id = :storeId AND i.createdAt BETWEEN :startDate AND :endDate " +
+            "ORDER BY i.createdAt ASC, i.id ASC";
+
+    String INVOICE_SUMMARY_QUERY = "SELECT i.id AS id, i.createdAt AS createdAt, COALESCE(SUM(d.quantity), 0) AS quantity, i.total AS total " +
+            "FROM Invoice i LEFT JOIN i.invoiceDetails d " +
+            "WHERE i.store.id = :storeId AND i.createdAt BETWEEN :startDate AND :endDate " +
+            "GROUP BY i.id, i.createdAt, i.total " +
+            "ORDER BY i.createdAt ASC";
+
+    String SALES_FACT_QUERY = "SELECT i.id AS documentId, i.createdAt AS createdAt, d.productId AS productId, g.id AS groupId, b.id AS brandId, " +
+            "s.id AS staffId, c.id AS customerId, d.quantity AS quantity, d.price * d.quantity AS revenue, COALESCE(d.unitCost, 0) * d.quantity AS cost " +
+            "FROM Invoice i JOIN i.invoiceDetails d LEFT JOIN Product p ON p.id = d.productId LEFT JOIN p.productGroup g LEFT JOIN p.productBrand b " +
+            "LEFT JOIN i.staff s LEFT JOIN i.customer c ";
+
     List<Invoice> findByStoreId(Integer storeId);
 
     @Query("SELECT i " +
@@ -22,20 +45,145 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Integer> {
             @Param("startDate") Date startDate,
             @Param("endDate") Date endDate);
 
-    @Query("SELECT i.staff.id, SUM(i.total) " +
-            "FROM Invoice i " +
+    @Query("SELECT s.id AS staffId, s.name AS staffName, SUM(i.total) AS total " +
+            "FROM Invoice i JOIN i.staff s " +
             "WHERE i.store.id = :storeId AND i.createdAt BETWEEN :startDate AND :endDate " +
-            "GROUP BY i.staff.id")
-    List<Object[]> findSalesReportOfStaff(
+            "GROUP BY s.id, s.name")
+    List<StaffSalesSummary> findSalesReportOfStaff(
             @Param("storeId") Integer storeId,
             @Param("startDate") Date startDate,
             @Param("endDate") Date endDate);
 
-    @Query("SELECT i.customer.id, SUM(i.subTotal), SUM(i.discountValue), SUM(i.total) " +
-            "FROM Invoice i " +
+    @Query("SELECT c.id AS customerId, c.name AS customerName, SUM(i.subTotal) AS subTotal, " +
+            "SUM(i.discountValue) AS discountValue, SUM(i.total) AS total " +
+            "FROM Invoice i LEFT JOIN i.customer c " +
             "WHERE i.store.id = :storeId AND i.createdAt BETWEEN :startDate AND :endDate " +
-            "GROUP BY i.customer.id")
-    List<Object[]> findSalesReportOfCustomer(
+            "GROUP BY c.id, c.name")
+    List<CustomerSalesSummary> findSalesReportOfCustomer(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT d.productId AS productId, p.name AS productName, COUNT(d) AS lineCount, SUM(d.quantity) AS quantity, " +
+            "SUM(d.price * d.quantity) AS revenue, SUM(COALESCE(d.unitCost, 0) * d.quantity) AS cost " +
+            "FROM Invoice i JOIN i.invoiceDetails d LEFT JOIN Product p ON p.id = d.productId " +
+            "WHERE i.store.id = :storeId AND i.createdAt BETWEEN :startDate AND :endDate " +
+            "GROUP BY d.productId, p.name")
+    List<ProductSalesSummary> findProductSalesSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query(PRODUCT_SALE_LINES_QUERY)
+    List<ProductSaleLine> findProductSaleLines(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    // lines of one product after the (createdAt, id) cursor, walks the (store_id, created_at) index
+    @Query("SELECT d.id AS id, i.createdAt AS createdAt, c.name AS customerName, d.quantity AS quantity, d.price * d.quantity AS total " +
+            "FROM Invoice i JOIN i.invoiceDetails d LEFT JOIN i.customer c " +
+            "WHERE i.store.id = :storeId AND d.productId = :productId AND i.createdAt BETWEEN :startDate AND :endDate " +
+            "AND (i.createdAt > :afterCreatedAt OR (i.createdAt = :afterCreatedAt AND d.id > :afterId)) " +
+            "ORDER BY i.createdAt ASC, d.id ASC")
+    List<ProductSellLine> findProductSellLinesAfter(
+            @Param("storeId") Integer storeId,
+            @Param("productId") Integer productId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate,
+            @Param("afterCreatedAt") Date afterCreatedAt,
+            @Param("afterId") int afterId,
+            Pageable pageable);
+
+    // MySQL only streams the result set row by row with this fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(PRODUCT_SALE_LINES_QUERY)
+    Stream<ProductSaleLine> streamProductSaleLines(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query(INVOICE_SUMMARY_QUERY)
+    List<InvoiceSummary> findInvoiceSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    // MySQL only streams the result set row by row with this fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(INVOICE_SUMMARY_QUERY)
+    Stream<InvoiceSummary> streamInvoiceSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    // MySQL only streams the result set row by row with this fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(SALES_FACT_QUERY + "WHERE i.store.id = :storeId ORDER BY i.createdAt ASC, i.id ASC")
+    Stream<SalesFact> streamSalesFacts(@Param("storeId") Integer storeId);
+
+    @Query(SALES_FACT_QUERY + "WHERE i.id = :invoiceId")
+    List<SalesFact> findSalesFactsOfInvoice(@Param("invoiceId") Integer invoiceId);
+
+    @Query("SELECT CAST(i.createdAt AS LocalDate) AS day, COUNT(i) AS count, SUM(i.total) AS total, SUM(i.discountValue) AS discountValue " +
+            "FROM Invoice i " +
+            "WHERE i.store.id = :storeId AND i.createdAt >= :startDate AND i.createdAt < :endDate " +
+            "GROUP BY CAST(i.createdAt AS LocalDate)")
+    List<DailySalesSummary> findDailySalesSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT CAST(i.createdAt AS LocalDate) AS day, SUM(d.quantity) AS quantity, SUM(COALESCE(d.unitCost, 0) * d.quantity) AS cost " +
+            "FROM Invoice i JOIN i.invoiceDetails d " +
+            "WHERE i.store.id = :storeId AND i.createdAt >= :startDate AND i.createdAt < :endDate " +
+            "GROUP BY CAST(i.createdAt AS LocalDate)")
+    List<DailyItemSummary> findDailyItemSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT DISTINCT CAST(i.createdAt AS LocalDate) AS day, d.productId AS productId, i.customer.id AS customerId " +
+            "FROM Invoice i JOIN i.invoiceDetails d " +
+            "WHERE i.store.id = :storeId AND i.createdAt >= :startDate AND i.createdAt < :endDate " +
+            "AND i.customer IS NOT NULL AND d.productId IS NOT NULL")
+    List<DailyProductCustomer> findDailyProductCustomers(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT d.productId AS productId, COUNT(DISTINCT i.customer.id) AS customers " +
+            "FROM Invoice i JOIN i.invoiceDetails d " +
+            "WHERE i.store.id = :storeId AND i.createdAt BETWEEN :startDate AND :endDate AND i.customer IS NOT NULL " +
+            "GROUP BY d.productId")
+    List<ProductCustomerCount> findDistinctCustomersOfProducts(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT CAST(i.createdAt AS LocalDate) AS day, EXTRACT(HOUR FROM i.createdAt) AS hour, SUM(i.total) AS amount " +
+            "FROM Invoice i " +
+            "WHERE i.store.id = :storeId AND i.createdAt >= :startDate AND i.createdAt < :endDate " +
+            "GROUP BY CAST(i.createdAt AS LocalDate), EXTRACT(HOUR FROM i.createdAt)")
+    List<HourlyAmount> findHourlySalesTotal(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT CAST(i.createdAt AS LocalDate) AS day, EXTRACT(HOUR FROM i.createdAt) AS hour, SUM(COALESCE(d.unitCost, 0) * d.quantity) AS amount " +
+            "FROM Invoice i JOIN i.invoiceDetails d " +
+            "WHERE i.store.id = :storeId AND i.createdAt >= :startDate AND i.createdAt < :endDate " +
+            "GROUP BY CAST(i.createdAt AS LocalDate), EXTRACT(HOUR FROM i.createdAt)")
+    List<HourlyAmount> findHourlySalesCost(
             @Param("storeId") Integer storeId,
             @Param("startDate") Date startDate,
             @Param("endDate") Date endDate);
@@ -45,4 +193,7 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Integer> {
 
     @Query("SELECT i FROM Invoice i WHERE i.store.id=:storeId AND i.createdAt BETWEEN :startDate AND :endDate")
     List<Invoice> findByCreatedAtBetween(@Param("startDate") @Temporal(TemporalType.DATE) Date startDate, @Param("endDate") @Temporal(TemporalType.DATE) Date endDate, @Param("storeId") Integer storeId);
+
+    @Query("SELECT DISTINCT i FROM Invoice i JOIN i.invoiceDetails d WHERE d.unitCost IS NULL")
+    List<Invoice> findWithMissingUnitCost(Pageable pageable);
 }
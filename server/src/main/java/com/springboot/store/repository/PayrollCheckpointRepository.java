@@ -0,0 +1,26 @@
+package com.springboot.store.repository;
+
+import com.springboot.store.entity.PayrollCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.Optional;
+
+public interface PayrollCheckpointRepository extends JpaRepository<PayrollCheckpoint, Integer> {
+    Optional<PayrollCheckpoint> findByPayrollRunIdAndStoreId(int payrollRunId, int storeId);
+
+    @Modifying
+    @Query("UPDATE PayrollCheckpoint c SET c.lastStaffId = :lastStaffId, c.staffUpdated = c.staffUpdated + :staffUpdated, " +
+            "c.completed = :completed, c.updatedAt = :updatedAt WHERE c.id = :id")
+    int advance(@Param("id") int id,
+                @Param("lastStaffId") int lastStaffId,
+                @Param("staffUpdated") int staffUpdated,
+                @Param("completed") boolean completed,
+                @Param("updatedAt") Date updatedAt);
+
+    @Query("SELECT COALESCE(SUM(c.staffUpdated), 0) FROM PayrollCheckpoint c WHERE c.payrollRun.id = :payrollRunId")
+    long sumStaffUpdated(@Param("payrollRunId") int payrollRunId);
+}
@@ -0,0 +1,23 @@
+package com.springboot.store.repository;
+
+import com.springboot.store.entity.PayrollRun;
+import com.springboot.store.utils.PayrollRunStatus;
+import jakarta.persistence.TemporalType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface PayrollRunRepository extends JpaRepository<PayrollRun, Integer> {
+    @Query("SELECT r FROM PayrollRun r WHERE r.periodStart = :periodStart")
+    Optional<PayrollRun> findByPeriodStart(@Param("periodStart") @Temporal(TemporalType.DATE) Date periodStart);
+
+    List<PayrollRun> findByStatusNotOrderByPeriodStartAsc(PayrollRunStatus status);
+
+    @Query("SELECT MAX(r.periodStart) FROM PayrollRun r WHERE r.status = :status")
+    Date findLatestPeriodStart(@Param("status") PayrollRunStatus status);
+}
@@ -1,13 +1,96 @@
 package com.springboot.store.repository;
 
 import com.springboot.store.entity.Product;
+import com.springboot.store.repository.projection.ProductListItem;
+import com.springboot.store.repository.projection.ProductScanItem;
+import com.springboot.store.repository.projection.ProductSearchEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Integer> {
     List<Product> findByStoreId(int storeId);
 
+    // keyset page of the store's products after the given id, with the list fetch plan
+    @EntityGraph(Product.LIST_GRAPH)
+    @Query("SELECT p FROM Product p WHERE p.store.id = :storeId AND p.id > :afterId ORDER BY p.id")
+    List<Product> findListPage(@Param("storeId") int storeId, @Param("afterId") int afterId, Pageable pageable);
+
+    @EntityGraph(Product.DETAIL_GRAPH)
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> findDetailById(@Param("id") int id);
+
+    // rows of (productId, createdAt, value) ordered so that each product's history is contiguous and chronological
+    @Query("SELECT p.id, op.createdAt, op.value " +
+            "FROM Product p JOIN p.originalPrices op " +
+            "WHERE p.store.id = :storeId " +
+            "ORDER BY p.id, op.createdAt, op.id")
+    List<Object[]> findOriginalPriceHistoryByStoreId(@Param("storeId") int storeId);
+
+    @Query("SELECT p.id, pp.createdAt, pp.value " +
+            "FROM Product p JOIN p.productPrices pp " +
+            "WHERE p.store.id = :storeId " +
+            "ORDER BY p.id, pp.createdAt, pp.id")
+    List<Object[]> findProductPriceHistoryByStoreId(@Param("storeId") int storeId);
+
+    @Query("SELECT p.id, op.createdAt, op.value " +
+            "FROM Product p JOIN p.originalPrices op " +
+            "WHERE p.id = :productId " +
+            "ORDER BY op.createdAt, op.id")
+    List<Object[]> findOriginalPriceHistoryByProductId(@Param("productId") int productId);
+
+    @Query("SELECT p.id, pp.createdAt, pp.value " +
+            "FROM Product p JOIN p.productPrices pp " +
+            "WHERE p.id = :productId " +
+            "ORDER BY pp.createdAt, pp.id")
+    List<Object[]> findProductPriceHistoryByProductId(@Param("productId") int productId);
+
+    @Query("SELECT p.id AS id, p.name AS name, p.barcode AS barcode FROM Product p " +
+            "WHERE p.store.id = :storeId AND COALESCE(p.isDeleted, false) = false")
+    List<ProductSearchEntry> findSearchEntriesByStoreId(@Param("storeId") int storeId);
+
+    // products of the store with the barcode, oldest first. Same current price rule as the listing below
+    @Query("SELECT p.id AS id, p.name AS name, p.barcode AS barcode, p.stock AS stock, " +
+            "(SELECT pp.value FROM ProductPrice pp WHERE pp.id = " +
+            "(SELECT MAX(o.id) FROM Product px JOIN px.productPrices o WHERE px.id = p.id)) AS productPrice, " +
+            "su.name AS salesUnit, su.basicUnit AS basicUnit, su.exchangeValue AS exchangeValue " +
+            "FROM Product p LEFT JOIN p.salesUnits su " +
+            "WHERE p.store.id = :storeId AND p.barcode = :barcode AND COALESCE(p.isDeleted, false) = false " +
+            "ORDER BY p.id")
+    List<ProductScanItem> findScanItems(@Param("storeId") int storeId, @Param("barcode") String barcode, Pageable pageable);
+
+    // keyset page of the store's products after the given id. The current price is the newest entry of each history,
+    // the one the product mapper reads as the last element
+    @Query("SELECT p.id AS id, p.name AS name, p.barcode AS barcode, p.status AS status, p.stock AS stock, " +
+            "p.minStock AS minStock, p.maxStock AS maxStock, p.isDeleted AS isDeleted, " +
+            "l.name AS location, g.name AS productGroup, b.name AS productBrand, " +
+            "(SELECT op.value FROM OriginalPrice op WHERE op.id = " +
+            "(SELECT MAX(o.id) FROM Product px JOIN px.originalPrices o WHERE px.id = p.id)) AS originalPrice, " +
+            "(SELECT pp.value FROM ProductPrice pp WHERE pp.id = " +
+            "(SELECT MAX(o.id) FROM Product px JOIN px.productPrices o WHERE px.id = p.id)) AS productPrice " +
+            "FROM Product p LEFT JOIN p.location l LEFT JOIN p.productGroup g LEFT JOIN p.productBrand b " +
+            "WHERE p.store.id = :storeId AND p.id > :afterId " +
+            "AND (:groupId IS NULL OR g.id = :groupId) " +
+            "AND (:brandId IS NULL OR b.id = :brandId) " +
+            "AND (:locationId IS NULL OR l.id = :locationId) " +
+            "AND (:status IS NULL OR p.status = :status) " +
+            "AND (:lowStock = false OR p.stock < p.minStock) " +
+            "AND (:deleted IS NULL OR COALESCE(p.isDeleted, false) = :deleted) " +
+            "ORDER BY p.id")
+    List<ProductListItem> findProductPage(@Param("storeId") int storeId,
+                                          @Param("afterId") int afterId,
+                                          @Param("groupId") Integer groupId,
+                                          @Param("brandId") Integer brandId,
+                                          @Param("locationId") Integer locationId,
+                                          @Param("status") String status,
+                                          @Param("lowStock") boolean lowStock,
+                                          @Param("deleted") Boolean deleted,
+                                          Pageable pageable);
 }
@@ -1,18 +1,38 @@
 package com.springboot.store.repository;
 
 import com.springboot.store.entity.PurchaseReturn;
+import com.springboot.store.repository.projection.SupplierDocumentLine;
+import jakarta.persistence.QueryHint;
 import jakarta.persistence.TemporalType;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.jpa.repository.Temporal;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface PurchaseReturnRepository extends JpaRepository<PurchaseReturn, Integer> {
     List<PurchaseReturn> findByStoreId(int storeId);
 
     @Query("SELECT i FROM PurchaseReturn i WHERE i.store.id=:storeId AND i.createdDate BETWEEN :startDate AND :endDate")
     List<PurchaseReturn> findByStoreIdAndCreatedDateBetween(@Param("startDate") @Temporal(TemporalType.DATE) Date startDate, @Param("endDate") @Temporal(TemporalType.DATE) Date endDate, @Param("storeId") Integer storeId);
+
+    // MySQL only streams the result set row by row with this fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s.id AS supplierId, s.name AS supplierName, i.id AS id, i.createdDate AS createdDate, st.name AS staffName, " +
+            "i.subtotal AS subtotal, i.discount AS discount, i.total AS total " +
+            "FROM PurchaseReturn i JOIN i.supplier s LEFT JOIN i.staff st " +
+            "WHERE i.store.id = :storeId AND i.createdDate BETWEEN :startDate AND :endDate " +
+            "ORDER BY s.id ASC, i.createdDate ASC")
+    Stream<SupplierDocumentLine> streamSupplierLines(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
 }
@@ -0,0 +1,13 @@
+package com.springboot.store.repository;
+
+import com.springboot.store.entity.ReturnDetail;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface ReturnDetailRepository extends JpaRepository<ReturnDetail, Integer> {
+    @Query("SELECT d FROM ReturnDetail d JOIN FETCH d.returnInvoice WHERE d.unitCost IS NULL")
+    List<ReturnDetail> findWithMissingUnitCost(Pageable pageable);
+}
@@ -1,16 +1,40 @@
 package com.springboot.store.repository;
 
 import com.springboot.store.entity.ReturnInvoice;
+import com.springboot.store.repository.projection.*;
+import jakarta.persistence.QueryHint;
 import jakarta.persistence.TemporalType;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.jpa.repository.Temporal;
 import org.springframework.data.repository.query.Param;
 
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface ReturnInvoiceRepository extends JpaRepository<ReturnInvoice, Integer> {
+    String PRODUCT_RETURN_LINES_QUERY = "SELECT p.id AS productId, p.name AS productName, ri.createdAt AS createdAt, c.name AS customerName, " +
+            "d.quantity AS quantity, d.price * d.quantity AS total " +
+            "FROM ReturnDetail d JOIN d.returnInvoice ri JOIN d.product p LEFT JOIN ri.invoice i LEFT JOIN i.customer c " +
+            "WHERE ri.store.id = :storeId AND ri.createdAt BETWEEN :startDate AND :endDate AND d.quantity <> 0 " +
+            "ORDER BY ri.createdAt ASC, ri.id ASC";
+
+    String RETURN_FACT_QUERY = "SELECT ri.id AS documentId, ri.createdAt AS createdAt, p.id AS productId, g.id AS groupId, b.id AS brandId, " +
+            "s.id AS staffId, c.id AS customerId, d.quantity AS quantity, d.price * d.quantity AS revenue, COALESCE(d.unitCost, 0) * d.quantity AS cost " +
+            "FROM ReturnDetail d JOIN d.returnInvoice ri JOIN d.product p LEFT JOIN p.productGroup g LEFT JOIN p.productBrand b " +
+            "LEFT JOIN ri.staff s LEFT JOIN ri.invoice i LEFT JOIN i.customer c " +
+            "WHERE ri.createdAt IS NOT NULL AND d.quantity <> 0 ";
+
+    String RETURN_SUMMARY_QUERY = "SELECT ri.id AS id, ri.createdAt AS createdAt, COALESCE(SUM(d.quantity), 0) AS quantity, ri.total AS total " +
+            "FROM ReturnInvoice ri LEFT JOIN ri.returnDetails d " +
+            "WHERE ri.store.id = :storeId AND ri.createdAt BETWEEN :startDate AND :endDate " +
+            "GROUP BY ri.id, ri.createdAt, ri.total " +
+            "ORDER BY ri.createdAt ASC";
+
     List<ReturnInvoice> findByStoreId(int storeId);
 
     @Query("SELECT ri " +
@@ -22,11 +46,126 @@ public interface ReturnInvoiceRepository extends JpaRepository<ReturnInvoice, In
             @Param("startDate") Date startDate,
             @Param("endDate") Date endDate);
 
-    @Query("SELECT ri.staff.id, SUM(ri.total) " +
-            "FROM ReturnInvoice ri " +
+    @Query("SELECT s.id AS staffId, s.name AS staffName, SUM(ri.total) AS total " +
+            "FROM ReturnInvoice ri JOIN ri.staff s " +
+            "WHERE ri.store.id = :storeId AND ri.createdAt BETWEEN :startDate AND :endDate " +
+            "GROUP BY s.id, s.name")
+    List<StaffSalesSummary> findSalesReportOfStaff(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT c.id AS customerId, c.name AS customerName, SUM(ri.total) AS total " +
+            "FROM ReturnInvoice ri JOIN ri.invoice i LEFT JOIN i.customer c " +
             "WHERE ri.store.id = :storeId AND ri.createdAt BETWEEN :startDate AND :endDate " +
-            "GROUP BY ri.staff.id")
-    List<Object[]> findSalesReportOfStaff(
+            "GROUP BY c.id, c.name")
+    List<CustomerReturnSummary> findSalesReportOfCustomer(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT p.id AS productId, p.name AS productName, COUNT(d) AS lineCount, SUM(d.quantity) AS quantity, " +
+            "SUM(d.price * d.quantity) AS revenue, SUM(COALESCE(d.unitCost, 0) * d.quantity) AS cost " +
+            "FROM ReturnDetail d JOIN d.returnInvoice ri JOIN d.product p " +
+            "WHERE ri.store.id = :storeId AND ri.createdAt BETWEEN :startDate AND :endDate " +
+            "GROUP BY p.id, p.name")
+    List<ProductSalesSummary> findProductReturnSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query(PRODUCT_RETURN_LINES_QUERY)
+    List<ProductSaleLine> findProductReturnLines(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    // lines of one product after the (createdAt, id) cursor, walks the (store_id, created_at) index
+    @Query("SELECT d.id AS id, ri.createdAt AS createdAt, c.name AS customerName, d.quantity AS quantity, d.price * d.quantity AS total " +
+            "FROM ReturnDetail d JOIN d.returnInvoice ri LEFT JOIN ri.invoice i LEFT JOIN i.customer c " +
+            "WHERE ri.store.id = :storeId AND d.product.id = :productId AND ri.createdAt BETWEEN :startDate AND :endDate AND d.quantity <> 0 " +
+            "AND (ri.createdAt > :afterCreatedAt OR (ri.createdAt = :afterCreatedAt AND d.id > :afterId)) " +
+            "ORDER BY ri.createdAt ASC, d.id ASC")
+    List<ProductSellLine> findProductReturnLinesAfter(
+            @Param("storeId") Integer storeId,
+            @Param("productId") Integer productId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate,
+            @Param("afterCreatedAt") Date afterCreatedAt,
+            @Param("afterId") int afterId,
+            Pageable pageable);
+
+    // MySQL only streams the result set row by row with this fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(PRODUCT_RETURN_LINES_QUERY)
+    Stream<ProductSaleLine> streamProductReturnLines(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query(RETURN_SUMMARY_QUERY)
+    List<InvoiceSummary> findReturnSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    // MySQL only streams the result set row by row with this fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(RETURN_SUMMARY_QUERY)
+    Stream<InvoiceSummary> streamReturnSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    // MySQL only streams the result set row by row with this fetch size
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(RETURN_FACT_QUERY + "AND ri.store.id = :storeId ORDER BY ri.createdAt ASC, ri.id ASC")
+    Stream<SalesFact> streamReturnFacts(@Param("storeId") Integer storeId);
+
+    @Query(RETURN_FACT_QUERY + "AND ri.id = :returnInvoiceId")
+    List<SalesFact> findSalesFactsOfReturnInvoice(@Param("returnInvoiceId") Integer returnInvoiceId);
+
+    @Query("SELECT CAST(ri.createdAt AS LocalDate) AS day, COUNT(ri) AS count, SUM(ri.total) AS total, SUM(ri.discountValue) AS discountValue " +
+            "FROM ReturnInvoice ri " +
+            "WHERE ri.store.id = :storeId AND ri.createdAt >= :startDate AND ri.createdAt < :endDate " +
+            "GROUP BY CAST(ri.createdAt AS LocalDate)")
+    List<DailySalesSummary> findDailyReturnSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT CAST(ri.createdAt AS LocalDate) AS day, SUM(d.quantity) AS quantity, SUM(COALESCE(d.unitCost, 0) * d.quantity) AS cost " +
+            "FROM ReturnDetail d JOIN d.returnInvoice ri " +
+            "WHERE ri.store.id = :storeId AND ri.createdAt >= :startDate AND ri.createdAt < :endDate " +
+            "GROUP BY CAST(ri.createdAt AS LocalDate)")
+    List<DailyItemSummary> findDailyReturnItemSummary(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT CAST(ri.createdAt AS LocalDate) AS day, EXTRACT(HOUR FROM ri.createdAt) AS hour, SUM(ri.total) AS amount " +
+            "FROM ReturnInvoice ri " +
+            "WHERE ri.store.id = :storeId AND ri.createdAt >= :startDate AND ri.createdAt < :endDate " +
+            "GROUP BY CAST(ri.createdAt AS LocalDate), EXTRACT(HOUR FROM ri.createdAt)")
+    List<HourlyAmount> findHourlyReturnTotal(
+            @Param("storeId") Integer storeId,
+            @Param("startDate") Date startDate,
+            @Param("endDate") Date endDate);
+
+    @Query("SELECT CAST(ri.createdAt AS LocalDate) AS day, EXTRACT(HOUR FROM ri.createdAt) AS hour, SUM(COALESCE(d.unitCost, 0) * d.quantity) AS amount " +
+            "FROM ReturnDetail d JOIN d.returnInvoice ri " +
+            "WHERE ri.store.id = :storeId AND ri.createdAt >= :startDate AND ri.createdAt < :endDate " +
+            "GROUP BY CAST(ri.createdAt AS LocalDate), EXTRACT(HOUR FROM ri.createdAt)")
+    List<HourlyAmount> findHourlyReturnCost(
             @Param("storeId") Integer storeId,
             @Param("startDate") Date startDate,
             @Param("endDate") Date endDate);
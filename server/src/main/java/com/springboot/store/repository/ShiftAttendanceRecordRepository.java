@@ -1,6 +1,7 @@
 package com.springboot.store.repository;
 
 import com.springboot.store.entity.ShiftAttendanceRecord;
+import com.springboot.store.repository.projection.StaffAdjustmentTotal;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,9 +15,18 @@ public interface ShiftAttendanceRecordRepository extends JpaRepository<ShiftAtte
 
     List<ShiftAttendanceRecord> findByStaffId(int staffId);
 
-    @Query("SELECT s FROM ShiftAttendanceRecord s WHERE s.staffId = :staffId AND YEAR(s.date) = YEAR(CURRENT_DATE) AND MONTH(s.date) = MONTH(CURRENT_DATE) AND s.store IS NOT NULL AND s.dailyShift IS NOT NULL AND SIZE(s.bonusSalaryList) >0 AND SIZE(s.punishSalaryList)>0 ")
-    List<ShiftAttendanceRecord> findByStaffIdAndDateInThisMonthAndBonusAndPunishNotNull(@Param("staffId") int staffId);
-
     @Query("SELECT s FROM ShiftAttendanceRecord s WHERE s.staffId = :staffId AND s.date BETWEEN :startDate AND :endDate AND s.store IS NOT NULL AND s.dailyShift IS NOT NULL")
     List<ShiftAttendanceRecord> findByStaffIdAndDateBetween(@Param("staffId") int staffId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    @Query("SELECT s.staffId AS staffId, b.name AS name, COUNT(b) AS count, SUM(b.value * b.multiply) AS total " +
+            "FROM ShiftAttendanceRecord s JOIN s.bonusSalaryList b " +
+            "WHERE s.store.id = :storeId AND s.date >= :startDate AND s.date < :endDate AND s.dailyShift IS NOT NULL " +
+            "GROUP BY s.staffId, b.name")
+    List<StaffAdjustmentTotal> findBonusTotalsOfStore(@Param("storeId") int storeId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    @Query("SELECT s.staffId AS staffId, p.name AS name, COUNT(p) AS count, SUM(p.value * p.multiply) AS total " +
+            "FROM ShiftAttendanceRecord s JOIN s.punishSalaryList p " +
+            "WHERE s.store.id = :storeId AND s.date >= :startDate AND s.date < :endDate AND s.dailyShift IS NOT NULL " +
+            "GROUP BY s.staffId, p.name")
+    List<StaffAdjustmentTotal> findPunishTotalsOfStore(@Param("storeId") int storeId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
 }
@@ -0,0 +1,48 @@
+package com.springboot.store.repository;
+
+import com.springboot.store.entity.StaffPayrollMonth;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.TemporalType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.Temporal;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+public interface StaffPayrollMonthRepository extends JpaRepository<StaffPayrollMonth, Integer> {
+    @Query("SELECT m FROM StaffPayrollMonth m WHERE m.staffId = :staffId AND m.periodStart = :periodStart")
+    Optional<StaffPayrollMonth> findByStaffIdAndPeriodStart(
+            @Param("staffId") int staffId,
+            @Param("periodStart") @Temporal(TemporalType.DATE) Date periodStart);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM StaffPayrollMonth m WHERE m.staffId = :staffId AND m.periodStart = :periodStart")
+    Optional<StaffPayrollMonth> findForUpdate(
+            @Param("staffId") int staffId,
+            @Param("periodStart") @Temporal(TemporalType.DATE) Date periodStart);
+
+    // creates the month when it is missing so that it can be locked, two first attendance writes of a month
+    // would otherwise both insert it and one of them fail on the unique key
+    @Modifying
+    @Query(value = "INSERT INTO staff_payroll_months (staff_id, period_start, attended_shifts, bonus, penalty) " +
+            "VALUES (:staffId, :periodStart, 0, 0, 0) " +
+            "ON DUPLICATE KEY UPDATE staff_id = staff_id", nativeQuery = true)
+    void insertIfMissing(
+            @Param("staffId") int staffId,
+            @Param("periodStart") @Temporal(TemporalType.DATE) Date periodStart);
+
+    @Query("SELECT m FROM StaffPayrollMonth m WHERE m.staffId IN (SELECT st.id FROM Staff st WHERE st.store.id = :storeId) " +
+            "AND m.periodStart = :periodStart")
+    List<StaffPayrollMonth> findByStoreIdAndPeriodStart(
+            @Param("storeId") int storeId,
+            @Param("periodStart") @Temporal(TemporalType.DATE) Date periodStart);
+
+    @Modifying
+    @Query("DELETE FROM StaffPayrollMonth m WHERE m.staffId = :staffId")
+    int deleteByStaffId(@Param("staffId") int staffId);
+}
@@ -2,9 +2,13 @@ package com.springboot.store.repository;
 
 import com.springboot.store.entity.Staff;
 import com.springboot.store.entity.StaffPosition;
+import com.springboot.store.repository.projection.StaffPayrollSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,4 +31,27 @@ public interface StaffRepository extends JpaRepository<Staff, Integer> {
     //get all staff id by store id
     @Query("SELECT s.id FROM Staff s WHERE s.store.id = :storeId")
     List<Integer> findAllStaffIdByStoreId(@org.springframework.data.repository.query.Param("storeId") Integer storeId);
-}
\ No newline at end of file
+
+    // one row per staff, the subqueries keep the bonus and punish lists from multiplying each other
+    String PAYROLL_SELECT = "SELECT st.id AS staffId, ss.salary AS salary, ss.salaryType AS salaryType, " +
+            "(SELECT COUNT(s) FROM ShiftAttendanceRecord s WHERE s.staffId = st.id AND s.hasAttend = true " +
+            "AND s.date BETWEEN :startDate AND :endDate AND s.store IS NOT NULL AND s.dailyShift IS NOT NULL) AS attendedShifts, " +
+            "(SELECT COALESCE(SUM(b.value * b.multiply), 0) FROM ShiftAttendanceRecord s JOIN s.bonusSalaryList b WHERE s.staffId = st.id " +
+            "AND s.date BETWEEN :startDate AND :endDate AND s.store IS NOT NULL AND s.dailyShift IS NOT NULL) AS bonus, " +
+            "(SELECT COALESCE(SUM(p.value * p.multiply), 0) FROM ShiftAttendanceRecord s JOIN s.punishSalaryList p WHERE s.staffId = st.id " +
+            "AND s.date BETWEEN :startDate AND :endDate AND s.store IS NOT NULL AND s.dailyShift IS NOT NULL) AS penalty " +
+            "FROM Staff st LEFT JOIN st.staffSalary ss ";
+
+    @Query(PAYROLL_SELECT + "WHERE st.store.id = :storeId")
+    List<StaffPayrollSummary> findPayrollOfStore(@Param("storeId") int storeId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    @Query(PAYROLL_SELECT + "WHERE st.id = :staffId")
+    Optional<StaffPayrollSummary> findPayrollOfStaff(@Param("staffId") int staffId, @Param("startDate") Date startDate, @Param("endDate") Date endDate);
+
+    // next chunk of the store's staff after the given id, owners are not paid
+    @Query(PAYROLL_SELECT + "LEFT JOIN st.staffRole r " +
+            "WHERE st.store.id = :storeId AND st.id > :afterStaffId AND (r IS NULL OR r.name <> 'Owner') " +
+            "ORDER BY st.id")
+    List<StaffPayrollSummary> findPayrollChunk(@Param("storeId") int storeId, @Param("afterStaffId") int afterStaffId,
+                                               @Param("startDate") Date startDate, @Param("endDate") Date endDate, Pageable pageable);
+}
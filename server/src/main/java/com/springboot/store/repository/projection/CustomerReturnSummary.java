@@ -0,0 +1,10 @@
+package com.springboot.store.repository.projection;
+
+// one row per customer of the returned invoices, customerId is null for walk-in sales
+public interface CustomerReturnSummary {
+    Integer getCustomerId();
+
+    String getCustomerName();
+
+    double getTotal();
+}
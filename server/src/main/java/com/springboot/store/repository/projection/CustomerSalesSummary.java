@@ -0,0 +1,14 @@
+package com.springboot.store.repository.projection;
+
+// one row per customer, customerId is null for walk-in sales
+public interface CustomerSalesSummary {
+    Integer getCustomerId();
+
+    String getCustomerName();
+
+    double getSubTotal();
+
+    double getDiscountValue();
+
+    double getTotal();
+}
@@ -0,0 +1,12 @@
+package com.springboot.store.repository.projection;
+
+import java.time.LocalDate;
+
+// invoice or return lines summed per calendar day
+public interface DailyItemSummary {
+    LocalDate getDay();
+
+    long getQuantity();
+
+    double getCost();
+}
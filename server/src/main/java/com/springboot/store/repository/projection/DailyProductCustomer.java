@@ -0,0 +1,12 @@
+package com.springboot.store.repository.projection;
+
+import java.time.LocalDate;
+
+// one row per day, product and identified customer who bought it
+public interface DailyProductCustomer {
+    LocalDate getDay();
+
+    Integer getProductId();
+
+    Integer getCustomerId();
+}
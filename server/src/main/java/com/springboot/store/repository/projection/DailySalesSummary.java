@@ -0,0 +1,14 @@
+package com.springboot.store.repository.projection;
+
+import java.time.LocalDate;
+
+// invoice or return headers summed per calendar day
+public interface DailySalesSummary {
+    LocalDate getDay();
+
+    long getCount();
+
+    double getTotal();
+
+    double getDiscountValue();
+}
@@ -0,0 +1,12 @@
+package com.springboot.store.repository.projection;
+
+import java.time.LocalDate;
+
+// an invoice or return total, or a cost of their lines, summed per local hour
+public interface HourlyAmount {
+    LocalDate getDay();
+
+    int getHour();
+
+    double getAmount();
+}
@@ -0,0 +1,14 @@
+package com.springboot.store.repository.projection;
+
+import java.util.Date;
+
+// one row per invoice or return with the quantity of its lines
+public interface InvoiceSummary {
+    Integer getId();
+
+    Date getCreatedAt();
+
+    long getQuantity();
+
+    double getTotal();
+}
@@ -0,0 +1,8 @@
+package com.springboot.store.repository.projection;
+
+// distinct identified customers per product
+public interface ProductCustomerCount {
+    Integer getProductId();
+
+    long getCustomers();
+}
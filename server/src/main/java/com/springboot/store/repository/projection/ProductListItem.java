@@ -0,0 +1,31 @@
+package com.springboot.store.repository.projection;
+
+// one product of the listing, names of its group, brand and location and its current prices,
+// read without loading the price histories
+public interface ProductListItem {
+    int getId();
+
+    String getName();
+
+    String getBarcode();
+
+    String getStatus();
+
+    int getStock();
+
+    int getMinStock();
+
+    int getMaxStock();
+
+    Boolean getIsDeleted();
+
+    String getLocation();
+
+    String getProductGroup();
+
+    String getProductBrand();
+
+    Double getOriginalPrice();
+
+    Double getProductPrice();
+}
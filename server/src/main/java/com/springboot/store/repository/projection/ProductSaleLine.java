@@ -0,0 +1,18 @@
+package com.springboot.store.repository.projection;
+
+import java.util.Date;
+
+// a single invoice or return line flattened with its header
+public interface ProductSaleLine {
+    Integer getProductId();
+
+    String getProductName();
+
+    Date getCreatedAt();
+
+    String getCustomerName();
+
+    int getQuantity();
+
+    double getTotal();
+}
@@ -0,0 +1,16 @@
+package com.springboot.store.repository.projection;
+
+// one row per product, summed over invoice or return lines
+public interface ProductSalesSummary {
+    Integer getProductId();
+
+    String getProductName();
+
+    long getLineCount();
+
+    long getQuantity();
+
+    double getRevenue();
+
+    double getCost();
+}
@@ -0,0 +1,20 @@
+package com.springboot.store.repository.projection;
+
+// one scanned product with its current selling price and sales unit
+public interface ProductScanItem {
+    int getId();
+
+    String getName();
+
+    String getBarcode();
+
+    int getStock();
+
+    Double getProductPrice();
+
+    String getSalesUnit();
+
+    String getBasicUnit();
+
+    Double getExchangeValue();
+}
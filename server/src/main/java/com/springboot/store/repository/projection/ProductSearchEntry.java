@@ -0,0 +1,10 @@
+package com.springboot.store.repository.projection;
+
+// the fields of a product the search index holds
+public interface ProductSearchEntry {
+    int getId();
+
+    String getName();
+
+    String getBarcode();
+}
@@ -0,0 +1,16 @@
+package com.springboot.store.repository.projection;
+
+import java.util.Date;
+
+// one invoice or return line of a product, id is the line's own id and breaks ties on createdAt
+public interface ProductSellLine {
+    int getId();
+
+    Date getCreatedAt();
+
+    String getCustomerName();
+
+    int getQuantity();
+
+    double getTotal();
+}
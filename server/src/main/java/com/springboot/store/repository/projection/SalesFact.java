@@ -0,0 +1,26 @@
+package com.springboot.store.repository.projection;
+
+import java.util.Date;
+
+// one invoice or return line with the dimensions the sales slices group by
+public interface SalesFact {
+    int getDocumentId();
+
+    Date getCreatedAt();
+
+    Integer getProductId();
+
+    Integer getGroupId();
+
+    Integer getBrandId();
+
+    Integer getStaffId();
+
+    Integer getCustomerId();
+
+    int getQuantity();
+
+    double getRevenue();
+
+    double getCost();
+}
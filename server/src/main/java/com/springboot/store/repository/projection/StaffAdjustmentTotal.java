@@ -0,0 +1,12 @@
+package com.springboot.store.repository.projection;
+
+// bonuses or punishments of one name given to one staff
+public interface StaffAdjustmentTotal {
+    int getStaffId();
+
+    String getName();
+
+    long getCount();
+
+    long getTotal();
+}
@@ -0,0 +1,16 @@
+package com.springboot.store.repository.projection;
+
+// attendance, bonus and penalty totals of one staff, with the salary settings they are paid by
+public interface StaffPayrollSummary {
+    int getStaffId();
+
+    Integer getSalary();
+
+    String getSalaryType();
+
+    long getAttendedShifts();
+
+    long getBonus();
+
+    long getPenalty();
+}
@@ -0,0 +1,9 @@
+package com.springboot.store.repository.projection;
+
+public interface StaffSalesSummary {
+    Integer getStaffId();
+
+    String getStaffName();
+
+    double getTotal();
+}
@@ -0,0 +1,22 @@
+package com.springboot.store.repository.projection;
+
+import java.util.Date;
+
+// a purchase order or purchase return flattened with its supplier and staff
+public interface SupplierDocumentLine {
+    Integer getSupplierId();
+
+    String getSupplierName();
+
+    Integer getId();
+
+    Date getCreatedDate();
+
+    String getStaffName();
+
+    int getSubtotal();
+
+    int getDiscount();
+
+    int getTotal();
+}
@@ -1,32 +1,42 @@
 package com.springboot.store.schedule;
 
-import com.springboot.store.entity.Staff;
-import com.springboot.store.repository.StaffRepository;
-import com.springboot.store.service.StaffService;
+import com.springboot.store.exception.CustomException;
+import com.springboot.store.service.PayrollBatchService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
 
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 
+@Slf4j
+@Component
 @RequiredArgsConstructor
 public class MonthlySalaryUpdate {
-    private final StaffRepository staffRepository;
-    private final StaffService staffService;
+    private final PayrollBatchService payrollBatchService;
 
-    @Scheduled(cron = "0 0 0 L * ? *")
+    // the month is paid once it is over, on the first day of the next one
+    @Scheduled(cron = "${store.payroll.batch.cron:0 15 0 1 * *}")
     public void updateStaffSalaryAtEndOfMonth() {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(new Date());
-        //check if today is the last day of month
-        int lastDayOfMonth = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
-        int currentDayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
-        if (currentDayOfMonth == lastDayOfMonth) {
-            List<Staff> allStaff = staffRepository.findAllStaffsWithRoleNotOwner();
-            for (Staff staff : allStaff) {
-                staffService.getStaffSalary(staff.getId());
-            }
+        Date previousMonth = DateUtils.addMonths(DateUtils.truncate(new Date(), Calendar.MONTH), -1);
+        try {
+            payrollBatchService.runMonth(previousMonth);
+        } catch (CustomException e) {
+            log.warn("Month-end payroll skipped: {}", e.getMessage());
+        }
+    }
+
+    // picks up a run a crash or restart left behind
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRuns() {
+        try {
+            payrollBatchService.resumeInterruptedRuns();
+        } catch (RuntimeException e) {
+            log.error("Resuming the payroll runs failed", e);
         }
     }
 }
@@ -0,0 +1,117 @@
+package com.springboot.store.schedule;
+
+import com.springboot.store.entity.*;
+import com.springboot.store.repository.InvoiceRepository;
+import com.springboot.store.repository.ReturnDetailRepository;
+import com.springboot.store.service.PriceTimelineService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
+
+// one-off job: fills unit_cost on invoice and return lines created before the column existed.
+// It only touches rows where unit_cost is null, so running it again is a no-op.
+// Runs on a thread of its own once the application is ready, startup does not wait for the historical scan
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "store.jobs.unit-cost-backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class UnitCostBackfillJob {
+    private static final int CHUNK_SIZE = 200;
+
+    private final InvoiceRepository invoiceRepository;
+    private final ReturnDetailRepository returnDetailRepository;
+    private final PriceTimelineService priceTimelineService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor backfillExecutor;
+
+    public UnitCostBackfillJob(InvoiceRepository invoiceRepository,
+                               ReturnDetailRepository returnDetailRepository,
+                               PriceTimelineService priceTimelineService,
+                               PlatformTransactionManager transactionManager) {
+        this.invoiceRepository = invoiceRepository;
+        this.returnDetailRepository = returnDetailRepository;
+        this.priceTimelineService = priceTimelineService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.backfillExecutor = new ThreadPoolTaskExecutor();
+        this.backfillExecutor.setCorePoolSize(1);
+        this.backfillExecutor.setMaxPoolSize(1);
+        this.backfillExecutor.setThreadNamePrefix("unit-cost-backfill-");
+        this.backfillExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        backfillExecutor.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        backfillExecutor.execute(this::backfill);
+    }
+
+    public void backfill() {
+        int invoiceLines = fillChunks("invoice", this::backfillInvoiceChunk);
+        int returnLines = fillChunks("return", this::backfillReturnChunk);
+        if (invoiceLines > 0 || returnLines > 0) {
+            log.info("Backfilled unit cost of {} invoice lines and {} return lines", invoiceLines, returnLines);
+        }
+    }
+
+    // every chunk commits on its own, rows that got a cost drop out of the next query.
+    // A failed chunk would come back first in the next query, the kind stops there and is retried on the next start
+    private int fillChunks(String kind, Supplier<Integer> chunkFiller) {
+        int lines = 0;
+        while (true) {
+            Integer chunk;
+            try {
+                chunk = transactionTemplate.execute(status -> chunkFiller.get());
+            } catch (RuntimeException e) {
+                log.error("Backfilling the unit cost of {} lines stopped after {} lines", kind, lines, e);
+                return lines;
+            }
+            if (chunk == null || chunk == 0) return lines;
+            lines += chunk;
+        }
+    }
+
+    private int backfillInvoiceChunk() {
+        List<Invoice> invoices = invoiceRepository.findWithMissingUnitCost(PageRequest.of(0, CHUNK_SIZE));
+        int lines = 0;
+        for (Invoice invoice : invoices) {
+            Date createdAt = invoice.getCreatedAt() != null ? invoice.getCreatedAt() : new Date();
+            for (InvoiceDetail invoiceDetail : invoice.getInvoiceDetails()) {
+                if (invoiceDetail.getUnitCost() != null) continue;
+                // a line without a known product or store gets a zero cost so it is not picked up again
+                invoiceDetail.setUnitCost(invoice.getStore() != null
+                        ? priceTimelineService.getOriginalPriceAt(invoice.getStore().getId(), invoiceDetail.getProductId(), createdAt)
+                        : 0);
+                lines++;
+            }
+        }
+        invoiceRepository.saveAll(invoices);
+        return lines;
+    }
+
+    private int backfillReturnChunk() {
+        List<ReturnDetail> returnDetails = returnDetailRepository.findWithMissingUnitCost(PageRequest.of(0, CHUNK_SIZE));
+        for (ReturnDetail returnDetail : returnDetails) {
+            ReturnInvoice returnInvoice = returnDetail.getReturnInvoice();
+            Date createdAt = returnInvoice.getCreatedAt() != null ? returnInvoice.getCreatedAt() : new Date();
+            returnDetail.setUnitCost(returnDetail.getProduct() != null && returnInvoice.getStore() != null
+                    ? priceTimelineService.getOriginalPriceAt(returnInvoice.getStore().getId(), returnDetail.getProduct().getId(), createdAt)
+                    : 0);
+        }
+        returnDetailRepository.saveAll(returnDetails);
+        return returnDetails.size();
+    }
+}
@@ -0,0 +1,35 @@
+package com.springboot.store.service;
+
+import com.springboot.store.entity.DailyProductSketch;
+import com.springboot.store.entity.DailySalesRollup;
+import com.springboot.store.entity.Invoice;
+import com.springboot.store.entity.ReturnInvoice;
+import com.springboot.store.payload.report.SalesBucket;
+import com.springboot.store.utils.TimeGranularity;
+
+import java.util.Date;
+import java.util.List;
+
+public interface DailySalesRollupService {
+    void addInvoice(Invoice invoice);
+
+    void removeInvoice(Invoice invoice);
+
+    void addReturnInvoice(ReturnInvoice returnInvoice);
+
+    void removeReturnInvoice(ReturnInvoice returnInvoice);
+
+    // endDate is exclusive, both dates are truncated to the day
+    List<DailySalesRollup> getRollups(int storeId, Date startDate, Date endDate);
+
+    // per product and day sketches of the identified customers of [startDate, endDate)
+    List<DailyProductSketch> getProductSketches(int storeId, Date startDate, Date endDate);
+
+    // non-empty buckets of [startDate, endDate) ordered by key. Days, weeks and months are folded from the rollups,
+    // hours from the invoices grouped by hour
+    List<SalesBucket> getBuckets(int storeId, Date startDate, Date endDate, TimeGranularity granularity);
+
+    // regenerates every rollup row and customer sketch of [startDate, endDate) from the raw invoices,
+    // returns the number of rollup rows written
+    int rebuild(int storeId, Date startDate, Date endDate);
+}
@@ -0,0 +1,11 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.report.DashboardDTO;
+import com.springboot.store.utils.TimeGranularity;
+
+import java.util.Date;
+
+public interface DashboardService {
+    // the sections of the record-of-sale, sales-with-profit, record-of-product and record-of-product-sell reports
+    DashboardDTO getDashboard(Date startDate, Date endDate, TimeGranularity granularity);
+}
@@ -0,0 +1,19 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.report.FinancialPeriodDTO;
+
+import java.util.Date;
+import java.util.List;
+
+public interface FinancialPeriodService {
+    // month is any day of the month to close, the month must be over
+    FinancialPeriodDTO closeMonth(Date month);
+
+    // recomputes a closed month from the current data and replaces its snapshot
+    FinancialPeriodDTO reopenMonth(Date month);
+
+    List<FinancialPeriodDTO> getClosedPeriods();
+
+    // closes the previous month of every store that has not closed it yet
+    void closePreviousMonth();
+}
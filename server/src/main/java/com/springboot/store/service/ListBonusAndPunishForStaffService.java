@@ -2,8 +2,10 @@ package com.springboot.store.service;
 
 import com.springboot.store.payload.ListBonusAndPunishForStaffDTO;
 
+import java.util.Date;
 import java.util.List;
 
 public interface ListBonusAndPunishForStaffService {
-    List<ListBonusAndPunishForStaffDTO> getAllListBonusAndPunishForStaff();
+    // month defaults to the current one
+    List<ListBonusAndPunishForStaffDTO> getAllListBonusAndPunishForStaff(Date month);
 }
@@ -0,0 +1,16 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.StaffPayrollDTO;
+
+import java.util.Date;
+import java.util.List;
+
+public interface PayrollAggregationService {
+    // every staff of the store, attendance between the two dates inclusive
+    List<StaffPayrollDTO> getStorePayroll(int storeId, Date startDate, Date endDate);
+
+    StaffPayrollDTO getStaffPayroll(int staffId, Date startDate, Date endDate);
+
+    // up to size staff of the store with an id above afterStaffId, in id order, owners left out
+    List<StaffPayrollDTO> getPayrollChunk(int storeId, int afterStaffId, int size, Date startDate, Date endDate);
+}
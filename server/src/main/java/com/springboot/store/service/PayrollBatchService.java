@@ -0,0 +1,13 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.PayrollRunDTO;
+
+import java.util.Date;
+
+public interface PayrollBatchService {
+    // writes the month's salary of every paid staff into salary_debt, resuming the month's run if one was interrupted
+    PayrollRunDTO runMonth(Date month);
+
+    // runs that did not complete, oldest first. Runs older than the latest completed month are skipped
+    void resumeInterruptedRuns();
+}
@@ -0,0 +1,20 @@
+package com.springboot.store.service;
+
+import com.springboot.store.entity.StaffPayrollMonth;
+import com.springboot.store.utils.PayrollTally;
+
+import java.util.Date;
+
+public interface PayrollLedgerService {
+    // moves the staff months of the delta, creating the ones not seen yet
+    void apply(PayrollTally delta);
+
+    // zero totals when the staff has no ledger row for the month
+    StaffPayrollMonth getMonth(int staffId, Date month);
+
+    // checks every staff month of the month against the attendance records and corrects the ones that drifted,
+    // returns the number of corrected rows
+    int reconcile(Date month);
+
+    void deleteStaff(int staffId);
+}
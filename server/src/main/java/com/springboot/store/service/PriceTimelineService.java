@@ -0,0 +1,17 @@
+package com.springboot.store.service;
+
+import java.util.Date;
+
+public interface PriceTimelineService {
+    // original (cost) price of the product in effect at the given instant, 0 if the product has no price history
+    double getOriginalPriceAt(int storeId, int productId, Date date);
+
+    // selling price of the product in effect at the given instant, 0 if the product has no price history
+    double getProductPriceAt(int storeId, int productId, Date date);
+
+    void addOriginalPrice(int storeId, int productId, Date createdAt, double value);
+
+    void addProductPrice(int storeId, int productId, Date createdAt, double value);
+
+    void evictStore(int storeId);
+}
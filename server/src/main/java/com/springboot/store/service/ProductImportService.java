@@ -0,0 +1,11 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.ProductImportResult;
+import com.springboot.store.utils.ImportFormat;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface ProductImportService {
+    // creates one product per row of the file for the staff's store. Rows that fail are reported and skipped,
+    // the others are imported
+    ProductImportResult importProducts(MultipartFile file, ImportFormat format);
+}
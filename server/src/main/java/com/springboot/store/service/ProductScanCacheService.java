@@ -0,0 +1,17 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.ProductScanCacheStats;
+import com.springboot.store.payload.ProductScanDTO;
+
+public interface ProductScanCacheService {
+    // the oldest product of the staff's store with the barcode that is not deleted, read through the cache
+    ProductScanDTO getByBarcode(String barcode);
+
+    // drops the store's entry of the barcode now and again once the surrounding transaction has committed.
+    // Called by every write to a product's name, barcode, price or stock
+    void invalidate(int storeId, String barcode);
+
+    void invalidateAll();
+
+    ProductScanCacheStats getStats();
+}
@@ -0,0 +1,18 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.ProductSearchHit;
+
+import java.util.List;
+
+public interface ProductSearchService {
+    // products of the staff's store matching the query by barcode, name prefix or trigrams, limit between 1 and 100
+    List<ProductSearchHit> search(String query, int limit);
+
+    // index updates run once the surrounding transaction has committed
+    void indexProduct(int storeId, int productId, String name, String barcode);
+
+    void removeProduct(int storeId, int productId);
+
+    // drops every loaded index, they are rebuilt by the next search
+    void evictAll();
+}
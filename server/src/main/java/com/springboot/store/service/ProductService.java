@@ -3,6 +3,9 @@ package com.springboot.store.service;
 import com.springboot.store.entity.Location;
 import com.springboot.store.entity.Product;
 import com.springboot.store.payload.ProductDTO;
+import com.springboot.store.payload.ProductFilter;
+import com.springboot.store.payload.ProductListItemDTO;
+import com.springboot.store.payload.report.CursorPage;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
@@ -13,6 +16,9 @@ public interface ProductService {
 
     List<ProductDTO> getAllProducts();
 
+    // flat rows in id order, size between 1 and 500
+    CursorPage<ProductListItemDTO> getProductPage(ProductFilter filter, String cursor, int size);
+
     List<ProductDTO> createProduct(MultipartFile[] files, List<ProductDTO> productDTO);
 
     ProductDTO updateProduct(int id, MultipartFile[] files, ProductDTO productDTO);
@@ -1,10 +1,21 @@
 package com.springboot.store.service;
 
+import com.springboot.store.payload.InvoiceInRecordOfProductSellDTO;
 import com.springboot.store.payload.RecordOfProductSellDTO;
+import com.springboot.store.payload.ReturnInRecordOfProductSellDTO;
+import com.springboot.store.payload.report.CursorPage;
 
 import java.util.Date;
 import java.util.List;
 
 public interface RecordOfProductSellService {
     List<RecordOfProductSellDTO> getAllRecordOfProductSell(Date startDate, Date endDate);
+
+    // the same rows without their invoice and return lists, which are read page by page below
+    List<RecordOfProductSellDTO> getRecordOfProductSellSummary(Date startDate, Date endDate);
+
+    // cursor is null for the first page, then the nextCursor of the previous page
+    CursorPage<InvoiceInRecordOfProductSellDTO> getInvoiceLines(int productId, Date startDate, Date endDate, String cursor, int size);
+
+    CursorPage<ReturnInRecordOfProductSellDTO> getReturnLines(int productId, Date startDate, Date endDate, String cursor, int size);
 }
@@ -1,10 +1,11 @@
 package com.springboot.store.service;
 
 import com.springboot.store.payload.RecordOfSaleDTO;
+import com.springboot.store.utils.TimeGranularity;
 
 import java.util.Date;
 import java.util.List;
 
 public interface RecordOfSaleService {
-    List<RecordOfSaleDTO> getAllRecordOfSale(Date startDate, Date endDate);
+    List<RecordOfSaleDTO> getAllRecordOfSale(Date startDate, Date endDate, TimeGranularity granularity);
 }
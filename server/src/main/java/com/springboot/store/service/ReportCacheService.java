@@ -0,0 +1,33 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.report.ReportCacheStats;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+public interface ReportCacheService {
+    // salary, bonus and penalty totals of the financial report, they only change with staff data
+    String STAFF_COSTS = "financial.staff";
+
+    // caches the whole result of [startDate, endDate], dropped by any write of the store inside the range
+    <T> T get(int storeId, String type, Date startDate, Date endDate, Supplier<T> loader);
+
+    // splits [startDate, endDate] at midnight of today: the closed days are loaded once and kept,
+    // today is loaded on every call. The loader gets inclusive bounds, the closed part ends 1 ms before midnight
+    <T> List<T> getRows(int storeId, String type, Date startDate, Date endDate, BiFunction<Date, Date, List<T>> loader);
+
+    // drops every entry of the store whose range contains the day
+    void invalidate(int storeId, Date day);
+
+    void invalidateStore(int storeId);
+
+    // drops every entry of one report type of the store
+    void invalidate(int storeId, String type);
+
+    // for writes whose store is not known
+    void invalidateAll(String type);
+
+    ReportCacheStats getStats();
+}
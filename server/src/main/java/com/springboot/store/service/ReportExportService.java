@@ -0,0 +1,18 @@
+package com.springboot.store.service;
+
+import com.springboot.store.utils.ExportFormat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Date;
+import java.util.List;
+
+public interface ReportExportService {
+    StreamingResponseBody exportSales(Date startDate, Date endDate, ExportFormat format);
+
+    StreamingResponseBody exportRecordOfProductSell(Date startDate, Date endDate, ExportFormat format);
+
+    StreamingResponseBody exportRecordOfSupplier(Date startDate, Date endDate, ExportFormat format);
+
+    // for reports that are already one row per group, their size does not grow with the range
+    StreamingResponseBody exportRows(List<?> rows, ExportFormat format);
+}
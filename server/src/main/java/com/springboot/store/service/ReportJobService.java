@@ -0,0 +1,17 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.report.ReportJobDTO;
+
+import java.util.Date;
+
+public interface ReportJobService {
+    ReportJobDTO submitJob(String type, Date startDate, Date endDate);
+
+    ReportJobDTO getJob(String jobId);
+
+    Object getJobResult(String jobId);
+
+    ReportJobDTO cancelJob(String jobId);
+
+    void removeExpiredJobs();
+}
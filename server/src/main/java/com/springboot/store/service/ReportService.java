@@ -1,6 +1,8 @@
 package com.springboot.store.service;
 
 import com.springboot.store.payload.report.*;
+import com.springboot.store.utils.RankingMetric;
+import com.springboot.store.utils.TimeGranularity;
 
 import java.util.Date;
 import java.util.List;
@@ -8,9 +10,17 @@ import java.util.Map;
 
 public interface ReportService {
     Map<String, Object> getSalesReport(Date startDate, Date endDate);
-    List<SalesReportWithProfit> getSalesReportWithProfit(Date startDate, Date endDate);
+    List<SalesReportWithProfit> getSalesReportWithProfit(Date startDate, Date endDate, TimeGranularity granularity);
     List<SalesReportOfStaff> getSalesReportOfStaff(Date startDate, Date endDate);
-    List<ProductProfit> getSalesProductProfit(Date startDate, Date endDate);
+    // exactCustomers null counts distinct customers exactly on small ranges and from sketches on larger ones
+    List<ProductProfit> getSalesProductProfit(Date startDate, Date endDate, Boolean exactCustomers);
     List<SalesReportOfCustomer> getSalesReportOfCustomer(Date startDate, Date endDate);
+    // best limit rows by the metric, ties go to the lower id
+    List<ProductProfit> getTopProducts(Date startDate, Date endDate, RankingMetric metric, int limit);
+    List<SalesReportOfCustomer> getTopCustomers(Date startDate, Date endDate, RankingMetric metric, int limit);
+    List<SalesReportOfStaff> getTopStaff(Date startDate, Date endDate, RankingMetric metric, int limit);
     FinancialReport getFinancialReport(Date startDate, Date endDate);
+    // computed from the live data of [startDate, endDate) only, closed period snapshots are not consulted
+    FinancialReport computeFinancialReport(int storeId, Date startDate, Date endDate);
+    int rebuildDailySalesRollup(Date startDate, Date endDate);
 }
@@ -0,0 +1,21 @@
+package com.springboot.store.service;
+
+import com.springboot.store.payload.report.SalesSliceRow;
+import com.springboot.store.utils.SliceDimension;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+public interface SalesFactService {
+    // net sums of the invoice and return lines of [startDate, endDate], groupBy may be null for a single total row
+    List<SalesSliceRow> slice(Date startDate, Date endDate, SliceDimension groupBy, Map<SliceDimension, Integer> filters);
+
+    // both appends run once the surrounding transaction has committed
+    void appendInvoice(int storeId, int invoiceId);
+
+    void appendReturnInvoice(int storeId, int returnInvoiceId);
+
+    // drops the store's facts after an update or delete, they are reloaded by the next slice
+    void invalidateStore(int storeId);
+}
@@ -27,6 +27,13 @@ public interface StaffService {
 
     double getStaffPunishInDate(Date startDate, Date endDate);
 
+    // same sums for an explicit store, usable outside a request
+    int getStaffSalaryInDate(int storeId, Date startDate, Date endDate);
+
+    double getStaffBonusInDate(int storeId, Date startDate, Date endDate);
+
+    double getStaffPunishInDate(int storeId, Date startDate, Date endDate);
+
     Staff findByEmail(String email);
 
     Staff getAuthorizedStaff();
@@ -0,0 +1,273 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.*;
+import com.springboot.store.payload.report.SalesBucket;
+import com.springboot.store.repository.DailyProductSketchRepository;
+import com.springboot.store.repository.DailySalesRollupRepository;
+import com.springboot.store.repository.InvoiceRepository;
+import com.springboot.store.repository.ReturnInvoiceRepository;
+import com.springboot.store.repository.StoreRepository;
+import com.springboot.store.repository.projection.DailyItemSummary;
+import com.springboot.store.repository.projection.DailyProductCustomer;
+import com.springboot.store.repository.projection.DailySalesSummary;
+import com.springboot.store.repository.projection.HourlyAmount;
+import com.springboot.store.service.DailySalesRollupService;
+import com.springboot.store.service.ReportCacheService;
+import com.springboot.store.utils.HyperLogLog;
+import com.springboot.store.utils.IntKeyAggregator;
+import com.springboot.store.utils.TimeGranularity;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class DailySalesRollupServiceImpl implements DailySalesRollupService {
+    private final DailySalesRollupRepository dailySalesRollupRepository;
+    private final DailyProductSketchRepository dailyProductSketchRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final ReturnInvoiceRepository returnInvoiceRepository;
+    private final StoreRepository storeRepository;
+    private final ReportCacheService reportCacheService;
+
+    @Override
+    public void addInvoice(Invoice invoice) {
+        DailySalesRollup rollup = getOrCreateRollup(invoice.getStore(), invoice.getCreatedAt());
+        applyInvoice(rollup, invoice, 1);
+        dailySalesRollupRepository.save(rollup);
+        addToSketches(invoice);
+    }
+
+    // a sketch cannot forget a customer, the day keeps counting them until it is rebuilt
+    @Override
+    public void removeInvoice(Invoice invoice) {
+        DailySalesRollup rollup = getOrCreateRollup(invoice.getStore(), invoice.getCreatedAt());
+        applyInvoice(rollup, invoice, -1);
+        dailySalesRollupRepository.save(rollup);
+    }
+
+    @Override
+    public void addReturnInvoice(ReturnInvoice returnInvoice) {
+        if (returnInvoice.getCreatedAt() == null) return;
+        DailySalesRollup rollup = getOrCreateRollup(returnInvoice.getStore(), returnInvoice.getCreatedAt());
+        applyReturnInvoice(rollup, returnInvoice, 1);
+        dailySalesRollupRepository.save(rollup);
+    }
+
+    @Override
+    public void removeReturnInvoice(ReturnInvoice returnInvoice) {
+        if (returnInvoice.getCreatedAt() == null) return;
+        DailySalesRollup rollup = getOrCreateRollup(returnInvoice.getStore(), returnInvoice.getCreatedAt());
+        applyReturnInvoice(rollup, returnInvoice, -1);
+        dailySalesRollupRepository.save(rollup);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DailySalesRollup> getRollups(int storeId, Date startDate, Date endDate) {
+        return dailySalesRollupRepository.findByStoreIdAndDateRange(storeId, toDay(startDate), toDay(endDate))
+                .stream()
+                .filter(rollup -> rollup.getInvoiceCount() != 0 || rollup.getReturnCount() != 0)
+                .toList();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DailyProductSketch> getProductSketches(int storeId, Date startDate, Date endDate) {
+        return dailyProductSketchRepository.findByStoreIdAndDateRange(storeId, toDay(startDate), toDay(endDate));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SalesBucket> getBuckets(int storeId, Date startDate, Date endDate, TimeGranularity granularity) {
+        // the cache hands out inclusive bounds. The closed days and today come back as separate lists,
+        // so the bucket holding today appears in both and is merged here
+        List<SalesBucket> rows = reportCacheService.getRows(storeId, "sales-buckets." + granularity.getParam(), startDate, new Date(endDate.getTime() - 1),
+                (start, end) -> loadBuckets(storeId, start, new Date(end.getTime() + 1), granularity));
+        IntKeyAggregator<SalesBucket> buckets = new IntKeyAggregator<>(key -> SalesBucket.builder().key(key).build(), rows.size());
+        for (SalesBucket row : rows) {
+            addToBucket(buckets.get(row.getKey()), row.getRevenue(), row.getReturnRevenue(), row.getCostOfGoodsSold(), row.getReturnCostOfGoods());
+        }
+        return sortedByKey(buckets);
+    }
+
+    @Override
+    public int rebuild(int storeId, Date startDate, Date endDate) {
+        Date start = toDay(startDate);
+        Date end = toDay(endDate);
+        Store store = storeRepository.findById(storeId).orElseThrow();
+        dailySalesRollupRepository.deleteByStoreIdAndDateRange(storeId, start, end);
+        dailySalesRollupRepository.flush();
+
+        // rebuild in memory first so every day is written exactly once, the database sums each day
+        IntKeyAggregator<DailySalesRollup> rollups = new IntKeyAggregator<>(epochDay -> newRollup(store, fromEpochDay(epochDay)));
+        for (DailySalesSummary day : invoiceRepository.findDailySalesSummary(storeId, start, end)) {
+            DailySalesRollup rollup = rollups.get((int) day.getDay().toEpochDay());
+            rollup.setRevenue(day.getTotal());
+            rollup.setDiscount(day.getDiscountValue());
+            rollup.setInvoiceCount((int) day.getCount());
+        }
+        for (DailyItemSummary day : invoiceRepository.findDailyItemSummary(storeId, start, end)) {
+            DailySalesRollup rollup = rollups.get((int) day.getDay().toEpochDay());
+            rollup.setCostOfGoodsSold(day.getCost());
+            rollup.setItemCount((int) day.getQuantity());
+        }
+        for (DailySalesSummary day : returnInvoiceRepository.findDailyReturnSummary(storeId, start, end)) {
+            DailySalesRollup rollup = rollups.get((int) day.getDay().toEpochDay());
+            rollup.setReturnRevenue(day.getTotal());
+            rollup.setReturnCount((int) day.getCount());
+        }
+        for (DailyItemSummary day : returnInvoiceRepository.findDailyReturnItemSummary(storeId, start, end)) {
+            DailySalesRollup rollup = rollups.get((int) day.getDay().toEpochDay());
+            rollup.setReturnCostOfGoods(day.getCost());
+            rollup.setReturnItemCount((int) day.getQuantity());
+        }
+        dailySalesRollupRepository.saveAll(rollups.values());
+
+        dailyProductSketchRepository.deleteByStoreIdAndDateRange(storeId, start, end);
+        dailyProductSketchRepository.flush();
+        Map<LocalDate, IntKeyAggregator<HyperLogLog>> sketches = new HashMap<>();
+        for (DailyProductCustomer row : invoiceRepository.findDailyProductCustomers(storeId, start, end)) {
+            sketches.computeIfAbsent(row.getDay(), day -> new IntKeyAggregator<>(productId -> new HyperLogLog()))
+                    .get(row.getProductId())
+                    .add(row.getCustomerId());
+        }
+        List<DailyProductSketch> rows = new ArrayList<>();
+        sketches.forEach((day, products) -> {
+            Date date = fromEpochDay((int) day.toEpochDay());
+            for (int i = 0; i < products.size(); i++) {
+                rows.add(DailyProductSketch.builder()
+                        .store(store)
+                        .date(date)
+                        .productId(products.keyAt(i))
+                        .customers(products.valueAt(i).toBytes())
+                        .build());
+            }
+        });
+        dailyProductSketchRepository.saveAll(rows);
+        return rollups.size();
+    }
+
+    private List<SalesBucket> loadBuckets(int storeId, Date startDate, Date endDate, TimeGranularity granularity) {
+        IntKeyAggregator<SalesBucket> buckets = new IntKeyAggregator<>(key -> SalesBucket.builder().key(key).build());
+        if (granularity == TimeGranularity.HOUR) {
+            for (HourlyAmount hour : invoiceRepository.findHourlySalesTotal(storeId, startDate, endDate)) {
+                addToBucket(buckets.get(granularity.keyOfHour(hour.getDay().toEpochDay(), hour.getHour())), hour.getAmount(), 0, 0, 0);
+            }
+            for (HourlyAmount hour : invoiceRepository.findHourlySalesCost(storeId, startDate, endDate)) {
+                addToBucket(buckets.get(granularity.keyOfHour(hour.getDay().toEpochDay(), hour.getHour())), 0, 0, hour.getAmount(), 0);
+            }
+            for (HourlyAmount hour : returnInvoiceRepository.findHourlyReturnTotal(storeId, startDate, endDate)) {
+                addToBucket(buckets.get(granularity.keyOfHour(hour.getDay().toEpochDay(), hour.getHour())), 0, hour.getAmount(), 0, 0);
+            }
+            for (HourlyAmount hour : returnInvoiceRepository.findHourlyReturnCost(storeId, startDate, endDate)) {
+                addToBucket(buckets.get(granularity.keyOfHour(hour.getDay().toEpochDay(), hour.getHour())), 0, 0, 0, hour.getAmount());
+            }
+        } else {
+            for (DailySalesRollup rollup : getRollups(storeId, startDate, endDate)) {
+                long epochDay = Instant.ofEpochMilli(rollup.getDate().getTime()).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+                addToBucket(buckets.get(granularity.keyOfDay(epochDay)), rollup.getRevenue(), rollup.getReturnRevenue(),
+                        rollup.getCostOfGoodsSold(), rollup.getReturnCostOfGoods());
+            }
+        }
+        return sortedByKey(buckets);
+    }
+
+    private static void addToBucket(SalesBucket bucket, double revenue, double returnRevenue, double costOfGoodsSold, double returnCostOfGoods) {
+        bucket.setRevenue(bucket.getRevenue() + revenue);
+        bucket.setReturnRevenue(bucket.getReturnRevenue() + returnRevenue);
+        bucket.setCostOfGoodsSold(bucket.getCostOfGoodsSold() + costOfGoodsSold);
+        bucket.setReturnCostOfGoods(bucket.getReturnCostOfGoods() + returnCostOfGoods);
+    }
+
+    private static List<SalesBucket> sortedByKey(IntKeyAggregator<SalesBucket> buckets) {
+        List<SalesBucket> result = buckets.values();
+        result.sort(Comparator.comparingInt(SalesBucket::getKey));
+        return result;
+    }
+
+    private void addToSketches(Invoice invoice) {
+        if (invoice.getCustomer() == null || invoice.getInvoiceDetails() == null) return;
+        Date day = toDay(invoice.getCreatedAt());
+        // products are locked in id order so two invoices sharing products cannot deadlock
+        int[] productIds = invoice.getInvoiceDetails().stream()
+                .map(InvoiceDetail::getProductId)
+                .filter(Objects::nonNull)
+                .mapToInt(Integer::intValue)
+                .distinct()
+                .sorted()
+                .toArray();
+        for (int productId : productIds) {
+            dailyProductSketchRepository.insertIfMissing(invoice.getStore().getId(), productId, day);
+            DailyProductSketch sketch = dailyProductSketchRepository.findForUpdate(invoice.getStore().getId(), productId, day).orElseThrow();
+            HyperLogLog customers = HyperLogLog.fromBytes(sketch.getCustomers());
+            if (customers.add(invoice.getCustomer().getId()) || sketch.getCustomers() == null) {
+                sketch.setCustomers(customers.toBytes());
+                dailyProductSketchRepository.save(sketch);
+            }
+        }
+    }
+
+    private DailySalesRollup getOrCreateRollup(Store store, Date date) {
+        Date day = toDay(date);
+        dailySalesRollupRepository.insertIfMissing(store.getId(), day);
+        return dailySalesRollupRepository.findByStoreIdAndDateForUpdate(store.getId(), day).orElseThrow();
+    }
+
+    private DailySalesRollup newRollup(Store store, Date day) {
+        return DailySalesRollup.builder()
+                .store(store)
+                .date(day)
+                .build();
+    }
+
+    private void applyInvoice(DailySalesRollup rollup, Invoice invoice, int sign) {
+        double costOfGoodsSold = 0;
+        int itemCount = 0;
+        if (invoice.getInvoiceDetails() != null) {
+            for (InvoiceDetail invoiceDetail : invoice.getInvoiceDetails()) {
+                if (invoiceDetail.getUnitCost() != null) {
+                    costOfGoodsSold += invoiceDetail.getUnitCost() * invoiceDetail.getQuantity();
+                }
+                itemCount += invoiceDetail.getQuantity();
+            }
+        }
+        rollup.setRevenue(rollup.getRevenue() + sign * invoice.getTotal());
+        rollup.setDiscount(rollup.getDiscount() + sign * invoice.getDiscountValue());
+        rollup.setCostOfGoodsSold(rollup.getCostOfGoodsSold() + sign * costOfGoodsSold);
+        rollup.setInvoiceCount(rollup.getInvoiceCount() + sign);
+        rollup.setItemCount(rollup.getItemCount() + sign * itemCount);
+    }
+
+    private void applyReturnInvoice(DailySalesRollup rollup, ReturnInvoice returnInvoice, int sign) {
+        double returnCostOfGoods = 0;
+        int returnItemCount = 0;
+        if (returnInvoice.getReturnDetails() != null) {
+            for (ReturnDetail returnDetail : returnInvoice.getReturnDetails()) {
+                if (returnDetail.getUnitCost() != null) {
+                    returnCostOfGoods += returnDetail.getUnitCost() * returnDetail.getQuantity();
+                }
+                returnItemCount += returnDetail.getQuantity();
+            }
+        }
+        rollup.setReturnRevenue(rollup.getReturnRevenue() + sign * returnInvoice.getTotal());
+        rollup.setReturnCostOfGoods(rollup.getReturnCostOfGoods() + sign * returnCostOfGoods);
+        rollup.setReturnCount(rollup.getReturnCount() + sign);
+        rollup.setReturnItemCount(rollup.getReturnItemCount() + sign * returnItemCount);
+    }
+
+    private static Date toDay(Date date) {
+        return DateUtils.truncate(date, Calendar.DATE);
+    }
+
+    private static Date fromEpochDay(int epochDay) {
+        return Date.from(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
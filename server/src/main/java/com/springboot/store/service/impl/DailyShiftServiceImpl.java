@@ -7,11 +7,15 @@ import com.springboot.store.payload.StaffBonusSalaryDTO;
 import com.springboot.store.payload.StaffPunishSalaryDTO;
 import com.springboot.store.repository.*;
 import com.springboot.store.service.DailyShiftService;
+import com.springboot.store.service.PayrollLedgerService;
+import com.springboot.store.service.ReportCacheService;
 import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.PayrollTally;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,6 +31,8 @@ public class DailyShiftServiceImpl implements DailyShiftService {
     private final ShiftAttendanceRecordRepository shiftAttendanceRecordRepository;
     private final StaffBonusSalaryRepository staffBonusSalaryRepository;
     private final StaffPunishSalaryRepository staffPunishSalaryRepository;
+    private final ReportCacheService reportCacheService;
+    private final PayrollLedgerService payrollLedgerService;
 
     @Override
     public DailyShiftDTO getDailyShift(int dailyShiftId) {
@@ -55,9 +61,11 @@ public class DailyShiftServiceImpl implements DailyShiftService {
     }
 
     @Override
+    @Transactional
     public DailyShiftDTO updateDailyShift(int dailyShiftId, DailyShiftDTO dailyShiftDTO) {
         //check if attendance record list is empty then delete daily shift
         DailyShift existingDailyShift = dailyShiftRepository.findById(dailyShiftId).orElseThrow(() -> new EntityNotFoundException("DailyShift not found with id: " + dailyShiftId));
+        PayrollTally previous = PayrollTally.of(existingDailyShift.getAttendanceList());
         existingDailyShift.setDate(dailyShiftDTO.getDate());
         existingDailyShift.setNote(dailyShiftDTO.getNote());
         existingDailyShift.setShift(shiftRepository.findById(dailyShiftDTO.getShiftId()).orElseThrow());
@@ -68,6 +76,8 @@ public class DailyShiftServiceImpl implements DailyShiftService {
         }
         existingDailyShift.setAttendanceList(attendanceRecordList);
         existingDailyShift = dailyShiftRepository.save(existingDailyShift);
+        payrollLedgerService.apply(PayrollTally.of(existingDailyShift.getAttendanceList()).minus(previous));
+        invalidateStaffCosts();
         if (dailyShiftDTO.getAttendanceList().isEmpty()) {
             deleteDailyShift(dailyShiftId);
             return null;
@@ -84,6 +94,7 @@ public class DailyShiftServiceImpl implements DailyShiftService {
     }
 
     @Override
+    @Transactional
     public DailyShift createDailyShift(DailyShiftDTO dailyShiftDTO) {
         Staff staff = staffService.getAuthorizedStaff();
         DailyShift dailyShift = DailyShift.builder()
@@ -134,6 +145,8 @@ public class DailyShiftServiceImpl implements DailyShiftService {
         dailyShift.setShift(shiftRepository.findById(dailyShiftDTO.getShiftId()).orElseThrow());
         dailyShift.setAttendanceList(attendanceRecordList);
         dailyShift = dailyShiftRepository.save(dailyShift);
+        payrollLedgerService.apply(PayrollTally.of(dailyShift.getAttendanceList()));
+        invalidateStaffCosts();
         Shift shift = dailyShift.getShift();
         shift.getDailyShifts().add(dailyShift);
         shiftRepository.save(shift);
@@ -141,6 +154,7 @@ public class DailyShiftServiceImpl implements DailyShiftService {
     }
 
     @Override
+    @Transactional
     public List<DailyShiftDTO> createDailyShifts(List<DailyShiftDTO> dailyShiftDTOList) {
         Staff staff = staffService.getAuthorizedStaff();
         List<DailyShift> dailyShiftList = new ArrayList<>();
@@ -195,6 +209,12 @@ public class DailyShiftServiceImpl implements DailyShiftService {
             dailyShiftList.add(dailyShift);
         }
         dailyShiftList = dailyShiftRepository.saveAll(dailyShiftList);
+        List<ShiftAttendanceRecord> savedRecords = new ArrayList<>();
+        for (DailyShift dailyShift : dailyShiftList) {
+            savedRecords.addAll(dailyShift.getAttendanceList());
+        }
+        payrollLedgerService.apply(PayrollTally.of(savedRecords));
+        invalidateStaffCosts();
 
         List<DailyShiftDTO> dailyShiftDTOList1 = new ArrayList<>();
         for (DailyShift dailyShift : dailyShiftList) {
@@ -214,6 +234,7 @@ public class DailyShiftServiceImpl implements DailyShiftService {
     }
 
     @Override
+    @Transactional
     public List<DailyShiftDTO> updateDailyShifts(List<DailyShiftDTO> dailyShiftDTOList) {
         List<DailyShift> dailyShiftList = new ArrayList<>();
         for (DailyShiftDTO dailyShiftDTO : dailyShiftDTOList) {
@@ -227,6 +248,7 @@ public class DailyShiftServiceImpl implements DailyShiftService {
                     return null;
                 }
                 DailyShift existingDailyShift = dailyShiftRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("DailyShift not found with id: " + id));
+                PayrollTally previous = PayrollTally.of(existingDailyShift.getAttendanceList());
                 existingDailyShift.setDate(dailyShiftDTO.getDate());
                 existingDailyShift.setNote(dailyShiftDTO.getNote());
                 existingDailyShift.setShift(shiftRepository.findById(dailyShiftDTO.getShiftId()).orElseThrow());
@@ -282,12 +304,14 @@ public class DailyShiftServiceImpl implements DailyShiftService {
                 }
                 existingDailyShift.setAttendanceList(attendanceRecordList);
                 existingDailyShift = dailyShiftRepository.save(existingDailyShift);
+                payrollLedgerService.apply(PayrollTally.of(existingDailyShift.getAttendanceList()).minus(previous));
 
                 dailyShiftList.add(existingDailyShift);
             }
 
         }
         dailyShiftList = dailyShiftRepository.saveAll(dailyShiftList);
+        invalidateStaffCosts();
         List<DailyShiftDTO> dailyShiftDTOList1 = new ArrayList<>();
         for (DailyShift dailyShift : dailyShiftList) {
             DailyShiftDTO dailyShiftDTO = modelMapper.map(dailyShift, DailyShiftDTO.class);
@@ -306,8 +330,10 @@ public class DailyShiftServiceImpl implements DailyShiftService {
     }
 
     @Override
+    @Transactional
     public void deleteDailyShift(int dailyShiftId) {
         DailyShift existingDailyShift = dailyShiftRepository.findById(dailyShiftId).orElseThrow(() -> new EntityNotFoundException("DailyShift not found with id: " + dailyShiftId));
+        PayrollTally previous = PayrollTally.of(existingDailyShift.getAttendanceList());
         List<ShiftAttendanceRecord> attendanceRecordListToDelete = existingDailyShift.getAttendanceList();
         existingDailyShift.setAttendanceList(null);
         for (ShiftAttendanceRecord attendanceRecord : attendanceRecordListToDelete) {
@@ -341,5 +367,12 @@ public class DailyShiftServiceImpl implements DailyShiftService {
         existingDailyShift.setShift(null);
         shiftRepository.save(shift);
         dailyShiftRepository.deleteById(dailyShiftId);
+        payrollLedgerService.apply(PayrollTally.empty().minus(previous));
+        invalidateStaffCosts();
+    }
+
+    // attendance records carry the bonuses and penalties of the financial report
+    private void invalidateStaffCosts() {
+        reportCacheService.invalidate(staffService.getAuthorizedStaff().getStore().getId(), ReportCacheService.STAFF_COSTS);
     }
 }
@@ -2,6 +2,7 @@ package com.springboot.store.service.impl;
 
 import com.springboot.store.entity.DamagedItem;
 import com.springboot.store.entity.DamagedItemDetail;
+import com.springboot.store.entity.Product;
 import com.springboot.store.exception.CustomException;
 import com.springboot.store.mapper.DamagedItemDetailMapper;
 import com.springboot.store.mapper.DamagedItemMapper;
@@ -10,11 +11,13 @@ import com.springboot.store.repository.DamagedItemRepository;
 import com.springboot.store.repository.ProductRepository;
 import com.springboot.store.service.ActivityLogService;
 import com.springboot.store.service.DamagedItemService;
+import com.springboot.store.service.ProductScanCacheService;
 import com.springboot.store.service.StaffService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -23,6 +26,7 @@ import java.util.List;
 public class DamagedItemServiceImpl implements DamagedItemService {
     private final DamagedItemRepository damagedItemRepository;
     private final ProductRepository productRepository;
+    private final ProductScanCacheService productScanCacheService;
     private final StaffService staffService;
     private final ActivityLogService activityLogService;
 
@@ -56,6 +60,9 @@ public class DamagedItemServiceImpl implements DamagedItemService {
             }).toList());
         }
         DamagedItemDTO damagedItemDTO1 = DamagedItemMapper.toDamagedItemDTO(damagedItemRepository.save(damagedItem));
+        if (damagedItem.getProducts() != null) {
+            damagedItem.getProducts().forEach(damagedItemDetail -> invalidateScan(damagedItemDetail.getProduct()));
+        }
         activityLogService.save("created a damaged item with id " + damagedItemDTO1.getId(), staffService.getAuthorizedStaff().getId(), new Date());
         return damagedItemDTO1;
     }
@@ -65,10 +72,12 @@ public class DamagedItemServiceImpl implements DamagedItemService {
         DamagedItem damagedItem = damagedItemRepository.findById(id).orElseThrow(() -> new CustomException("Damaged item not found", HttpStatus.NOT_FOUND));
         damagedItem.setNote(damagedItemDTO.getNote());
 
+        List<Product> changedProducts = new ArrayList<>();
         if (damagedItemDTO.getProducts() != null) {
             damagedItem.getProducts().forEach(damagedItemDetail -> {
                 var product = productRepository.findById(damagedItemDetail.getProduct().getId()).orElseThrow(() -> new CustomException("Product not found", HttpStatus.NOT_FOUND));
                 product.setStock(product.getStock() + damagedItemDetail.getDamagedQuantity());
+                changedProducts.add(product);
             });
 
             damagedItem.getProducts().clear();
@@ -76,12 +85,14 @@ public class DamagedItemServiceImpl implements DamagedItemService {
                 DamagedItemDetail damagedItemDetail = DamagedItemDetailMapper.toDamagedItemDetail(damagedItemDetailDTO);
                 var product = productRepository.findById(damagedItemDetailDTO.getProductId()).orElseThrow(() -> new CustomException("Product not found", HttpStatus.NOT_FOUND));
                 product.setStock(product.getStock() - damagedItemDetailDTO.getDamagedQuantity());
+                changedProducts.add(product);
                 damagedItemDetail.setProduct(product);
                 damagedItemDetail.setDamagedItem(damagedItem);
                 return damagedItemDetail;
             }).toList());
         }
         DamagedItemDTO damagedItemDTO1 = DamagedItemMapper.toDamagedItemDTO(damagedItemRepository.save(damagedItem));
+        changedProducts.forEach(this::invalidateScan);
         activityLogService.save("updated a damaged item with id " + damagedItemDTO1.getId(), staffService.getAuthorizedStaff().getId(), new Date());
 
         return damagedItemDTO1;
@@ -95,8 +106,14 @@ public class DamagedItemServiceImpl implements DamagedItemService {
             var product = productRepository.findById(damagedItemDetail.getProduct().getId()).orElseThrow(() -> new CustomException("Product not found", HttpStatus.NOT_FOUND));
             product.setStock(product.getStock() + damagedItemDetail.getDamagedQuantity());
             productRepository.save(product);
+            productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
         });
         damagedItemRepository.delete(damagedItem);
         activityLogService.save("deleted a damaged item with id " + id, staffService.getAuthorizedStaff().getId(), new Date());
     }
+
+    // after the save, a scan in between would otherwise cache the old stock again
+    private void invalidateScan(Product product) {
+        productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
+    }
 }
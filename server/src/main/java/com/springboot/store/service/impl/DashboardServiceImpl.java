@@ -0,0 +1,63 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.payload.RecordOfProductDTO;
+import com.springboot.store.payload.RecordOfProductSellDTO;
+import com.springboot.store.payload.report.DashboardDTO;
+import com.springboot.store.payload.report.SalesBucket;
+import com.springboot.store.repository.InvoiceRepository;
+import com.springboot.store.repository.ReturnInvoiceRepository;
+import com.springboot.store.repository.projection.ProductSalesSummary;
+import com.springboot.store.service.DailySalesRollupService;
+import com.springboot.store.service.DashboardService;
+import com.springboot.store.service.ReportCacheService;
+import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.IntKeyAggregator;
+import com.springboot.store.utils.TimeGranularity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+
+// the two sales sections share one bucket read and the two product sections one pass over the grouped product rows,
+// each row feeding both product accumulators. The product sell section comes without its lines, they are read
+// page by page through the drill-down. The rows are cached under the keys of the single reports
+@Service
+@RequiredArgsConstructor
+public class DashboardServiceImpl implements DashboardService {
+    private final InvoiceRepository invoiceRepository;
+    private final ReturnInvoiceRepository returnInvoiceRepository;
+    private final DailySalesRollupService dailySalesRollupService;
+    private final StaffService staffService;
+    private final ReportCacheService reportCacheService;
+
+    @Override
+    public DashboardDTO getDashboard(Date startDate, Date endDate, TimeGranularity granularity) {
+        endDate = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+
+        List<SalesBucket> buckets = dailySalesRollupService.getBuckets(storeId, startDate, endDate, granularity);
+
+        List<ProductSalesSummary> sales = reportCacheService.getRows(storeId, "product-sales.invoices", startDate, endDate,
+                (start, end) -> invoiceRepository.findProductSalesSummary(storeId, start, end));
+        List<ProductSalesSummary> returns = reportCacheService.getRows(storeId, "product-sales.returns", startDate, endDate,
+                (start, end) -> returnInvoiceRepository.findProductReturnSummary(storeId, start, end));
+        IntKeyAggregator<RecordOfProductDTO> products = RecordOfProductServiceImpl.newRecords(sales.size() + returns.size());
+        IntKeyAggregator<RecordOfProductSellDTO> productSells = RecordOfProductSellServiceImpl.newRecords();
+        for (ProductSalesSummary row : sales) {
+            RecordOfProductServiceImpl.addSale(products.get(row.getProductId()), row.getProductName(), row.getQuantity(), row.getRevenue());
+            RecordOfProductSellServiceImpl.addSaleSummary(productSells.get(row.getProductId()), row);
+        }
+        for (ProductSalesSummary row : returns) {
+            RecordOfProductServiceImpl.addReturn(products.get(row.getProductId()), row.getProductName(), row.getQuantity(), row.getRevenue());
+            RecordOfProductSellServiceImpl.addReturnSummary(productSells.get(row.getProductId()), row);
+        }
+
+        return DashboardDTO.builder()
+                .recordOfSale(RecordOfSaleServiceImpl.fillBuckets(buckets, startDate, endDate, granularity))
+                .salesWithProfit(ReportServiceImpl.toSalesReportWithProfit(buckets, granularity))
+                .recordOfProduct(products.values())
+                .recordOfProductSell(productSells.values())
+                .build();
+    }
+}
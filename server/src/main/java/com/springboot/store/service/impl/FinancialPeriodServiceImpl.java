@@ -0,0 +1,118 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.FinancialSnapshot;
+import com.springboot.store.entity.Store;
+import com.springboot.store.exception.CustomException;
+import com.springboot.store.exception.ResourceNotFoundException;
+import com.springboot.store.payload.report.FinancialPeriodDTO;
+import com.springboot.store.payload.report.FinancialReport;
+import com.springboot.store.repository.FinancialSnapshotRepository;
+import com.springboot.store.repository.StoreRepository;
+import com.springboot.store.service.FinancialPeriodService;
+import com.springboot.store.service.ReportService;
+import com.springboot.store.service.StaffService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FinancialPeriodServiceImpl implements FinancialPeriodService {
+    private final FinancialSnapshotRepository financialSnapshotRepository;
+    private final StoreRepository storeRepository;
+    private final StaffService staffService;
+    private final ReportService reportService;
+
+    @Override
+    @Transactional
+    public FinancialPeriodDTO closeMonth(Date month) {
+        Store store = staffService.getAuthorizedStaff().getStore();
+        Date periodStart = DateUtils.truncate(month, Calendar.MONTH);
+        if (financialSnapshotRepository.existsByStoreIdAndPeriodStart(store.getId(), periodStart)) {
+            throw new CustomException("Month " + monthName(periodStart) + " is already closed", HttpStatus.CONFLICT);
+        }
+        return mapToDTO(snapshot(store, periodStart));
+    }
+
+    @Override
+    @Transactional
+    public FinancialPeriodDTO reopenMonth(Date month) {
+        Store store = staffService.getAuthorizedStaff().getStore();
+        Date periodStart = DateUtils.truncate(month, Calendar.MONTH);
+        if (financialSnapshotRepository.deleteByStoreIdAndPeriodStart(store.getId(), periodStart) == 0) {
+            throw new ResourceNotFoundException("Financial snapshot", "month", monthName(periodStart));
+        }
+        return mapToDTO(snapshot(store, periodStart));
+    }
+
+    @Override
+    public List<FinancialPeriodDTO> getClosedPeriods() {
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        return financialSnapshotRepository.findByStoreIdOrderByPeriodStartDesc(storeId)
+                .stream()
+                .map(this::mapToDTO)
+                .toList();
+    }
+
+    @Override
+    @Scheduled(cron = "${store.reports.financial-close.cron:0 30 0 1 * *}")
+    public void closePreviousMonth() {
+        Date periodStart = DateUtils.addMonths(DateUtils.truncate(new Date(), Calendar.MONTH), -1);
+        for (Store store : storeRepository.findAll()) {
+            if (financialSnapshotRepository.existsByStoreIdAndPeriodStart(store.getId(), periodStart)) continue;
+            // one store failing must not keep the others open
+            try {
+                snapshot(store, periodStart);
+                log.info("Closed month {} of store {}", monthName(periodStart), store.getId());
+            } catch (RuntimeException e) {
+                log.error("Closing month {} of store {} failed", monthName(periodStart), store.getId(), e);
+            }
+        }
+    }
+
+    private FinancialSnapshot snapshot(Store store, Date periodStart) {
+        Date periodEnd = DateUtils.addMonths(periodStart, 1);
+        if (periodEnd.after(new Date())) {
+            throw new CustomException("Month " + monthName(periodStart) + " is not over yet", HttpStatus.BAD_REQUEST);
+        }
+        FinancialReport report = reportService.computeFinancialReport(store.getId(), periodStart, periodEnd);
+        return financialSnapshotRepository.save(FinancialSnapshot.builder()
+                .periodStart(periodStart)
+                .periodEnd(periodEnd)
+                .salesRevenue(report.getSalesRevenue())
+                .adjustmentDiscount(report.getAdjustmentDiscount())
+                .adjustmentReturn(report.getAdjustmentReturn())
+                .costOfGoodsSold(report.getCostOfGoodsSold())
+                .salaryStaff(report.getSalaryStaff())
+                .bonusStaff(report.getBonusStaff())
+                .penaltyStaff(report.getPenaltyStaff())
+                .closedAt(new Date())
+                .store(store)
+                .build());
+    }
+
+    private FinancialPeriodDTO mapToDTO(FinancialSnapshot snapshot) {
+        FinancialReport report = ReportServiceImpl.toFinancialReport(snapshot);
+        ReportServiceImpl.computeProfits(report);
+        return FinancialPeriodDTO.builder()
+                .periodStart(snapshot.getPeriodStart())
+                .periodEnd(snapshot.getPeriodEnd())
+                .closedAt(snapshot.getClosedAt())
+                .report(report)
+                .build();
+    }
+
+    private static String monthName(Date periodStart) {
+        return new SimpleDateFormat("yyyy-MM").format(periodStart);
+    }
+}
@@ -13,6 +13,7 @@ import com.springboot.store.service.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.List;
@@ -26,11 +27,16 @@ public class InvoiceServiceImpl implements InvoiceService {
     private final InvoiceRepository invoiceRepository;
     private final CustomerRepository customerRepository;
     private final ProductRepository productRepository;
+    private final ProductScanCacheService productScanCacheService;
     private final StaffServiceImpl staffService;
     private final DiscountService discountService;
     private final IncomeFormService incomeFormService;
     private final ActivityLogService activityLogService;
     private final NotificationService notificationService;
+    private final DailySalesRollupService dailySalesRollupService;
+    private final ReportCacheService reportCacheService;
+    private final SalesFactService salesFactService;
+    private final PriceTimelineService priceTimelineService;
 
     @Override
     public InvoiceDTO getInvoiceById(int id) {
@@ -46,6 +52,7 @@ public class InvoiceServiceImpl implements InvoiceService {
     }
 
     @Override
+    @Transactional
     public InvoiceDTO createInvoice(InvoiceDTO invoiceDTO) {
         Invoice invoice = InvoiceMapper.toInvoice(invoiceDTO);
         invoice.setCreatedAt(new Date());
@@ -73,6 +80,7 @@ public class InvoiceServiceImpl implements InvoiceService {
                             .price(invoiceDetailDTO.getPrice())
                             .productId(invoiceDetailDTO.getProductId())
                             .description(invoiceDetailDTO.getDescription())
+                            .unitCost(priceTimelineService.getOriginalPriceAt(staff.getStore().getId(), invoiceDetailDTO.getProductId(), invoice.getCreatedAt()))
                             .build()
                     )
                     .collect(Collectors.toSet());
@@ -80,6 +88,9 @@ public class InvoiceServiceImpl implements InvoiceService {
         }
 
         Invoice invoiceNew = invoiceRepository.save(invoice);
+        dailySalesRollupService.addInvoice(invoiceNew);
+        reportCacheService.invalidate(invoiceNew.getStore().getId(), invoiceNew.getCreatedAt());
+        salesFactService.appendInvoice(invoiceNew.getStore().getId(), invoiceNew.getId());
 
         if (invoiceDTO.getInvoiceDetails() != null) {
             invoiceDTO.getInvoiceDetails()
@@ -90,6 +101,7 @@ public class InvoiceServiceImpl implements InvoiceService {
                             notificationService.notifyLowStock(product.getId(), product.getStock());
                         }
                         productRepository.save(product);
+                        productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                     });
         }
 
@@ -103,8 +115,13 @@ public class InvoiceServiceImpl implements InvoiceService {
     }
 
     @Override
+    @Transactional
     public InvoiceDTO updateInvoice(int id, InvoiceDTO invoiceDTO) {
         Invoice invoice = invoiceRepository.findById(id).orElseThrow(() -> new CustomException("Invoice with id " + id + " does not exist", HttpStatus.NOT_FOUND));
+        // take the old figures out of the rollup before the invoice is moved to today
+        dailySalesRollupService.removeInvoice(invoice);
+        reportCacheService.invalidate(invoice.getStore().getId(), invoice.getCreatedAt());
+        salesFactService.invalidateStore(invoice.getStore().getId());
         invoice.setCash(invoiceDTO.getCash());
         invoice.setChanged(invoiceDTO.getChanged());
         invoice.setSubTotal(invoiceDTO.getSubTotal());
@@ -117,26 +134,30 @@ public class InvoiceServiceImpl implements InvoiceService {
             invoice.setInvoiceDetails(
                     invoiceDTO.getInvoiceDetails()
                             .stream()
-                            .map(InvoiceDetailMapper::toInvoiceDetail)
+                            .map(invoiceDetailDTO -> {
+                                InvoiceDetail invoiceDetail = InvoiceDetailMapper.toInvoiceDetail(invoiceDetailDTO);
+                                invoiceDetail.setUnitCost(priceTimelineService.getOriginalPriceAt(invoice.getStore().getId(), invoiceDetail.getProductId(), invoice.getCreatedAt()));
+                                return invoiceDetail;
+                            })
                             .collect(Collectors.toSet()));
         }
         // TODO: set customer and staff
 
         Invoice invoiceNew = invoiceRepository.save(invoice);
+        dailySalesRollupService.addInvoice(invoiceNew);
+        reportCacheService.invalidate(invoiceNew.getStore().getId(), invoiceNew.getCreatedAt());
         activityLogService.save("updated an invoice with id " + invoiceNew.getId(), staffService.getAuthorizedStaff().getId(), new Date());
         return InvoiceMapper.toInvoiceDTO(invoiceNew);
     }
 
     @Override
+    @Transactional
     public void deleteInvoice(int id) {
-        checkInvoiceExist(id);
-        invoiceRepository.deleteById(id);
+        Invoice invoice = invoiceRepository.findById(id).orElseThrow(() -> new CustomException("Invoice with id " + id + " does not exist", HttpStatus.NOT_FOUND));
+        dailySalesRollupService.removeInvoice(invoice);
+        reportCacheService.invalidate(invoice.getStore().getId(), invoice.getCreatedAt());
+        salesFactService.invalidateStore(invoice.getStore().getId());
+        invoiceRepository.delete(invoice);
         activityLogService.save("deleted an invoice with id " + id, staffService.getAuthorizedStaff().getId(), new Date());
     }
-
-    private void checkInvoiceExist(int id) {
-        if (!invoiceRepository.existsById(id)) {
-            throw new CustomException("Invoice with id " + id + " does not exist", HttpStatus.NOT_FOUND);
-        }
-    }
 }
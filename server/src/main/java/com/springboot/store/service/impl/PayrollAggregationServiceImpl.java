@@ -0,0 +1,70 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.exception.ResourceNotFoundException;
+import com.springboot.store.payload.StaffPayrollDTO;
+import com.springboot.store.repository.StaffRepository;
+import com.springboot.store.repository.projection.StaffPayrollSummary;
+import com.springboot.store.service.PayrollAggregationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class PayrollAggregationServiceImpl implements PayrollAggregationService {
+    public static final String SHIFT_BASED_PAY = "Shift-based pay";
+    public static final String INTERNSHIP_SALARY = "Internship salary";
+    public static final String FIXED_SALARY = "Fixed salary";
+
+    private final StaffRepository staffRepository;
+
+    @Override
+    public List<StaffPayrollDTO> getStorePayroll(int storeId, Date startDate, Date endDate) {
+        return staffRepository.findPayrollOfStore(storeId, startDate, endDate).stream()
+                .map(PayrollAggregationServiceImpl::toPayroll)
+                .toList();
+    }
+
+    @Override
+    public StaffPayrollDTO getStaffPayroll(int staffId, Date startDate, Date endDate) {
+        return staffRepository.findPayrollOfStaff(staffId, startDate, endDate)
+                .map(PayrollAggregationServiceImpl::toPayroll)
+                .orElseThrow(() -> new ResourceNotFoundException("Staff", "id", staffId));
+    }
+
+    @Override
+    public List<StaffPayrollDTO> getPayrollChunk(int storeId, int afterStaffId, int size, Date startDate, Date endDate) {
+        return staffRepository.findPayrollChunk(storeId, afterStaffId, startDate, endDate, PageRequest.of(0, size)).stream()
+                .map(PayrollAggregationServiceImpl::toPayroll)
+                .toList();
+    }
+
+    // shift-based staff are paid per attended shift, interns and fixed salaries once per period
+    public static Integer salaryOf(String salaryType, int baseSalary, int attendedShifts, int bonus, int penalty) {
+        if (salaryType == null) return null;
+        return switch (salaryType) {
+            case SHIFT_BASED_PAY -> baseSalary * attendedShifts + bonus - penalty;
+            case INTERNSHIP_SALARY, FIXED_SALARY -> baseSalary + bonus - penalty;
+            default -> null;
+        };
+    }
+
+    private static StaffPayrollDTO toPayroll(StaffPayrollSummary summary) {
+        int baseSalary = summary.getSalary() == null ? 0 : summary.getSalary();
+        int attendedShifts = (int) summary.getAttendedShifts();
+        int bonus = (int) summary.getBonus();
+        int penalty = (int) summary.getPenalty();
+        return StaffPayrollDTO.builder()
+                .staffId(summary.getStaffId())
+                .salaryType(summary.getSalaryType())
+                .baseSalary(baseSalary)
+                .attendedShifts(attendedShifts)
+                .bonus(bonus)
+                .penalty(penalty)
+                .salary(salaryOf(summary.getSalaryType(), baseSalary, attendedShifts, bonus, penalty))
+                .build();
+    }
+}
@@ -0,0 +1,217 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.PayrollCheckpoint;
+import com.springboot.store.entity.PayrollRun;
+import com.springboot.store.entity.Store;
+import com.springboot.store.exception.CustomException;
+import com.springboot.store.payload.PayrollRunDTO;
+import com.springboot.store.payload.StaffPayrollDTO;
+import com.springboot.store.repository.PayrollCheckpointRepository;
+import com.springboot.store.repository.PayrollRunRepository;
+import com.springboot.store.repository.StoreRepository;
+import com.springboot.store.service.PayrollAggregationService;
+import com.springboot.store.service.PayrollBatchService;
+import com.springboot.store.utils.PayrollRunStatus;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// salary_debt is overwritten with the month's salary, never added to, so a chunk replayed after a crash writes
+// the same values again. Each chunk commits together with its checkpoint, a resumed run starts after the last one
+@Slf4j
+@Service
+public class PayrollBatchServiceImpl implements PayrollBatchService {
+    // batched into one round trip per chunk when the MySQL URL sets rewriteBatchedStatements=true
+    private static final String UPDATE_SALARY_DEBT = "UPDATE staff SET salary_debt = ? WHERE id = ?";
+
+    private final PayrollAggregationService payrollAggregationService;
+    private final PayrollRunRepository payrollRunRepository;
+    private final PayrollCheckpointRepository payrollCheckpointRepository;
+    private final StoreRepository storeRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor payrollExecutor;
+    private final int chunkSize;
+
+    // one run at a time per instance
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public PayrollBatchServiceImpl(PayrollAggregationService payrollAggregationService,
+                                   PayrollRunRepository payrollRunRepository,
+                                   PayrollCheckpointRepository payrollCheckpointRepository,
+                                   StoreRepository storeRepository,
+                                   JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${store.payroll.batch.chunk-size:200}") int chunkSize,
+                                   @Value("${store.payroll.batch.threads:4}") int threads) {
+        this.payrollAggregationService = payrollAggregationService;
+        this.payrollRunRepository = payrollRunRepository;
+        this.payrollCheckpointRepository = payrollCheckpointRepository;
+        this.storeRepository = storeRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        // stores beyond the thread count wait in the queue
+        this.payrollExecutor = new ThreadPoolTaskExecutor();
+        this.payrollExecutor.setCorePoolSize(threads);
+        this.payrollExecutor.setMaxPoolSize(threads);
+        this.payrollExecutor.setThreadNamePrefix("payroll-batch-");
+        this.payrollExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        payrollExecutor.shutdown();
+    }
+
+    @Override
+    public PayrollRunDTO runMonth(Date month) {
+        Date periodStart = DateUtils.truncate(month, Calendar.MONTH);
+        Date periodEnd = DateUtils.addMonths(periodStart, 1);
+        if (periodEnd.after(new Date())) {
+            throw new CustomException("Month " + monthName(periodStart) + " is not over yet", HttpStatus.BAD_REQUEST);
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new CustomException("A payroll run is already in progress", HttpStatus.CONFLICT);
+        }
+        try {
+            return run(periodStart, periodEnd);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @Override
+    public void resumeInterruptedRuns() {
+        // salary_debt holds a completed month's figures, an older run finishing now would put back its own
+        Date latestCompleted = payrollRunRepository.findLatestPeriodStart(PayrollRunStatus.COMPLETED);
+        for (PayrollRun run : payrollRunRepository.findByStatusNotOrderByPeriodStartAsc(PayrollRunStatus.COMPLETED)) {
+            if (latestCompleted != null && run.getPeriodStart().before(latestCompleted)) {
+                log.warn("Not resuming the payroll run of {}, the run of {} is already completed",
+                        monthName(run.getPeriodStart()), monthName(latestCompleted));
+                if (run.getStatus() == PayrollRunStatus.RUNNING) {
+                    run.setStatus(PayrollRunStatus.FAILED);
+                    run.setFinishedAt(new Date());
+                    payrollRunRepository.save(run);
+                }
+                continue;
+            }
+            log.info("Resuming the payroll run of {}", monthName(run.getPeriodStart()));
+            runMonth(run.getPeriodStart());
+        }
+    }
+
+    private PayrollRunDTO run(Date periodStart, Date periodEnd) {
+        PayrollRun run = payrollRunRepository.findByPeriodStart(periodStart)
+                .orElseGet(() -> PayrollRun.builder().periodStart(periodStart).build());
+        if (run.getStatus() == PayrollRunStatus.COMPLETED) {
+            return mapToDTO(run);
+        }
+        run.setStatus(PayrollRunStatus.RUNNING);
+        run.setStartedAt(new Date());
+        run.setFinishedAt(null);
+        PayrollRun savedRun = payrollRunRepository.save(run);
+
+        // attendance sums take inclusive bounds
+        Date attendanceEnd = new Date(periodEnd.getTime() - 1);
+        long started = System.nanoTime();
+        Map<Integer, Future<Integer>> stores = new LinkedHashMap<>();
+        for (Store store : storeRepository.findAll()) {
+            stores.put(store.getId(), payrollExecutor.submit(() -> processStore(savedRun, store, periodStart, attendanceEnd)));
+        }
+
+        int updated = 0;
+        boolean failed = false;
+        for (Map.Entry<Integer, Future<Integer>> store : stores.entrySet()) {
+            // a failed store keeps its checkpoint, the others still finish
+            try {
+                updated += store.getValue().get();
+            } catch (ExecutionException e) {
+                failed = true;
+                log.error("Payroll of store {} for {} failed", store.getKey(), monthName(periodStart), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = true;
+            }
+        }
+
+        long durationMs = (System.nanoTime() - started) / 1_000_000;
+        savedRun.setStatus(failed ? PayrollRunStatus.FAILED : PayrollRunStatus.COMPLETED);
+        savedRun.setFinishedAt(new Date());
+        savedRun.setStaffUpdated((int) payrollCheckpointRepository.sumStaffUpdated(savedRun.getId()));
+        savedRun.setDurationMs(durationMs);
+        savedRun.setRowsPerSecond(updated * 1000.0 / Math.max(durationMs, 1));
+        payrollRunRepository.save(savedRun);
+        log.info("Payroll run of {} {}: {} stores, {} staff updated in {} ms, {} rows/s",
+                monthName(periodStart), savedRun.getStatus(), stores.size(), updated, durationMs, Math.round(savedRun.getRowsPerSecond()));
+        return mapToDTO(savedRun);
+    }
+
+    // returns the staff updated by this attempt
+    private int processStore(PayrollRun run, Store store, Date startDate, Date endDate) {
+        PayrollCheckpoint checkpoint = payrollCheckpointRepository.findByPayrollRunIdAndStoreId(run.getId(), store.getId())
+                .orElseGet(() -> payrollCheckpointRepository.save(PayrollCheckpoint.builder()
+                        .payrollRun(run)
+                        .store(store)
+                        .updatedAt(new Date())
+                        .build()));
+        if (checkpoint.isCompleted()) {
+            return 0;
+        }
+
+        int afterStaffId = checkpoint.getLastStaffId();
+        int updated = 0;
+        while (true) {
+            List<StaffPayrollDTO> chunk = payrollAggregationService.getPayrollChunk(store.getId(), afterStaffId, chunkSize, startDate, endDate);
+            // staff without a known salary type keep their debt
+            List<Object[]> salaryDebts = new ArrayList<>(chunk.size());
+            for (StaffPayrollDTO payroll : chunk) {
+                if (payroll.getSalary() != null) {
+                    salaryDebts.add(new Object[]{payroll.getSalary(), payroll.getStaffId()});
+                }
+            }
+            int lastStaffId = chunk.isEmpty() ? afterStaffId : chunk.get(chunk.size() - 1).getStaffId();
+            boolean completed = chunk.size() < chunkSize;
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!salaryDebts.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPDATE_SALARY_DEBT, salaryDebts);
+                }
+                payrollCheckpointRepository.advance(checkpoint.getId(), lastStaffId, salaryDebts.size(), completed, new Date());
+            });
+            updated += salaryDebts.size();
+            afterStaffId = lastStaffId;
+            if (completed) {
+                return updated;
+            }
+        }
+    }
+
+    private PayrollRunDTO mapToDTO(PayrollRun run) {
+        return PayrollRunDTO.builder()
+                .periodStart(run.getPeriodStart())
+                .status(run.getStatus())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .staffUpdated(run.getStaffUpdated())
+                .durationMs(run.getDurationMs())
+                .rowsPerSecond(run.getRowsPerSecond())
+                .build();
+    }
+
+    private static String monthName(Date periodStart) {
+        return new SimpleDateFormat("yyyy-MM").format(periodStart);
+    }
+}
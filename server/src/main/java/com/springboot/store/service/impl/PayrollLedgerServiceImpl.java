@@ -0,0 +1,155 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.StaffPayrollMonth;
+import com.springboot.store.entity.Store;
+import com.springboot.store.payload.StaffPayrollDTO;
+import com.springboot.store.repository.StaffPayrollMonthRepository;
+import com.springboot.store.repository.StoreRepository;
+import com.springboot.store.service.PayrollAggregationService;
+import com.springboot.store.service.PayrollLedgerService;
+import com.springboot.store.utils.PayrollTally;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class PayrollLedgerServiceImpl implements PayrollLedgerService {
+    private final StaffPayrollMonthRepository staffPayrollMonthRepository;
+    private final StoreRepository storeRepository;
+    private final PayrollAggregationService payrollAggregationService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean reconcileOnStartup;
+
+    public PayrollLedgerServiceImpl(StaffPayrollMonthRepository staffPayrollMonthRepository,
+                                    StoreRepository storeRepository,
+                                    PayrollAggregationService payrollAggregationService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${store.payroll.ledger.reconcile-on-startup:true}") boolean reconcileOnStartup) {
+        this.staffPayrollMonthRepository = staffPayrollMonthRepository;
+        this.storeRepository = storeRepository;
+        this.payrollAggregationService = payrollAggregationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcileOnStartup = reconcileOnStartup;
+    }
+
+    @Override
+    @Transactional
+    public void apply(PayrollTally delta) {
+        Date now = new Date();
+        delta.forEachSorted((staffId, periodStart, attendedShifts, bonus, penalty) -> {
+            StaffPayrollMonth month = lockMonth(staffId, periodStart);
+            month.setAttendedShifts(month.getAttendedShifts() + attendedShifts);
+            month.setBonus(month.getBonus() + bonus);
+            month.setPenalty(month.getPenalty() + penalty);
+            month.setUpdatedAt(now);
+            staffPayrollMonthRepository.save(month);
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public StaffPayrollMonth getMonth(int staffId, Date month) {
+        Date periodStart = DateUtils.truncate(month, Calendar.MONTH);
+        return staffPayrollMonthRepository.findByStaffIdAndPeriodStart(staffId, periodStart)
+                .orElseGet(() -> newMonth(staffId, periodStart));
+    }
+
+    @Override
+    public int reconcile(Date month) {
+        Date periodStart = DateUtils.truncate(month, Calendar.MONTH);
+        // attendance sums take inclusive bounds
+        Date periodEnd = new Date(DateUtils.addMonths(periodStart, 1).getTime() - 1);
+        int corrected = 0;
+        for (Store store : storeRepository.findAll()) {
+            Map<Integer, StaffPayrollMonth> ledger = staffPayrollMonthRepository.findByStoreIdAndPeriodStart(store.getId(), periodStart)
+                    .stream()
+                    .collect(Collectors.toMap(StaffPayrollMonth::getStaffId, Function.identity()));
+            for (StaffPayrollDTO payroll : payrollAggregationService.getStorePayroll(store.getId(), periodStart, periodEnd)) {
+                if (matches(ledger.get(payroll.getStaffId()), payroll)) continue;
+                // the row is locked and the staff read again, a write since the store read is not undone
+                Boolean fixed = transactionTemplate.execute(status -> correct(payroll.getStaffId(), periodStart, periodEnd));
+                if (Boolean.TRUE.equals(fixed)) corrected++;
+            }
+        }
+        log.info("Reconciled the payroll ledger of {}: {} staff months corrected", monthName(periodStart), corrected);
+        return corrected;
+    }
+
+    @Override
+    @Transactional
+    public void deleteStaff(int staffId) {
+        staffPayrollMonthRepository.deleteByStaffId(staffId);
+    }
+
+    @Scheduled(cron = "${store.payroll.ledger.reconcile-cron:0 45 1 * * *}")
+    public void reconcileRecentMonths() {
+        Date currentMonth = DateUtils.truncate(new Date(), Calendar.MONTH);
+        reconcile(DateUtils.addMonths(currentMonth, -1));
+        reconcile(currentMonth);
+    }
+
+    // fills the current month for staff whose attendance was written before the ledger existed
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (!reconcileOnStartup) return;
+        try {
+            reconcile(new Date());
+        } catch (RuntimeException e) {
+            log.error("Reconciling the payroll ledger on startup failed", e);
+        }
+    }
+
+    private boolean correct(int staffId, Date periodStart, Date periodEnd) {
+        StaffPayrollMonth month = lockMonth(staffId, periodStart);
+        StaffPayrollDTO payroll = payrollAggregationService.getStaffPayroll(staffId, periodStart, periodEnd);
+        if (matches(month, payroll)) return false;
+        log.warn("Payroll ledger of staff {} for {} drifted: {} shifts, {} bonus, {} penalty instead of {}, {}, {}",
+                staffId, monthName(periodStart), month.getAttendedShifts(), month.getBonus(), month.getPenalty(),
+                payroll.getAttendedShifts(), payroll.getBonus(), payroll.getPenalty());
+        month.setAttendedShifts(payroll.getAttendedShifts());
+        month.setBonus(payroll.getBonus());
+        month.setPenalty(payroll.getPenalty());
+        month.setUpdatedAt(new Date());
+        staffPayrollMonthRepository.save(month);
+        return true;
+    }
+
+    private StaffPayrollMonth lockMonth(int staffId, Date periodStart) {
+        staffPayrollMonthRepository.insertIfMissing(staffId, periodStart);
+        return staffPayrollMonthRepository.findForUpdate(staffId, periodStart).orElseThrow();
+    }
+
+    // a missing row stands for zero totals
+    private static boolean matches(StaffPayrollMonth month, StaffPayrollDTO payroll) {
+        if (month == null) {
+            return payroll.getAttendedShifts() == 0 && payroll.getBonus() == 0 && payroll.getPenalty() == 0;
+        }
+        return month.getAttendedShifts() == payroll.getAttendedShifts()
+                && month.getBonus() == payroll.getBonus()
+                && month.getPenalty() == payroll.getPenalty();
+    }
+
+    private static String monthName(Date periodStart) {
+        return new SimpleDateFormat("yyyy-MM").format(periodStart);
+    }
+
+    private static StaffPayrollMonth newMonth(int staffId, Date periodStart) {
+        return StaffPayrollMonth.builder()
+                .staffId(staffId)
+                .periodStart(periodStart)
+                .build();
+    }
+}
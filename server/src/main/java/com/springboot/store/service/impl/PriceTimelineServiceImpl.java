@@ -0,0 +1,158 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.repository.ProductRepository;
+import com.springboot.store.service.PriceTimelineService;
+import com.springboot.store.utils.PriceTimeline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// per-store index of every product's price history, each store is loaded with one query per price kind.
+// A store holds about 220 bytes per product plus 16 per price entry, the least recently used store is dropped
+// when a load goes over the memory budget and comes back on its next lookup
+@Slf4j
+@Service
+public class PriceTimelineServiceImpl implements PriceTimelineService {
+    // map node and boxed key of each product entry
+    private static final int BYTES_PER_PRODUCT = 48;
+
+    private final ProductRepository productRepository;
+    private final long memoryBudget;
+    private final Map<Integer, StoreTimelines> stores = new ConcurrentHashMap<>();
+
+    public PriceTimelineServiceImpl(ProductRepository productRepository,
+                                    @Value("${store.reports.price-timelines.memory-budget-mb:64}") long memoryBudgetMb) {
+        this.productRepository = productRepository;
+        this.memoryBudget = memoryBudgetMb * 1024 * 1024;
+    }
+
+    @Override
+    public double getOriginalPriceAt(int storeId, int productId, Date date) {
+        StoreTimelines store = getStore(storeId);
+        return store.originalPrices
+                .computeIfAbsent(productId, id -> store.track(toTimeline(productRepository.findOriginalPriceHistoryByProductId(id))))
+                .priceAt(date.getTime());
+    }
+
+    @Override
+    public double getProductPriceAt(int storeId, int productId, Date date) {
+        StoreTimelines store = getStore(storeId);
+        return store.productPrices
+                .computeIfAbsent(productId, id -> store.track(toTimeline(productRepository.findProductPriceHistoryByProductId(id))))
+                .priceAt(date.getTime());
+    }
+
+    @Override
+    public void addOriginalPrice(int storeId, int productId, Date createdAt, double value) {
+        StoreTimelines store = stores.get(storeId);
+        // a store that is not loaded yet will read the new price from the database
+        if (store == null) return;
+        // a product missing from the index is read back from the database, which already holds the new entry
+        store.originalPrices.compute(productId, (id, timeline) -> timeline != null
+                ? store.replace(timeline, timeline.append(createdAt.getTime(), value))
+                : store.track(toTimeline(productRepository.findOriginalPriceHistoryByProductId(id))));
+    }
+
+    @Override
+    public void addProductPrice(int storeId, int productId, Date createdAt, double value) {
+        StoreTimelines store = stores.get(storeId);
+        if (store == null) return;
+        store.productPrices.compute(productId, (id, timeline) -> timeline != null
+                ? store.replace(timeline, timeline.append(createdAt.getTime(), value))
+                : store.track(toTimeline(productRepository.findProductPriceHistoryByProductId(id))));
+    }
+
+    @Override
+    public void evictStore(int storeId) {
+        stores.remove(storeId);
+    }
+
+    private StoreTimelines getStore(int storeId) {
+        StoreTimelines store = stores.get(storeId);
+        if (store == null) {
+            store = stores.computeIfAbsent(storeId, this::load);
+            evictOverBudget(storeId);
+        }
+        store.lastAccess = System.nanoTime();
+        return store;
+    }
+
+    private StoreTimelines load(int storeId) {
+        StoreTimelines store = new StoreTimelines();
+        toTimelines(productRepository.findOriginalPriceHistoryByStoreId(storeId), store, store.originalPrices);
+        toTimelines(productRepository.findProductPriceHistoryByStoreId(storeId), store, store.productPrices);
+        return store;
+    }
+
+    // a reader still holding an evicted store finishes its lookup on it, later lookups load the store again
+    private synchronized void evictOverBudget(int keepStoreId) {
+        while (loadedBytes() > memoryBudget) {
+            Map.Entry<Integer, StoreTimelines> coldest = null;
+            for (Map.Entry<Integer, StoreTimelines> entry : stores.entrySet()) {
+                if (entry.getKey() == keepStoreId) continue;
+                if (coldest == null || entry.getValue().lastAccess < coldest.getValue().lastAccess) {
+                    coldest = entry;
+                }
+            }
+            if (coldest == null) return;
+            stores.remove(coldest.getKey(), coldest.getValue());
+            log.info("Evicted the price timelines of store {} to stay within the memory budget", coldest.getKey());
+        }
+    }
+
+    private long loadedBytes() {
+        long bytes = 0;
+        for (StoreTimelines store : stores.values()) {
+            bytes += store.bytes.get();
+        }
+        return bytes;
+    }
+
+    // rows are (productId, createdAt, value), ordered by product then time
+    private static void toTimelines(List<Object[]> rows, StoreTimelines store, Map<Integer, PriceTimeline> timelines) {
+        int start = 0;
+        while (start < rows.size()) {
+            int productId = (Integer) rows.get(start)[0];
+            int end = start;
+            while (end < rows.size() && (Integer) rows.get(end)[0] == productId) {
+                end++;
+            }
+            timelines.put(productId, store.track(toTimeline(rows.subList(start, end))));
+            start = end;
+        }
+    }
+
+    private static PriceTimeline toTimeline(List<Object[]> rows) {
+        long[] timestamps = new long[rows.size()];
+        double[] prices = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            timestamps[i] = row[1] != null ? ((Date) row[1]).getTime() : Long.MIN_VALUE;
+            prices[i] = ((Number) row[2]).doubleValue();
+        }
+        return new PriceTimeline(timestamps, prices);
+    }
+
+    private static class StoreTimelines {
+        private final Map<Integer, PriceTimeline> originalPrices = new ConcurrentHashMap<>();
+        private final Map<Integer, PriceTimeline> productPrices = new ConcurrentHashMap<>();
+        private final AtomicLong bytes = new AtomicLong();
+        private volatile long lastAccess = System.nanoTime();
+
+        private PriceTimeline track(PriceTimeline timeline) {
+            bytes.addAndGet(BYTES_PER_PRODUCT + timeline.memoryBytes());
+            return timeline;
+        }
+
+        private PriceTimeline replace(PriceTimeline previous, PriceTimeline timeline) {
+            bytes.addAndGet(timeline.memoryBytes() - previous.memoryBytes());
+            return timeline;
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.Staff;
+import com.springboot.store.exception.CustomException;
+import com.springboot.store.payload.ProductImportError;
+import com.springboot.store.payload.ProductImportResult;
+import com.springboot.store.repository.LocationRepository;
+import com.springboot.store.repository.ProductBrandRepository;
+import com.springboot.store.repository.ProductGroupRepository;
+import com.springboot.store.repository.ProductPropertyNameRepository;
+import com.springboot.store.service.*;
+import com.springboot.store.utils.CsvRowReader;
+import com.springboot.store.utils.ImportFormat;
+import com.springboot.store.utils.ImportRowReader;
+import com.springboot.store.utils.XlsxRowReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.function.Function;
+
+// rows are streamed in chunks: each chunk is checked against the store's reference names, loaded once per import,
+// then written with one JDBC batch per table in a single transaction. A chunk the database rejects is retried
+// row by row, so a bad row only loses itself
+@Slf4j
+@Service
+public class ProductImportServiceImpl implements ProductImportService {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    // header of a property value column, followed by the property name
+    private static final String PROPERTY_COLUMN = "property:";
+    private static final Set<String> COLUMNS = Set.of("name", "barcode", "status", "description", "note", "weight",
+            "stock", "minstock", "maxstock", "location", "productgroup", "productbrand", "originalprice", "productprice",
+            "salesunit", "basicunit", "exchangevalue");
+
+    // the same rows createProduct writes through the entity mappings
+    private static final String INSERT_SALES_UNIT = "INSERT INTO sales_units (name, basic_unit, exchange_value, store_id) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_PRODUCT = "INSERT INTO products (name, barcode, status, description, note, weight, stock, " +
+            "min_stock, max_stock, is_deleted, location_id, product_group_id, product_brand_id, sales_units_id, store_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, false, ?, ?, ?, ?, ?)";
+    private static final String INSERT_ORIGINAL_PRICE = "INSERT INTO original_prices (value, created_at) VALUES (?, ?)";
+    private static final String INSERT_PRODUCT_PRICE = "INSERT INTO product_prices (value, created_at) VALUES (?, ?)";
+    private static final String INSERT_PROPERTY = "INSERT INTO product_property (property_name_id, property_value) VALUES (?, ?)";
+    private static final String LINK_ORIGINAL_PRICE = "INSERT INTO products_original_prices (product_id, original_prices_id) VALUES (?, ?)";
+    private static final String LINK_PRODUCT_PRICE = "INSERT INTO products_product_prices (product_id, product_prices_id) VALUES (?, ?)";
+    private static final String LINK_PROPERTY = "INSERT INTO products_properties (product_id, properties_id) VALUES (?, ?)";
+
+    private final LocationRepository locationRepository;
+    private final ProductGroupRepository productGroupRepository;
+    private final ProductBrandRepository productBrandRepository;
+    private final ProductPropertyNameRepository productPropertyNameRepository;
+    private final StaffService staffService;
+    private final ActivityLogService activityLogService;
+    private final PriceTimelineService priceTimelineService;
+    private final ProductSearchService productSearchService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public ProductImportServiceImpl(LocationRepository locationRepository,
+                                    ProductGroupRepository productGroupRepository,
+                                    ProductBrandRepository productBrandRepository,
+                                    ProductPropertyNameRepository productPropertyNameRepository,
+                                    StaffService staffService,
+                                    ActivityLogService activityLogService,
+                                    PriceTimelineService priceTimelineService,
+                                    ProductSearchService productSearchService,
+                                    JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${store.products.import.batch-size:500}") int batchSize) {
+        this.locationRepository = locationRepository;
+        this.productGroupRepository = productGroupRepository;
+        this.productBrandRepository = productBrandRepository;
+        this.productPropertyNameRepository = productPropertyNameRepository;
+        this.staffService = staffService;
+        this.activityLogService = activityLogService;
+        this.priceTimelineService = priceTimelineService;
+        this.productSearchService = productSearchService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public ProductImportResult importProducts(MultipartFile file, ImportFormat format) {
+        Staff staff = staffService.getAuthorizedStaff();
+        int storeId = staff.getStore().getId();
+        References references = loadReferences(storeId);
+        ImportProgress progress = new ImportProgress();
+        long started = System.nanoTime();
+
+        Path workbook = null;
+        try {
+            ImportRowReader reader;
+            if (format == ImportFormat.XLSX) {
+                // the worksheet is read through the zip directory, which needs a file
+                workbook = Files.createTempFile("product-import-", ".xlsx");
+                try (InputStream input = file.getInputStream()) {
+                    Files.copy(input, workbook, StandardCopyOption.REPLACE_EXISTING);
+                }
+                reader = new XlsxRowReader(workbook);
+            } else {
+                reader = new CsvRowReader(file.getInputStream());
+            }
+            try (reader) {
+                List<String> header = reader.readRow();
+                if (header == null) {
+                    throw new CustomException("The file is empty", HttpStatus.BAD_REQUEST);
+                }
+                Columns columns = parseHeader(header, references);
+                List<ImportRow> chunk = new ArrayList<>(batchSize);
+                int rowNumber = 1;
+                List<String> cells;
+                while ((cells = reader.readRow()) != null) {
+                    rowNumber++;
+                    if (cells.stream().allMatch(String::isBlank)) continue;
+                    try {
+                        chunk.add(parseRow(rowNumber, cells, columns, references));
+                    } catch (IllegalArgumentException e) {
+                        progress.fail(rowNumber, e.getMessage());
+                    }
+                    if (chunk.size() == batchSize) {
+                        write(storeId, chunk, progress);
+                        chunk = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    write(storeId, chunk, progress);
+                }
+            }
+        } catch (IOException e) {
+            throw new CustomException("The file could not be read: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+        } finally {
+            if (workbook != null) {
+                try {
+                    Files.deleteIfExists(workbook);
+                } catch (IOException e) {
+                    log.warn("Could not delete the import file {}", workbook, e);
+                }
+            }
+        }
+
+        activityLogService.save("imported " + progress.imported + " products from " + file.getOriginalFilename()
+                + (progress.failed > 0 ? ", " + progress.failed + " rows failed" : ""), staff.getId(), new Date());
+        log.info("Imported {} products into store {} in {} ms, {} rows failed",
+                progress.imported, storeId, (System.nanoTime() - started) / 1_000_000, progress.failed);
+        return ProductImportResult.builder()
+                .imported(progress.imported)
+                .failed(progress.failed)
+                .errors(progress.errors)
+                .build();
+    }
+
+    private void write(int storeId, List<ImportRow> chunk, ImportProgress progress) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(storeId, chunk));
+        } catch (DataAccessException e) {
+            if (chunk.size() == 1) {
+                progress.fail(chunk.get(0).rowNumber, "Could not be saved: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                return;
+            }
+            for (ImportRow row : chunk) {
+                write(storeId, List.of(row), progress);
+            }
+            return;
+        }
+        for (ImportRow row : chunk) {
+            priceTimelineService.addOriginalPrice(storeId, row.productId, row.createdAt, row.originalPrice);
+            priceTimelineService.addProductPrice(storeId, row.productId, row.createdAt, row.productPrice);
+            productSearchService.indexProduct(storeId, row.productId, row.name, row.barcode);
+        }
+        progress.imported += chunk.size();
+    }
+
+    // sales units and products first for their generated ids, then the price and property rows and their links
+    private void insert(int storeId, List<ImportRow> chunk) {
+        Date now = new Date();
+        Timestamp createdAt = new Timestamp(now.getTime());
+        List<ImportRow> withSalesUnit = chunk.stream().filter(row -> row.salesUnit != null).toList();
+        int[] salesUnitIds = insertReturningKeys(INSERT_SALES_UNIT, withSalesUnit, row -> new Object[]{
+                row.salesUnit.name, row.salesUnit.basicUnit, row.salesUnit.exchangeValue, storeId});
+        for (int i = 0; i < withSalesUnit.size(); i++) {
+            withSalesUnit.get(i).salesUnit.id = salesUnitIds[i];
+        }
+
+        int[] productIds = insertReturningKeys(INSERT_PRODUCT, chunk, row -> new Object[]{
+                row.name, row.barcode, row.status, row.description, row.note, row.weight, row.stock, row.minStock, row.maxStock,
+                row.locationId, row.productGroupId, row.productBrandId, row.salesUnit != null ? row.salesUnit.id : null, storeId});
+        int[] originalPriceIds = insertReturningKeys(INSERT_ORIGINAL_PRICE, chunk, row -> new Object[]{row.originalPrice, createdAt});
+        int[] productPriceIds = insertReturningKeys(INSERT_PRODUCT_PRICE, chunk, row -> new Object[]{row.productPrice, createdAt});
+
+        List<Object[]> originalPriceLinks = new ArrayList<>(chunk.size());
+        List<Object[]> productPriceLinks = new ArrayList<>(chunk.size());
+        List<PropertyValue> properties = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            ImportRow row = chunk.get(i);
+            row.productId = productIds[i];
+            row.createdAt = now;
+            originalPriceLinks.add(new Object[]{productIds[i], originalPriceIds[i]});
+            productPriceLinks.add(new Object[]{productIds[i], productPriceIds[i]});
+            for (PropertyValue property : row.properties) {
+                property.productId = productIds[i];
+                properties.add(property);
+            }
+        }
+        int[] propertyIds = insertReturningKeys(INSERT_PROPERTY, properties, property -> new Object[]{property.propertyNameId, property.value});
+        List<Object[]> propertyLinks = new ArrayList<>(properties.size());
+        for (int i = 0; i < properties.size(); i++) {
+            propertyLinks.add(new Object[]{properties.get(i).productId, propertyIds[i]});
+        }
+
+        jdbcTemplate.batchUpdate(LINK_ORIGINAL_PRICE, originalPriceLinks);
+        jdbcTemplate.batchUpdate(LINK_PRODUCT_PRICE, productPriceLinks);
+        if (!propertyLinks.isEmpty()) {
+            jdbcTemplate.batchUpdate(LINK_PROPERTY, propertyLinks);
+        }
+    }
+
+    // one batch for all the rows, the identity values come back in row order
+    private <T> int[] insertReturningKeys(String sql, List<T> rows, Function<T, Object[]> values) {
+        if (rows.isEmpty()) return new int[0];
+        return jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (T row : rows) {
+                    new ArgumentPreparedStatementSetter(values.apply(row)).setValues(statement);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                int[] keys = new int[rows.size()];
+                int count = 0;
+                try (ResultSet generated = statement.getGeneratedKeys()) {
+                    while (count < keys.length && generated.next()) {
+                        keys[count++] = generated.getInt(1);
+                    }
+                }
+                if (count != keys.length) {
+                    throw new IncorrectResultSizeDataAccessException("Missing generated keys", keys.length, count);
+                }
+                return keys;
+            }
+        });
+    }
+
+    private Columns parseHeader(List<String> header, References references) {
+        Columns columns = new Columns();
+        for (int i = 0; i < header.size(); i++) {
+            String title = header.get(i).trim();
+            if (title.isEmpty()) continue;
+            if (title.toLowerCase(Locale.ROOT).startsWith(PROPERTY_COLUMN)) {
+                String propertyName = title.substring(PROPERTY_COLUMN.length()).trim();
+                Integer propertyNameId = references.propertyNames.get(propertyName.toLowerCase(Locale.ROOT));
+                if (propertyNameId == null) {
+                    throw new CustomException("Product property name not found with name: " + propertyName, HttpStatus.BAD_REQUEST);
+                }
+                columns.properties.put(i, propertyNameId);
+                continue;
+            }
+            String field = title.toLowerCase(Locale.ROOT).replace(" ", "").replace("_", "");
+            if (!COLUMNS.contains(field)) {
+                throw new CustomException("Unknown column: " + title, HttpStatus.BAD_REQUEST);
+            }
+            columns.fields.put(field, i);
+        }
+        if (!columns.fields.containsKey("name") || !columns.fields.containsKey("barcode")) {
+            throw new CustomException("The name and barcode columns are required", HttpStatus.BAD_REQUEST);
+        }
+        return columns;
+    }
+
+    // problems with the row are thrown as IllegalArgumentException carrying the message for the caller
+    private static ImportRow parseRow(int rowNumber, List<String> cells, Columns columns, References references) {
+        ImportRow row = new ImportRow(rowNumber);
+        row.name = required(cells, columns, "name");
+        row.barcode = required(cells, columns, "barcode");
+        row.status = text(cells, columns, "status");
+        row.description = text(cells, columns, "description");
+        row.note = text(cells, columns, "note");
+        row.weight = decimal(cells, columns, "weight");
+        row.stock = whole(cells, columns, "stock");
+        row.minStock = whole(cells, columns, "minstock");
+        row.maxStock = whole(cells, columns, "maxstock");
+        row.locationId = reference(cells, columns, "location", references.locations, "Location");
+        row.productGroupId = reference(cells, columns, "productgroup", references.productGroups, "Product group");
+        row.productBrandId = reference(cells, columns, "productbrand", references.productBrands, "Product brand");
+        row.originalPrice = price(cells, columns, "originalprice");
+        row.productPrice = price(cells, columns, "productprice");
+
+        String salesUnit = text(cells, columns, "salesunit");
+        String basicUnit = text(cells, columns, "basicunit");
+        Double exchangeValue = decimal(cells, columns, "exchangevalue");
+        if (salesUnit != null || basicUnit != null || exchangeValue != null) {
+            row.salesUnit = new SalesUnitValue(salesUnit, basicUnit, exchangeValue != null ? exchangeValue : 0);
+        }
+        for (Map.Entry<Integer, Integer> property : columns.properties.entrySet()) {
+            String value = cell(cells, property.getKey());
+            if (!value.isEmpty()) {
+                row.properties.add(new PropertyValue(property.getValue(), value));
+            }
+        }
+        return row;
+    }
+
+    private static String cell(List<String> cells, Integer index) {
+        return index != null && index < cells.size() ? cells.get(index).trim() : "";
+    }
+
+    private static String text(List<String> cells, Columns columns, String field) {
+        String value = cell(cells, columns.fields.get(field));
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String required(List<String> cells, Columns columns, String field) {
+        String value = text(cells, columns, field);
+        if (value == null) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+        return value;
+    }
+
+    private static Double decimal(List<String> cells, Columns columns, String field) {
+        String value = text(cells, columns, field);
+        if (value == null) return null;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(field + " is not a number: " + value);
+        }
+    }
+
+    private static double price(List<String> cells, Columns columns, String field) {
+        Double value = decimal(cells, columns, field);
+        if (value != null && value < 0) {
+            throw new IllegalArgumentException(field + " must not be negative");
+        }
+        return value != null ? value : 0;
+    }
+
+    // spreadsheets may hand whole numbers over as "12.0"
+    private static int whole(List<String> cells, Columns columns, String field) {
+        String value = text(cells, columns, field);
+        if (value == null) return 0;
+        try {
+            return new BigDecimal(value).intValueExact();
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException(field + " is not a whole number: " + value);
+        }
+    }
+
+    private static Integer reference(List<String> cells, Columns columns, String field, Map<String, Integer> ids, String resource) {
+        String value = text(cells, columns, field);
+        if (value == null) return null;
+        Integer id = ids.get(value.toLowerCase(Locale.ROOT));
+        if (id == null) {
+            throw new IllegalArgumentException(resource + " not found with name: " + value);
+        }
+        return id;
+    }
+
+    // names are matched ignoring case, like the findByNameAndStoreId lookups under MySQL's default collation
+    private References loadReferences(int storeId) {
+        References references = new References();
+        locationRepository.findByStoreId(storeId).forEach(location ->
+                references.locations.putIfAbsent(location.getName().toLowerCase(Locale.ROOT), location.getId()));
+        productGroupRepository.findByStoreId(storeId).forEach(group ->
+                references.productGroups.putIfAbsent(group.getName().toLowerCase(Locale.ROOT), group.getId()));
+        productBrandRepository.findByStoreId(storeId).forEach(brand ->
+                references.productBrands.putIfAbsent(brand.getName().toLowerCase(Locale.ROOT), brand.getId()));
+        productPropertyNameRepository.findByStoreId(storeId).forEach(propertyName ->
+                references.propertyNames.putIfAbsent(propertyName.getName().toLowerCase(Locale.ROOT), propertyName.getId()));
+        return references;
+    }
+
+    private static class References {
+        private final Map<String, Integer> locations = new HashMap<>();
+        private final Map<String, Integer> productGroups = new HashMap<>();
+        private final Map<String, Integer> productBrands = new HashMap<>();
+        private final Map<String, Integer> propertyNames = new HashMap<>();
+    }
+
+    private static class Columns {
+        // normalized field name to column index
+        private final Map<String, Integer> fields = new HashMap<>();
+        // column index to property name id
+        private final Map<Integer, Integer> properties = new LinkedHashMap<>();
+    }
+
+    private static class ImportRow {
+        private final int rowNumber;
+        private String name;
+        private String barcode;
+        private String status;
+        private String description;
+        private String note;
+        private Double weight;
+        private int stock;
+        private int minStock;
+        private int maxStock;
+        private Integer locationId;
+        private Integer productGroupId;
+        private Integer productBrandId;
+        private double originalPrice;
+        private double productPrice;
+        private SalesUnitValue salesUnit;
+        private final List<PropertyValue> properties = new ArrayList<>();
+        // set by the insert
+        private int productId;
+        private Date createdAt;
+
+        private ImportRow(int rowNumber) {
+            this.rowNumber = rowNumber;
+        }
+    }
+
+    private static class SalesUnitValue {
+        private final String name;
+        private final String basicUnit;
+        private final double exchangeValue;
+        private Integer id;
+
+        private SalesUnitValue(String name, String basicUnit, double exchangeValue) {
+            this.name = name;
+            this.basicUnit = basicUnit;
+            this.exchangeValue = exchangeValue;
+        }
+    }
+
+    private static class PropertyValue {
+        private final int propertyNameId;
+        private final String value;
+        private int productId;
+
+        private PropertyValue(int propertyNameId, String value) {
+            this.propertyNameId = propertyNameId;
+            this.value = value;
+        }
+    }
+
+    private static class ImportProgress {
+        private int imported;
+        private int failed;
+        private final List<ProductImportError> errors = new ArrayList<>();
+
+        private void fail(int row, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(ProductImportError.builder().row(row).message(message).build());
+            }
+        }
+    }
+}
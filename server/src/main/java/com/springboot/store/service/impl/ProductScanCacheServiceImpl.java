@@ -0,0 +1,177 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.exception.ResourceNotFoundException;
+import com.springboot.store.payload.ProductScanCacheStats;
+import com.springboot.store.payload.ProductScanDTO;
+import com.springboot.store.repository.ProductRepository;
+import com.springboot.store.repository.projection.ProductScanItem;
+import com.springboot.store.service.ProductScanCacheService;
+import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.LatencyHistogram;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// snapshots are kept in memory per instance, bounded by entry count and evicted least recently used first.
+// Unknown barcodes are not cached, a product created for them is found by the next scan
+@Service
+public class ProductScanCacheServiceImpl implements ProductScanCacheService {
+    private final ProductRepository productRepository;
+    private final StaffService staffService;
+    private final int maxEntries;
+    private final Map<ScanKey, ProductScanDTO> entries;
+    // bumped by every invalidation, a load that overlapped one is not stored
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ProductScanCacheServiceImpl(ProductRepository productRepository,
+                                       StaffService staffService,
+                                       @Value("${store.products.scan-cache.max-entries:10000}") int maxEntries) {
+        this.productRepository = productRepository;
+        this.staffService = staffService;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ScanKey, ProductScanDTO> eldest) {
+                if (size() > ProductScanCacheServiceImpl.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public ProductScanDTO getByBarcode(String barcode) {
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        long started = System.nanoTime();
+        try {
+            ScanKey key = new ScanKey(storeId, barcode);
+            synchronized (entries) {
+                ProductScanDTO cached = entries.get(key);
+                if (cached != null) {
+                    hits.incrementAndGet();
+                    return cached;
+                }
+            }
+            misses.incrementAndGet();
+            AtomicLong generation = generationOf(storeId);
+            long before = generation.get();
+            ProductScanDTO snapshot = load(storeId, barcode);
+            synchronized (entries) {
+                if (generation.get() == before) {
+                    entries.put(key, snapshot);
+                }
+            }
+            return snapshot;
+        } finally {
+            latencies.record(System.nanoTime() - started);
+        }
+    }
+
+    @Override
+    public void invalidate(int storeId, String barcode) {
+        if (barcode == null) return;
+        ScanKey key = new ScanKey(storeId, barcode);
+        removeAfterCommit(() -> remove(storeId, key));
+    }
+
+    @Override
+    public void invalidateAll() {
+        removeAfterCommit(() -> remove(null, null));
+    }
+
+    @Override
+    public ProductScanCacheStats getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return ProductScanCacheStats.builder()
+                .entries(size)
+                .lookups(latencies.count())
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRate(hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount))
+                .evictions(evictions.get())
+                .invalidations(invalidations.get())
+                .p50Micros(latencies.percentile(0.5) / 1000.0)
+                .p99Micros(latencies.percentile(0.99) / 1000.0)
+                .build();
+    }
+
+    private ProductScanDTO load(int storeId, String barcode) {
+        List<ProductScanItem> rows = productRepository.findScanItems(storeId, barcode, PageRequest.of(0, 1));
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Product", "barcode", barcode);
+        }
+        ProductScanItem row = rows.get(0);
+        return ProductScanDTO.builder()
+                .id(row.getId())
+                .name(row.getName())
+                .barcode(row.getBarcode())
+                .productPrice(row.getProductPrice() != null ? row.getProductPrice() : 0)
+                .stock(row.getStock())
+                .salesUnit(row.getSalesUnit())
+                .basicUnit(row.getBasicUnit())
+                .exchangeValue(row.getExchangeValue() != null ? row.getExchangeValue() : 0)
+                .build();
+    }
+
+    // the write is not visible to other transactions before commit, so a scan loaded in between
+    // would cache the old snapshot: the entry is dropped now and once more after the commit
+    private void removeAfterCommit(Runnable remove) {
+        remove.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove.run();
+                }
+            });
+        }
+    }
+
+    // a null store stands for every entry of every store
+    private void remove(Integer storeId, ScanKey key) {
+        synchronized (entries) {
+            if (storeId == null) {
+                generations.values().forEach(AtomicLong::incrementAndGet);
+                entries.clear();
+            } else {
+                generationOf(storeId).incrementAndGet();
+                entries.remove(key);
+            }
+        }
+        invalidations.incrementAndGet();
+    }
+
+    private AtomicLong generationOf(int storeId) {
+        return generations.computeIfAbsent(storeId, id -> new AtomicLong());
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class ScanKey {
+        private final int storeId;
+        private final String barcode;
+    }
+}
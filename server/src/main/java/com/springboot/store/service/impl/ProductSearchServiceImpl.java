@@ -0,0 +1,148 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.Store;
+import com.springboot.store.exception.CustomException;
+import com.springboot.store.payload.ProductSearchHit;
+import com.springboot.store.repository.ProductRepository;
+import com.springboot.store.repository.StoreRepository;
+import com.springboot.store.repository.projection.ProductSearchEntry;
+import com.springboot.store.service.ProductSearchService;
+import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.ProductSearchIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// every store's products are indexed in memory, loaded at startup or on the store's first search.
+// Writes update a loaded index in place, a store that is not loaded reads them from the database on its load
+@Slf4j
+@Service
+public class ProductSearchServiceImpl implements ProductSearchService {
+    private static final int MAX_LIMIT = 100;
+
+    private final ProductRepository productRepository;
+    private final StoreRepository storeRepository;
+    private final StaffService staffService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean preload;
+
+    private final Map<Integer, StoreIndex> stores = new ConcurrentHashMap<>();
+
+    public ProductSearchServiceImpl(ProductRepository productRepository,
+                                    StoreRepository storeRepository,
+                                    StaffService staffService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${store.products.search.preload:true}") boolean preload) {
+        this.productRepository = productRepository;
+        this.storeRepository = storeRepository;
+        this.staffService = staffService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.preload = preload;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadStores() {
+        if (!preload) return;
+        for (Store store : storeRepository.findAll()) {
+            loadedIndex(store.getId());
+        }
+    }
+
+    @Override
+    public List<ProductSearchHit> search(String query, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new CustomException("Limit must be between 1 and " + MAX_LIMIT, HttpStatus.BAD_REQUEST);
+        }
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        StoreIndex store = loadedIndex(storeId);
+        store.lock.readLock().lock();
+        try {
+            return store.index.search(query, limit);
+        } finally {
+            store.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void indexProduct(int storeId, int productId, String name, String barcode) {
+        afterCommit(() -> update(storeId, index -> index.put(productId, name, barcode)));
+    }
+
+    @Override
+    public void removeProduct(int storeId, int productId) {
+        afterCommit(() -> update(storeId, index -> index.remove(productId)));
+    }
+
+    @Override
+    public void evictAll() {
+        afterCommit(stores::clear);
+    }
+
+    private void update(int storeId, Consumer<ProductSearchIndex> change) {
+        StoreIndex store = stores.get(storeId);
+        if (store == null) return;
+        store.lock.writeLock().lock();
+        try {
+            // a load that ran after the commit already holds the change, applying it again is harmless
+            if (store.index != null) change.accept(store.index);
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+    }
+
+    private StoreIndex loadedIndex(int storeId) {
+        StoreIndex store = stores.computeIfAbsent(storeId, id -> new StoreIndex());
+        if (store.index != null) return store;
+        store.lock.writeLock().lock();
+        try {
+            if (store.index == null) {
+                long started = System.nanoTime();
+                ProductSearchIndex index = new ProductSearchIndex();
+                List<ProductSearchEntry> entries = transactionTemplate.execute(status -> productRepository.findSearchEntriesByStoreId(storeId));
+                for (ProductSearchEntry entry : entries) {
+                    index.put(entry.getId(), entry.getName(), entry.getBarcode());
+                }
+                store.index = index;
+                log.info("Indexed {} products of store {} for search in {} ms", index.size(), storeId, (System.nanoTime() - started) / 1_000_000);
+            }
+        } finally {
+            store.lock.writeLock().unlock();
+        }
+        return store;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static class StoreIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // null until loaded
+        private volatile ProductSearchIndex index;
+    }
+}
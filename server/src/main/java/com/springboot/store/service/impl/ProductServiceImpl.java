@@ -2,17 +2,28 @@ package com.springboot.store.service.impl;
 
 import com.springboot.store.entity.*;
 import com.springboot.store.mapper.ProductMapper;
+import com.springboot.store.exception.CustomException;
 import com.springboot.store.payload.ProductDTO;
+import com.springboot.store.payload.ProductFilter;
+import com.springboot.store.payload.ProductListItemDTO;
+import com.springboot.store.payload.report.CursorPage;
 import com.springboot.store.repository.*;
+import com.springboot.store.repository.projection.ProductListItem;
 import com.springboot.store.service.ActivityLogService;
 import com.springboot.store.service.FileService;
+import com.springboot.store.service.PriceTimelineService;
+import com.springboot.store.service.ProductScanCacheService;
+import com.springboot.store.service.ProductSearchService;
 import com.springboot.store.service.ProductService;
 import com.springboot.store.service.StaffService;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -20,6 +31,8 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class ProductServiceImpl implements ProductService {
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final ProductRepository productRepository;
     private final ProductPropertyNameRepository productPropertyNameRepository;
     private final ProductGroupRepository productGroupRepository;
@@ -28,20 +41,67 @@ public class ProductServiceImpl implements ProductService {
     private final StaffService staffService;
     private final FileService fileService;
     private final ActivityLogService activityLogService;
+    private final PriceTimelineService priceTimelineService;
+    private final ProductSearchService productSearchService;
+    private final ProductScanCacheService productScanCacheService;
 
     @Override
     public ProductDTO getProductById(int id) {
-        Product product = productRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + id));
+        Product product = productRepository.findDetailById(id).orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + id));
         return ProductMapper.toProductDTO(product);
     }
 
+    // read in pages of the list fetch plan, so mapping costs a fixed number of statements per page
     @Override
     public List<ProductDTO> getAllProducts() {
         int storeId = staffService.getAuthorizedStaff().getStore().getId();
-        List<Product> products = productRepository.findByStoreId(storeId);
-        return products.stream()
-                .map(ProductMapper::toProductDTO)
-                .collect(Collectors.toList());
+        List<ProductDTO> productDTOs = new ArrayList<>();
+        int afterId = 0;
+        while (true) {
+            List<Product> products = productRepository.findListPage(storeId, afterId, PageRequest.of(0, Product.FETCH_BATCH_SIZE));
+            for (Product product : products) {
+                productDTOs.add(ProductMapper.toProductDTO(product));
+            }
+            if (products.size() < Product.FETCH_BATCH_SIZE) {
+                return productDTOs;
+            }
+            afterId = products.get(products.size() - 1).getId();
+        }
+    }
+
+    @Override
+    public CursorPage<ProductListItemDTO> getProductPage(ProductFilter filter, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new CustomException("Size must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+        }
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        // one extra row tells whether another page follows
+        List<ProductListItem> rows = productRepository.findProductPage(storeId, decodeCursor(cursor),
+                filter.getGroupId(), filter.getBrandId(), filter.getLocationId(), filter.getStatus(),
+                filter.isLowStock(), filter.getDeleted(), PageRequest.of(0, size + 1));
+        boolean hasMore = rows.size() > size;
+        List<ProductListItemDTO> items = rows.stream()
+                .limit(size)
+                .map(row -> ProductListItemDTO.builder()
+                        .id(row.getId())
+                        .name(row.getName())
+                        .barcode(row.getBarcode())
+                        .status(row.getStatus())
+                        .stock(row.getStock())
+                        .minStock(row.getMinStock())
+                        .maxStock(row.getMaxStock())
+                        .isDeleted(row.getIsDeleted())
+                        .location(row.getLocation())
+                        .productGroup(row.getProductGroup())
+                        .productBrand(row.getProductBrand())
+                        .originalPrice(row.getOriginalPrice() != null ? row.getOriginalPrice() : 0)
+                        .productPrice(row.getProductPrice() != null ? row.getProductPrice() : 0)
+                        .build())
+                .toList();
+        return CursorPage.<ProductListItemDTO>builder()
+                .items(items)
+                .nextCursor(hasMore ? encodeCursor(items.get(items.size() - 1).getId()) : null)
+                .build();
     }
 
     @Override
@@ -114,6 +174,9 @@ public class ProductServiceImpl implements ProductService {
             }
             product.setStore(staff.getStore());
             productRepository.save(product);
+            priceTimelineService.addOriginalPrice(staff.getStore().getId(), product.getId(), product.getOriginalPrices().get(0).getCreatedAt(), productDTO.getOriginalPrice());
+            priceTimelineService.addProductPrice(staff.getStore().getId(), product.getId(), product.getProductPrices().get(0).getCreatedAt(), productDTO.getProductPrice());
+            productSearchService.indexProduct(staff.getStore().getId(), product.getId(), product.getName(), product.getBarcode());
             activityLogService.save("created a product with id " + product.getId(), staff.getId(), new Date());
             productResponse.add(ProductMapper.toProductDTO(product));
         }
@@ -127,6 +190,7 @@ public class ProductServiceImpl implements ProductService {
         Product existingProduct = productRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + id));
 
+        String previousBarcode = existingProduct.getBarcode();
         existingProduct.setName(productDTO.getName());
         existingProduct.setBarcode(productDTO.getBarcode());
         existingProduct.setStock(productDTO.getStock());
@@ -159,19 +223,23 @@ public class ProductServiceImpl implements ProductService {
         }
 
         // original price
+        OriginalPrice newOriginalPrice = null;
         if (productDTO.getOriginalPrice() != existingProduct.getOriginalPrices().get(existingProduct.getOriginalPrices().size() - 1).getValue()) {
-            existingProduct.getOriginalPrices().add(OriginalPrice.builder()
+            newOriginalPrice = OriginalPrice.builder()
                     .value(productDTO.getOriginalPrice())
                     .createdAt(new Date())
-                    .build());
+                    .build();
+            existingProduct.getOriginalPrices().add(newOriginalPrice);
         }
 
         // product price
+        ProductPrice newProductPrice = null;
         if (productDTO.getProductPrice() != existingProduct.getProductPrices().get(existingProduct.getProductPrices().size() - 1).getValue()) {
-            existingProduct.getProductPrices().add(ProductPrice.builder()
+            newProductPrice = ProductPrice.builder()
                     .value(productDTO.getProductPrice())
                     .createdAt(new Date())
-                    .build());
+                    .build();
+            existingProduct.getProductPrices().add(newProductPrice);
         }
 
         // sale unit
@@ -208,6 +276,22 @@ public class ProductServiceImpl implements ProductService {
 
 
         existingProduct = productRepository.save(existingProduct);
+        // only once the save is done: a scan in between would reload and cache the old snapshot.
+        // The old barcode goes stale, and the new one may now resolve to this product
+        productScanCacheService.invalidate(storeId, previousBarcode);
+        productScanCacheService.invalidate(storeId, existingProduct.getBarcode());
+        // keep the report price index in step with the new history entries
+        if (newOriginalPrice != null) {
+            priceTimelineService.addOriginalPrice(storeId, existingProduct.getId(), newOriginalPrice.getCreatedAt(), newOriginalPrice.getValue());
+        }
+        if (newProductPrice != null) {
+            priceTimelineService.addProductPrice(storeId, existingProduct.getId(), newProductPrice.getCreatedAt(), newProductPrice.getValue());
+        }
+        if (Boolean.TRUE.equals(existingProduct.getIsDeleted())) {
+            productSearchService.removeProduct(storeId, existingProduct.getId());
+        } else {
+            productSearchService.indexProduct(storeId, existingProduct.getId(), existingProduct.getName(), existingProduct.getBarcode());
+        }
         activityLogService.save("updated a product with id " + existingProduct.getId(), staffService.getAuthorizedStaff().getId(), new Date());
         return ProductMapper.toProductDTO(existingProduct);
 
@@ -218,12 +302,16 @@ public class ProductServiceImpl implements ProductService {
         Product product = productRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Product not found with id: " + id));
         product.setIsDeleted(true);
         productRepository.save(product);
+        productSearchService.removeProduct(product.getStore().getId(), product.getId());
+        productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
         activityLogService.save("deleted a product with id " + product.getId(), staffService.getAuthorizedStaff().getId(), new Date());
     }
 
     @Override
     public void deleteAllProducts() {
         productRepository.deleteAll();
+        productSearchService.evictAll();
+        productScanCacheService.invalidateAll();
     }
 
     @Override
@@ -237,4 +325,19 @@ public class ProductServiceImpl implements ProductService {
         return productMap;
     }
 
+    // the cursor is the last product id of the previous page, base64url encoded
+    private static int decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new CustomException("Invalid cursor", HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private static String encodeCursor(int productId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(productId).getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -27,9 +27,11 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     private final StaffRepository staffRepository;
     private final SupplierRepository supplierRepository;
     private final ProductRepository productRepository;
+    private final ProductScanCacheService productScanCacheService;
     private final ExpenseFormService expenseFormService;
     private final ActivityLogService activityLogService;
     private final NotificationService notificationService;
+    private final ReportCacheService reportCacheService;
 
     @Override
     public PurchaseOrderDTO getPurchaseOrder(int id) {
@@ -64,12 +66,14 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
                     notificationService.notifyLowStock(product.getId(), product.getStock());
                 }
                 productRepository.save(product);
+                productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                 purchaseOrderDetail.setProduct(product);
                 return purchaseOrderDetail;
             }).toList();
             purchaseOrder.setPurchaseOrderDetail(purchaseOrderDetails);
         }
         PurchaseOrderDTO purchaseOrderDTO1 = PurchaseOrderMapper.toPurchaseOrderDTO(purchaseOrderRepository.save(purchaseOrder));
+        reportCacheService.invalidate(purchaseOrder.getStore().getId(), purchaseOrder.getCreatedDate());
         //create ExpenseForm for purchase order
         expenseFormService.createExpenseForm("Supplier", new Date(), "Cash", purchaseOrder.getTotal(), purchaseOrder.getSupplier().getId(), purchaseOrder.getNote(), "Expense for Supplier", purchaseOrder.getId());
         activityLogService.save("created a purchase order with id " + purchaseOrder.getId(), staffService.getAuthorizedStaff().getId(), new Date());
@@ -79,6 +83,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
     @Override
     public PurchaseOrderDTO updatePurchaseOrder(int id, PurchaseOrderDTO purchaseOrderDTO) {
         PurchaseOrder purchaseOrder = purchaseOrderRepository.findById(id).orElseThrow(() -> new CustomException("Purchase order not found", HttpStatus.NOT_FOUND));
+        reportCacheService.invalidate(purchaseOrder.getStore().getId(), purchaseOrder.getCreatedDate());
         purchaseOrder.setSubtotal(purchaseOrderDTO.getSubtotal());
         purchaseOrder.setDiscount(purchaseOrderDTO.getDiscount());
         purchaseOrder.setTotal(purchaseOrderDTO.getTotal());
@@ -99,6 +104,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
                 Product product = productRepository.findById(purchaseOrderDetail.getProduct().getId()).orElseThrow(() -> new CustomException("Product not found", HttpStatus.NOT_FOUND));
                 product.setStock(product.getStock() - purchaseOrderDetail.getQuantity());
                 productRepository.save(product);
+                productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
             });
 
             List<PurchaseOrderDetail> purchaseOrderDetails = purchaseOrderDTO.getPurchaseOrderDetail().stream().map(purchaseOrderDetailDTO -> {
@@ -110,6 +116,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
                     notificationService.notifyLowStock(product.getId(), product.getStock());
                 }
                 productRepository.save(product);
+                productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                 purchaseOrderDetail.setProduct(product);
                 return purchaseOrderDetail;
             }).toList();
@@ -117,6 +124,7 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
             purchaseOrder.getPurchaseOrderDetail().addAll(purchaseOrderDetails);
         }
         PurchaseOrderDTO purchaseOrderDTO1 = PurchaseOrderMapper.toPurchaseOrderDTO(purchaseOrderRepository.save(purchaseOrder));
+        reportCacheService.invalidate(purchaseOrder.getStore().getId(), purchaseOrder.getCreatedDate());
         activityLogService.save("updated a purchase order with id " + purchaseOrder.getId(), staffService.getAuthorizedStaff().getId(), new Date());
 
         return purchaseOrderDTO1;
@@ -129,8 +137,10 @@ public class PurchaseOrderServiceImpl implements PurchaseOrderService {
             Product product = productRepository.findById(purchaseOrderDetail.getProduct().getId()).orElseThrow(() -> new CustomException("Product not found", HttpStatus.NOT_FOUND));
             product.setStock(product.getStock() - purchaseOrderDetail.getQuantity());
             productRepository.save(product);
+            productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
         });
         purchaseOrderRepository.delete(purchaseOrder);
+        reportCacheService.invalidate(purchaseOrder.getStore().getId(), purchaseOrder.getCreatedDate());
         activityLogService.save("deleted a purchase order with id " + purchaseOrder.getId(), staffService.getAuthorizedStaff().getId(), new Date());
     }
 }
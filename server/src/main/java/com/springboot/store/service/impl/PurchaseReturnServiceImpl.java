@@ -10,7 +10,9 @@ import com.springboot.store.payload.PurchaseReturnDTO;
 import com.springboot.store.repository.*;
 import com.springboot.store.service.ActivityLogService;
 import com.springboot.store.service.IncomeFormService;
+import com.springboot.store.service.ProductScanCacheService;
 import com.springboot.store.service.PurchaseReturnService;
+import com.springboot.store.service.ReportCacheService;
 import com.springboot.store.service.StaffService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -28,8 +30,10 @@ public class PurchaseReturnServiceImpl implements PurchaseReturnService {
     private final StaffRepository staffRepository;
     private final SupplierRepository supplierRepository;
     private final ProductRepository productRepository;
+    private final ProductScanCacheService productScanCacheService;
     private final IncomeFormService incomeFormService;
     private final ActivityLogService activityLogService;
+    private final ReportCacheService reportCacheService;
 
     @Override
     public PurchaseReturnDTO getPurchaseReturnById(int id) {
@@ -67,12 +71,14 @@ public class PurchaseReturnServiceImpl implements PurchaseReturnService {
                 }
                 product.setStock(product.getStock() - purchaseReturnDetailDTO.getQuantity());
                 productRepository.save(product);
+                productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                 purchaseReturnDetail.setProduct(product);
                 return purchaseReturnDetail;
             }).toList();
             purchaseReturn.setPurchaseReturnDetails(purchaseReturnDetails);
         }
         PurchaseReturnDTO purchaseReturnDTO1 = PurchaseReturnMapper.toPurchaseReturnDTO(purchaseReturnRepository.save(purchaseReturn));
+        reportCacheService.invalidate(purchaseReturn.getStore().getId(), purchaseReturn.getCreatedDate());
         //create IncomeForm for purchase return
         incomeFormService.createIncomeForm("Supplier", purchaseReturn.getCreatedDate(), "Cash", purchaseReturn.getTotal(), purchaseReturn.getSupplier().getId(), purchaseReturn.getNote(), "Income from Supplier", purchaseReturn.getId());
         activityLogService.save("created a purchase return with id " + purchaseReturnDTO1.getId(), staffService.getAuthorizedStaff().getId(), new Date());
@@ -82,6 +88,7 @@ public class PurchaseReturnServiceImpl implements PurchaseReturnService {
     @Override
     public PurchaseReturnDTO updatePurchaseReturn(int id, PurchaseReturnDTO purchaseReturnDTO) {
         PurchaseReturn purchaseReturn = purchaseReturnRepository.findById(id).orElseThrow(() -> new CustomException("Purchase return not found", HttpStatus.NOT_FOUND));
+        reportCacheService.invalidate(purchaseReturn.getStore().getId(), purchaseReturn.getCreatedDate());
         purchaseReturn.setSubtotal(purchaseReturnDTO.getSubtotal());
         purchaseReturn.setDiscount(purchaseReturnDTO.getDiscount());
         purchaseReturn.setTotal(purchaseReturnDTO.getTotal());
@@ -102,6 +109,7 @@ public class PurchaseReturnServiceImpl implements PurchaseReturnService {
                 Product product = productRepository.findById(purchaseReturnDetail.getProduct().getId()).orElseThrow(() -> new CustomException("Product not found", HttpStatus.NOT_FOUND));
                 product.setStock(product.getStock() + purchaseReturnDetail.getQuantity());
                 productRepository.save(product);
+                productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
             });
 
             List<PurchaseReturnDetail> purchaseReturnDetails = purchaseReturnDTO.getPurchaseReturnDetails().stream().map(purchaseReturnDetailDTO -> {
@@ -113,6 +121,7 @@ public class PurchaseReturnServiceImpl implements PurchaseReturnService {
                 }
                 product.setStock(product.getStock() - purchaseReturnDetailDTO.getQuantity());
                 productRepository.save(product);
+                productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                 purchaseReturnDetail.setProduct(product);
                 return purchaseReturnDetail;
             }).toList();
@@ -129,6 +138,7 @@ public class PurchaseReturnServiceImpl implements PurchaseReturnService {
                 }
                 product.setStock(product.getStock() - purchaseReturnDetailDTO.getQuantity());
                 productRepository.save(product);
+                productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                 purchaseReturnDetail.setProduct(product);
                 return purchaseReturnDetail;
             }).toList();
@@ -136,6 +146,7 @@ public class PurchaseReturnServiceImpl implements PurchaseReturnService {
             purchaseReturn.getPurchaseReturnDetails().addAll(purchaseReturnDetails);
         }
         PurchaseReturnDTO purchaseReturnDTO1 = PurchaseReturnMapper.toPurchaseReturnDTO(purchaseReturnRepository.save(purchaseReturn));
+        reportCacheService.invalidate(purchaseReturn.getStore().getId(), purchaseReturn.getCreatedDate());
         activityLogService.save("updated a purchase return with id " + purchaseReturnDTO1.getId(), staffService.getAuthorizedStaff().getId(), new Date());
         return purchaseReturnDTO1;
     }
@@ -147,8 +158,10 @@ public class PurchaseReturnServiceImpl implements PurchaseReturnService {
             Product product = productRepository.findById(purchaseReturnDetail.getProduct().getId()).orElseThrow(() -> new CustomException("Product not found", HttpStatus.NOT_FOUND));
             product.setStock(product.getStock() + purchaseReturnDetail.getQuantity());
             productRepository.save(product);
+            productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
         });
         purchaseReturnRepository.delete(purchaseReturn);
+        reportCacheService.invalidate(purchaseReturn.getStore().getId(), purchaseReturn.getCreatedDate());
         activityLogService.save("deleted a purchase return with id " + id, staffService.getAuthorizedStaff().getId(), new Date());
     }
 }
@@ -1,107 +1,202 @@
 package com.springboot.store.service.impl;
 
-import com.springboot.store.entity.*;
+import com.springboot.store.exception.CustomException;
 import com.springboot.store.payload.InvoiceInRecordOfProductSellDTO;
 import com.springboot.store.payload.ReturnInRecordOfProductSellDTO;
 import com.springboot.store.payload.RecordOfProductSellDTO;
+import com.springboot.store.payload.report.CursorPage;
 import com.springboot.store.repository.InvoiceRepository;
-import com.springboot.store.repository.ProductRepository;
 import com.springboot.store.repository.ReturnInvoiceRepository;
-import com.springboot.store.service.ProductService;
+import com.springboot.store.repository.projection.ProductSaleLine;
+import com.springboot.store.repository.projection.ProductSalesSummary;
+import com.springboot.store.repository.projection.ProductSellLine;
 import com.springboot.store.service.RecordOfProductSellService;
+import com.springboot.store.service.ReportCacheService;
 import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.IntKeyAggregator;
+import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class RecordOfProductSellServiceImpl implements RecordOfProductSellService {
+    private static final String RETAIL_CUSTOMER = "Retail Customer";
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final InvoiceRepository invoiceRepository;
     private final ReturnInvoiceRepository returnInvoiceRepository;
-    private final ProductRepository productRepository;
-    private final ProductService productService;
     private final StaffService staffService;
+    private final ReportCacheService reportCacheService;
 
     @Override
     public List<RecordOfProductSellDTO> getAllRecordOfProductSell(Date startDate, Date endDate) {
         endDate = new Date(endDate.getTime() + 86400000);
         int storeId = staffService.getAuthorizedStaff().getStore().getId();
-        List<Invoice> invoices = invoiceRepository.findByCreatedAtBetween(startDate, endDate, storeId);
-        List<ReturnInvoice> returnInvoices = returnInvoiceRepository.findByCreatedAtBetween(startDate, endDate, storeId);
-        //create new map to store all product
-        Map<Integer, Product> productMap = productService.getAllProductMap();
-        //Get all product and store in map
-
-        Map<Integer, RecordOfProductSellDTO> recordOfProductSellDTOMap = new HashMap<>();
-
-        for (Invoice invoice : invoices) {
-            for (InvoiceDetail invoiceDetail : invoice.getInvoiceDetails()) {
-                RecordOfProductSellDTO recordOfProductSellDTO = recordOfProductSellDTOMap.computeIfAbsent(invoiceDetail.getProductId(), id -> createNewRecordOfProductSellDTO(id, productMap.get(id)));
-                updateRecordOfProductSellDTOForInvoice(recordOfProductSellDTO, invoice, invoiceDetail);
-            }
+        // the report lists every line, so the rows are flat lines instead of whole invoice graphs
+        List<ProductSaleLine> invoiceLines = reportCacheService.getRows(storeId, "product-sell.invoices", startDate, endDate,
+                (start, end) -> invoiceRepository.findProductSaleLines(storeId, start, end));
+        List<ProductSaleLine> returnLines = reportCacheService.getRows(storeId, "product-sell.returns", startDate, endDate,
+                (start, end) -> returnInvoiceRepository.findProductReturnLines(storeId, start, end));
+        IntKeyAggregator<RecordOfProductSellDTO> recordOfProductSellDTOs = newRecords();
+
+        for (ProductSaleLine line : invoiceLines) {
+            addInvoiceLine(recordOfProductSellDTOs.get(line.getProductId()), line);
         }
 
-        for (ReturnInvoice returnInvoice : returnInvoices) {
-            for (ReturnDetail returnDetail : returnInvoice.getReturnDetails()) {
-                RecordOfProductSellDTO recordOfProductSellDTO = recordOfProductSellDTOMap.computeIfAbsent(returnDetail.getProduct().getId(), id -> createNewRecordOfProductSellDTOFromReturn(id, returnDetail));
-                updateRecordOfProductSellDTOForReturnInvoice(recordOfProductSellDTO, returnInvoice, returnDetail);
-            }
+        for (ProductSaleLine line : returnLines) {
+            addReturnLine(recordOfProductSellDTOs.get(line.getProductId()), line);
+        }
+
+        return recordOfProductSellDTOs.values();
+    }
+
+    @Override
+    public List<RecordOfProductSellDTO> getRecordOfProductSellSummary(Date startDate, Date endDate) {
+        endDate = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        // one grouped row per product and side instead of every line
+        List<ProductSalesSummary> sales = reportCacheService.getRows(storeId, "product-sales.invoices", startDate, endDate,
+                (start, end) -> invoiceRepository.findProductSalesSummary(storeId, start, end));
+        List<ProductSalesSummary> returns = reportCacheService.getRows(storeId, "product-sales.returns", startDate, endDate,
+                (start, end) -> returnInvoiceRepository.findProductReturnSummary(storeId, start, end));
+        IntKeyAggregator<RecordOfProductSellDTO> recordOfProductSellDTOs = newRecords();
+
+        for (ProductSalesSummary row : sales) {
+            addSaleSummary(recordOfProductSellDTOs.get(row.getProductId()), row);
+        }
+        for (ProductSalesSummary row : returns) {
+            addReturnSummary(recordOfProductSellDTOs.get(row.getProductId()), row);
         }
 
-        return new ArrayList<>(recordOfProductSellDTOMap.values());
+        return recordOfProductSellDTOs.values();
     }
 
-    private RecordOfProductSellDTO createNewRecordOfProductSellDTO(int productId, Product product) {
-        return new RecordOfProductSellDTO(productId, product.getName(), 0, 0, 0, 0, 0, new ArrayList<>(), new ArrayList<>());
+    @Override
+    public CursorPage<InvoiceInRecordOfProductSellDTO> getInvoiceLines(int productId, Date startDate, Date endDate, String cursor, int size) {
+        checkPageSize(size);
+        Date rangeEnd = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        LineCursor after = LineCursor.decode(cursor, startDate);
+        List<ProductSellLine> lines = invoiceRepository.findProductSellLinesAfter(storeId, productId, startDate, rangeEnd,
+                after.createdAt, after.id, PageRequest.of(0, size + 1));
+        return toPage(lines, size, line -> InvoiceInRecordOfProductSellDTO.builder()
+                .date(line.getCreatedAt())
+                .customerName(line.getCustomerName() != null ? line.getCustomerName() : RETAIL_CUSTOMER)
+                .quantity(line.getQuantity())
+                .total(line.getTotal())
+                .build());
     }
 
-    private RecordOfProductSellDTO createNewRecordOfProductSellDTOFromReturn(int productId, ReturnDetail returnDetail) {
+    @Override
+    public CursorPage<ReturnInRecordOfProductSellDTO> getReturnLines(int productId, Date startDate, Date endDate, String cursor, int size) {
+        checkPageSize(size);
+        Date rangeEnd = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        LineCursor after = LineCursor.decode(cursor, startDate);
+        List<ProductSellLine> lines = returnInvoiceRepository.findProductReturnLinesAfter(storeId, productId, startDate, rangeEnd,
+                after.createdAt, after.id, PageRequest.of(0, size + 1));
+        return toPage(lines, size, line -> ReturnInRecordOfProductSellDTO.builder()
+                .date(line.getCreatedAt())
+                .customerName(line.getCustomerName() != null ? line.getCustomerName() : RETAIL_CUSTOMER)
+                .quantity(line.getQuantity())
+                .total(line.getTotal())
+                .build());
+    }
 
-        return new RecordOfProductSellDTO(productId, returnDetail.getProduct().getName(), 0, 0, 0, 0, 0, new ArrayList<>(), new ArrayList<>());
+    // one extra line is read to know whether another page follows
+    private static <T> CursorPage<T> toPage(List<ProductSellLine> lines, int size, Function<ProductSellLine, T> mapper) {
+        boolean hasMore = lines.size() > size;
+        List<ProductSellLine> page = hasMore ? lines.subList(0, size) : lines;
+        ProductSellLine last = page.isEmpty() ? null : page.get(page.size() - 1);
+        return CursorPage.<T>builder()
+                .items(page.stream().map(mapper).toList())
+                .nextCursor(hasMore ? LineCursor.encode(last.getCreatedAt(), last.getId()) : null)
+                .build();
     }
 
-    private void updateRecordOfProductSellDTOForInvoice(RecordOfProductSellDTO recordOfProductSellDTO, Invoice invoice, InvoiceDetail invoiceDetail) {
-        recordOfProductSellDTO.setQuantitySell(recordOfProductSellDTO.getQuantitySell() + invoiceDetail.getQuantity());
-        recordOfProductSellDTO.setTotalSell((recordOfProductSellDTO.getTotalSell() + invoiceDetail.getQuantity() * invoiceDetail.getPrice()));
+    private static void checkPageSize(int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new CustomException("Size must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // the accumulators are shared with the dashboard
+    static IntKeyAggregator<RecordOfProductSellDTO> newRecords() {
+        return new IntKeyAggregator<>(productId -> new RecordOfProductSellDTO(productId, null, 0, 0, 0, 0, 0, new ArrayList<>(), new ArrayList<>()));
+    }
+
+    static void addSaleSummary(RecordOfProductSellDTO recordOfProductSellDTO, ProductSalesSummary row) {
+        recordOfProductSellDTO.setName(row.getProductName());
+        recordOfProductSellDTO.setQuantitySell(recordOfProductSellDTO.getQuantitySell() + row.getQuantity());
+        recordOfProductSellDTO.setTotalSell(recordOfProductSellDTO.getTotalSell() + row.getRevenue());
         recordOfProductSellDTO.setTotal(recordOfProductSellDTO.getTotalSell() - recordOfProductSellDTO.getTotalReturn());
-        InvoiceInRecordOfProductSellDTO invoiceInRecordOfProductSellDTO = getInvoiceInRecordOfProductSellDTO(invoice, invoiceDetail);
-        recordOfProductSellDTO.getListInvoice().add(invoiceInRecordOfProductSellDTO);
     }
 
-    private void updateRecordOfProductSellDTOForReturnInvoice(RecordOfProductSellDTO recordOfProductSellDTO, ReturnInvoice returnInvoice, ReturnDetail returnDetail) {
-        if (returnDetail.getQuantity() == 0) return;
-        recordOfProductSellDTO.setQuantityReturn(recordOfProductSellDTO.getQuantityReturn() + returnDetail.getQuantity());
-        recordOfProductSellDTO.setTotalReturn(recordOfProductSellDTO.getTotalReturn() + returnDetail.getQuantity() * returnDetail.getPrice());
+    static void addReturnSummary(RecordOfProductSellDTO recordOfProductSellDTO, ProductSalesSummary row) {
+        recordOfProductSellDTO.setName(row.getProductName());
+        recordOfProductSellDTO.setQuantityReturn(recordOfProductSellDTO.getQuantityReturn() + row.getQuantity());
+        recordOfProductSellDTO.setTotalReturn(recordOfProductSellDTO.getTotalReturn() + row.getRevenue());
         recordOfProductSellDTO.setTotal(recordOfProductSellDTO.getTotalSell() - recordOfProductSellDTO.getTotalReturn());
-        ReturnInRecordOfProductSellDTO returnInRecordOfProductSellDTO = getReturnInRecordOfProductSellDTO(returnInvoice, returnDetail);
-        recordOfProductSellDTO.getListReturn().add(returnInRecordOfProductSellDTO);
     }
 
-    private static InvoiceInRecordOfProductSellDTO getInvoiceInRecordOfProductSellDTO(Invoice invoice, InvoiceDetail invoiceDetail) {
+    static void addInvoiceLine(RecordOfProductSellDTO recordOfProductSellDTO, ProductSaleLine line) {
+        recordOfProductSellDTO.setName(line.getProductName());
+        recordOfProductSellDTO.setQuantitySell(recordOfProductSellDTO.getQuantitySell() + line.getQuantity());
+        recordOfProductSellDTO.setTotalSell(recordOfProductSellDTO.getTotalSell() + line.getTotal());
+        recordOfProductSellDTO.setTotal(recordOfProductSellDTO.getTotalSell() - recordOfProductSellDTO.getTotalReturn());
         InvoiceInRecordOfProductSellDTO invoiceInRecordOfProductSellDTO = new InvoiceInRecordOfProductSellDTO();
-        invoiceInRecordOfProductSellDTO.setQuantity(invoiceDetail.getQuantity());
-        invoiceInRecordOfProductSellDTO.setTotal((invoiceDetail.getQuantity() * invoiceDetail.getPrice()));
-        if (invoice.getCustomer() != null)
-            invoiceInRecordOfProductSellDTO.setCustomerName(invoice.getCustomer().getName());
-        else
-            invoiceInRecordOfProductSellDTO.setCustomerName("Retail Customer");
-        invoiceInRecordOfProductSellDTO.setDate(invoice.getCreatedAt());
-        return invoiceInRecordOfProductSellDTO;
+        invoiceInRecordOfProductSellDTO.setQuantity(line.getQuantity());
+        invoiceInRecordOfProductSellDTO.setTotal(line.getTotal());
+        invoiceInRecordOfProductSellDTO.setCustomerName(getCustomerName(line));
+        invoiceInRecordOfProductSellDTO.setDate(line.getCreatedAt());
+        recordOfProductSellDTO.getListInvoice().add(invoiceInRecordOfProductSellDTO);
     }
 
-    private static ReturnInRecordOfProductSellDTO getReturnInRecordOfProductSellDTO(ReturnInvoice returnInvoice, ReturnDetail invoiceDetail) {
+    static void addReturnLine(RecordOfProductSellDTO recordOfProductSellDTO, ProductSaleLine line) {
+        recordOfProductSellDTO.setName(line.getProductName());
+        recordOfProductSellDTO.setQuantityReturn(recordOfProductSellDTO.getQuantityReturn() + line.getQuantity());
+        recordOfProductSellDTO.setTotalReturn(recordOfProductSellDTO.getTotalReturn() + line.getTotal());
+        recordOfProductSellDTO.setTotal(recordOfProductSellDTO.getTotalSell() - recordOfProductSellDTO.getTotalReturn());
         ReturnInRecordOfProductSellDTO returnInRecordOfProductSellDTO = new ReturnInRecordOfProductSellDTO();
-        returnInRecordOfProductSellDTO.setQuantity(invoiceDetail.getQuantity());
-        returnInRecordOfProductSellDTO.setTotal(invoiceDetail.getQuantity() * invoiceDetail.getPrice());
-        if (returnInvoice.getInvoice().getCustomer() != null)
-            returnInRecordOfProductSellDTO.setCustomerName(returnInvoice.getInvoice().getCustomer().getName());
-        else
-            returnInRecordOfProductSellDTO.setCustomerName("Retail Customer");
-        returnInRecordOfProductSellDTO.setDate(returnInvoice.getCreatedAt());
-        return returnInRecordOfProductSellDTO;
+        returnInRecordOfProductSellDTO.setQuantity(line.getQuantity());
+        returnInRecordOfProductSellDTO.setTotal(line.getTotal());
+        returnInRecordOfProductSellDTO.setCustomerName(getCustomerName(line));
+        returnInRecordOfProductSellDTO.setDate(line.getCreatedAt());
+        recordOfProductSellDTO.getListReturn().add(returnInRecordOfProductSellDTO);
     }
 
+    private static String getCustomerName(ProductSaleLine line) {
+        return line.getCustomerName() != null ? line.getCustomerName() : RETAIL_CUSTOMER;
+    }
+
+    // position after the last line of a page, sent to the client as an opaque string
+    @AllArgsConstructor
+    private static class LineCursor {
+        private final Date createdAt;
+        private final int id;
+
+        static String encode(Date createdAt, int id) {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString((createdAt.getTime() + ":" + id).getBytes(StandardCharsets.UTF_8));
+        }
 
+        // no cursor starts just before the range, so every line of the range follows it
+        static LineCursor decode(String cursor, Date startDate) {
+            if (cursor == null || cursor.isEmpty()) {
+                return new LineCursor(new Date(startDate.getTime() - 1), 0);
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+                return new LineCursor(new Date(Long.parseLong(parts[0])), Integer.parseInt(parts[1]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new CustomException("Invalid cursor", HttpStatus.BAD_REQUEST);
+            }
+        }
+    }
 }
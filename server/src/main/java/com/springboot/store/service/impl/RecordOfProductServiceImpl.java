@@ -1,12 +1,13 @@
 package com.springboot.store.service.impl;
 
-import com.springboot.store.entity.*;
 import com.springboot.store.payload.RecordOfProductDTO;
 import com.springboot.store.repository.InvoiceRepository;
 import com.springboot.store.repository.ReturnInvoiceRepository;
-import com.springboot.store.service.ProductService;
+import com.springboot.store.repository.projection.ProductSalesSummary;
 import com.springboot.store.service.RecordOfProductService;
+import com.springboot.store.service.ReportCacheService;
 import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.IntKeyAggregator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -17,53 +18,46 @@ import java.util.*;
 public class RecordOfProductServiceImpl implements RecordOfProductService {
     private final InvoiceRepository invoiceRepository;
     private final ReturnInvoiceRepository returnInvoiceRepository;
-    private final ProductService productService;
     private final StaffService staffService;
+    private final ReportCacheService reportCacheService;
 
     @Override
     public List<RecordOfProductDTO> getAllRecordOfProduct(Date startDate, Date endDate) {
         endDate = new Date(endDate.getTime() + 86400000);
         int storeId = staffService.getAuthorizedStaff().getStore().getId();
-        List<Invoice> invoices = invoiceRepository.findByCreatedAtBetween(startDate, endDate, storeId);
-        List<ReturnInvoice> returnInvoices = returnInvoiceRepository.findByCreatedAtBetween(startDate, endDate, storeId);
-        //create new map to store all product
-        Map<Integer, Product> productMap = productService.getAllProductMap();
-        //Get all product and store in map
-        Map<Integer, RecordOfProductDTO> recordOfProductDTOMap = new HashMap<>();
-
-        for (Invoice invoice : invoices) {
-            for (InvoiceDetail invoiceDetail : invoice.getInvoiceDetails()) {
-                RecordOfProductDTO recordOfProductDTO = recordOfProductDTOMap.computeIfAbsent(invoiceDetail.getProductId(), id -> createNewRecordOfProductDTO(id, productMap.get(id)));
-                updateRecordOfProductDTOForInvoice(recordOfProductDTO, invoiceDetail);
-            }
+        // one row per product from each side, summed by the database
+        List<ProductSalesSummary> sales = reportCacheService.getRows(storeId, "product-sales.invoices", startDate, endDate,
+                (start, end) -> invoiceRepository.findProductSalesSummary(storeId, start, end));
+        List<ProductSalesSummary> returns = reportCacheService.getRows(storeId, "product-sales.returns", startDate, endDate,
+                (start, end) -> returnInvoiceRepository.findProductReturnSummary(storeId, start, end));
+        IntKeyAggregator<RecordOfProductDTO> recordOfProductDTOs = newRecords(sales.size() + returns.size());
+
+        for (ProductSalesSummary row : sales) {
+            addSale(recordOfProductDTOs.get(row.getProductId()), row.getProductName(), row.getQuantity(), row.getRevenue());
         }
-        for (ReturnInvoice returnInvoice : returnInvoices) {
-            for (ReturnDetail returnDetail : returnInvoice.getReturnDetails()) {
-                RecordOfProductDTO recordOfProductDTO = recordOfProductDTOMap.computeIfAbsent(returnDetail.getProduct().getId(), id -> createNewRecordOfProductDTOFromReturn(id, returnDetail));
-                updateRecordOfProductDTOForReturnInvoice(recordOfProductDTO, returnDetail);
-            }
+        for (ProductSalesSummary row : returns) {
+            addReturn(recordOfProductDTOs.get(row.getProductId()), row.getProductName(), row.getQuantity(), row.getRevenue());
         }
 
-        return new ArrayList<>(recordOfProductDTOMap.values());
-    }
-
-    private RecordOfProductDTO createNewRecordOfProductDTO(int productId, Product product) {
-        return new RecordOfProductDTO(productId, product.getName(), 0, 0, 0, 0, 0);
+        return recordOfProductDTOs.values();
     }
 
-    private RecordOfProductDTO createNewRecordOfProductDTOFromReturn(int productId, ReturnDetail returnDetail) {
-        return new RecordOfProductDTO(productId, returnDetail.getProduct().getName(), 0, 0, 0, 0, 0);
+    // the accumulators are shared with the dashboard
+    static IntKeyAggregator<RecordOfProductDTO> newRecords(int expectedSize) {
+        return new IntKeyAggregator<>(productId -> new RecordOfProductDTO(productId, null, 0, 0, 0, 0, 0), expectedSize);
     }
 
-    private void updateRecordOfProductDTOForInvoice(RecordOfProductDTO recordOfProductDTO, InvoiceDetail invoiceDetail) {
-        recordOfProductDTO.setQuantitySell(recordOfProductDTO.getQuantitySell() + invoiceDetail.getQuantity());
-        recordOfProductDTO.setTotalSell((recordOfProductDTO.getTotalSell() + invoiceDetail.getQuantity() * invoiceDetail.getPrice()));
+    static void addSale(RecordOfProductDTO recordOfProductDTO, String name, double quantity, double revenue) {
+        recordOfProductDTO.setName(name);
+        recordOfProductDTO.setQuantitySell(recordOfProductDTO.getQuantitySell() + quantity);
+        recordOfProductDTO.setTotalSell(recordOfProductDTO.getTotalSell() + revenue);
         recordOfProductDTO.setTotal(recordOfProductDTO.getTotalSell() - recordOfProductDTO.getTotalReturn());
     }
 
-    private void updateRecordOfProductDTOForReturnInvoice(RecordOfProductDTO recordOfProductDTO, ReturnDetail returnDetail) {
-        recordOfProductDTO.setQuantityReturn(recordOfProductDTO.getQuantityReturn() + returnDetail.getQuantity());
-        recordOfProductDTO.setTotalReturn((recordOfProductDTO.getTotalReturn() + returnDetail.getQuantity() * returnDetail.getPrice()));
+    static void addReturn(RecordOfProductDTO recordOfProductDTO, String name, double quantity, double revenue) {
+        recordOfProductDTO.setName(name);
+        recordOfProductDTO.setQuantityReturn(recordOfProductDTO.getQuantityReturn() + quantity);
+        recordOfProductDTO.setTotalReturn(recordOfProductDTO.getTotalReturn() + revenue);
         recordOfProductDTO.setTotal(recordOfProductDTO.getTotalSell() - recordOfProductDTO.getTotalReturn());
     }
 }
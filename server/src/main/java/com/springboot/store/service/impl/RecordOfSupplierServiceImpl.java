@@ -8,6 +8,7 @@ import com.springboot.store.payload.report.RecordOfSupplierDTO;
 import com.springboot.store.repository.PurchaseOrderRepository;
 import com.springboot.store.repository.PurchaseReturnRepository;
 import com.springboot.store.service.RecordOfSupplierService;
+import com.springboot.store.service.ReportCacheService;
 import com.springboot.store.service.StaffService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -20,11 +21,17 @@ public class RecordOfSupplierServiceImpl implements RecordOfSupplierService {
     private final PurchaseOrderRepository purchaseOrderRepository;
     private final PurchaseReturnRepository purchaseReturnRepository;
     private final StaffService staffService;
+    private final ReportCacheService reportCacheService;
 
     @Override
     public List<RecordOfSupplierDTO> getAllRecordOfSupplier(Date startDate, Date endDate) {
-        endDate = new Date(endDate.getTime() + 86400000);
+        Date end = new Date(endDate.getTime() + 86400000);
         int id = staffService.getAuthorizedStaff().getStore().getId();
+        // the purchase documents are entities with lazy relations, so only the finished report is cached
+        return reportCacheService.get(id, "record-of-supplier", startDate, end, () -> loadRecordOfSupplier(id, startDate, end));
+    }
+
+    private List<RecordOfSupplierDTO> loadRecordOfSupplier(int id, Date startDate, Date endDate) {
         List<PurchaseOrder> purchaseOrders = purchaseOrderRepository.findByStoreIdAndCreatedDateBetween(startDate, endDate, id);
         List<PurchaseReturn> purchaseReturns = purchaseReturnRepository.findByStoreIdAndCreatedDateBetween(startDate, endDate, id);
         Map<Integer, RecordOfSupplierDTO> recordOfSupplierDTOMap = new HashMap<>();
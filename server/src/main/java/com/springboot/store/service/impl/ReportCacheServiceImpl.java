@@ -0,0 +1,181 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.payload.report.ReportCacheStats;
+import com.springboot.store.service.ReportCacheService;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.apache.commons.lang3.time.DateUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// results are kept in memory per instance, bounded by entry count and evicted least recently used first
+@Service
+public class ReportCacheServiceImpl implements ReportCacheService {
+    private final int maxEntries;
+    private final Map<CacheKey, Object> entries;
+    // bumped by every invalidation, a load that overlapped one is not stored
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong liveLoads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ReportCacheServiceImpl(@Value("${store.reports.cache.max-entries:1000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Object> eldest) {
+                if (size() > ReportCacheServiceImpl.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public <T> T get(int storeId, String type, Date startDate, Date endDate, Supplier<T> loader) {
+        return load(new CacheKey(storeId, type, startDate.getTime(), endDate.getTime()), loader);
+    }
+
+    @Override
+    public <T> List<T> getRows(int storeId, String type, Date startDate, Date endDate, BiFunction<Date, Date, List<T>> loader) {
+        Date today = DateUtils.truncate(new Date(), Calendar.DATE);
+        if (!startDate.before(today)) {
+            liveLoads.incrementAndGet();
+            return loader.apply(startDate, endDate);
+        }
+        if (endDate.before(today)) {
+            return load(new CacheKey(storeId, type, startDate.getTime(), endDate.getTime()), () -> loader.apply(startDate, endDate));
+        }
+
+        Date closedEnd = new Date(today.getTime() - 1);
+        List<T> closedRows = load(new CacheKey(storeId, type, startDate.getTime(), closedEnd.getTime()), () -> loader.apply(startDate, closedEnd));
+        liveLoads.incrementAndGet();
+        List<T> todayRows = loader.apply(today, endDate);
+        List<T> rows = new ArrayList<>(closedRows.size() + todayRows.size());
+        rows.addAll(closedRows);
+        rows.addAll(todayRows);
+        return rows;
+    }
+
+    @Override
+    public void invalidate(int storeId, Date day) {
+        if (day == null) {
+            invalidateStore(storeId);
+            return;
+        }
+        long dayStart = DateUtils.truncate(day, Calendar.DATE).getTime();
+        long dayEnd = dayStart + 86400000 - 1;
+        removeAfterCommit(storeId, key -> key.storeId == storeId && key.start <= dayEnd && key.end >= dayStart);
+    }
+
+    @Override
+    public void invalidateStore(int storeId) {
+        removeAfterCommit(storeId, key -> key.storeId == storeId);
+    }
+
+    @Override
+    public void invalidate(int storeId, String type) {
+        removeAfterCommit(storeId, key -> key.storeId == storeId && key.type.equals(type));
+    }
+
+    @Override
+    public void invalidateAll(String type) {
+        removeAfterCommit(null, key -> key.type.equals(type));
+    }
+
+    @Override
+    public ReportCacheStats getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return ReportCacheStats.builder()
+                .entries(size)
+                .hits(hitCount)
+                .misses(missCount)
+                .hitRate(hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount))
+                .liveLoads(liveLoads.get())
+                .evictions(evictions.get())
+                .invalidations(invalidations.get())
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T load(CacheKey key, Supplier<T> loader) {
+        synchronized (entries) {
+            Object cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return (T) cached;
+            }
+        }
+        misses.incrementAndGet();
+        AtomicLong generation = generationOf(key.storeId);
+        long before = generation.get();
+        T value = loader.get();
+        if (value != null) {
+            synchronized (entries) {
+                if (generation.get() == before) {
+                    entries.put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    // the write is not visible to other transactions before commit, so a report loaded in between
+    // would cache the old rows: the entries are dropped now and once more after the commit
+    private void removeAfterCommit(Integer storeId, Predicate<CacheKey> matches) {
+        remove(storeId, matches);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(storeId, matches);
+                }
+            });
+        }
+    }
+
+    // a null store stands for every store
+    private void remove(Integer storeId, Predicate<CacheKey> matches) {
+        synchronized (entries) {
+            if (storeId == null) {
+                generations.values().forEach(AtomicLong::incrementAndGet);
+            } else {
+                generationOf(storeId).incrementAndGet();
+            }
+            entries.keySet().removeIf(matches);
+        }
+        invalidations.incrementAndGet();
+    }
+
+    private AtomicLong generationOf(int storeId) {
+        return generations.computeIfAbsent(storeId, id -> new AtomicLong());
+    }
+
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static class CacheKey {
+        private final int storeId;
+        private final String type;
+        private final long start;
+        private final long end;
+    }
+}
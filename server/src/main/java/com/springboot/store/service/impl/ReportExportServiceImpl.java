@@ -0,0 +1,169 @@
+package com.springboot.store.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.store.repository.InvoiceRepository;
+import com.springboot.store.repository.PurchaseOrderRepository;
+import com.springboot.store.repository.PurchaseReturnRepository;
+import com.springboot.store.repository.ReturnInvoiceRepository;
+import com.springboot.store.repository.projection.InvoiceSummary;
+import com.springboot.store.repository.projection.ProductSaleLine;
+import com.springboot.store.repository.projection.SupplierDocumentLine;
+import com.springboot.store.service.ReportExportService;
+import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.ExportFormat;
+import com.springboot.store.utils.ReportExportWriter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.stream.Stream;
+
+// the body runs after the controller returned, on the async request thread: the store is resolved
+// up front and the rows are read inside a read-only transaction that lives as long as the stream
+@Service
+public class ReportExportServiceImpl implements ReportExportService {
+    private final InvoiceRepository invoiceRepository;
+    private final ReturnInvoiceRepository returnInvoiceRepository;
+    private final PurchaseOrderRepository purchaseOrderRepository;
+    private final PurchaseReturnRepository purchaseReturnRepository;
+    private final StaffService staffService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public ReportExportServiceImpl(InvoiceRepository invoiceRepository,
+                                   ReturnInvoiceRepository returnInvoiceRepository,
+                                   PurchaseOrderRepository purchaseOrderRepository,
+                                   PurchaseReturnRepository purchaseReturnRepository,
+                                   StaffService staffService,
+                                   ObjectMapper objectMapper,
+                                   PlatformTransactionManager transactionManager) {
+        this.invoiceRepository = invoiceRepository;
+        this.returnInvoiceRepository = returnInvoiceRepository;
+        this.purchaseOrderRepository = purchaseOrderRepository;
+        this.purchaseReturnRepository = purchaseReturnRepository;
+        this.staffService = staffService;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    @Override
+    public StreamingResponseBody exportSales(Date startDate, Date endDate, ExportFormat format) {
+        Date end = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        return stream(format, writer -> {
+            try (Stream<InvoiceSummary> invoices = invoiceRepository.streamInvoiceSummary(storeId, startDate, end)) {
+                writeSummaries(writer, "invoice", invoices);
+            }
+            try (Stream<InvoiceSummary> returns = returnInvoiceRepository.streamReturnSummary(storeId, startDate, end)) {
+                writeSummaries(writer, "return", returns);
+            }
+        });
+    }
+
+    @Override
+    public StreamingResponseBody exportRecordOfProductSell(Date startDate, Date endDate, ExportFormat format) {
+        Date end = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        return stream(format, writer -> {
+            try (Stream<ProductSaleLine> lines = invoiceRepository.streamProductSaleLines(storeId, startDate, end)) {
+                writeSaleLines(writer, "invoice", lines);
+            }
+            try (Stream<ProductSaleLine> lines = returnInvoiceRepository.streamProductReturnLines(storeId, startDate, end)) {
+                writeSaleLines(writer, "return", lines);
+            }
+        });
+    }
+
+    @Override
+    public StreamingResponseBody exportRecordOfSupplier(Date startDate, Date endDate, ExportFormat format) {
+        Date end = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        return stream(format, writer -> {
+            try (Stream<SupplierDocumentLine> lines = purchaseOrderRepository.streamSupplierLines(storeId, startDate, end)) {
+                writeSupplierLines(writer, "purchase-order", lines);
+            }
+            try (Stream<SupplierDocumentLine> lines = purchaseReturnRepository.streamSupplierLines(storeId, startDate, end)) {
+                writeSupplierLines(writer, "purchase-return", lines);
+            }
+        });
+    }
+
+    @Override
+    public StreamingResponseBody exportRows(List<?> rows, ExportFormat format) {
+        return outputStream -> {
+            try (ReportExportWriter writer = new ReportExportWriter(outputStream, format, objectMapper)) {
+                for (Object row : rows) {
+                    writer.writeObject(row);
+                }
+            }
+        };
+    }
+
+    private StreamingResponseBody stream(ExportFormat format, RowSource source) {
+        return outputStream -> {
+            try (ReportExportWriter writer = new ReportExportWriter(outputStream, format, objectMapper)) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        source.writeTo(writer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+    }
+
+    private void writeSummaries(ReportExportWriter writer, String type, Stream<InvoiceSummary> summaries) throws IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (Iterator<InvoiceSummary> iterator = summaries.iterator(); iterator.hasNext(); ) {
+            InvoiceSummary summary = iterator.next();
+            row.put("type", type);
+            row.put("id", summary.getId());
+            row.put("date", summary.getCreatedAt());
+            row.put("quantity", summary.getQuantity());
+            row.put("total", summary.getTotal());
+            writer.writeRow(row);
+        }
+    }
+
+    private void writeSaleLines(ReportExportWriter writer, String type, Stream<ProductSaleLine> lines) throws IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (Iterator<ProductSaleLine> iterator = lines.iterator(); iterator.hasNext(); ) {
+            ProductSaleLine line = iterator.next();
+            row.put("productId", line.getProductId());
+            row.put("name", line.getProductName());
+            row.put("type", type);
+            row.put("date", line.getCreatedAt());
+            row.put("customerName", line.getCustomerName() != null ? line.getCustomerName() : "Retail Customer");
+            row.put("quantity", line.getQuantity());
+            row.put("total", line.getTotal());
+            writer.writeRow(row);
+        }
+    }
+
+    private void writeSupplierLines(ReportExportWriter writer, String type, Stream<SupplierDocumentLine> lines) throws IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (Iterator<SupplierDocumentLine> iterator = lines.iterator(); iterator.hasNext(); ) {
+            SupplierDocumentLine line = iterator.next();
+            row.put("supplierId", line.getSupplierId());
+            row.put("name", line.getSupplierName());
+            row.put("type", type);
+            row.put("id", line.getId());
+            row.put("date", line.getCreatedDate());
+            row.put("staffName", line.getStaffName());
+            row.put("total", line.getSubtotal());
+            row.put("discount", line.getDiscount());
+            row.put("totalPay", line.getTotal());
+            writer.writeRow(row);
+        }
+    }
+
+    private interface RowSource {
+        void writeTo(ReportExportWriter writer) throws IOException;
+    }
+}
@@ -0,0 +1,268 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.exception.CustomException;
+import com.springboot.store.exception.ResourceNotFoundException;
+import com.springboot.store.payload.report.ReportJobDTO;
+import com.springboot.store.service.*;
+import com.springboot.store.utils.ReportJobStatus;
+import com.springboot.store.utils.ReportJobType;
+import com.springboot.store.utils.TimeGranularity;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// jobs and their results live in memory only, finished jobs are dropped once the TTL has passed
+@Slf4j
+@Service
+public class ReportJobServiceImpl implements ReportJobService {
+    private final ThreadPoolTaskExecutor reportJobExecutor;
+    private final StaffService staffService;
+    private final ReportService reportService;
+    private final RecordOfProductSellService recordOfProductSellService;
+    private final RecordOfSaleService recordOfSaleService;
+    private final RecordOfProductService recordOfProductService;
+    private final RecordOfSupplierService recordOfSupplierService;
+    private final int maxJobsPerStore;
+    private final long resultTtl;
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    // queued and running jobs of each store
+    private final Map<Integer, AtomicInteger> activeJobs = new ConcurrentHashMap<>();
+
+    public ReportJobServiceImpl(StaffService staffService,
+                                ReportService reportService,
+                                RecordOfProductSellService recordOfProductSellService,
+                                RecordOfSaleService recordOfSaleService,
+                                RecordOfProductService recordOfProductService,
+                                RecordOfSupplierService recordOfSupplierService,
+                                @Value("${store.reports.jobs.max-per-store:2}") int maxJobsPerStore,
+                                @Value("${store.reports.jobs.result-ttl-ms:3600000}") long resultTtl,
+                                @Value("${store.reports.jobs.threads:4}") int threads,
+                                @Value("${store.reports.jobs.queue-capacity:50}") int queueCapacity) {
+        this.staffService = staffService;
+        this.reportService = reportService;
+        this.recordOfProductSellService = recordOfProductSellService;
+        this.recordOfSaleService = recordOfSaleService;
+        this.recordOfProductService = recordOfProductService;
+        this.recordOfSupplierService = recordOfSupplierService;
+        this.maxJobsPerStore = maxJobsPerStore;
+        this.resultTtl = resultTtl;
+        // kept out of the context so it does not replace the executor Spring MVC uses for async requests.
+        // A full queue rejects new jobs instead of growing
+        this.reportJobExecutor = new ThreadPoolTaskExecutor();
+        this.reportJobExecutor.setCorePoolSize(threads);
+        this.reportJobExecutor.setMaxPoolSize(threads);
+        this.reportJobExecutor.setQueueCapacity(queueCapacity);
+        this.reportJobExecutor.setThreadNamePrefix("report-job-");
+        this.reportJobExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reportJobExecutor.shutdown();
+    }
+
+    @Override
+    public ReportJobDTO submitJob(String type, Date startDate, Date endDate) {
+        ReportJobType jobType = ReportJobType.fromParam(type);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+
+        AtomicInteger active = activeJobs.computeIfAbsent(storeId, id -> new AtomicInteger());
+        if (active.incrementAndGet() > maxJobsPerStore) {
+            active.decrementAndGet();
+            throw new CustomException("Too many report jobs are running for this store, try again later", HttpStatus.TOO_MANY_REQUESTS);
+        }
+
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), storeId, jobType, startDate, endDate);
+        jobs.put(job.id, job);
+        // the report services read the authorized staff, so the worker gets the caller's security context
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        securityContext.setAuthentication(SecurityContextHolder.getContext().getAuthentication());
+        try {
+            job.future = reportJobExecutor.submit(new DelegatingSecurityContextCallable<>(() -> run(job), securityContext));
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.id);
+            release(job);
+            throw new CustomException("The report queue is full, try again later", HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return mapToDTO(job);
+    }
+
+    @Override
+    public ReportJobDTO getJob(String jobId) {
+        return mapToDTO(findJob(jobId));
+    }
+
+    @Override
+    public Object getJobResult(String jobId) {
+        ReportJob job = findJob(jobId);
+        synchronized (job) {
+            if (job.status == ReportJobStatus.DONE) {
+                return job.result;
+            }
+            if (job.status == ReportJobStatus.FAILED) {
+                throw new CustomException("Report job failed: " + job.error, HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+            throw new CustomException("Report job is " + job.status, HttpStatus.CONFLICT);
+        }
+    }
+
+    @Override
+    public ReportJobDTO cancelJob(String jobId) {
+        ReportJob job = findJob(jobId);
+        ReportJobStatus previous;
+        synchronized (job) {
+            previous = job.status;
+            if (previous == ReportJobStatus.QUEUED || previous == ReportJobStatus.RUNNING) {
+                job.status = ReportJobStatus.CANCELLED;
+                job.finishedAt = new Date();
+            }
+        }
+        if (previous == ReportJobStatus.QUEUED || previous == ReportJobStatus.RUNNING) {
+            if (job.future != null) {
+                job.future.cancel(true);
+            }
+            // a running job frees its slot when the worker returns
+            if (previous == ReportJobStatus.QUEUED) {
+                release(job);
+            }
+        }
+        return mapToDTO(job);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${store.reports.jobs.cleanup-interval-ms:60000}")
+    public void removeExpiredJobs() {
+        long now = System.currentTimeMillis();
+        int before = jobs.size();
+        jobs.values().removeIf(job -> {
+            synchronized (job) {
+                return job.finishedAt != null && now - job.finishedAt.getTime() > resultTtl;
+            }
+        });
+        if (jobs.size() < before) {
+            log.debug("Removed {} expired report jobs", before - jobs.size());
+        }
+    }
+
+    private Object run(ReportJob job) {
+        synchronized (job) {
+            if (job.status != ReportJobStatus.QUEUED) {
+                return null;
+            }
+            job.status = ReportJobStatus.RUNNING;
+            job.startedAt = new Date();
+        }
+        try {
+            Object result = compute(job);
+            synchronized (job) {
+                if (job.status == ReportJobStatus.RUNNING) {
+                    job.result = result;
+                    job.status = ReportJobStatus.DONE;
+                    job.finishedAt = new Date();
+                }
+            }
+            return result;
+        } catch (RuntimeException e) {
+            synchronized (job) {
+                if (job.status == ReportJobStatus.RUNNING) {
+                    job.error = e.getMessage();
+                    job.status = ReportJobStatus.FAILED;
+                    job.finishedAt = new Date();
+                }
+            }
+            log.warn("Report job {} ({}) failed", job.id, job.type.getPath(), e);
+            return null;
+        } finally {
+            release(job);
+        }
+    }
+
+    private Object compute(ReportJob job) {
+        return switch (job.type) {
+            case SALES -> reportService.getSalesReport(job.start, job.end);
+            case SALES_WITH_PROFIT -> reportService.getSalesReportWithProfit(job.start, job.end, TimeGranularity.DAY);
+            case SALES_OF_STAFF -> reportService.getSalesReportOfStaff(job.start, job.end);
+            case SALES_PRODUCT_PROFIT -> reportService.getSalesProductProfit(job.start, job.end, null);
+            case SALES_OF_CUSTOMER -> reportService.getSalesReportOfCustomer(job.start, job.end);
+            case FINANCIAL_REPORT -> reportService.getFinancialReport(job.start, job.end);
+            case RECORD_OF_PRODUCT_SELL -> recordOfProductSellService.getAllRecordOfProductSell(job.start, job.end);
+            case RECORD_OF_SALE -> recordOfSaleService.getAllRecordOfSale(job.start, job.end, TimeGranularity.DAY);
+            case RECORD_OF_PRODUCT -> recordOfProductService.getAllRecordOfProduct(job.start, job.end);
+            case RECORD_OF_SUPPLIER -> recordOfSupplierService.getAllRecordOfSupplier(job.start, job.end);
+        };
+    }
+
+    private void release(ReportJob job) {
+        if (job.released.compareAndSet(false, true)) {
+            activeJobs.get(job.storeId).decrementAndGet();
+        }
+    }
+
+    // other stores' jobs are reported as missing
+    private ReportJob findJob(String jobId) {
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        ReportJob job = jobs.get(jobId);
+        if (job == null || job.storeId != storeId) {
+            throw new ResourceNotFoundException("Report job", "id", jobId);
+        }
+        return job;
+    }
+
+    private ReportJobDTO mapToDTO(ReportJob job) {
+        synchronized (job) {
+            return ReportJobDTO.builder()
+                    .jobId(job.id)
+                    .type(job.type.getPath())
+                    .start(job.start)
+                    .end(job.end)
+                    .status(job.status)
+                    .createdAt(job.createdAt)
+                    .startedAt(job.startedAt)
+                    .finishedAt(job.finishedAt)
+                    .error(job.error)
+                    .build();
+        }
+    }
+
+    private static class ReportJob {
+        private final String id;
+        private final int storeId;
+        private final ReportJobType type;
+        private final Date start;
+        private final Date end;
+        private final Date createdAt = new Date();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile Future<Object> future;
+        // guarded by the job itself
+        private ReportJobStatus status = ReportJobStatus.QUEUED;
+        private Date startedAt;
+        private Date finishedAt;
+        private Object result;
+        private String error;
+
+        private ReportJob(String id, int storeId, ReportJobType type, Date start, Date end) {
+            this.id = id;
+            this.storeId = storeId;
+            this.type = type;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
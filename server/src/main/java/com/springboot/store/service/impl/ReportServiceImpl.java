@@ -1,30 +1,100 @@
 package com.springboot.store.service.impl;
 
 import com.springboot.store.entity.*;
-import com.springboot.store.payload.ListBonusAndPunishForStaffDTO;
-import com.springboot.store.payload.ListBonusForStaffDTO;
+import com.springboot.store.exception.CustomException;
+import com.springboot.store.payload.StaffPayrollDTO;
 import com.springboot.store.payload.report.*;
-import com.springboot.store.repository.CustomerRepository;
+import com.springboot.store.repository.FinancialSnapshotRepository;
 import com.springboot.store.repository.InvoiceRepository;
-import com.springboot.store.repository.ProductRepository;
 import com.springboot.store.repository.ReturnInvoiceRepository;
-import com.springboot.store.service.ListBonusAndPunishForStaffService;
+import com.springboot.store.repository.projection.CustomerReturnSummary;
+import com.springboot.store.repository.projection.CustomerSalesSummary;
+import com.springboot.store.repository.projection.ProductCustomerCount;
+import com.springboot.store.repository.projection.ProductSalesSummary;
+import com.springboot.store.repository.projection.StaffSalesSummary;
+import com.springboot.store.service.DailySalesRollupService;
+import com.springboot.store.service.PayrollAggregationService;
+import com.springboot.store.service.ReportCacheService;
 import com.springboot.store.service.ReportService;
 import com.springboot.store.service.StaffService;
-import lombok.RequiredArgsConstructor;
-import org.apache.commons.lang3.time.DateUtils;
+import com.springboot.store.utils.HyperLogLog;
+import com.springboot.store.utils.IntKeyAggregator;
+import com.springboot.store.utils.RankingMetric;
+import com.springboot.store.utils.TimeGranularity;
+import com.springboot.store.utils.TopN;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class ReportServiceImpl implements ReportService {
+    // walk-in sales have no customer, they are grouped under this key
+    private static final int WALK_IN_CUSTOMER_KEY = Integer.MIN_VALUE;
+    private static final String WALK_IN_CUSTOMER_NAME = "Khách yêu";
+    private static final int MAX_TOP_LIMIT = 100;
+
     private final StaffService staffService;
     private final InvoiceRepository invoiceRepository;
     private final ReturnInvoiceRepository returnInvoiceRepository;
-    private final CustomerRepository customerRepository;
-    private final ProductRepository productRepository;
+    private final DailySalesRollupService dailySalesRollupService;
+    private final ReportCacheService reportCacheService;
+    private final FinancialSnapshotRepository financialSnapshotRepository;
+    private final PayrollAggregationService payrollAggregationService;
+    private final int exactCustomersMaxDays;
+    private final TransactionTemplate transactionTemplate;
+    // runs the independent phases of one report side by side. Kept out of the context like the report job
+    // executor; when it is saturated the request thread runs the phase itself instead of failing
+    private final ThreadPoolTaskExecutor reportPhaseExecutor;
+
+    public ReportServiceImpl(StaffService staffService,
+                             InvoiceRepository invoiceRepository,
+                             ReturnInvoiceRepository returnInvoiceRepository,
+                             DailySalesRollupService dailySalesRollupService,
+                             ReportCacheService reportCacheService,
+                             FinancialSnapshotRepository financialSnapshotRepository,
+                             PayrollAggregationService payrollAggregationService,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${store.reports.customers.exact-max-days:31}") int exactCustomersMaxDays,
+                             @Value("${store.reports.phases.threads:8}") int threads,
+                             @Value("${store.reports.phases.queue-capacity:32}") int queueCapacity) {
+        this.staffService = staffService;
+        this.invoiceRepository = invoiceRepository;
+        this.returnInvoiceRepository = returnInvoiceRepository;
+        this.dailySalesRollupService = dailySalesRollupService;
+        this.reportCacheService = reportCacheService;
+        this.financialSnapshotRepository = financialSnapshotRepository;
+        this.payrollAggregationService = payrollAggregationService;
+        this.exactCustomersMaxDays = exactCustomersMaxDays;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.reportPhaseExecutor = new ThreadPoolTaskExecutor();
+        this.reportPhaseExecutor.setCorePoolSize(threads);
+        this.reportPhaseExecutor.setMaxPoolSize(threads);
+        this.reportPhaseExecutor.setQueueCapacity(queueCapacity);
+        this.reportPhaseExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        this.reportPhaseExecutor.setThreadNamePrefix("report-phase-");
+        this.reportPhaseExecutor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reportPhaseExecutor.shutdown();
+    }
 
     @Override
     public Map<String, Object> getSalesReport(Date startDate, Date endDate) {
@@ -32,26 +102,28 @@ public class ReportServiceImpl implements ReportService {
 
         int storeId = staffService.getAuthorizedStaff().getStore().getId();
         Map<String, Object> salesReport = new HashMap<>();
-        salesReport.put("invoices", invoiceRepository.findByStoreIdAndCreatedAtBetween(storeId, startDate, endDate)
+        salesReport.put("invoices", reportCacheService.getRows(storeId, "sales.invoices", startDate, endDate,
+                        (start, end) -> invoiceRepository.findInvoiceSummary(storeId, start, end))
                 .stream()
                 .map(invoice -> {
                     Map<String, Object> invoiceMap = new HashMap<>();
                     invoiceMap.put("invoiceId", invoice.getId());
                     invoiceMap.put("date", invoice.getCreatedAt());
-                    invoiceMap.put("quantity", invoice.getInvoiceDetails().stream().mapToInt(InvoiceDetail::getQuantity).sum());
+                    invoiceMap.put("quantity", (int) invoice.getQuantity());
                     invoiceMap.put("total", invoice.getTotal());
                     return invoiceMap;
                 })
                 .toList());
 
-        salesReport.put("returns", returnInvoiceRepository.findByStoreIdAndCreatedAtBetween(storeId, startDate, endDate)
+        salesReport.put("returns", reportCacheService.getRows(storeId, "sales.returns", startDate, endDate,
+                        (start, end) -> returnInvoiceRepository.findReturnSummary(storeId, start, end))
                 .stream()
                 .map(returnInvoice -> {
                     Map<String, Object> invoiceMap = new HashMap<>();
                     invoiceMap.put("returnId", returnInvoice.getId());
                     invoiceMap.put("date", returnInvoice.getCreatedAt());
-                    invoiceMap.put("quantity", returnInvoice.getReturnDetails().stream().mapToInt(ReturnDetail::getQuantity).sum());
-                    invoiceMap.put("total", returnInvoice.getTotal());
+                    invoiceMap.put("quantity", (int) returnInvoice.getQuantity());
+                    invoiceMap.put("total", (int) returnInvoice.getTotal());
                     return invoiceMap;
                 })
                 .toList());
@@ -59,322 +131,418 @@ public class ReportServiceImpl implements ReportService {
     }
 
     @Override
-    public List<SalesReportWithProfit> getSalesReportWithProfit(Date startDate, Date endDate) {
+    public List<SalesReportWithProfit> getSalesReportWithProfit(Date startDate, Date endDate, TimeGranularity granularity) {
         endDate = new Date(endDate.getTime() + 86400000);
         int storeId = staffService.getAuthorizedStaff().getStore().getId();
-        List<SalesReportWithProfit> salesReport = new ArrayList<>(invoiceRepository.findByStoreIdAndCreatedAtBetween(storeId, startDate, endDate)
-                .stream()
-                .map(invoice -> {
-                    SalesReportWithProfit profit = SalesReportWithProfit.builder()
-                            .date(invoice.getCreatedAt())
-                            .revenue(invoice.getTotal())
-                            .costPrice(invoice.getInvoiceDetails()
-                                    .stream()
-                                    .map(invoiceDetail -> {
-                                        Product product = productRepository.findById(invoiceDetail.getProductId()).orElseThrow();
-                                        double originalPrices = product.getOriginalPrices()
-                                                .stream()
-                                                .filter(originalPrice -> originalPrice.getCreatedAt().before(invoice.getCreatedAt()))
-                                                .reduce((first, second) -> second)
-                                                .orElseThrow()
-                                                .getValue();
-                                        return originalPrices * invoiceDetail.getQuantity();
-                                    })
-                                    .reduce(0.0, Double::sum))
-                            .profit(0.0)
-                            .build();
-                    profit.setProfit(profit.getRevenue() - profit.getCostPrice());
-                    return profit;
-                })
-                .toList());
-
-        List<ReturnInvoice> returnInvoices = returnInvoiceRepository.findByStoreIdAndCreatedAtBetween(storeId, startDate, endDate);
-
-        for (ReturnInvoice returnInvoice : returnInvoices) {
-            // find same date (not time) invoice in salesReport and update revenue, costPrice, profit
-            for (SalesReportWithProfit salesReportWithProfit : salesReport) {
-                if (DateUtils.isSameDay(salesReportWithProfit.getDate(), returnInvoice.getCreatedAt())) {
-                    salesReportWithProfit.setRevenue(salesReportWithProfit.getRevenue() - returnInvoice.getTotal());
-                    salesReportWithProfit.setProfit(salesReportWithProfit.getRevenue() - salesReportWithProfit.getCostPrice());
-                } else {
-                    SalesReportWithProfit profit = SalesReportWithProfit.builder()
-                            .date(returnInvoice.getCreatedAt())
-                            .revenue(-returnInvoice.getTotal())
-                            .costPrice(0.0)
-                            .profit(-returnInvoice.getTotal())
-                            .build();
-                    salesReport.add(profit);
-                }
-            }
-        }
-
-        salesReport.sort(Comparator.comparing(SalesReportWithProfit::getDate));
-
-        List<SalesReportWithProfit> salesReportWithProfits = new ArrayList<>();
-        for (SalesReportWithProfit salesReportWithProfit : salesReport) {
-            boolean found = false;
-            for (SalesReportWithProfit salesReportWithProfit1 : salesReportWithProfits) {
-                if (DateUtils.isSameDay(salesReportWithProfit.getDate(), salesReportWithProfit1.getDate())) {
-                    salesReportWithProfit1.setRevenue(salesReportWithProfit1.getRevenue() + salesReportWithProfit.getRevenue());
-                    salesReportWithProfit1.setCostPrice(salesReportWithProfit1.getCostPrice() + salesReportWithProfit.getCostPrice());
-                    salesReportWithProfit1.setProfit(salesReportWithProfit1.getProfit() + salesReportWithProfit.getProfit());
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
-                salesReportWithProfits.add(salesReportWithProfit);
-            }
-        }
-
-        return salesReportWithProfits;
+        return toSalesReportWithProfit(dailySalesRollupService.getBuckets(storeId, startDate, endDate, granularity), granularity);
     }
 
     @Override
     public List<SalesReportOfStaff> getSalesReportOfStaff(Date startDate, Date endDate) {
         endDate = new Date(endDate.getTime() + 86400000);
         int storeId = staffService.getAuthorizedStaff().getStore().getId();
-        List<Object[]> listIn = invoiceRepository.findSalesReportOfStaff(storeId, startDate, endDate);
-        List<SalesReportOfStaff> salesReport = new ArrayList<>();
+        return aggregateSalesReportOfStaff(
+                reportCacheService.getRows(storeId, "sales-of-staff.invoices", startDate, endDate,
+                        (start, end) -> invoiceRepository.findSalesReportOfStaff(storeId, start, end)),
+                reportCacheService.getRows(storeId, "sales-of-staff.returns", startDate, endDate,
+                        (start, end) -> returnInvoiceRepository.findSalesReportOfStaff(storeId, start, end)));
+    }
 
-        for (Object[] objects : listIn) {
+    @Override
+    public List<ProductProfit> getSalesProductProfit(Date startDate, Date endDate, Boolean exactCustomers) {
+        endDate = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        List<ProductProfit> productProfits = aggregateProductProfit(
+                reportCacheService.getRows(storeId, "product-sales.invoices", startDate, endDate,
+                        (start, end) -> invoiceRepository.findProductSalesSummary(storeId, start, end)),
+                reportCacheService.getRows(storeId, "product-sales.returns", startDate, endDate,
+                        (start, end) -> returnInvoiceRepository.findProductReturnSummary(storeId, start, end)));
+        countDistinctCustomers(storeId, startDate, endDate, exactCustomers, productProfits);
+        return productProfits;
+    }
 
-            salesReport.add(SalesReportOfStaff.builder()
-                    .staffId(Integer.parseInt(objects[0].toString()))
-                    .staffName(staffService.getStaffById(Integer.parseInt(objects[0].toString())).getName())
-                    .revenueMoney(Double.parseDouble(objects[1].toString()))
-                    .build());
-        }
+    @Override
+    public List<SalesReportOfCustomer> getSalesReportOfCustomer(Date startDate, Date endDate) {
+        endDate = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        return aggregateSalesReportOfCustomer(
+                reportCacheService.getRows(storeId, "sales-of-customer.invoices", startDate, endDate,
+                        (start, end) -> invoiceRepository.findSalesReportOfCustomer(storeId, start, end)),
+                reportCacheService.getRows(storeId, "sales-of-customer.returns", startDate, endDate,
+                        (start, end) -> returnInvoiceRepository.findSalesReportOfCustomer(storeId, start, end)));
+    }
 
-        List<Object[]> listRe = returnInvoiceRepository.findSalesReportOfStaff(storeId, startDate, endDate);
-        for (Object[] objects : listRe) {
-            String staffId = objects[0].toString();
-            double returnMoney = Double.parseDouble(objects[1].toString());
-            // find same staffId in salesReport and update returnMoney if not found add new
-            boolean found = false;
-            for (SalesReportOfStaff salesReportOfStaff : salesReport) {
-                if (salesReportOfStaff.getStaffId().toString().equals(staffId)) {
-                    salesReportOfStaff.setReturnMoney(returnMoney);
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
-                salesReport.add(SalesReportOfStaff.builder()
-                        .staffId(Integer.parseInt(staffId))
-                        .staffName(staffService.getStaffById(Integer.parseInt(staffId)).getName())
-                        .returnMoney(returnMoney)
-                        .build());
-            }
-        }
+    @Override
+    public List<ProductProfit> getTopProducts(Date startDate, Date endDate, RankingMetric metric, int limit) {
+        checkTopLimit(limit);
+        Comparator<ProductProfit> order = switch (metric) {
+            case REVENUE -> Comparator.comparingDouble(ProductProfit::getNetRevenue);
+            case PROFIT -> Comparator.comparingDouble(ProductProfit::getProfit);
+            case QUANTITY -> Comparator.comparingDouble(ProductProfit::getTotalQuantity);
+            case RETURN_RATE -> Comparator.comparingDouble(product -> returnRate(product.getReturnRevenue(), product.getRevenue()));
+        };
+        endDate = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        List<ProductProfit> topProducts = topOf(mergeProductProfit(
+                        reportCacheService.getRows(storeId, "product-sales.invoices", startDate, endDate,
+                                (start, end) -> invoiceRepository.findProductSalesSummary(storeId, start, end)),
+                        reportCacheService.getRows(storeId, "product-sales.returns", startDate, endDate,
+                                (start, end) -> returnInvoiceRepository.findProductReturnSummary(storeId, start, end))),
+                limit, order.reversed().thenComparing(ProductProfit::getProductId, Comparator.nullsLast(Comparator.naturalOrder())));
+        countDistinctCustomers(storeId, startDate, endDate, null, topProducts);
+        return topProducts;
+    }
 
-        return salesReport;
+    @Override
+    public List<SalesReportOfCustomer> getTopCustomers(Date startDate, Date endDate, RankingMetric metric, int limit) {
+        checkTopLimit(limit);
+        Comparator<SalesReportOfCustomer> order = switch (metric) {
+            case REVENUE -> Comparator.comparingDouble(SalesReportOfCustomer::getNetRevenue);
+            case RETURN_RATE -> Comparator.comparingDouble(customer -> returnRate(customer.getReturnRevenue(), customer.getRevenue()));
+            default -> throw new CustomException("Customers cannot be ranked by " + metric.getParam(), HttpStatus.BAD_REQUEST);
+        };
+        endDate = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        // walk-in sales have no id and rank after every customer with the same figure
+        return topOf(mergeSalesReportOfCustomer(
+                        reportCacheService.getRows(storeId, "sales-of-customer.invoices", startDate, endDate,
+                                (start, end) -> invoiceRepository.findSalesReportOfCustomer(storeId, start, end)),
+                        reportCacheService.getRows(storeId, "sales-of-customer.returns", startDate, endDate,
+                                (start, end) -> returnInvoiceRepository.findSalesReportOfCustomer(storeId, start, end))),
+                limit, order.reversed().thenComparing(SalesReportOfCustomer::getCustomerId, Comparator.nullsLast(Comparator.naturalOrder())));
     }
 
     @Override
-    public List<ProductProfit> getSalesProductProfit(Date startDate, Date endDate) {
+    public List<SalesReportOfStaff> getTopStaff(Date startDate, Date endDate, RankingMetric metric, int limit) {
+        checkTopLimit(limit);
+        Comparator<SalesReportOfStaff> order = switch (metric) {
+            case REVENUE -> Comparator.comparingDouble(staff -> staff.getRevenueMoney() - staff.getReturnMoney());
+            case RETURN_RATE -> Comparator.comparingDouble(staff -> returnRate(staff.getReturnMoney(), staff.getRevenueMoney()));
+            default -> throw new CustomException("Staff cannot be ranked by " + metric.getParam(), HttpStatus.BAD_REQUEST);
+        };
         endDate = new Date(endDate.getTime() + 86400000);
         int storeId = staffService.getAuthorizedStaff().getStore().getId();
-        List<ProductProfit> productProfits = new ArrayList<>();
-        List<Invoice> invoices = invoiceRepository.findByStoreIdAndCreatedAtBetween(storeId, startDate, endDate);
-
-        for (Invoice invoice : invoices) {
-            for (InvoiceDetail invoiceDetail : invoice.getInvoiceDetails()) {
-                Product product = productRepository.findById(invoiceDetail.getProductId()).orElseThrow();
-                double originalPrices = product.getOriginalPrices()
-                        .stream()
-                        .filter(originalPrice -> originalPrice.getCreatedAt().before(invoice.getCreatedAt()))
-                        .reduce((first, second) -> second)
-                        .orElseThrow()
-                        .getValue();
-                double profit = invoiceDetail.getQuantity() * (invoiceDetail.getPrice() - originalPrices);
-                ProductProfit productProfit = ProductProfit.builder()
-                        .productId(invoiceDetail.getProductId())
-                        .profit(profit)
-                        .totalCustomer(1)
-                        .totalQuantity(invoiceDetail.getQuantity())
-                        .revenue(invoiceDetail.getPrice() * invoiceDetail.getQuantity())
-                        .totalReturn(0)
-                        .returnRevenue(0)
-                        .netRevenue(invoiceDetail.getPrice() * invoiceDetail.getQuantity())
-                        .build();
-
-                boolean found = false;
-                for (ProductProfit productProfit1 : productProfits) {
-                    if (productProfit1.getProductId().equals(productProfit.getProductId())) {
-                        productProfit1.setProfit(productProfit1.getProfit() + profit);
-                        productProfit1.setTotalCustomer(productProfit1.getTotalCustomer() + 1);
-                        productProfit1.setTotalQuantity(productProfit1.getTotalQuantity() + invoiceDetail.getQuantity());
-                        productProfit1.setRevenue(productProfit1.getRevenue() + invoiceDetail.getPrice() * invoiceDetail.getQuantity());
-                        productProfit1.setNetRevenue(productProfit1.getNetRevenue() + invoiceDetail.getPrice() * invoiceDetail.getQuantity());
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) {
-                    productProfits.add(productProfit);
-                }
-            }
-        }
+        return topOf(mergeSalesReportOfStaff(
+                        reportCacheService.getRows(storeId, "sales-of-staff.invoices", startDate, endDate,
+                                (start, end) -> invoiceRepository.findSalesReportOfStaff(storeId, start, end)),
+                        reportCacheService.getRows(storeId, "sales-of-staff.returns", startDate, endDate,
+                                (start, end) -> returnInvoiceRepository.findSalesReportOfStaff(storeId, start, end))),
+                limit, order.reversed().thenComparing(SalesReportOfStaff::getStaffId, Comparator.nullsLast(Comparator.naturalOrder())));
+    }
 
-        List<ReturnInvoice> returnInvoices = returnInvoiceRepository.findByStoreIdAndCreatedAtBetween(storeId, startDate, endDate);
-        for (ReturnInvoice returnInvoice : returnInvoices) {
-            for (ReturnDetail returnDetail : returnInvoice.getReturnDetails()) {
-                Product product = returnDetail.getProduct();
-                double originalPrices = product.getOriginalPrices()
-                        .stream()
-                        .filter(originalPrice -> originalPrice.getCreatedAt().before(returnInvoice.getCreatedAt()))
-                        .reduce((first, second) -> second)
-                        .orElseThrow()
-                        .getValue();
-                double profit = returnDetail.getQuantity() * (returnDetail.getPrice() - originalPrices);
-                ProductProfit productProfit = ProductProfit.builder()
-                        .productId(returnDetail.getProduct().getId())
-                        .profit(profit)
-                        .totalCustomer(0)
-                        .totalQuantity(0)
-                        .revenue(0)
-                        .totalReturn(1)
-                        .returnRevenue(returnDetail.getPrice() * returnDetail.getQuantity())
-                        .netRevenue(-returnDetail.getPrice() * returnDetail.getQuantity())
-                        .build();
-
-                boolean found = false;
-                for (ProductProfit productProfit1 : productProfits) {
-                    if (productProfit1.getProductId().equals(productProfit.getProductId())) {
-                        productProfit1.setProfit(productProfit1.getProfit() + profit);
-                        productProfit1.setTotalReturn(productProfit1.getTotalReturn() + 1);
-                        productProfit1.setReturnRevenue(productProfit1.getReturnRevenue() + returnDetail.getPrice() * returnDetail.getQuantity());
-                        productProfit1.setNetRevenue(productProfit1.getNetRevenue() - returnDetail.getPrice() * returnDetail.getQuantity());
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) {
-                    productProfits.add(productProfit);
-                }
+    @Override
+    public FinancialReport getFinancialReport(Date startDate, Date endDate) {
+        endDate = new Date(endDate.getTime() + 86400000);
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        long started = System.nanoTime();
+
+        // closed months are read from their snapshot, only the stretches between them are computed
+        FinancialReport financialReport = new FinancialReport();
+        Date liveStart = startDate;
+        int closedMonths = 0;
+        // summed over the live stretches
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        for (FinancialSnapshot snapshot : financialSnapshotRepository.findWithinRange(storeId, startDate, endDate)) {
+            if (liveStart.before(snapshot.getPeriodStart())) {
+                addTotals(financialReport, computeFinancialReport(storeId, liveStart, snapshot.getPeriodStart(), timings));
             }
+            addTotals(financialReport, toFinancialReport(snapshot));
+            liveStart = snapshot.getPeriodEnd();
+            closedMonths++;
         }
+        if (liveStart.before(endDate)) {
+            addTotals(financialReport, computeFinancialReport(storeId, liveStart, endDate, timings));
+        }
+        computeProfits(financialReport);
 
-        productProfits.sort(Comparator.comparing(ProductProfit::getNetRevenue).reversed());
-
-        return productProfits;
+        // phases missing from the timings were served from the report cache or a snapshot
+        log.info("Financial report of store {} built in {} ms, {} closed months, phases {}", storeId, (System.nanoTime() - started) / 1_000_000, closedMonths, timings);
+        return financialReport;
     }
 
     @Override
-    public List<SalesReportOfCustomer> getSalesReportOfCustomer(Date startDate, Date endDate) {
-        endDate = new Date(endDate.getTime() + 86400000);
-        int storeId = staffService.getAuthorizedStaff().getStore().getId();
-        List<Object[]> listIn = invoiceRepository.findSalesReportOfCustomer(storeId, startDate, endDate);
-        List<SalesReportOfCustomer> salesReport = new ArrayList<>();
-
-        for (Object[] objects : listIn) {
-            salesReport.add(SalesReportOfCustomer.builder()
-                    .customerId(objects[0] == null ? null : Integer.parseInt(objects[0].toString()))
-                    .customerName(objects[0] == null ? "Khách yêu" : customerRepository.findById(Integer.parseInt(objects[0].toString())).orElseThrow().getName())
-                    .subTotal(Double.parseDouble(objects[1].toString()))
-                    .discountValue(Double.parseDouble(objects[2].toString()))
-                    .revenue(Double.parseDouble(objects[3].toString()))
-                    .netRevenue(Double.parseDouble(objects[3].toString()) - Double.parseDouble(objects[2].toString()))
-                    .build());
+    public FinancialReport computeFinancialReport(int storeId, Date startDate, Date endDate) {
+        return computeFinancialReport(storeId, startDate, endDate, new ConcurrentHashMap<>());
+    }
+
+    private FinancialReport computeFinancialReport(int storeId, Date startDate, Date endDate, Map<String, Long> timings) {
+        // staff sums take inclusive bounds
+        Date staffEnd = new Date(endDate.getTime() - 1);
+        long started = System.nanoTime();
+
+        // the sales side and the staff side share nothing, each runs in its own read-only transaction.
+        // Salary, bonus and penalty all come from one payroll read of the store
+        Future<List<DailySalesRollup>> rollups = submitPhase("sales", timings, () -> getRollups(storeId, startDate, endDate));
+        double[] staffCosts = reportCacheService.get(storeId, ReportCacheService.STAFF_COSTS, startDate, staffEnd,
+                () -> awaitPhase(submitPhase("payroll", timings, () -> staffCostsOf(payrollAggregationService.getStorePayroll(storeId, startDate, staffEnd)))));
+
+        FinancialReport financialReport = new FinancialReport();
+        for (DailySalesRollup rollup : awaitPhase(rollups)) {
+            financialReport.setSalesRevenue(financialReport.getSalesRevenue() + rollup.getRevenue());
+            financialReport.setAdjustmentDiscount(financialReport.getAdjustmentDiscount() + rollup.getDiscount());
+            financialReport.setAdjustmentReturn(financialReport.getAdjustmentReturn() + rollup.getReturnRevenue());
+            financialReport.setCostOfGoodsSold(financialReport.getCostOfGoodsSold() + rollup.getCostOfGoodsSold() - rollup.getReturnCostOfGoods());
         }
+        financialReport.setSalaryStaff(staffCosts[0]);
+        financialReport.setBonusStaff(staffCosts[1]);
+        financialReport.setPenaltyStaff(staffCosts[2]);
+        computeProfits(financialReport);
 
-        List<ReturnInvoice> listRe = returnInvoiceRepository.findByStoreIdAndCreatedAtBetween(storeId, startDate, endDate);
-
-        for (ReturnInvoice returnInvoice : listRe) {
-            SalesReportOfCustomer salesReportOfCustomer = SalesReportOfCustomer.builder()
-                    .customerId(returnInvoice.getInvoice().getCustomer() == null ? null : returnInvoice.getInvoice().getCustomer().getId())
-                    .customerName(returnInvoice.getInvoice().getCustomer() == null ? "Khách yêu" : returnInvoice.getInvoice().getCustomer().getName())
-                    .subTotal(0)
-                    .discountValue(0)
-                    .revenue(0)
-                    .returnRevenue(returnInvoice.getTotal())
-                    .netRevenue(-returnInvoice.getTotal())
-                    .build();
-            boolean found = false;
-            for (SalesReportOfCustomer salesReportOfCustomer1 : salesReport) {
-                if (salesReportOfCustomer1.getCustomerId() == null) {
-                    if (salesReportOfCustomer1.getCustomerName().equals(salesReportOfCustomer.getCustomerName())) {
-                        salesReportOfCustomer1.setReturnRevenue(salesReportOfCustomer1.getReturnRevenue() + returnInvoice.getTotal());
-                        salesReportOfCustomer1.setNetRevenue(salesReportOfCustomer1.getNetRevenue() - returnInvoice.getTotal());
-                        found = true;
-                        break;
-                    }
-                } else if (salesReportOfCustomer1.getCustomerId().equals(salesReportOfCustomer.getCustomerId())) {
-                    salesReportOfCustomer1.setReturnRevenue(salesReportOfCustomer1.getReturnRevenue() + returnInvoice.getTotal());
-                    salesReportOfCustomer1.setNetRevenue(salesReportOfCustomer1.getNetRevenue() - returnInvoice.getTotal());
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
-                salesReport.add(salesReportOfCustomer);
+        // phases missing from the timings were served from the report cache
+        log.debug("Financial figures of store {} for {} - {} computed in {} ms, phases {}", storeId, startDate, endDate, (System.nanoTime() - started) / 1_000_000, timings);
+        return financialReport;
+    }
+
+    // salary, bonus and penalty (negative) of the store, staff without a known salary type are left out of the salary
+    static double[] staffCostsOf(List<StaffPayrollDTO> payrolls) {
+        double[] staffCosts = new double[3];
+        for (StaffPayrollDTO payroll : payrolls) {
+            if (payroll.getSalary() != null) {
+                staffCosts[0] += payroll.getSalary();
             }
+            staffCosts[1] += payroll.getBonus();
+            staffCosts[2] -= payroll.getPenalty();
         }
-        salesReport.sort(Comparator.comparing(SalesReportOfCustomer::getNetRevenue).reversed());
-
-        return salesReport;
+        return staffCosts;
     }
 
     @Override
-    public FinancialReport getFinancialReport(Date startDate, Date endDate) {
+    public int rebuildDailySalesRollup(Date startDate, Date endDate) {
         endDate = new Date(endDate.getTime() + 86400000);
         int storeId = staffService.getAuthorizedStaff().getStore().getId();
-        FinancialReport financialReport = new FinancialReport();
+        int rebuilt = dailySalesRollupService.rebuild(storeId, startDate, endDate);
+        reportCacheService.invalidateStore(storeId);
+        return rebuilt;
+    }
 
-        List<Invoice> invoices = invoiceRepository.findByStoreIdAndCreatedAtBetween(storeId, startDate, endDate);
-
-        for (Invoice invoice : invoices) {
-            financialReport.setSalesRevenue(financialReport.getSalesRevenue() + invoice.getTotal());
-            financialReport.setCostOfGoodsSold(financialReport.getCostOfGoodsSold() + invoice.getInvoiceDetails()
-                    .stream()
-                    .mapToDouble(invoiceDetail -> {
-                        Product product = productRepository.findById(invoiceDetail.getProductId()).orElseThrow();
-                        double originalPrices = product.getOriginalPrices()
-                                .stream()
-                                .filter(originalPrice -> originalPrice.getCreatedAt().before(invoice.getCreatedAt()))
-                                .reduce((first, second) -> second)
-                                .orElseThrow()
-                                .getValue();
-                        return originalPrices * invoiceDetail.getQuantity();
-                    })
-                    .sum());
-            financialReport.setAdjustmentDiscount(financialReport.getAdjustmentDiscount() + invoice.getDiscountValue());
-        }
+    // figures of a snapshot, profits are left to computeProfits
+    static FinancialReport toFinancialReport(FinancialSnapshot snapshot) {
+        return FinancialReport.builder()
+                .salesRevenue(snapshot.getSalesRevenue())
+                .adjustmentDiscount(snapshot.getAdjustmentDiscount())
+                .adjustmentReturn(snapshot.getAdjustmentReturn())
+                .costOfGoodsSold(snapshot.getCostOfGoodsSold())
+                .salaryStaff(snapshot.getSalaryStaff())
+                .bonusStaff(snapshot.getBonusStaff())
+                .penaltyStaff(snapshot.getPenaltyStaff())
+                .build();
+    }
 
-        financialReport.setNetRevenue(financialReport.getSalesRevenue() - financialReport.getAdjustmentDiscount());
-
-        List<ReturnInvoice> returnInvoices = returnInvoiceRepository.findByStoreIdAndCreatedAtBetween(storeId, startDate, endDate);
-
-        for (ReturnInvoice returnInvoice : returnInvoices) {
-            financialReport.setAdjustmentReturn(financialReport.getAdjustmentReturn() + returnInvoice.getTotal());
-            financialReport.setNetRevenue(financialReport.getNetRevenue() - returnInvoice.getTotal());
-            financialReport.setCostOfGoodsSold(financialReport.getCostOfGoodsSold() - returnInvoice.getReturnDetails()
-                    .stream()
-                    .mapToDouble(returnDetail -> {
-                        Product product = returnDetail.getProduct();
-                        double originalPrices = product.getOriginalPrices()
-                                .stream()
-                                .filter(originalPrice -> originalPrice.getCreatedAt().before(returnInvoice.getCreatedAt()))
-                                .reduce((first, second) -> second)
-                                .orElseThrow()
-                                .getValue();
-                        return originalPrices * returnDetail.getQuantity();
-                    })
-                    .sum());
-        }
+    // sums the figures of two periods, profits are left to computeProfits
+    static void addTotals(FinancialReport total, FinancialReport part) {
+        total.setSalesRevenue(total.getSalesRevenue() + part.getSalesRevenue());
+        total.setAdjustmentDiscount(total.getAdjustmentDiscount() + part.getAdjustmentDiscount());
+        total.setAdjustmentReturn(total.getAdjustmentReturn() + part.getAdjustmentReturn());
+        total.setCostOfGoodsSold(total.getCostOfGoodsSold() + part.getCostOfGoodsSold());
+        total.setSalaryStaff(total.getSalaryStaff() + part.getSalaryStaff());
+        total.setBonusStaff(total.getBonusStaff() + part.getBonusStaff());
+        total.setPenaltyStaff(total.getPenaltyStaff() + part.getPenaltyStaff());
+    }
+
+    static void computeProfits(FinancialReport financialReport) {
+        financialReport.setNetRevenue(financialReport.getSalesRevenue()
+                - financialReport.getAdjustmentDiscount()
+                - financialReport.getAdjustmentReturn());
 
         financialReport.setGrossProfit(financialReport.getNetRevenue() - financialReport.getCostOfGoodsSold());
-        financialReport.setSalaryStaff(staffService.getStaffSalaryInDate(startDate, endDate));
-        financialReport.setBonusStaff(staffService.getStaffBonusInDate(startDate, endDate));
-        financialReport.setPenaltyStaff(staffService.getStaffPunishInDate(startDate, endDate));
 
         financialReport.setNetProfit(financialReport.getGrossProfit()
                 - financialReport.getSalaryStaff()
                 - financialReport.getBonusStaff()
                 + financialReport.getPenaltyStaff());
+    }
 
-        return financialReport;
+    // the task carries the caller's security context, the store is passed in by the caller
+    private <T> Future<T> submitPhase(String phase, Map<String, Long> timings, Callable<T> task) {
+        Callable<T> timedTask = () -> {
+            long phaseStarted = System.nanoTime();
+            try {
+                return transactionTemplate.execute(status -> {
+                    try {
+                        return task.call();
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+            } finally {
+                timings.merge(phase, (System.nanoTime() - phaseStarted) / 1_000_000, Long::sum);
+            }
+        };
+        return reportPhaseExecutor.submit(new DelegatingSecurityContextCallable<>(timedTask, SecurityContextHolder.getContext()));
+    }
+
+    private static <T> T awaitPhase(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CustomException("Report was interrupted", HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CustomException("Report failed: " + e.getCause().getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
     }
 
+    // small ranges, or any range when asked, are counted exactly in the database. Larger ones merge the daily
+    // sketches of each product, which the cache can split at today since a merge is a union
+    private void countDistinctCustomers(int storeId, Date startDate, Date endDate, Boolean exact, List<ProductProfit> productProfits) {
+        if (exact == null) {
+            exact = endDate.getTime() - startDate.getTime() <= exactCustomersMaxDays * 86400000L;
+        }
+        if (exact) {
+            // distinct counts cannot be added up, so they bypass the row cache
+            Map<Integer, Long> customers = new HashMap<>();
+            for (ProductCustomerCount row : invoiceRepository.findDistinctCustomersOfProducts(storeId, startDate, new Date(endDate.getTime() - 1))) {
+                customers.put(row.getProductId(), row.getCustomers());
+            }
+            for (ProductProfit productProfit : productProfits) {
+                productProfit.setTotalCustomer(customers.getOrDefault(productProfit.getProductId(), 0L).intValue());
+                productProfit.setTotalCustomerError(0);
+            }
+            return;
+        }
+
+        IntKeyAggregator<HyperLogLog> sketches = new IntKeyAggregator<>(productId -> new HyperLogLog());
+        for (DailyProductSketch row : reportCacheService.getRows(storeId, "product-sketches", startDate, new Date(endDate.getTime() - 1),
+                (start, end) -> dailySalesRollupService.getProductSketches(storeId, start, new Date(end.getTime() + 1)))) {
+            sketches.get(row.getProductId()).merge(HyperLogLog.fromBytes(row.getCustomers()));
+        }
+        for (ProductProfit productProfit : productProfits) {
+            HyperLogLog sketch = productProfit.getProductId() == null ? null : sketches.find(productProfit.getProductId());
+            productProfit.setTotalCustomer(sketch == null ? 0 : (int) sketch.estimate());
+            productProfit.setTotalCustomerError(HyperLogLog.STANDARD_ERROR);
+        }
+    }
+
+    // the rollup end is exclusive while the cache hands out inclusive bounds
+    private List<DailySalesRollup> getRollups(int storeId, Date startDate, Date endDate) {
+        return reportCacheService.getRows(storeId, "daily-rollups", startDate, endDate,
+                (start, end) -> dailySalesRollupService.getRollups(storeId, start, new Date(end.getTime() + 1)));
+    }
+
+    // shared with the dashboard
+    static List<SalesReportWithProfit> toSalesReportWithProfit(List<SalesBucket> buckets, TimeGranularity granularity) {
+        return buckets
+                .stream()
+                .map(bucket -> {
+                    double revenue = bucket.getRevenue() - bucket.getReturnRevenue();
+                    return SalesReportWithProfit.builder()
+                            .date(granularity.startOf(bucket.getKey()))
+                            .revenue(revenue)
+                            .costPrice(bucket.getCostOfGoodsSold())
+                            .profit(revenue - bucket.getCostOfGoodsSold())
+                            .build();
+                })
+                .toList();
+    }
+
+    // the order ends on the id, so equal figures cannot make the cut depend on the row order
+    static <T> List<T> topOf(IntKeyAggregator<T> rows, int limit, Comparator<T> order) {
+        TopN<T> top = new TopN<>(limit, order);
+        for (int i = 0; i < rows.size(); i++) {
+            top.offer(rows.valueAt(i));
+        }
+        return top.toList();
+    }
+
+    // share of the sales taken back, 0 when nothing was sold
+    static double returnRate(double returned, double sold) {
+        return sold == 0 ? 0 : returned / sold;
+    }
+
+    private static void checkTopLimit(int limit) {
+        if (limit < 1 || limit > MAX_TOP_LIMIT) {
+            throw new CustomException("Limit must be between 1 and " + MAX_TOP_LIMIT, HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    static List<SalesReportOfStaff> aggregateSalesReportOfStaff(List<StaffSalesSummary> invoiceRows, List<StaffSalesSummary> returnRows) {
+        return mergeSalesReportOfStaff(invoiceRows, returnRows).values();
+    }
+
+    static IntKeyAggregator<SalesReportOfStaff> mergeSalesReportOfStaff(List<StaffSalesSummary> invoiceRows, List<StaffSalesSummary> returnRows) {
+        IntKeyAggregator<SalesReportOfStaff> reports = new IntKeyAggregator<>(staffId -> SalesReportOfStaff.builder()
+                .staffId(staffId)
+                .build(), invoiceRows.size() + returnRows.size());
+
+        for (StaffSalesSummary row : invoiceRows) {
+            SalesReportOfStaff report = reports.get(row.getStaffId());
+            report.setStaffName(row.getStaffName());
+            report.setRevenueMoney(report.getRevenueMoney() + row.getTotal());
+        }
+        for (StaffSalesSummary row : returnRows) {
+            SalesReportOfStaff report = reports.get(row.getStaffId());
+            report.setStaffName(row.getStaffName());
+            report.setReturnMoney(report.getReturnMoney() + row.getTotal());
+        }
+        return reports;
+    }
+
+    static List<ProductProfit> aggregateProductProfit(List<ProductSalesSummary> salesRows, List<ProductSalesSummary> returnRows) {
+        List<ProductProfit> result = mergeProductProfit(salesRows, returnRows).values();
+        result.sort(Comparator.comparing(ProductProfit::getNetRevenue).reversed());
+        return result;
+    }
+
+    static IntKeyAggregator<ProductProfit> mergeProductProfit(List<ProductSalesSummary> salesRows, List<ProductSalesSummary> returnRows) {
+        IntKeyAggregator<ProductProfit> productProfits = new IntKeyAggregator<>(productId -> ProductProfit.builder()
+                .productId(productId)
+                .build(), salesRows.size() + returnRows.size());
+
+        for (ProductSalesSummary row : salesRows) {
+            ProductProfit productProfit = productProfits.get(row.getProductId());
+            productProfit.setProfit(productProfit.getProfit() + row.getRevenue() - row.getCost());
+            productProfit.setTotalCustomer(productProfit.getTotalCustomer() + (int) row.getLineCount());
+            productProfit.setTotalQuantity(productProfit.getTotalQuantity() + (int) row.getQuantity());
+            productProfit.setRevenue(productProfit.getRevenue() + row.getRevenue());
+            productProfit.setNetRevenue(productProfit.getNetRevenue() + row.getRevenue());
+        }
+
+        for (ProductSalesSummary row : returnRows) {
+            ProductProfit productProfit = productProfits.get(row.getProductId());
+            productProfit.setProfit(productProfit.getProfit() + row.getRevenue() - row.getCost());
+            productProfit.setTotalReturn(productProfit.getTotalReturn() + (int) row.getLineCount());
+            productProfit.setReturnRevenue(productProfit.getReturnRevenue() + row.getRevenue());
+            productProfit.setNetRevenue(productProfit.getNetRevenue() - row.getRevenue());
+        }
+        return productProfits;
+    }
+
+    static List<SalesReportOfCustomer> aggregateSalesReportOfCustomer(List<CustomerSalesSummary> invoiceRows, List<CustomerReturnSummary> returnRows) {
+        List<SalesReportOfCustomer> result = mergeSalesReportOfCustomer(invoiceRows, returnRows).values();
+        result.sort(Comparator.comparing(SalesReportOfCustomer::getNetRevenue).reversed());
+        return result;
+    }
+
+    static IntKeyAggregator<SalesReportOfCustomer> mergeSalesReportOfCustomer(List<CustomerSalesSummary> invoiceRows, List<CustomerReturnSummary> returnRows) {
+        IntKeyAggregator<SalesReportOfCustomer> reports = new IntKeyAggregator<>(key -> SalesReportOfCustomer.builder()
+                .customerId(key == WALK_IN_CUSTOMER_KEY ? null : key)
+                .customerName(WALK_IN_CUSTOMER_NAME)
+                .build(), invoiceRows.size() + returnRows.size());
+
+        for (CustomerSalesSummary row : invoiceRows) {
+            SalesReportOfCustomer report = reports.get(row.getCustomerId() == null ? WALK_IN_CUSTOMER_KEY : row.getCustomerId());
+            if (row.getCustomerId() != null) {
+                report.setCustomerName(row.getCustomerName());
+            }
+            report.setSubTotal(report.getSubTotal() + row.getSubTotal());
+            report.setDiscountValue(report.getDiscountValue() + row.getDiscountValue());
+            report.setRevenue(report.getRevenue() + row.getTotal());
+            report.setNetRevenue(report.getNetRevenue() + row.getTotal() - row.getDiscountValue());
+        }
+
+        for (CustomerReturnSummary row : returnRows) {
+            SalesReportOfCustomer report = reports.get(row.getCustomerId() == null ? WALK_IN_CUSTOMER_KEY : row.getCustomerId());
+            if (row.getCustomerId() != null) {
+                report.setCustomerName(row.getCustomerName());
+            }
+            report.setReturnRevenue(report.getReturnRevenue() + row.getTotal());
+            report.setNetRevenue(report.getNetRevenue() - row.getTotal());
+        }
+        return reports;
+    }
 }
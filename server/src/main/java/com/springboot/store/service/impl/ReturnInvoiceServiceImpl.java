@@ -13,12 +13,18 @@ import com.springboot.store.repository.InvoiceRepository;
 import com.springboot.store.repository.ProductRepository;
 import com.springboot.store.repository.ReturnInvoiceRepository;
 import com.springboot.store.service.ActivityLogService;
+import com.springboot.store.service.DailySalesRollupService;
 import com.springboot.store.service.ExpenseFormService;
+import com.springboot.store.service.PriceTimelineService;
+import com.springboot.store.service.ProductScanCacheService;
+import com.springboot.store.service.ReportCacheService;
 import com.springboot.store.service.ReturnInvoiceService;
+import com.springboot.store.service.SalesFactService;
 import com.springboot.store.service.StaffService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Date;
 import java.util.List;
@@ -31,8 +37,13 @@ public class ReturnInvoiceServiceImpl implements ReturnInvoiceService {
     private final CustomerRepository customerRepository;
     private final InvoiceRepository invoiceRepository;
     private final ProductRepository productRepository;
+    private final ProductScanCacheService productScanCacheService;
     private final ExpenseFormService expenseFormService;
     private final ActivityLogService activityLogService;
+    private final DailySalesRollupService dailySalesRollupService;
+    private final ReportCacheService reportCacheService;
+    private final SalesFactService salesFactService;
+    private final PriceTimelineService priceTimelineService;
 
     private final StaffService staffService;
 
@@ -54,6 +65,7 @@ public class ReturnInvoiceServiceImpl implements ReturnInvoiceService {
     }
 
     @Override
+    @Transactional
     public ReturnInvoiceDTO createReturnInvoice(ReturnInvoiceDTO returnInvoiceDTO) {
         Staff staff = staffService.getAuthorizedStaff();
         ReturnInvoice returnInvoice = ReturnInvoiceMapper.toReturnInvoice(returnInvoiceDTO);
@@ -76,13 +88,18 @@ public class ReturnInvoiceServiceImpl implements ReturnInvoiceService {
                                     new CustomException("Product not found", HttpStatus.NOT_FOUND));
                             product.setStock(product.getStock() + returnDetailDTO.getQuantity());
                             productRepository.save(product);
+                            productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                             returnDetail.setProduct(product);
+                            returnDetail.setUnitCost(priceTimelineService.getOriginalPriceAt(returnInvoice.getStore().getId(), product.getId(), returnInvoice.getCreatedAt() != null ? returnInvoice.getCreatedAt() : new Date()));
                         }
                         return returnDetail;
                     })
                     .collect(Collectors.toList()));
         }
         returnInvoiceRepository.save(returnInvoice);
+        dailySalesRollupService.addReturnInvoice(returnInvoice);
+        reportCacheService.invalidate(returnInvoice.getStore().getId(), returnInvoice.getCreatedAt());
+        salesFactService.appendReturnInvoice(returnInvoice.getStore().getId(), returnInvoice.getId());
         int idReceiver = -1;
         if (returnInvoice.getInvoice().getCustomer() != null)
             idReceiver = returnInvoice.getInvoice().getCustomer().getId();
@@ -92,9 +109,13 @@ public class ReturnInvoiceServiceImpl implements ReturnInvoiceService {
     }
 
     @Override
+    @Transactional
     public ReturnInvoiceDTO updateReturnInvoice(int id, ReturnInvoiceDTO returnInvoiceDTO) {
         ReturnInvoice returnInvoice = returnInvoiceRepository.findById(id).orElseThrow(() ->
                 new CustomException("Return invoice not found", HttpStatus.NOT_FOUND));
+        dailySalesRollupService.removeReturnInvoice(returnInvoice);
+        reportCacheService.invalidate(returnInvoice.getStore().getId(), returnInvoice.getCreatedAt());
+        salesFactService.invalidateStore(returnInvoice.getStore().getId());
         returnInvoice.setTotal(returnInvoiceDTO.getTotal());
         returnInvoice.setReturnFee(returnInvoiceDTO.getReturnFee());
         returnInvoice.setDiscountValue(returnInvoiceDTO.getDiscountValue());
@@ -120,22 +141,31 @@ public class ReturnInvoiceServiceImpl implements ReturnInvoiceService {
                                     new CustomException("Product not found", HttpStatus.NOT_FOUND));
                             product.setStock(product.getStock() + returnDetailDTO.getQuantity());
                             productRepository.save(product);
+                            productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                             returnDetail.setProduct(product);
+                            returnDetail.setUnitCost(priceTimelineService.getOriginalPriceAt(returnInvoice.getStore().getId(), product.getId(), returnInvoice.getCreatedAt() != null ? returnInvoice.getCreatedAt() : new Date()));
                         }
                         return returnDetail;
                     })
                     .toList());
         }
         returnInvoiceRepository.save(returnInvoice);
+        dailySalesRollupService.addReturnInvoice(returnInvoice);
+        reportCacheService.invalidate(returnInvoice.getStore().getId(), returnInvoice.getCreatedAt());
+        salesFactService.invalidateStore(returnInvoice.getStore().getId());
         activityLogService.save("updated a return invoice with id " + returnInvoice.getId(), staffService.getAuthorizedStaff().getId(), new Date());
 
         return ReturnInvoiceMapper.toReturnInvoiceDTO(returnInvoice);
     }
 
     @Override
+    @Transactional
     public void deleteReturnInvoice(int id) {
         ReturnInvoice returnInvoice = returnInvoiceRepository.findById(id).orElseThrow(() ->
                 new CustomException("Return invoice not found", HttpStatus.NOT_FOUND));
+        dailySalesRollupService.removeReturnInvoice(returnInvoice);
+        reportCacheService.invalidate(returnInvoice.getStore().getId(), returnInvoice.getCreatedAt());
+        salesFactService.invalidateStore(returnInvoice.getStore().getId());
         returnInvoiceRepository.delete(returnInvoice);
         activityLogService.save("deleted a return invoice with id " + id, staffService.getAuthorizedStaff().getId(), new Date());
     }
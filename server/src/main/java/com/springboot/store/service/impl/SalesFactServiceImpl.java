@@ -0,0 +1,270 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.Store;
+import com.springboot.store.payload.report.SalesSliceRow;
+import com.springboot.store.repository.InvoiceRepository;
+import com.springboot.store.repository.ReturnInvoiceRepository;
+import com.springboot.store.repository.StoreRepository;
+import com.springboot.store.repository.projection.SalesFact;
+import com.springboot.store.service.SalesFactService;
+import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.SalesFactTable;
+import com.springboot.store.utils.SliceDimension;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+// every store's lines are held as columns in memory. Stores are loaded at startup while the memory budget allows,
+// the least recently sliced store is dropped when a load goes over it and comes back on its next slice
+@Slf4j
+@Service
+public class SalesFactServiceImpl implements SalesFactService {
+    private final InvoiceRepository invoiceRepository;
+    private final ReturnInvoiceRepository returnInvoiceRepository;
+    private final StoreRepository storeRepository;
+    private final StaffService staffService;
+    private final TransactionTemplate transactionTemplate;
+    private final long memoryBudget;
+    private final boolean preload;
+
+    private final Map<Integer, StoreFacts> stores = new ConcurrentHashMap<>();
+
+    public SalesFactServiceImpl(InvoiceRepository invoiceRepository,
+                                ReturnInvoiceRepository returnInvoiceRepository,
+                                StoreRepository storeRepository,
+                                StaffService staffService,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${store.reports.facts.memory-budget-mb:256}") long memoryBudgetMb,
+                                @Value("${store.reports.facts.preload:true}") boolean preload) {
+        this.invoiceRepository = invoiceRepository;
+        this.returnInvoiceRepository = returnInvoiceRepository;
+        this.storeRepository = storeRepository;
+        this.staffService = staffService;
+        // appends run after the writer's commit, they need a transaction of their own
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.memoryBudget = memoryBudgetMb * 1024 * 1024;
+        this.preload = preload;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadStores() {
+        if (!preload) return;
+        for (Store store : storeRepository.findAll()) {
+            if (loadedBytes() >= memoryBudget) {
+                log.info("Sales facts memory budget reached, remaining stores are loaded on their first slice");
+                return;
+            }
+            StoreFacts facts = storeFacts(store.getId());
+            facts.lock.writeLock().lock();
+            try {
+                if (facts.table == null) load(store.getId(), facts);
+            } finally {
+                facts.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public List<SalesSliceRow> slice(Date startDate, Date endDate, SliceDimension groupBy, Map<SliceDimension, Integer> filters) {
+        int storeId = staffService.getAuthorizedStaff().getStore().getId();
+        StoreFacts facts = storeFacts(storeId);
+        facts.lastAccess = System.nanoTime();
+        List<SalesSliceRow> rows;
+        boolean loaded = false;
+
+        // the table can be dropped between the load and the read, then it is loaded again
+        while (true) {
+            facts.lock.readLock().lock();
+            try {
+                if (facts.table != null) {
+                    rows = facts.table.slice(startDate.getTime(), endDate.getTime() + 86400000, groupBy, filters);
+                    break;
+                }
+            } finally {
+                facts.lock.readLock().unlock();
+            }
+            facts.lock.writeLock().lock();
+            try {
+                if (facts.table == null) {
+                    load(storeId, facts);
+                    loaded = true;
+                }
+            } finally {
+                facts.lock.writeLock().unlock();
+            }
+        }
+
+        if (loaded) {
+            evictOverBudget(storeId);
+        }
+        return rows;
+    }
+
+    @Override
+    public void appendInvoice(int storeId, int invoiceId) {
+        afterCommit(() -> append(storeId, invoiceId, false));
+    }
+
+    @Override
+    public void appendReturnInvoice(int storeId, int returnInvoiceId) {
+        afterCommit(() -> append(storeId, returnInvoiceId, true));
+    }
+
+    @Override
+    public void invalidateStore(int storeId) {
+        afterCommit(() -> {
+            StoreFacts facts = stores.get(storeId);
+            if (facts == null) return;
+            facts.lock.writeLock().lock();
+            try {
+                facts.table = null;
+            } finally {
+                facts.lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void append(int storeId, int documentId, boolean isReturn) {
+        StoreFacts facts = stores.get(storeId);
+        if (facts == null || facts.table == null) return;
+        List<SalesFact> lines = transactionTemplate.execute(status -> isReturn
+                ? returnInvoiceRepository.findSalesFactsOfReturnInvoice(documentId)
+                : invoiceRepository.findSalesFactsOfInvoice(documentId));
+
+        facts.lock.writeLock().lock();
+        try {
+            // a load that ran after the commit already holds the document
+            if (facts.table == null || documentId <= (isReturn ? facts.lastReturnId : facts.lastInvoiceId)) return;
+            for (SalesFact line : lines) {
+                appendLine(facts.table, line, isReturn);
+            }
+        } finally {
+            facts.lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void load(int storeId, StoreFacts facts) {
+        long started = System.nanoTime();
+        SalesFactTable table = new SalesFactTable(facts.lastSize);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<SalesFact> lines = invoiceRepository.streamSalesFacts(storeId)) {
+                lines.forEach(line -> {
+                    appendLine(table, line, false);
+                    facts.lastInvoiceId = Math.max(facts.lastInvoiceId, line.getDocumentId());
+                });
+            }
+            try (Stream<SalesFact> lines = returnInvoiceRepository.streamReturnFacts(storeId)) {
+                lines.forEach(line -> {
+                    appendLine(table, line, true);
+                    facts.lastReturnId = Math.max(facts.lastReturnId, line.getDocumentId());
+                });
+            }
+        });
+        // both streams are in time order, returns are merged between the invoices so range slices can binary search
+        table.sortByTime();
+        facts.table = table;
+        facts.lastSize = table.size();
+        log.info("Loaded {} sales facts of store {} in {} ms", table.size(), storeId, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private static void appendLine(SalesFactTable table, SalesFact line, boolean isReturn) {
+        if (line.getCreatedAt() == null) return;
+        int sign = isReturn ? -1 : 1;
+        long createdAt = line.getCreatedAt().getTime();
+        table.append(createdAt,
+                Instant.ofEpochMilli(createdAt).atZone(ZoneId.systemDefault()).getHour(),
+                idOf(line.getProductId()),
+                idOf(line.getGroupId()),
+                idOf(line.getBrandId()),
+                idOf(line.getStaffId()),
+                idOf(line.getCustomerId()),
+                sign * line.getQuantity(),
+                sign * line.getRevenue(),
+                sign * line.getCost());
+    }
+
+    private static int idOf(Integer id) {
+        return id == null ? 0 : id;
+    }
+
+    private synchronized void evictOverBudget(int keepStoreId) {
+        while (loadedBytes() > memoryBudget) {
+            StoreFacts coldest = null;
+            int coldestStoreId = 0;
+            for (Map.Entry<Integer, StoreFacts> entry : stores.entrySet()) {
+                StoreFacts facts = entry.getValue();
+                if (entry.getKey() == keepStoreId || facts.table == null) continue;
+                if (coldest == null || facts.lastAccess < coldest.lastAccess) {
+                    coldest = facts;
+                    coldestStoreId = entry.getKey();
+                }
+            }
+            if (coldest == null) return;
+            coldest.lock.writeLock().lock();
+            try {
+                coldest.table = null;
+            } finally {
+                coldest.lock.writeLock().unlock();
+            }
+            log.info("Evicted the sales facts of store {} to stay within the memory budget", coldestStoreId);
+        }
+    }
+
+    private long loadedBytes() {
+        long bytes = 0;
+        for (StoreFacts facts : stores.values()) {
+            SalesFactTable table = facts.table;
+            if (table != null) bytes += table.memoryBytes();
+        }
+        return bytes;
+    }
+
+    private StoreFacts storeFacts(int storeId) {
+        return stores.computeIfAbsent(storeId, id -> new StoreFacts());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static class StoreFacts {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        // null until loaded and after an eviction or invalidation
+        private volatile SalesFactTable table;
+        // highest document ids seen by the last load, appends at or below them are already in the table.
+        // A document that commits after a higher id while the store is loading is only picked up by the next load
+        private int lastInvoiceId;
+        private int lastReturnId;
+        // sizes the next load of the store
+        private int lastSize;
+        private volatile long lastAccess;
+    }
+}
@@ -9,11 +9,15 @@ import com.springboot.store.payload.StaffPunishSalaryDTO;
 import com.springboot.store.repository.ShiftAttendanceRecordRepository;
 import com.springboot.store.repository.StaffBonusSalaryRepository;
 import com.springboot.store.repository.StaffPunishSalaryRepository;
+import com.springboot.store.service.PayrollLedgerService;
+import com.springboot.store.service.ReportCacheService;
 import com.springboot.store.service.ShiftAttendanceRecordService;
+import com.springboot.store.utils.PayrollTally;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -25,6 +29,8 @@ public class ShiftAttendanceRecordServiceImpl implements ShiftAttendanceRecordSe
     private final ModelMapper modelMapper;
     private final StaffBonusSalaryRepository staffBonusSalaryRepository;
     private final StaffPunishSalaryRepository staffPunishSalaryRepository;
+    private final ReportCacheService reportCacheService;
+    private final PayrollLedgerService payrollLedgerService;
 
     @Override
     public ShiftAttendanceRecordDTO getShiftAttendanceRecord(int id) {
@@ -33,6 +39,7 @@ public class ShiftAttendanceRecordServiceImpl implements ShiftAttendanceRecordSe
     }
 
     @Override
+    @Transactional
     public ShiftAttendanceRecordDTO createShiftAttendanceRecord(ShiftAttendanceRecordDTO shiftAttendanceRecordDTO) {
         ShiftAttendanceRecord shiftAttendanceRecord = ShiftAttendanceRecord.builder()
                 .staffId(shiftAttendanceRecordDTO.getStaffId())
@@ -55,12 +62,16 @@ public class ShiftAttendanceRecordServiceImpl implements ShiftAttendanceRecordSe
         }
         shiftAttendanceRecord.setPunishSalaryList(punishSalaryList);
         shiftAttendanceRecord = shiftAttendanceRecordRepository.save(shiftAttendanceRecord);
+        payrollLedgerService.apply(PayrollTally.of(List.of(shiftAttendanceRecord)));
+        invalidateStaffCosts(shiftAttendanceRecord);
         return modelMapper.map(shiftAttendanceRecord, ShiftAttendanceRecordDTO.class);
     }
 
     @Override
+    @Transactional
     public ShiftAttendanceRecordDTO updateShiftAttendanceRecord(int id, ShiftAttendanceRecordDTO shiftAttendanceRecordDTO) {
         ShiftAttendanceRecord existingShiftAttendanceRecord = shiftAttendanceRecordRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("ShiftAttendanceRecord not found with id: " + id));
+        PayrollTally previous = PayrollTally.of(List.of(existingShiftAttendanceRecord));
         existingShiftAttendanceRecord.setStaffId(shiftAttendanceRecordDTO.getStaffId());
         existingShiftAttendanceRecord.setHasAttend(shiftAttendanceRecordDTO.isHasAttend());
         existingShiftAttendanceRecord.setDate(shiftAttendanceRecordDTO.getDate());
@@ -80,11 +91,27 @@ public class ShiftAttendanceRecordServiceImpl implements ShiftAttendanceRecordSe
         }
         existingShiftAttendanceRecord.setPunishSalaryList(punishSalaryList);
         existingShiftAttendanceRecord = shiftAttendanceRecordRepository.save(existingShiftAttendanceRecord);
+        payrollLedgerService.apply(PayrollTally.of(List.of(existingShiftAttendanceRecord)).minus(previous));
+        invalidateStaffCosts(existingShiftAttendanceRecord);
         return modelMapper.map(existingShiftAttendanceRecord, ShiftAttendanceRecordDTO.class);
     }
 
     @Override
+    @Transactional
     public void deleteShiftAttendanceRecord(int id) {
-        shiftAttendanceRecordRepository.deleteById(id);
+        shiftAttendanceRecordRepository.findById(id).ifPresent(shiftAttendanceRecord -> {
+            PayrollTally previous = PayrollTally.of(List.of(shiftAttendanceRecord));
+            shiftAttendanceRecordRepository.deleteById(id);
+            payrollLedgerService.apply(PayrollTally.empty().minus(previous));
+            invalidateStaffCosts(shiftAttendanceRecord);
+        });
+    }
+
+    private void invalidateStaffCosts(ShiftAttendanceRecord shiftAttendanceRecord) {
+        if (shiftAttendanceRecord.getStore() != null) {
+            reportCacheService.invalidate(shiftAttendanceRecord.getStore().getId(), ReportCacheService.STAFF_COSTS);
+        } else {
+            reportCacheService.invalidateAll(ReportCacheService.STAFF_COSTS);
+        }
     }
 }
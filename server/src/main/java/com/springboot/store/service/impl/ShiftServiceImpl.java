@@ -6,12 +6,15 @@ import com.springboot.store.payload.ShiftAttendanceRecordDTO;
 import com.springboot.store.payload.ShiftDTO;
 import com.springboot.store.repository.*;
 import com.springboot.store.service.DailyShiftService;
+import com.springboot.store.service.PayrollLedgerService;
 import com.springboot.store.service.ShiftService;
 import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.PayrollTally;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
@@ -32,6 +35,7 @@ public class ShiftServiceImpl implements ShiftService {
     private final StaffBonusSalaryRepository staffBonusSalaryRepository;
     private final StaffPunishSalaryRepository staffPunishSalaryRepository;
     private final StaffService staffService;
+    private final PayrollLedgerService payrollLedgerService;
 
     @Override
     public ShiftDTO getShift(int shiftId) {
@@ -172,11 +176,17 @@ public class ShiftServiceImpl implements ShiftService {
     }
 
     @Override
+    @Transactional
     public void deleteShift(int shiftId) {
         // Get the shift
         Shift shift = shiftRepository.findById(shiftId).orElseThrow();
         // Get all daily shifts of this shift
         List<DailyShift> dailyShifts = shift.getDailyShifts();
+        List<ShiftAttendanceRecord> deletedRecords = new ArrayList<>();
+        for (DailyShift dailyShift : dailyShifts) {
+            deletedRecords.addAll(dailyShift.getAttendanceList());
+        }
+        PayrollTally previous = PayrollTally.of(deletedRecords);
         shift.setStore(null);
         shift.setDailyShifts(null);
 
@@ -214,5 +224,6 @@ public class ShiftServiceImpl implements ShiftService {
             dailyShiftRepository.deleteById(dailyShift.getId());
         }
         shiftRepository.deleteById(shiftId);
+        payrollLedgerService.apply(PayrollTally.empty().minus(previous));
     }
 }
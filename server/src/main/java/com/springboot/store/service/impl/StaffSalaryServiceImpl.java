@@ -3,6 +3,7 @@ package com.springboot.store.service.impl;
 import com.springboot.store.entity.StaffSalary;
 import com.springboot.store.payload.StaffSalaryDTO;
 import com.springboot.store.repository.StaffSalaryRepository;
+import com.springboot.store.service.ReportCacheService;
 import com.springboot.store.service.StaffSalaryService;
 import lombok.RequiredArgsConstructor;
 import org.modelmapper.ModelMapper;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Service;
 public class StaffSalaryServiceImpl implements StaffSalaryService {
     private final StaffSalaryRepository staffSalaryRepository;
     private final ModelMapper modelMapper;
+    private final ReportCacheService reportCacheService;
 
     @Override
     public StaffSalaryDTO getStaffSalaryById(int id) {
@@ -24,6 +26,7 @@ public class StaffSalaryServiceImpl implements StaffSalaryService {
     public StaffSalaryDTO createStaffSalary(StaffSalaryDTO staffSalaryDTO) {
         StaffSalary staffSalary = modelMapper.map(staffSalaryDTO, StaffSalary.class);
         staffSalary = staffSalaryRepository.save(staffSalary);
+        invalidateStaffCosts(staffSalary);
         return modelMapper.map(staffSalary, StaffSalaryDTO.class);
     }
 
@@ -33,11 +36,21 @@ public class StaffSalaryServiceImpl implements StaffSalaryService {
         existingStaffSalary.setSalary(staffSalaryDTO.getSalary());
         existingStaffSalary.setSalaryType(staffSalaryDTO.getSalaryType());
         existingStaffSalary = staffSalaryRepository.save(existingStaffSalary);
+        invalidateStaffCosts(existingStaffSalary);
         return modelMapper.map(existingStaffSalary, StaffSalaryDTO.class);
     }
 
     @Override
     public void deleteStaffSalary(int id) {
+        staffSalaryRepository.findById(id).ifPresent(this::invalidateStaffCosts);
         staffSalaryRepository.deleteById(id);
     }
+
+    private void invalidateStaffCosts(StaffSalary staffSalary) {
+        if (staffSalary.getStore() != null) {
+            reportCacheService.invalidate(staffSalary.getStore().getId(), ReportCacheService.STAFF_COSTS);
+        } else {
+            reportCacheService.invalidateAll(ReportCacheService.STAFF_COSTS);
+        }
+    }
 }
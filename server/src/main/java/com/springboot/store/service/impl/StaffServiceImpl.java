@@ -3,6 +3,7 @@ package com.springboot.store.service.impl;
 import com.springboot.store.entity.*;
 import com.springboot.store.exception.CustomException;
 import com.springboot.store.exception.ResourceNotFoundException;
+import com.springboot.store.payload.StaffPayrollDTO;
 import com.springboot.store.payload.StaffRequest;
 import com.springboot.store.payload.StaffResponse;
 import com.springboot.store.repository.*;
@@ -37,6 +38,8 @@ public class StaffServiceImpl implements StaffService {
     private final StaffPositionRepository staffPositionRepository;
     private final DailyShiftRepository dailyShiftRepository;
     private final ShiftRepository shiftRepository;
+    private final PayrollAggregationService payrollAggregationService;
+    private final PayrollLedgerService payrollLedgerService;
 
     @Override
     public StaffResponse createStaff(StaffRequest newStaff, MultipartFile file) {
@@ -209,6 +212,7 @@ public class StaffServiceImpl implements StaffService {
             }
         }
         shiftAttendanceRecordRepository.deleteAll(shiftAttendanceRecords);
+        payrollLedgerService.deleteStaff(id);
         staff.setIsDeleted(true);
         staff.setEmail(staff.getEmail().replace("@", "_"));
         staffRepository.save(staff);
@@ -216,105 +220,35 @@ public class StaffServiceImpl implements StaffService {
         activityLogService.save("deleted staff with id " + staff.getId(), creator.getId(), new Date());
     }
 
+    // the month's totals come from the payroll ledger instead of the attendance records
     @Override
     public StaffResponse getStaffSalary(int id) {
         Staff staff = staffRepository.findById(id).orElseThrow(() -> new ResourceNotFoundException("Staff", "id", id));
-        int salaryDebt = 0;
-        if (staff.getStaffSalary().getSalaryType().equals("Shift-based pay")) {
-            int dayWorking = 0;
-            List<ShiftAttendanceRecord> shiftAttendanceRecords = shiftAttendanceRecordRepository.findByStaffIdAndDateInThisMonth(id);
-            for (ShiftAttendanceRecord shiftAttendanceRecord : shiftAttendanceRecords) {
-                if (shiftAttendanceRecord.isHasAttend()) {
-                    dayWorking++;
-                }
-                for (StaffBonusSalary staffBonusSalary : shiftAttendanceRecord.getBonusSalaryList()) {
-                    salaryDebt += staffBonusSalary.getValue() * staffBonusSalary.getMultiply();
-                }
-                for (StaffPunishSalary staffPunishSalary : shiftAttendanceRecord.getPunishSalaryList()) {
-                    salaryDebt -= staffPunishSalary.getValue() * staffPunishSalary.getMultiply();
-                }
-            }
-            salaryDebt += staff.getStaffSalary().getSalary() * dayWorking;
-            staff.setSalaryDebt(salaryDebt);
-            staffRepository.save(staff);
-            return mapToResponse(staff);
-        } else if (staff.getStaffSalary().getSalaryType().equals("Internship salary")) {
-            List<ShiftAttendanceRecord> shiftAttendanceRecords = shiftAttendanceRecordRepository.findByStaffIdAndDateInThisMonth(id);
-            for (ShiftAttendanceRecord shiftAttendanceRecord : shiftAttendanceRecords) {
-                for (StaffBonusSalary staffBonusSalary : shiftAttendanceRecord.getBonusSalaryList()) {
-                    salaryDebt += staffBonusSalary.getValue() * staffBonusSalary.getMultiply();
-                }
-                for (StaffPunishSalary staffPunishSalary : shiftAttendanceRecord.getPunishSalaryList()) {
-                    salaryDebt -= staffPunishSalary.getValue() * staffPunishSalary.getMultiply();
-                }
-            }
-            salaryDebt += staff.getStaffSalary().getSalary();
-            staff.setSalaryDebt(salaryDebt);
-            staffRepository.save(staff);
-            return mapToResponse(staff);
-        } else if (staff.getStaffSalary().getSalaryType().equals("Fixed salary")) {
-            List<ShiftAttendanceRecord> shiftAttendanceRecords = shiftAttendanceRecordRepository.findByStaffIdAndDateInThisMonth(id);
-            for (ShiftAttendanceRecord shiftAttendanceRecord : shiftAttendanceRecords) {
-                for (StaffBonusSalary staffBonusSalary : shiftAttendanceRecord.getBonusSalaryList()) {
-                    salaryDebt += staffBonusSalary.getValue() * staffBonusSalary.getMultiply();
-                }
-                for (StaffPunishSalary staffPunishSalary : shiftAttendanceRecord.getPunishSalaryList()) {
-                    salaryDebt -= staffPunishSalary.getValue() * staffPunishSalary.getMultiply();
-                }
-            }
-            salaryDebt += staff.getStaffSalary().getSalary();
-            staff.setSalaryDebt(salaryDebt);
-            staffRepository.save(staff);
-            return mapToResponse(staff);
+        if (staff.getStaffSalary() == null) {
+            return null;
         }
-        return null;
+        StaffPayrollMonth month = payrollLedgerService.getMonth(id, new Date());
+        Integer salary = PayrollAggregationServiceImpl.salaryOf(staff.getStaffSalary().getSalaryType(), staff.getStaffSalary().getSalary(),
+                month.getAttendedShifts(), (int) month.getBonus(), (int) month.getPenalty());
+        if (salary == null) {
+            return null;
+        }
+        staff.setSalaryDebt(salary);
+        staffRepository.save(staff);
+        return mapToResponse(staff);
     }
 
     @Override
     public int getStaffSalaryInDate(Date startDate, Date endDate) {
+        return getStaffSalaryInDate(getAuthorizedStaff().getStore().getId(), startDate, endDate);
+    }
 
-        List<Staff> staffs = staffRepository.findByStoreId(getAuthorizedStaff().getStore().getId());
-
+    @Override
+    public int getStaffSalaryInDate(int storeId, Date startDate, Date endDate) {
         int totalSalary = 0;
-        for (Staff staff : staffs) {
-            if (staff.getStaffSalary() == null || staff.getStaffSalary().getSalaryType() == null) continue;
-            if (staff.getStaffSalary().getSalaryType().equals("Shift-based pay")) {
-                int dayWorking = 0;
-                List<ShiftAttendanceRecord> shiftAttendanceRecords = shiftAttendanceRecordRepository.findByStaffIdAndDateBetween(staff.getId(), startDate, endDate);
-                for (ShiftAttendanceRecord shiftAttendanceRecord : shiftAttendanceRecords) {
-                    if (shiftAttendanceRecord.isHasAttend()) {
-                        dayWorking++;
-                    }
-                    for (StaffBonusSalary staffBonusSalary : shiftAttendanceRecord.getBonusSalaryList()) {
-                        totalSalary += staffBonusSalary.getValue() * staffBonusSalary.getMultiply();
-                    }
-                    for (StaffPunishSalary staffPunishSalary : shiftAttendanceRecord.getPunishSalaryList()) {
-                        totalSalary -= staffPunishSalary.getValue() * staffPunishSalary.getMultiply();
-                    }
-                }
-                totalSalary += staff.getStaffSalary().getSalary() * dayWorking;
-            } else if (staff.getStaffSalary().getSalaryType().equals("Internship salary")) {
-                List<ShiftAttendanceRecord> shiftAttendanceRecords = shiftAttendanceRecordRepository.findByStaffIdAndDateBetween(staff.getId(), startDate, endDate);
-                for (ShiftAttendanceRecord shiftAttendanceRecord : shiftAttendanceRecords) {
-                    for (StaffBonusSalary staffBonusSalary : shiftAttendanceRecord.getBonusSalaryList()) {
-                        totalSalary += staffBonusSalary.getValue() * staffBonusSalary.getMultiply();
-                    }
-                    for (StaffPunishSalary staffPunishSalary : shiftAttendanceRecord.getPunishSalaryList()) {
-                        totalSalary -= staffPunishSalary.getValue() * staffPunishSalary.getMultiply();
-                    }
-                }
-                totalSalary += staff.getStaffSalary().getSalary();
-            } else if (staff.getStaffSalary().getSalaryType().equals("Fixed salary")) {
-                List<ShiftAttendanceRecord> shiftAttendanceRecords = shiftAttendanceRecordRepository.findByStaffIdAndDateBetween(staff.getId(), startDate, endDate);
-                for (ShiftAttendanceRecord shiftAttendanceRecord : shiftAttendanceRecords) {
-                    for (StaffBonusSalary staffBonusSalary : shiftAttendanceRecord.getBonusSalaryList()) {
-                        totalSalary += staffBonusSalary.getValue() * staffBonusSalary.getMultiply();
-                    }
-                    for (StaffPunishSalary staffPunishSalary : shiftAttendanceRecord.getPunishSalaryList()) {
-                        totalSalary -= staffPunishSalary.getValue() * staffPunishSalary.getMultiply();
-                    }
-                }
-                totalSalary += staff.getStaffSalary().getSalary();
+        for (StaffPayrollDTO payroll : payrollAggregationService.getStorePayroll(storeId, startDate, endDate)) {
+            if (payroll.getSalary() != null) {
+                totalSalary += payroll.getSalary();
             }
         }
         return totalSalary;
@@ -322,30 +256,29 @@ public class StaffServiceImpl implements StaffService {
 
     @Override
     public double getStaffBonusInDate(Date startDate, Date endDate) {
-        List<Staff> staffs = staffRepository.findByStoreId(getAuthorizedStaff().getStore().getId());
+        return getStaffBonusInDate(getAuthorizedStaff().getStore().getId(), startDate, endDate);
+    }
+
+    @Override
+    public double getStaffBonusInDate(int storeId, Date startDate, Date endDate) {
         double totalBonus = 0;
-        for (Staff staff : staffs) {
-            List<ShiftAttendanceRecord> shiftAttendanceRecords = shiftAttendanceRecordRepository.findByStaffIdAndDateBetween(staff.getId(), startDate, endDate);
-            for (ShiftAttendanceRecord shiftAttendanceRecord : shiftAttendanceRecords) {
-                for (StaffBonusSalary staffBonusSalary : shiftAttendanceRecord.getBonusSalaryList()) {
-                    totalBonus += staffBonusSalary.getValue() * staffBonusSalary.getMultiply();
-                }
-            }
+        for (StaffPayrollDTO payroll : payrollAggregationService.getStorePayroll(storeId, startDate, endDate)) {
+            totalBonus += payroll.getBonus();
         }
         return totalBonus;
     }
 
     @Override
     public double getStaffPunishInDate(Date startDate, Date endDate) {
-        List<Staff> staffs = staffRepository.findByStoreId(getAuthorizedStaff().getStore().getId());
+        return getStaffPunishInDate(getAuthorizedStaff().getStore().getId(), startDate, endDate);
+    }
+
+    // punishments are returned as a negative amount
+    @Override
+    public double getStaffPunishInDate(int storeId, Date startDate, Date endDate) {
         double totalPunish = 0;
-        for (Staff staff : staffs) {
-            List<ShiftAttendanceRecord> shiftAttendanceRecords = shiftAttendanceRecordRepository.findByStaffIdAndDateBetween(staff.getId(), startDate, endDate);
-            for (ShiftAttendanceRecord shiftAttendanceRecord : shiftAttendanceRecords) {
-                for (StaffPunishSalary staffPunishSalary : shiftAttendanceRecord.getPunishSalaryList()) {
-                    totalPunish -= staffPunishSalary.getValue() * staffPunishSalary.getMultiply();
-                }
-            }
+        for (StaffPayrollDTO payroll : payrollAggregationService.getStorePayroll(storeId, startDate, endDate)) {
+            totalPunish -= payroll.getPenalty();
         }
         return totalPunish;
     }
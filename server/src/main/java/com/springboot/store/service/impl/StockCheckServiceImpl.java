@@ -11,6 +11,7 @@ import com.springboot.store.repository.ProductRepository;
 import com.springboot.store.repository.StockCheckRepository;
 import com.springboot.store.service.ActivityLogService;
 import com.springboot.store.service.NotificationService;
+import com.springboot.store.service.ProductScanCacheService;
 import com.springboot.store.service.StaffService;
 import com.springboot.store.service.StockCheckService;
 import lombok.RequiredArgsConstructor;
@@ -27,6 +28,7 @@ public class StockCheckServiceImpl implements StockCheckService {
     private final StaffService staffService;
     private final StockCheckRepository stockCheckRepository;
     private final ProductRepository productRepository;
+    private final ProductScanCacheService productScanCacheService;
     private final ActivityLogService activityLogService;
     private final NotificationService notificationService;
 
@@ -63,6 +65,7 @@ public class StockCheckServiceImpl implements StockCheckService {
                             notificationService.notifyLowStock(product.getId(), product.getStock());
                         }
                         productRepository.save(product);
+                        productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                         stockCheckDetail.setProduct(product);
                         stockCheckDetail.setStockCheck(stockCheck);
                         return stockCheckDetail;
@@ -85,6 +88,7 @@ public class StockCheckServiceImpl implements StockCheckService {
                 Product product = productRepository.findById(stockCheckDetail.getProduct().getId()).orElseThrow(() -> new CustomException("Product not found", HttpStatus.NOT_FOUND));
                 product.setStock(product.getStock() - stockCheckDetail.getCountedStock());
                 productRepository.save(product);
+                productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
             });
 
             List<StockCheckDetail> stockCheckDetails = stockCheckDTO.getProducts()
@@ -98,6 +102,7 @@ public class StockCheckServiceImpl implements StockCheckService {
                             notificationService.notifyLowStock(product.getId(), product.getStock());
                         }
                         productRepository.save(product);
+                        productScanCacheService.invalidate(product.getStore().getId(), product.getBarcode());
                         stockCheckDetail.setProduct(product);
                         stockCheckDetail.setStockCheck(stockCheck);
                         return stockCheckDetail;
@@ -0,0 +1,75 @@
+package com.springboot.store.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// RFC 4180 CSV in UTF-8: quoted cells may hold commas, line breaks and doubled quotes.
+// A leading byte order mark is skipped and blank lines are returned as rows without cells
+public class CsvRowReader implements ImportRowReader {
+    private final Reader reader;
+    private boolean started;
+
+    public CsvRowReader(InputStream inputStream) {
+        this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public List<String> readRow() throws IOException {
+        int c = reader.read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') c = reader.read();
+        }
+        if (c == -1) return null;
+
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        boolean empty = true;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted cell");
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        cell.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    cell.append((char) c);
+                }
+            } else if (c == '"' && cell.isEmpty()) {
+                quoted = true;
+                empty = false;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+                empty = false;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') reader.reset();
+                }
+                if (!empty || !cell.isEmpty()) {
+                    cells.add(cell.toString());
+                }
+                return cells;
+            } else {
+                cell.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,103 @@
+package com.springboot.store.utils;
+
+// mergeable distinct-count sketch of int ids. 1024 six-bit registers: estimates carry a relative standard error
+// of about 3.3%, so 95% of them land within 6.5% of the true count. Small counts fall back to linear counting
+// and are close to exact. Not thread-safe
+public final class HyperLogLog {
+    private static final int PRECISION = 10;
+    private static final int REGISTERS = 1 << PRECISION;
+    public static final double STANDARD_ERROR = 1.04 / Math.sqrt(REGISTERS);
+
+    // a sketch with few registers set is stored as (index, rank) pairs instead of every register
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+
+    private final byte[] registers = new byte[REGISTERS];
+
+    // returns whether the sketch changed
+    public boolean add(int value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (64 - PRECISION));
+        // the guard bit caps the rank at 64 - PRECISION + 1
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+            return true;
+        }
+        return false;
+    }
+
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double estimate = alpha * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        int used = 0;
+        for (byte register : registers) {
+            if (register != 0) used++;
+        }
+        if (used * 2 >= REGISTERS) {
+            byte[] bytes = new byte[1 + REGISTERS];
+            bytes[0] = DENSE;
+            System.arraycopy(registers, 0, bytes, 1, REGISTERS);
+            return bytes;
+        }
+        // ten bits of index and six of rank per register
+        byte[] bytes = new byte[1 + used * 2];
+        bytes[0] = SPARSE;
+        int position = 1;
+        for (int i = 0; i < REGISTERS; i++) {
+            if (registers[i] == 0) continue;
+            int packed = i << 6 | registers[i];
+            bytes[position++] = (byte) (packed >>> 8);
+            bytes[position++] = (byte) packed;
+        }
+        return bytes;
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        HyperLogLog sketch = new HyperLogLog();
+        if (bytes == null || bytes.length == 0) {
+            return sketch;
+        }
+        if (bytes[0] == DENSE) {
+            System.arraycopy(bytes, 1, sketch.registers, 0, REGISTERS);
+        } else {
+            for (int position = 1; position + 1 < bytes.length; position += 2) {
+                int packed = (bytes[position] & 0xff) << 8 | (bytes[position + 1] & 0xff);
+                sketch.registers[packed >>> 6] = (byte) (packed & 0x3f);
+            }
+        }
+        return sketch;
+    }
+
+    // murmur3 finalizer over the offset id, sequential ids land on unrelated registers
+    private static long mix(int value) {
+        long h = (value & 0xffffffffL) + 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,28 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.exception.CustomException;
+import org.springframework.http.HttpStatus;
+
+public enum ImportFormat {
+    CSV("csv"),
+    XLSX("xlsx");
+
+    private final String extension;
+
+    ImportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public static ImportFormat fromParam(String format) {
+        for (ImportFormat importFormat : values()) {
+            if (importFormat.extension.equalsIgnoreCase(format)) {
+                return importFormat;
+            }
+        }
+        throw new CustomException("Unsupported import format: " + format, HttpStatus.BAD_REQUEST);
+    }
+}
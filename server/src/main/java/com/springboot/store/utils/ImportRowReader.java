@@ -0,0 +1,11 @@
+package com.springboot.store.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+// reads a spreadsheet one row at a time, the first row is the header
+public interface ImportRowReader extends Closeable {
+    // cells of the next row, null after the last one. Empty cells are empty strings
+    List<String> readRow() throws IOException;
+}
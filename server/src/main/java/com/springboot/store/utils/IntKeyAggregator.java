@@ -0,0 +1,113 @@
+package com.springboot.store.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// open-addressing hash table from a primitive int key to a mutable accumulator.
+// Accumulators are kept in first-seen order, so the output order does not depend on hashing.
+public final class IntKeyAggregator<A> {
+    private static final int MIN_CAPACITY = 16;
+
+    private final IntFunction<A> factory;
+    // slots hold index + 1 into keys/values, 0 marks an empty slot
+    private int[] slots;
+    private int[] keys;
+    private final List<A> values;
+
+    public IntKeyAggregator(IntFunction<A> factory) {
+        this(factory, MIN_CAPACITY);
+    }
+
+    public IntKeyAggregator(IntFunction<A> factory, int expectedSize) {
+        this.factory = factory;
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        this.slots = new int[capacity];
+        this.keys = new int[capacity / 2];
+        this.values = new ArrayList<>(capacity / 2);
+    }
+
+    // returns the accumulator of the key, creating it with the factory on first use
+    public A get(int key) {
+        int mask = slots.length - 1;
+        int slot = mix(key) & mask;
+        while (slots[slot] != 0) {
+            int index = slots[slot] - 1;
+            if (keys[index] == key) {
+                return values.get(index);
+            }
+            slot = (slot + 1) & mask;
+        }
+        A value = factory.apply(key);
+        int index = values.size();
+        if (index == keys.length) {
+            keys = Arrays.copyOf(keys, keys.length * 2);
+        }
+        keys[index] = key;
+        values.add(value);
+        slots[slot] = index + 1;
+        if ((index + 1) * 2 > slots.length) {
+            rehash();
+        }
+        return value;
+    }
+
+    // returns the accumulator of the key or null, never creates one
+    public A find(int key) {
+        int mask = slots.length - 1;
+        int slot = mix(key) & mask;
+        while (slots[slot] != 0) {
+            int index = slots[slot] - 1;
+            if (keys[index] == key) {
+                return values.get(index);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public int keyAt(int index) {
+        return keys[index];
+    }
+
+    public A valueAt(int index) {
+        return values.get(index);
+    }
+
+    // accumulators in first-seen order, the list is a copy
+    public List<A> values() {
+        return new ArrayList<>(values);
+    }
+
+    private void rehash() {
+        int[] newSlots = new int[slots.length * 2];
+        int mask = newSlots.length - 1;
+        for (int index = 0; index < values.size(); index++) {
+            int slot = mix(keys[index]) & mask;
+            while (newSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = index + 1;
+        }
+        slots = newSlots;
+    }
+
+    // murmur3 finalizer, spreads sequential ids over the table
+    private static int mix(int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
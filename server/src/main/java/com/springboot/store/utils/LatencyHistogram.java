@@ -0,0 +1,54 @@
+package com.springboot.store.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// lock-free histogram of durations in nanoseconds. Each power of two is split in four buckets,
+// so a percentile is reported as the upper bound of a bucket at most a quarter wider than its values
+public final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 4;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(nanos, 1)));
+        total.incrementAndGet();
+    }
+
+    public long count() {
+        return total.get();
+    }
+
+    // duration at or below which the given share (0 to 1) of the recorded durations fall, 0 when nothing was recorded
+    public long percentile(double share) {
+        long recorded = total.get();
+        if (recorded == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(share * recorded));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return upperBoundOf(bucket);
+            }
+        }
+        // records landing while the buckets are walked
+        return upperBoundOf(counts.length() - 1);
+    }
+
+    // values below four get a bucket each, larger ones are placed by their highest bit and the two bits after it
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return exponent * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS;
+        int sub = bucket % SUB_BUCKETS;
+        if (exponent >= 62) return Long.MAX_VALUE;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 2)) - 1;
+    }
+}
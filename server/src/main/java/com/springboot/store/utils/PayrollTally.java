@@ -0,0 +1,81 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.entity.ShiftAttendanceRecord;
+import com.springboot.store.entity.StaffBonusSalary;
+import com.springboot.store.entity.StaffPunishSalary;
+import org.apache.commons.lang3.time.DateUtils;
+
+import java.util.*;
+
+// attended shifts, bonus and penalty of a set of attendance records per staff and month.
+// Only records the payroll counts take part: the ones still attached to a store and a daily shift.
+// Taken before a change and subtracted from the one taken after, it is the delta the ledger applies
+public final class PayrollTally {
+    // staff id, then month start millis, to attended shifts, bonus and penalty
+    private final Map<Integer, Map<Long, long[]>> totals = new HashMap<>();
+
+    public static PayrollTally of(Collection<ShiftAttendanceRecord> records) {
+        PayrollTally tally = new PayrollTally();
+        if (records == null) return tally;
+        for (ShiftAttendanceRecord record : records) {
+            tally.add(record, 1);
+        }
+        return tally;
+    }
+
+    public static PayrollTally empty() {
+        return new PayrollTally();
+    }
+
+    public PayrollTally minus(PayrollTally other) {
+        PayrollTally delta = new PayrollTally();
+        totals.forEach((staffId, months) -> months.forEach((month, values) -> delta.add(staffId, month, values, 1)));
+        other.totals.forEach((staffId, months) -> months.forEach((month, values) -> delta.add(staffId, month, values, -1)));
+        return delta;
+    }
+
+    public boolean isEmpty() {
+        return totals.isEmpty();
+    }
+
+    // staff ids ascending, then months ascending, so writers lock ledger rows in the same order
+    public void forEachSorted(Consumer consumer) {
+        for (Integer staffId : new TreeSet<>(totals.keySet())) {
+            for (Map.Entry<Long, long[]> month : new TreeMap<>(totals.get(staffId)).entrySet()) {
+                long[] values = month.getValue();
+                if (values[0] == 0 && values[1] == 0 && values[2] == 0) continue;
+                consumer.accept(staffId, new Date(month.getKey()), (int) values[0], values[1], values[2]);
+            }
+        }
+    }
+
+    private void add(ShiftAttendanceRecord record, int sign) {
+        if (record.getStore() == null || record.getDailyShift() == null || record.getDate() == null) return;
+        long bonus = 0;
+        if (record.getBonusSalaryList() != null) {
+            for (StaffBonusSalary staffBonusSalary : record.getBonusSalaryList()) {
+                bonus += (long) staffBonusSalary.getValue() * staffBonusSalary.getMultiply();
+            }
+        }
+        long penalty = 0;
+        if (record.getPunishSalaryList() != null) {
+            for (StaffPunishSalary staffPunishSalary : record.getPunishSalaryList()) {
+                penalty += (long) staffPunishSalary.getValue() * staffPunishSalary.getMultiply();
+            }
+        }
+        long month = DateUtils.truncate(record.getDate(), Calendar.MONTH).getTime();
+        add(record.getStaffId(), month, new long[]{record.isHasAttend() ? 1 : 0, bonus, penalty}, sign);
+    }
+
+    private void add(int staffId, long month, long[] values, int sign) {
+        long[] sums = totals.computeIfAbsent(staffId, id -> new HashMap<>()).computeIfAbsent(month, m -> new long[3]);
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] += sign * values[i];
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void accept(int staffId, Date periodStart, int attendedShifts, long bonus, long penalty);
+    }
+}
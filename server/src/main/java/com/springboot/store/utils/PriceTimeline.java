@@ -0,0 +1,78 @@
+package com.springboot.store.utils;
+
+import java.util.Arrays;
+
+// immutable price history of one product: timestamps ascending, prices[i] took effect at timestamps[i]
+public final class PriceTimeline {
+    // a timestamp and a price per entry, plus the two array headers and the instance itself
+    private static final int BYTES_PER_ENTRY = 16;
+    private static final int BYTES_PER_TIMELINE = 64;
+
+    private final long[] timestamps;
+    private final double[] prices;
+
+    public PriceTimeline(long[] timestamps, double[] prices) {
+        if (timestamps.length != prices.length) {
+            throw new IllegalArgumentException("timestamps and prices must have the same length");
+        }
+        this.timestamps = timestamps;
+        this.prices = prices;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    public long memoryBytes() {
+        return BYTES_PER_TIMELINE + (long) timestamps.length * BYTES_PER_ENTRY;
+    }
+
+    // price of the last entry created strictly before the instant, or the first price when there is none
+    // (same rule as Product.getOriginalPriceBeforeDate)
+    public double priceAt(long instant) {
+        if (timestamps.length == 0) return 0;
+        int low = 0;
+        int high = timestamps.length - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < instant) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return prices[found];
+    }
+
+    public double latestPrice() {
+        return timestamps.length == 0 ? 0 : prices[prices.length - 1];
+    }
+
+    // copy-on-write, readers holding the old instance are never affected
+    public PriceTimeline append(long timestamp, double price) {
+        int index = timestamps.length;
+        while (index > 0 && timestamps[index - 1] > timestamp) {
+            index--;
+        }
+        long[] newTimestamps = new long[timestamps.length + 1];
+        double[] newPrices = new double[prices.length + 1];
+        System.arraycopy(timestamps, 0, newTimestamps, 0, index);
+        System.arraycopy(prices, 0, newPrices, 0, index);
+        newTimestamps[index] = timestamp;
+        newPrices[index] = price;
+        System.arraycopy(timestamps, index, newTimestamps, index + 1, timestamps.length - index);
+        System.arraycopy(prices, index, newPrices, index + 1, prices.length - index);
+        return new PriceTimeline(newTimestamps, newPrices);
+    }
+
+    public static PriceTimeline empty() {
+        return new PriceTimeline(new long[0], new double[0]);
+    }
+
+    @Override
+    public String toString() {
+        return "PriceTimeline{timestamps=" + Arrays.toString(timestamps) + ", prices=" + Arrays.toString(prices) + "}";
+    }
+}
@@ -0,0 +1,7 @@
+package com.springboot.store.utils;
+
+public enum ProductMatch {
+    BARCODE,
+    NAME,
+    FUZZY
+}
@@ -0,0 +1,364 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.payload.ProductSearchHit;
+import lombok.AllArgsConstructor;
+
+import java.text.Normalizer;
+import java.util.*;
+
+// search index of one store's products: exact barcodes, name words sorted for prefix lookups
+// and the trigrams of every distinct word for typo tolerant matching. Names are compared lowercased and without diacritics.
+// Not thread-safe, the owner guards searches and updates with a lock
+public final class ProductSearchIndex {
+    // trigram similarity (shared / all distinct) a word needs to stand in for a misspelled query word
+    private static final double FUZZY_THRESHOLD = 0.4;
+    private static final int MIN_FUZZY_LENGTH = 3;
+    // closest words kept per misspelled query word
+    private static final int MAX_CORRECTIONS = 10;
+    // products checked against the whole query before a search gives up on filling the page,
+    // keeps queries whose words are common but rarely together under a millisecond
+    private static final int MAX_SCANNED_PRODUCTS = 5_000;
+
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private final Map<String, Postings> barcodes = new HashMap<>();
+    private final NavigableMap<String, Word> words = new TreeMap<>();
+    // trigram to ids of the words holding it. Word ids are slots of wordsById, freed slots are reused
+    private final Map<String, Postings> trigrams = new HashMap<>();
+    private final List<Word> wordsById = new ArrayList<>();
+    private final Deque<Integer> freeWordIds = new ArrayDeque<>();
+
+    public int size() {
+        return documents.size();
+    }
+
+    // adds the product or replaces its previous name and barcode
+    public void put(int id, String name, String barcode) {
+        remove(id);
+        String[] nameWords = Arrays.stream(tokenize(name)).distinct().toArray(String[]::new);
+        documents.put(id, new Document(name, barcode, nameWords));
+        if (barcode != null && !barcode.isBlank()) {
+            barcodes.computeIfAbsent(barcode.trim(), key -> new Postings()).add(id);
+        }
+        for (String text : nameWords) {
+            Word word = words.get(text);
+            if (word == null) {
+                word = addWord(text);
+            }
+            word.products.add(id);
+        }
+    }
+
+    public void remove(int id) {
+        Document document = documents.remove(id);
+        if (document == null) return;
+        if (document.barcode != null && !document.barcode.isBlank()) {
+            Postings postings = barcodes.get(document.barcode.trim());
+            postings.remove(id);
+            if (postings.size == 0) {
+                barcodes.remove(document.barcode.trim());
+            }
+        }
+        for (String text : document.words) {
+            Word word = words.get(text);
+            word.products.remove(id);
+            if (word.products.size == 0) {
+                removeWord(word);
+            }
+        }
+    }
+
+    // barcode hits first, then names with a word starting with each query word (exact words first),
+    // then names where misspelled query words match the closest indexed words, closest first
+    public List<ProductSearchHit> search(String query, int limit) {
+        List<ProductSearchHit> hits = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        if (query == null || query.isBlank() || limit <= 0) return hits;
+
+        Postings barcodeHits = barcodes.get(query.trim());
+        if (barcodeHits != null) {
+            for (int i = 0; i < barcodeHits.size && hits.size() < limit; i++) {
+                addHit(hits, seen, barcodeHits.ids[i], ProductMatch.BARCODE);
+            }
+        }
+
+        String[] queryWords = tokenize(query);
+        if (queryWords.length == 0) return hits;
+        if (hits.size() < limit) {
+            searchPrefixes(queryWords, limit, hits, seen);
+        }
+        if (hits.size() < limit) {
+            searchCorrections(queryWords, limit, hits, seen);
+        }
+        return hits;
+    }
+
+    // the query word with the fewest candidate products drives the scan, the others are checked against each candidate's words.
+    // Matching words are walked in sorted order, so the scan stops as soon as the page is full
+    private void searchPrefixes(String[] queryWords, int limit, List<ProductSearchHit> hits, Set<Integer> seen) {
+        String driver = null;
+        int driverProducts = Integer.MAX_VALUE;
+        for (String queryWord : queryWords) {
+            int products = prefixProducts(queryWord, driverProducts);
+            if (products < driverProducts) {
+                driver = queryWord;
+                driverProducts = products;
+            }
+        }
+        if (driverProducts == 0) return;
+        int scanned = 0;
+        for (Word word : prefixRange(driver)) {
+            for (int i = 0; i < word.products.size; i++) {
+                if (++scanned > MAX_SCANNED_PRODUCTS) return;
+                int id = word.products.ids[i];
+                if (seen.contains(id) || !matchesAll(documents.get(id).words, queryWords, null)) continue;
+                addHit(hits, seen, id, ProductMatch.NAME);
+                if (hits.size() >= limit) return;
+            }
+        }
+    }
+
+    // each misspelled query word gets its closest indexed words, a name matches when every query word
+    // is a prefix of one of its words or one of those corrections. The word with the fewest corrected products drives the scan
+    private void searchCorrections(String[] queryWords, int limit, List<ProductSearchHit> hits, Set<Integer> seen) {
+        List<List<Word>> corrections = new ArrayList<>(queryWords.length);
+        List<Word> driver = null;
+        int driverProducts = Integer.MAX_VALUE;
+        for (String queryWord : queryWords) {
+            // a word that starts an indexed word is taken as typed, a word matching nothing rules out every name
+            boolean typed = prefixProducts(queryWord, 1) > 0;
+            List<Word> closest = !typed && isCorrectable(queryWord) ? closestWords(queryWord) : List.of();
+            if (closest.isEmpty() && !typed) return;
+            corrections.add(closest);
+            int products = 0;
+            for (Word word : closest) {
+                products += word.products.size;
+            }
+            if (!closest.isEmpty() && products < driverProducts) {
+                driver = closest;
+                driverProducts = products;
+            }
+        }
+        if (driver == null) return;
+
+        int scanned = 0;
+        for (Word word : driver) {
+            for (int i = 0; i < word.products.size; i++) {
+                if (++scanned > MAX_SCANNED_PRODUCTS) return;
+                int id = word.products.ids[i];
+                if (seen.contains(id) || !matchesAll(documents.get(id).words, queryWords, corrections)) continue;
+                addHit(hits, seen, id, ProductMatch.FUZZY);
+                if (hits.size() >= limit) return;
+            }
+        }
+    }
+
+    // a word needs minShared of the query trigrams, so it must hold one of the (size - minShared + 1) rarest:
+    // only those create candidates, the common ones are counted for existing candidates only.
+    // Similarity is at most the ratio of the two trigram counts, words far shorter or longer than the query are never candidates
+    private List<Word> closestWords(String queryWord) {
+        String[] queryTrigrams = trigramsOf(queryWord);
+        Postings[] postings = new Postings[queryTrigrams.length];
+        for (int i = 0; i < queryTrigrams.length; i++) {
+            postings[i] = trigrams.get(queryTrigrams[i]);
+        }
+        Arrays.sort(postings, Comparator.comparingInt(p -> p == null ? 0 : p.size));
+        int minShared = (int) Math.ceil(FUZZY_THRESHOLD * queryTrigrams.length);
+        int candidateTrigrams = queryTrigrams.length - minShared + 1;
+        int minTrigrams = minShared;
+        int maxTrigrams = (int) Math.floor(queryTrigrams.length / FUZZY_THRESHOLD);
+
+        IntKeyAggregator<int[]> shared = new IntKeyAggregator<>(id -> new int[1]);
+        for (int i = 0; i < postings.length; i++) {
+            if (postings[i] == null) continue;
+            for (int j = 0; j < postings[i].size; j++) {
+                int wordId = postings[i].ids[j];
+                int[] count;
+                if (i < candidateTrigrams) {
+                    int wordTrigrams = wordsById.get(wordId).trigrams.length;
+                    count = wordTrigrams >= minTrigrams && wordTrigrams <= maxTrigrams ? shared.get(wordId) : null;
+                } else {
+                    count = shared.find(wordId);
+                }
+                if (count != null) count[0]++;
+            }
+        }
+
+        // most similar first, then the lower word id so the cut is stable
+        TopN<double[]> closest = new TopN<>(MAX_CORRECTIONS, Comparator.<double[]>comparingDouble(match -> -match[1])
+                .thenComparingDouble(match -> match[0]));
+        for (int i = 0; i < shared.size(); i++) {
+            int wordId = shared.keyAt(i);
+            int count = shared.valueAt(i)[0];
+            if (count < minShared) continue;
+            double similarity = (double) count / (queryTrigrams.length + wordsById.get(wordId).trigrams.length - count);
+            if (similarity >= FUZZY_THRESHOLD) {
+                closest.offer(new double[]{wordId, similarity});
+            }
+        }
+        List<Word> result = new ArrayList<>();
+        for (double[] match : closest.toList()) {
+            result.add(wordsById.get((int) match[0]));
+        }
+        return result;
+    }
+
+    // numbers (sizes, codes) are only matched as prefixes, a typo in them is no near miss
+    private static boolean isCorrectable(String queryWord) {
+        return queryWord.length() >= MIN_FUZZY_LENGTH && queryWord.chars().anyMatch(Character::isLetter);
+    }
+
+    // corrections may be null, the query words then only match as prefixes
+    private static boolean matchesAll(String[] nameWords, String[] queryWords, List<List<Word>> corrections) {
+        for (int q = 0; q < queryWords.length; q++) {
+            boolean found = false;
+            for (String nameWord : nameWords) {
+                if (nameWord.startsWith(queryWords[q]) || corrections != null && isCorrection(corrections.get(q), nameWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    private static boolean isCorrection(List<Word> corrections, String nameWord) {
+        for (Word word : corrections) {
+            if (word.text.equals(nameWord)) return true;
+        }
+        return false;
+    }
+
+    private Collection<Word> prefixRange(String prefix) {
+        return words.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values();
+    }
+
+    // products under the words starting with the prefix, counted until the bound is reached
+    private int prefixProducts(String prefix, int bound) {
+        int products = 0;
+        for (Word word : prefixRange(prefix)) {
+            products += word.products.size;
+            if (products >= bound) break;
+        }
+        return products;
+    }
+
+    private void addHit(List<ProductSearchHit> hits, Set<Integer> seen, int id, ProductMatch match) {
+        if (!seen.add(id)) return;
+        Document document = documents.get(id);
+        hits.add(ProductSearchHit.builder()
+                .id(id)
+                .name(document.name)
+                .barcode(document.barcode)
+                .match(match)
+                .build());
+    }
+
+    private Word addWord(String text) {
+        int id = freeWordIds.isEmpty() ? wordsById.size() : freeWordIds.pop();
+        Word word = new Word(id, text, trigramsOf(text), new Postings());
+        if (id == wordsById.size()) {
+            wordsById.add(word);
+        } else {
+            wordsById.set(id, word);
+        }
+        words.put(text, word);
+        for (String trigram : word.trigrams) {
+            trigrams.computeIfAbsent(trigram, key -> new Postings()).add(id);
+        }
+        return word;
+    }
+
+    private void removeWord(Word word) {
+        words.remove(word.text);
+        wordsById.set(word.id, null);
+        freeWordIds.push(word.id);
+        for (String trigram : word.trigrams) {
+            Postings postings = trigrams.get(trigram);
+            postings.remove(word.id);
+            if (postings.size == 0) {
+                trigrams.remove(trigram);
+            }
+        }
+    }
+
+    // lowercased words of letters and digits, diacritics removed ("Sữa Tươi" -> "sua", "tuoi").
+    // Walks the characters once instead of going through regular expressions, indexing a store tokenizes every name
+    private static String[] tokenize(String text) {
+        if (text == null) return new String[0];
+        String lower = text.toLowerCase(Locale.ROOT);
+        String folded = isAscii(lower) ? lower : Normalizer.normalize(lower, Normalizer.Form.NFD);
+        List<String> result = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                token.append(c == 'đ' ? 'd' : c);
+            } else if (!token.isEmpty()) {
+                result.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (!token.isEmpty()) {
+            result.add(token.toString());
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) return false;
+        }
+        return true;
+    }
+
+    // distinct trigrams of the word padded with two leading and one trailing space
+    private static String[] trigramsOf(String word) {
+        Set<String> result = new LinkedHashSet<>();
+        String padded = "  " + word + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result.toArray(new String[0]);
+    }
+
+    @AllArgsConstructor
+    private static class Document {
+        private final String name;
+        private final String barcode;
+        // distinct normalized words of the name
+        private final String[] words;
+    }
+
+    @AllArgsConstructor
+    private static class Word {
+        private final int id;
+        private final String text;
+        private final String[] trigrams;
+        // products whose name holds the word
+        private final Postings products;
+    }
+
+    // unordered ids, removal swaps the last id into the freed slot
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        private void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+}
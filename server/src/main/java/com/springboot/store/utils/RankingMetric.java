@@ -0,0 +1,34 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.exception.CustomException;
+import org.springframework.http.HttpStatus;
+
+public enum RankingMetric {
+    REVENUE("revenue"),
+    PROFIT("profit"),
+    QUANTITY("quantity"),
+    RETURN_RATE("return-rate");
+
+    private final String param;
+
+    RankingMetric(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    // no metric ranks by revenue
+    public static RankingMetric fromParam(String param) {
+        if (param == null) {
+            return REVENUE;
+        }
+        for (RankingMetric metric : values()) {
+            if (metric.param.equalsIgnoreCase(param)) {
+                return metric;
+            }
+        }
+        throw new CustomException("Unsupported ranking metric: " + param, HttpStatus.BAD_REQUEST);
+    }
+}
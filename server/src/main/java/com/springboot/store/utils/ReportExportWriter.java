@@ -0,0 +1,91 @@
+package com.springboot.store.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// writes report rows one at a time, nothing is kept after a row is written.
+// CSV takes its header from the keys of the first row.
+public class ReportExportWriter implements Closeable {
+    private static final TypeReference<LinkedHashMap<String, Object>> ROW_TYPE = new TypeReference<>() {
+    };
+
+    private final ExportFormat format;
+    private final ObjectMapper objectMapper;
+    private final Writer writer;
+    private final JsonGenerator jsonGenerator;
+    private boolean headerWritten;
+
+    public ReportExportWriter(OutputStream outputStream, ExportFormat format, ObjectMapper objectMapper) throws IOException {
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        this.jsonGenerator = objectMapper.getFactory().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM)
+                .setRootValueSeparator(null);
+    }
+
+    // writes a DTO with the same field names the JSON endpoint uses
+    public void writeObject(Object row) throws IOException {
+        writeRow(objectMapper.convertValue(row, ROW_TYPE));
+    }
+
+    public void writeRow(Map<String, ?> row) throws IOException {
+        if (format == ExportFormat.NDJSON) {
+            objectMapper.writeValue(jsonGenerator, row);
+            jsonGenerator.flush();
+            writer.write('\n');
+            return;
+        }
+        if (!headerWritten) {
+            writeCsvLine(row.keySet());
+            headerWritten = true;
+        }
+        writeCsvLine(row.values());
+    }
+
+    private void writeCsvLine(Collection<?> values) throws IOException {
+        boolean first = true;
+        for (Object value : values) {
+            if (!first) {
+                writer.write(',');
+            }
+            writer.write(toCsvCell(value));
+            first = false;
+        }
+        writer.write("\r\n");
+    }
+
+    private String toCsvCell(Object value) throws IOException {
+        if (value == null) {
+            return "";
+        }
+        String text;
+        if (value instanceof Map<?, ?> || value instanceof Collection<?> || value instanceof Date) {
+            text = objectMapper.writeValueAsString(value);
+            if (value instanceof Date) {
+                text = text.replace("\"", "");
+            }
+        } else {
+            text = value.toString();
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    @Override
+    public void close() throws IOException {
+        jsonGenerator.close();
+        writer.flush();
+    }
+}
@@ -0,0 +1,9 @@
+package com.springboot.store.utils;
+
+public enum ReportJobStatus {
+    QUEUED,
+    RUNNING,
+    DONE,
+    FAILED,
+    CANCELLED
+}
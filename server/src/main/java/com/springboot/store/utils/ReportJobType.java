@@ -0,0 +1,37 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.exception.CustomException;
+import org.springframework.http.HttpStatus;
+
+// report types that can run as a background job, named after their /api/reports path
+public enum ReportJobType {
+    SALES("sales"),
+    SALES_WITH_PROFIT("sales-with-profit"),
+    SALES_OF_STAFF("sales-of-staff"),
+    SALES_PRODUCT_PROFIT("sales-product-profit"),
+    SALES_OF_CUSTOMER("sales-of-customer"),
+    FINANCIAL_REPORT("financial-report"),
+    RECORD_OF_PRODUCT_SELL("record-of-product-sell"),
+    RECORD_OF_SALE("record-of-sale"),
+    RECORD_OF_PRODUCT("record-of-product"),
+    RECORD_OF_SUPPLIER("record-of-supplier");
+
+    private final String path;
+
+    ReportJobType(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public static ReportJobType fromParam(String type) {
+        for (ReportJobType jobType : values()) {
+            if (jobType.path.equalsIgnoreCase(type)) {
+                return jobType;
+            }
+        }
+        throw new CustomException("Unsupported report type: " + type, HttpStatus.BAD_REQUEST);
+    }
+}
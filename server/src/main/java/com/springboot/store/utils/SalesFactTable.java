@@ -0,0 +1,217 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.payload.report.SalesSliceRow;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+// invoice and return lines of one store as parallel primitive columns, one row per line.
+// Returns are stored with negated quantity, revenue and cost so every sum is net.
+// Missing ids (walk-in customer, product without group...) are stored as 0.
+// Not thread-safe, the owner guards reads and appends with a lock
+public final class SalesFactTable {
+    // createdAt, five ids, hour, quantity, revenue and cost
+    private static final int BYTES_PER_ROW = 8 + 5 * 4 + 1 + 4 + 8 + 8;
+
+    private int size;
+    private long[] createdAt;
+    private int[] productId;
+    private int[] groupId;
+    private int[] brandId;
+    private int[] staffId;
+    private int[] customerId;
+    private byte[] hour;
+    private int[] quantity;
+    private double[] revenue;
+    private double[] cost;
+    // rows are kept in time order for range lookups, a late append switches them to a full scan until the next sort
+    private boolean sorted = true;
+
+    public SalesFactTable(int capacity) {
+        allocate(Math.max(capacity, 16));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long memoryBytes() {
+        return (long) createdAt.length * BYTES_PER_ROW;
+    }
+
+    public void append(long createdAt, int hour, int productId, int groupId, int brandId, int staffId, int customerId,
+                       int quantity, double revenue, double cost) {
+        if (size == this.createdAt.length) {
+            allocate(size + (size >> 1));
+        }
+        if (size > 0 && createdAt < this.createdAt[size - 1]) {
+            sorted = false;
+        }
+        this.createdAt[size] = createdAt;
+        this.hour[size] = (byte) hour;
+        this.productId[size] = productId;
+        this.groupId[size] = groupId;
+        this.brandId[size] = brandId;
+        this.staffId[size] = staffId;
+        this.customerId[size] = customerId;
+        this.quantity[size] = quantity;
+        this.revenue[size] = revenue;
+        this.cost[size] = cost;
+        size++;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    // puts the rows in time order after a bulk load that appended several time-ordered runs (invoices, then returns).
+    // Stable, rows of the same instant keep their append order
+    public void sortByTime() {
+        if (sorted) return;
+        int[] order = new int[size];
+        for (int row = 0; row < size; row++) {
+            order[row] = row;
+        }
+        int[] buffer = new int[size];
+        // bottom-up merge sort of row numbers by createdAt
+        for (int width = 1; width < size; width *= 2) {
+            for (int start = 0; start < size; start += 2 * width) {
+                int middle = Math.min(start + width, size);
+                int end = Math.min(start + 2 * width, size);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    if (left < middle && (right >= end || createdAt[order[left]] <= createdAt[order[right]])) {
+                        buffer[i] = order[left++];
+                    } else {
+                        buffer[i] = order[right++];
+                    }
+                }
+            }
+            int[] swap = order;
+            order = buffer;
+            buffer = swap;
+        }
+
+        createdAt = permute(createdAt, order);
+        hour = permute(hour, order);
+        productId = permute(productId, order);
+        groupId = permute(groupId, order);
+        brandId = permute(brandId, order);
+        staffId = permute(staffId, order);
+        customerId = permute(customerId, order);
+        quantity = permute(quantity, order);
+        revenue = permute(revenue, order);
+        cost = permute(cost, order);
+        sorted = true;
+    }
+
+    // sums the rows of [from, to) that match every filter, grouped by one dimension or into a single row when groupBy is null
+    public List<SalesSliceRow> slice(long from, long to, SliceDimension groupBy, Map<SliceDimension, Integer> filters) {
+        SliceDimension[] filterDimensions = filters.keySet().toArray(new SliceDimension[0]);
+        int[] filterValues = new int[filterDimensions.length];
+        for (int i = 0; i < filterDimensions.length; i++) {
+            filterValues[i] = filters.get(filterDimensions[i]);
+        }
+
+        int first = sorted ? lowerBound(from) : 0;
+        int last = sorted ? lowerBound(to) : size;
+        IntKeyAggregator<SalesSliceRow> rows = new IntKeyAggregator<>(key -> SalesSliceRow.builder()
+                .key(groupBy != SliceDimension.HOUR && key == 0 ? null : key)
+                .build());
+
+        scan:
+        for (int row = first; row < last; row++) {
+            if (!sorted && (createdAt[row] < from || createdAt[row] >= to)) continue;
+            for (int i = 0; i < filterDimensions.length; i++) {
+                if (valueAt(filterDimensions[i], row) != filterValues[i]) continue scan;
+            }
+            SalesSliceRow slice = rows.get(groupBy == null ? 0 : valueAt(groupBy, row));
+            slice.setLines(slice.getLines() + 1);
+            slice.setQuantity(slice.getQuantity() + quantity[row]);
+            slice.setRevenue(slice.getRevenue() + revenue[row]);
+            slice.setCost(slice.getCost() + cost[row]);
+        }
+
+        List<SalesSliceRow> result = rows.values();
+        for (SalesSliceRow slice : result) {
+            slice.setProfit(slice.getRevenue() - slice.getCost());
+        }
+        result.sort(Comparator.comparing(SalesSliceRow::getRevenue).reversed());
+        return result;
+    }
+
+    private int valueAt(SliceDimension dimension, int row) {
+        return switch (dimension) {
+            case PRODUCT -> productId[row];
+            case GROUP -> groupId[row];
+            case BRAND -> brandId[row];
+            case STAFF -> staffId[row];
+            case CUSTOMER -> customerId[row];
+            case HOUR -> hour[row];
+        };
+    }
+
+    // first row created at or after the instant
+    private int lowerBound(long instant) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (createdAt[mid] < instant) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // new columns keep the capacity of the old ones, so appends after a sort do not grow them at once
+    private static long[] permute(long[] column, int[] order) {
+        long[] result = new long[column.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = column[order[i]];
+        }
+        return result;
+    }
+
+    private static int[] permute(int[] column, int[] order) {
+        int[] result = new int[column.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = column[order[i]];
+        }
+        return result;
+    }
+
+    private static byte[] permute(byte[] column, int[] order) {
+        byte[] result = new byte[column.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = column[order[i]];
+        }
+        return result;
+    }
+
+    private static double[] permute(double[] column, int[] order) {
+        double[] result = new double[column.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = column[order[i]];
+        }
+        return result;
+    }
+
+    private void allocate(int capacity) {
+        createdAt = createdAt == null ? new long[capacity] : Arrays.copyOf(createdAt, capacity);
+        hour = hour == null ? new byte[capacity] : Arrays.copyOf(hour, capacity);
+        productId = productId == null ? new int[capacity] : Arrays.copyOf(productId, capacity);
+        groupId = groupId == null ? new int[capacity] : Arrays.copyOf(groupId, capacity);
+        brandId = brandId == null ? new int[capacity] : Arrays.copyOf(brandId, capacity);
+        staffId = staffId == null ? new int[capacity] : Arrays.copyOf(staffId, capacity);
+        customerId = customerId == null ? new int[capacity] : Arrays.copyOf(customerId, capacity);
+        quantity = quantity == null ? new int[capacity] : Arrays.copyOf(quantity, capacity);
+        revenue = revenue == null ? new double[capacity] : Arrays.copyOf(revenue, capacity);
+        cost = cost == null ? new double[capacity] : Arrays.copyOf(cost, capacity);
+    }
+}
@@ -0,0 +1,32 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.exception.CustomException;
+import org.springframework.http.HttpStatus;
+
+public enum SliceDimension {
+    PRODUCT("product"),
+    GROUP("group"),
+    BRAND("brand"),
+    STAFF("staff"),
+    CUSTOMER("customer"),
+    HOUR("hour");
+
+    private final String param;
+
+    SliceDimension(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public static SliceDimension fromParam(String param) {
+        for (SliceDimension dimension : values()) {
+            if (dimension.param.equalsIgnoreCase(param)) {
+                return dimension;
+            }
+        }
+        throw new CustomException("Unsupported slice dimension: " + param, HttpStatus.BAD_REQUEST);
+    }
+}
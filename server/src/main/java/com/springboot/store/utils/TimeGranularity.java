@@ -0,0 +1,73 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.exception.CustomException;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+// bucket keys are local epoch hours for HOUR and the local epoch day of the bucket's first day otherwise
+public enum TimeGranularity {
+    HOUR("hour"),
+    DAY("day"),
+    WEEK("week"),
+    MONTH("month");
+
+    private final String param;
+
+    TimeGranularity(String param) {
+        this.param = param;
+    }
+
+    public String getParam() {
+        return param;
+    }
+
+    public int keyOfHour(long epochDay, int hour) {
+        if (this == HOUR) return (int) (epochDay * 24 + hour);
+        return keyOfDay(epochDay);
+    }
+
+    public int keyOfDay(long epochDay) {
+        return switch (this) {
+            case HOUR -> throw new IllegalStateException("a day holds several hour buckets");
+            case DAY -> (int) epochDay;
+            // 1970-01-01 was a Thursday, ISO weeks start on Monday
+            case WEEK -> (int) (epochDay - Math.floorMod(epochDay + 3, 7));
+            case MONTH -> (int) (epochDay - LocalDate.ofEpochDay(epochDay).getDayOfMonth() + 1);
+        };
+    }
+
+    public int keyOf(Date date) {
+        LocalDateTime local = LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+        return keyOfHour(local.toLocalDate().toEpochDay(), local.getHour());
+    }
+
+    public int nextKey(int key) {
+        return switch (this) {
+            case HOUR, DAY -> key + 1;
+            case WEEK -> key + 7;
+            case MONTH -> (int) LocalDate.ofEpochDay(key).plusMonths(1).toEpochDay();
+        };
+    }
+
+    public Date startOf(int key) {
+        if (this == HOUR) {
+            return Date.from(LocalDateTime.ofEpochSecond(key * 3600L, 0, ZoneOffset.UTC).atZone(ZoneId.systemDefault()).toInstant());
+        }
+        return Date.from(LocalDate.ofEpochDay(key).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public static TimeGranularity fromParam(String param) {
+        if (param == null) return DAY;
+        for (TimeGranularity granularity : values()) {
+            if (granularity.param.equalsIgnoreCase(param)) {
+                return granularity;
+            }
+        }
+        throw new CustomException("Unsupported granularity: " + param, HttpStatus.BAD_REQUEST);
+    }
+}
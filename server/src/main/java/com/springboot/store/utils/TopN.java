@@ -0,0 +1,38 @@
+package com.springboot.store.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// keeps the best limit elements offered, in one pass. The kept elements sit in a heap with the worst on top,
+// so an offer costs O(log limit) and nothing below the cut is retained
+public final class TopN<T> {
+    private final int limit;
+    // best first, must not consider two distinct elements equal or the cut depends on offer order
+    private final Comparator<T> order;
+    private final PriorityQueue<T> heap;
+
+    public TopN(int limit, Comparator<T> order) {
+        this.limit = limit;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.max(limit, 1), Collections.reverseOrder(order));
+    }
+
+    public void offer(T value) {
+        if (heap.size() < limit) {
+            heap.add(value);
+        } else if (limit > 0 && order.compare(value, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(value);
+        }
+    }
+
+    // kept elements, best first
+    public List<T> toList() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+}
@@ -0,0 +1,223 @@
+package com.springboot.store.utils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// first worksheet of an .xlsx workbook, parsed as a stream so only the current row is in memory.
+// The shared string table is loaded up front since text cells only hold an index into it.
+// Formula cells give their cached value, dates their serial number, booleans "true" or "false"
+public class XlsxRowReader implements ImportRowReader {
+    private static final String DEFAULT_SHEET = "xl/worksheets/sheet1.xml";
+
+    private final ZipFile zip;
+    private final InputStream sheetStream;
+    private final XMLStreamReader sheet;
+    private final List<String> sharedStrings;
+    // empty rows are left out of the file, they are handed out before the next stored row
+    private int nextRowNumber = 1;
+    private int emptyRowsAhead;
+    private List<String> rowAhead;
+
+    public XlsxRowReader(Path file) throws IOException {
+        this.zip = new ZipFile(file.toFile());
+        try {
+            this.sharedStrings = readSharedStrings();
+            ZipEntry sheetEntry = zip.getEntry(firstSheetPath());
+            if (sheetEntry == null) {
+                throw new IOException("The workbook has no worksheet");
+            }
+            this.sheetStream = zip.getInputStream(sheetEntry);
+            this.sheet = inputFactory().createXMLStreamReader(sheetStream);
+        } catch (XMLStreamException | IOException e) {
+            zip.close();
+            throw e instanceof IOException io ? io : new IOException("Unreadable workbook", e);
+        }
+    }
+
+    @Override
+    public List<String> readRow() throws IOException {
+        try {
+            if (emptyRowsAhead > 0) {
+                emptyRowsAhead--;
+                return new ArrayList<>();
+            }
+            if (rowAhead != null) {
+                List<String> row = rowAhead;
+                rowAhead = null;
+                return row;
+            }
+            while (sheet.hasNext()) {
+                if (sheet.next() == XMLStreamConstants.START_ELEMENT && sheet.getLocalName().equals("row")) {
+                    String number = sheet.getAttributeValue(null, "r");
+                    int rowNumber = number != null ? Integer.parseInt(number) : nextRowNumber;
+                    List<String> row = readCells();
+                    emptyRowsAhead = Math.max(0, rowNumber - nextRowNumber);
+                    nextRowNumber = Math.max(nextRowNumber, rowNumber) + 1;
+                    if (emptyRowsAhead == 0) return row;
+                    rowAhead = row;
+                    emptyRowsAhead--;
+                    return new ArrayList<>();
+                }
+            }
+            return null;
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Unreadable worksheet", e);
+        }
+    }
+
+    // reads the cells up to the end of the current row element, missing cells become empty strings
+    private List<String> readCells() throws XMLStreamException {
+        List<String> cells = new ArrayList<>();
+        while (sheet.hasNext()) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.END_ELEMENT && sheet.getLocalName().equals("row")) {
+                return cells;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && sheet.getLocalName().equals("c")) {
+                String reference = sheet.getAttributeValue(null, "r");
+                String type = sheet.getAttributeValue(null, "t");
+                int column = reference != null ? columnOf(reference) : cells.size();
+                String value = readCellValue(type);
+                while (cells.size() < column) {
+                    cells.add("");
+                }
+                cells.add(value);
+            }
+        }
+        return cells;
+    }
+
+    private String readCellValue(String type) throws XMLStreamException {
+        StringBuilder value = new StringBuilder();
+        boolean inValue = false;
+        while (sheet.hasNext()) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = sheet.getLocalName();
+                inValue = name.equals("v") || name.equals("t");
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (sheet.getLocalName().equals("c")) break;
+                inValue = false;
+            } else if (inValue && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                value.append(sheet.getText());
+            }
+        }
+        String text = value.toString();
+        if ("s".equals(type)) {
+            int index = Integer.parseInt(text.trim());
+            return index < sharedStrings.size() ? sharedStrings.get(index) : "";
+        }
+        if ("b".equals(type)) {
+            return "1".equals(text) ? "true" : "false";
+        }
+        return text;
+    }
+
+    // "AB12" -> 27, zero based
+    private static int columnOf(String reference) {
+        int column = 0;
+        for (int i = 0; i < reference.length() && Character.isLetter(reference.charAt(i)); i++) {
+            column = column * 26 + (Character.toUpperCase(reference.charAt(i)) - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    // text of every shared string, rich text runs joined and phonetic hints left out
+    private List<String> readSharedStrings() throws IOException, XMLStreamException {
+        List<String> strings = new ArrayList<>();
+        ZipEntry entry = zip.getEntry("xl/sharedStrings.xml");
+        if (entry == null) return strings;
+        try (InputStream input = zip.getInputStream(entry)) {
+            XMLStreamReader reader = inputFactory().createXMLStreamReader(input);
+            StringBuilder current = null;
+            boolean inText = false;
+            int phonetic = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "si" -> current = new StringBuilder();
+                        case "rPh" -> phonetic++;
+                        case "t" -> inText = phonetic == 0;
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "si" -> strings.add(current != null ? current.toString() : "");
+                        case "rPh" -> phonetic--;
+                        case "t" -> inText = false;
+                        default -> {
+                        }
+                    }
+                } else if (inText && current != null && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                    current.append(reader.getText());
+                }
+            }
+            reader.close();
+        }
+        return strings;
+    }
+
+    // the first sheet listed in the workbook, found through its relationship id
+    private String firstSheetPath() throws IOException, XMLStreamException {
+        String relationshipId = null;
+        ZipEntry workbook = zip.getEntry("xl/workbook.xml");
+        if (workbook == null) return DEFAULT_SHEET;
+        try (InputStream input = zip.getInputStream(workbook)) {
+            XMLStreamReader reader = inputFactory().createXMLStreamReader(input);
+            while (reader.hasNext() && relationshipId == null) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("sheet")) {
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        if (reader.getAttributeLocalName(i).equals("id")) {
+                            relationshipId = reader.getAttributeValue(i);
+                        }
+                    }
+                }
+            }
+            reader.close();
+        }
+        ZipEntry relationships = zip.getEntry("xl/_rels/workbook.xml.rels");
+        if (relationshipId == null || relationships == null) return DEFAULT_SHEET;
+        try (InputStream input = zip.getInputStream(relationships)) {
+            XMLStreamReader reader = inputFactory().createXMLStreamReader(input);
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("Relationship")
+                        && relationshipId.equals(reader.getAttributeValue(null, "Id"))) {
+                    String target = reader.getAttributeValue(null, "Target");
+                    return target.startsWith("/") ? target.substring(1) : "xl/" + target;
+                }
+            }
+            reader.close();
+        }
+        return DEFAULT_SHEET;
+    }
+
+    // uploaded files are untrusted, no DTDs and no external entities
+    private static XMLInputFactory inputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sheet.close();
+        } catch (XMLStreamException e) {
+            // the zip is closed below either way
+        }
+        sheetStream.close();
+        zip.close();
+    }
+}
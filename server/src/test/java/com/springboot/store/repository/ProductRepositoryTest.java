@@ -0,0 +1,104 @@
+package com.springboot.store.repository;
+
+import com.springboot.store.entity.*;
+import com.springboot.store.mapper.ProductMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// maps pages of products the way the product listing does and counts the statements it takes
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:products;MODE=MySQL;NON_KEYWORDS=VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ProductRepositoryTest {
+    private static final int PRODUCTS = 500;
+    // products, their prices, properties and images, and the names of the properties
+    private static final int MAX_STATEMENTS_PER_PAGE = 8;
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Store store;
+
+    @BeforeEach
+    void createProducts() {
+        store = entityManager.persist(Store.builder().name("store").build());
+        List<ProductGroup> groups = new ArrayList<>();
+        List<ProductPropertyName> propertyNames = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            groups.add(entityManager.persist(ProductGroup.builder().name("group " + i).store(store).build()));
+            propertyNames.add(entityManager.persist(ProductPropertyName.builder().name("property " + i).store(store).build()));
+        }
+        ProductBrand brand = entityManager.persist(ProductBrand.builder().name("brand").store(store).build());
+        Location location = entityManager.persist(Location.builder().name("shelf").store(store).build());
+
+        for (int i = 0; i < PRODUCTS; i++) {
+            Date createdAt = new Date();
+            entityManager.persist(Product.builder()
+                    .name("product " + i)
+                    .barcode(String.valueOf(i))
+                    .store(store)
+                    .productGroup(groups.get(i % groups.size()))
+                    .productBrand(brand)
+                    .location(location)
+                    .salesUnits(SalesUnits.builder().name("box").basicUnit("piece").exchangeValue(10).store(store).build())
+                    .originalPrices(new ArrayList<>(List.of(
+                            OriginalPrice.builder().value(100).createdAt(createdAt).store(store).build(),
+                            OriginalPrice.builder().value(120).createdAt(createdAt).store(store).build())))
+                    .productPrices(new ArrayList<>(List.of(
+                            ProductPrice.builder().value(150).createdAt(createdAt).store(store).build())))
+                    .properties(new ArrayList<>(List.of(
+                            ProductProperty.builder().propertyName(propertyNames.get(i % propertyNames.size())).propertyValue("value").store(store).build())))
+                    .images(new ArrayList<>(List.of(Media.builder().url("image " + i).build())))
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void listPageStatementsDoNotGrowWithPageSize() {
+        long smallPage = statementsToMapPage(50);
+        long fullPage = statementsToMapPage(PRODUCTS);
+
+        assertEquals(smallPage, fullPage, "statements grew with the page size");
+        assertTrue(fullPage <= MAX_STATEMENTS_PER_PAGE, "mapping a page took " + fullPage + " statements");
+    }
+
+    @Test
+    void listPageMapsCurrentPrices() {
+        Product product = productRepository.findListPage(store.getId(), 0, PageRequest.of(0, 1)).get(0);
+
+        assertEquals(120, ProductMapper.toProductDTO(product).getOriginalPrice());
+        assertEquals(150, ProductMapper.toProductDTO(product).getProductPrice());
+    }
+
+    private long statementsToMapPage(int size) {
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        List<Product> products = productRepository.findListPage(store.getId(), 0, PageRequest.of(0, size));
+        products.forEach(ProductMapper::toProductDTO);
+        assertEquals(size, products.size());
+        return statistics.getPrepareStatementCount();
+    }
+}
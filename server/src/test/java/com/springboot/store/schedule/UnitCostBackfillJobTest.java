@@ -0,0 +1,70 @@
+package com.springboot.store.schedule;
+
+import com.springboot.store.entity.*;
+import com.springboot.store.repository.InvoiceRepository;
+import com.springboot.store.repository.ReturnDetailRepository;
+import com.springboot.store.service.PriceTimelineService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UnitCostBackfillJobTest {
+    private InvoiceRepository invoiceRepository;
+    private ReturnDetailRepository returnDetailRepository;
+    private PriceTimelineService priceTimelineService;
+    private UnitCostBackfillJob job;
+
+    @BeforeEach
+    void createJob() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        returnDetailRepository = mock(ReturnDetailRepository.class);
+        priceTimelineService = mock(PriceTimelineService.class);
+        when(priceTimelineService.getOriginalPriceAt(anyInt(), anyInt(), any(Date.class))).thenReturn(7.0);
+        when(returnDetailRepository.findWithMissingUnitCost(any(Pageable.class))).thenReturn(List.of());
+        job = new UnitCostBackfillJob(invoiceRepository, returnDetailRepository, priceTimelineService,
+                mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void invoiceWithoutADateIsCostedAtTheCurrentPrice() {
+        InvoiceDetail dated = InvoiceDetail.builder().productId(1).build();
+        InvoiceDetail undated = InvoiceDetail.builder().productId(2).build();
+        Store store = Store.builder().id(3).build();
+        when(invoiceRepository.findWithMissingUnitCost(any(Pageable.class))).thenReturn(List.of(
+                Invoice.builder().createdAt(new Date(1000)).store(store).invoiceDetails(Set.of(dated)).build(),
+                Invoice.builder().store(store).invoiceDetails(Set.of(undated)).build()), List.of());
+
+        job.backfill();
+
+        assertEquals(7.0, dated.getUnitCost());
+        assertEquals(7.0, undated.getUnitCost());
+        verify(priceTimelineService).getOriginalPriceAt(3, 1, new Date(1000));
+        verify(priceTimelineService).getOriginalPriceAt(eq(3), eq(2), notNull());
+    }
+
+    @Test
+    void failedChunkIsLoggedAndTheReturnsStillRun() {
+        when(invoiceRepository.findWithMissingUnitCost(any(Pageable.class))).thenThrow(new IllegalStateException("bad row"));
+        ReturnDetail returnDetail = ReturnDetail.builder()
+                .product(Product.builder().id(4).build())
+                .returnInvoice(ReturnInvoice.builder().createdAt(new Date(2000)).store(Store.builder().id(3).build()).build())
+                .build();
+        when(returnDetailRepository.findWithMissingUnitCost(any(Pageable.class))).thenReturn(List.of(returnDetail), List.of());
+
+        assertDoesNotThrow(() -> job.backfill());
+
+        // the failed kind is not retried in a loop, it waits for the next start
+        verify(invoiceRepository, times(1)).findWithMissingUnitCost(any(Pageable.class));
+        assertEquals(7.0, returnDetail.getUnitCost());
+        verify(returnDetailRepository).saveAll(List.of(returnDetail));
+    }
+}
@@ -0,0 +1,77 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class PriceTimelineServiceImplTest {
+    private ProductRepository productRepository;
+
+    @BeforeEach
+    void createRepository() {
+        productRepository = mock(ProductRepository.class);
+        // store 1 has products 1 and 2, store 2 has product 3, store 3 has product 4
+        when(productRepository.findOriginalPriceHistoryByStoreId(1)).thenReturn(rows(new Object[]{1, new Date(1000), 10}, new Object[]{1, new Date(2000), 12}, new Object[]{2, new Date(1000), 7}));
+        when(productRepository.findOriginalPriceHistoryByStoreId(2)).thenReturn(rows(new Object[]{3, new Date(1000), 30}));
+        when(productRepository.findOriginalPriceHistoryByStoreId(3)).thenReturn(rows(new Object[]{4, new Date(1000), 40}));
+        when(productRepository.findProductPriceHistoryByStoreId(anyInt())).thenReturn(new ArrayList<>());
+    }
+
+    @Test
+    void pricesAreReadFromTheLoadedStore() {
+        PriceTimelineServiceImpl service = new PriceTimelineServiceImpl(productRepository, 64);
+
+        assertEquals(10, service.getOriginalPriceAt(1, 1, new Date(1500)));
+        assertEquals(12, service.getOriginalPriceAt(1, 1, new Date(2500)));
+        assertEquals(7, service.getOriginalPriceAt(1, 2, new Date(2500)));
+        service.addOriginalPrice(1, 2, new Date(3000), 8);
+        assertEquals(8, service.getOriginalPriceAt(1, 2, new Date(3500)));
+
+        verify(productRepository, times(1)).findOriginalPriceHistoryByStoreId(1);
+        verify(productRepository, never()).findOriginalPriceHistoryByProductId(anyInt());
+    }
+
+    @Test
+    void leastRecentlyUsedStoreIsDroppedOverTheBudget() {
+        // a budget of zero keeps only the store that was loaded last
+        PriceTimelineServiceImpl service = new PriceTimelineServiceImpl(productRepository, 0);
+
+        assertEquals(10, service.getOriginalPriceAt(1, 1, new Date(1500)));
+        assertEquals(30, service.getOriginalPriceAt(2, 3, new Date(1500)));
+        assertEquals(30, service.getOriginalPriceAt(2, 3, new Date(1500)));
+        verify(productRepository, times(1)).findOriginalPriceHistoryByStoreId(2);
+
+        // store 1 was dropped when store 2 came in, a new price for it is left to the database
+        service.addOriginalPrice(1, 1, new Date(3000), 15);
+        assertEquals(10, service.getOriginalPriceAt(1, 1, new Date(1500)));
+        verify(productRepository, times(2)).findOriginalPriceHistoryByStoreId(1);
+        assertEquals(30, service.getOriginalPriceAt(2, 3, new Date(1500)));
+        verify(productRepository, times(2)).findOriginalPriceHistoryByStoreId(2);
+    }
+
+    @Test
+    void storesWithinTheBudgetStayLoaded() {
+        PriceTimelineServiceImpl service = new PriceTimelineServiceImpl(productRepository, 64);
+
+        for (int round = 0; round < 3; round++) {
+            for (int storeId = 1; storeId <= 3; storeId++) {
+                service.getOriginalPriceAt(storeId, storeId == 1 ? 1 : storeId + 1, new Date(1500));
+            }
+        }
+
+        verify(productRepository, times(1)).findOriginalPriceHistoryByStoreId(1);
+        verify(productRepository, times(1)).findOriginalPriceHistoryByStoreId(2);
+        verify(productRepository, times(1)).findOriginalPriceHistoryByStoreId(3);
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}
@@ -0,0 +1,204 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.*;
+import com.springboot.store.exception.CustomException;
+import com.springboot.store.payload.ProductImportError;
+import com.springboot.store.payload.ProductImportResult;
+import com.springboot.store.repository.*;
+import com.springboot.store.service.ActivityLogService;
+import com.springboot.store.service.PriceTimelineService;
+import com.springboot.store.service.ProductSearchService;
+import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.ImportFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+// imports run against the schema generated from the entities, so a renamed table or column breaks the insert statements here.
+// The tests commit, each one works in a store of its own
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:imports;MODE=MySQL;NON_KEYWORDS=VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "store.products.import.batch-size=3"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(ProductImportServiceImpl.class)
+class ProductImportServiceImplTest {
+    @Autowired
+    private ProductImportServiceImpl productImportService;
+    @Autowired
+    private StoreRepository storeRepository;
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private ProductGroupRepository productGroupRepository;
+    @Autowired
+    private ProductBrandRepository productBrandRepository;
+    @Autowired
+    private ProductPropertyNameRepository productPropertyNameRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private StaffService staffService;
+    @MockBean
+    private ActivityLogService activityLogService;
+    @MockBean
+    private PriceTimelineService priceTimelineService;
+    @MockBean
+    private ProductSearchService productSearchService;
+
+    private Store store;
+    private Location location;
+    private ProductGroup productGroup;
+    private ProductBrand productBrand;
+    private ProductPropertyName color;
+
+    @BeforeEach
+    void createStore() {
+        store = storeRepository.save(Store.builder().name("store").build());
+        when(staffService.getAuthorizedStaff()).thenReturn(Staff.builder().id(5).store(store).build());
+        location = locationRepository.save(Location.builder().name("Shelf A").store(store).build());
+        productGroup = productGroupRepository.save(ProductGroup.builder().name("Drinks").store(store).build());
+        productBrand = productBrandRepository.save(ProductBrand.builder().name("Acme").store(store).build());
+        color = productPropertyNameRepository.save(ProductPropertyName.builder().name("Color").store(store).build());
+    }
+
+    @Test
+    void csvRowsAreWrittenWithTheirPricesUnitsAndProperties() {
+        String csv = "﻿Name,Barcode,Stock,Location,productGroup,productBrand,originalPrice,productPrice,salesUnit,basicUnit,exchangeValue,property:color\r\n"
+                + "Milk,111,5,shelf a,drinks,ACME,8,10,box,pc,12,white\r\n"
+                + "\"Tea, green\",222,7.0,,,,1,2,,,,\r\n"
+                + "Bad,333,x,,,,,,,,,\r\n"
+                + "\r\n"
+                + "Nowhere,444,1,Shelf Z,,,,,,,,\r\n"
+                + ",555,1,,,,,,,,,\r\n"
+                + "x".repeat(300) + ",666,1,,,,,,,,,\r\n"
+                + "Juice,777,3,,,,4,5,,,,red\r\n";
+
+        ProductImportResult result = productImportService.importProducts(file("products.csv", csv.getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV);
+
+        assertEquals(3, result.getImported());
+        assertEquals(4, result.getFailed());
+        assertEquals(List.of(4, 6, 7, 8), result.getErrors().stream().map(ProductImportError::getRow).toList());
+        assertEquals("stock is not a whole number: x", result.getErrors().get(0).getMessage());
+        assertEquals("Location not found with name: Shelf Z", result.getErrors().get(1).getMessage());
+        assertEquals("name is required", result.getErrors().get(2).getMessage());
+        // rejected by the database, the rest of its chunk is still written
+        assertTrue(result.getErrors().get(3).getMessage().startsWith("Could not be saved"));
+
+        Map<String, Object> milk = jdbcTemplate.queryForMap("SELECT * FROM products WHERE barcode = '111'");
+        assertEquals("Milk", milk.get("name"));
+        assertEquals(5, milk.get("stock"));
+        assertEquals(false, milk.get("is_deleted"));
+        assertEquals(store.getId(), milk.get("store_id"));
+        assertEquals(location.getId(), milk.get("location_id"));
+        assertEquals(productGroup.getId(), milk.get("product_group_id"));
+        assertEquals(productBrand.getId(), milk.get("product_brand_id"));
+        Map<String, Object> salesUnit = jdbcTemplate.queryForMap("SELECT * FROM sales_units WHERE id = ?", milk.get("sales_units_id"));
+        assertEquals("box", salesUnit.get("name"));
+        assertEquals("pc", salesUnit.get("basic_unit"));
+        assertEquals(12.0, salesUnit.get("exchange_value"));
+        assertEquals(store.getId(), salesUnit.get("store_id"));
+
+        assertEquals("Tea, green", jdbcTemplate.queryForObject("SELECT name FROM products WHERE barcode = '222'", String.class));
+        assertEquals(List.of(8.0, 1.0, 4.0), jdbcTemplate.queryForList(
+                "SELECT o.value FROM products p JOIN products_original_prices l ON l.product_id = p.id " +
+                        "JOIN original_prices o ON o.id = l.original_prices_id WHERE p.store_id = ? ORDER BY p.id", Double.class, store.getId()));
+        assertEquals(List.of(10.0, 2.0, 5.0), jdbcTemplate.queryForList(
+                "SELECT o.value FROM products p JOIN products_product_prices l ON l.product_id = p.id " +
+                        "JOIN product_prices o ON o.id = l.product_prices_id WHERE p.store_id = ? ORDER BY p.id", Double.class, store.getId()));
+        List<Map<String, Object>> properties = jdbcTemplate.queryForList(
+                "SELECT p.barcode, o.property_value, o.property_name_id FROM products p JOIN products_properties l ON l.product_id = p.id " +
+                        "JOIN product_property o ON o.id = l.properties_id WHERE p.store_id = ? ORDER BY p.id", store.getId());
+        assertEquals(List.of("111", "777"), properties.stream().map(row -> row.get("barcode")).toList());
+        assertEquals(List.of("white", "red"), properties.stream().map(row -> row.get("property_value")).toList());
+        assertTrue(properties.stream().allMatch(row -> row.get("property_name_id").equals(color.getId())));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM products WHERE store_id = ?", Integer.class, store.getId()));
+
+        verify(productSearchService, times(3)).indexProduct(eq(store.getId()), anyInt(), anyString(), anyString());
+        verify(priceTimelineService, times(3)).addProductPrice(eq(store.getId()), anyInt(), any(), anyDouble());
+        verify(activityLogService).save(eq("imported 3 products from products.csv, 4 rows failed"), eq(5), any());
+    }
+
+    @Test
+    void xlsxRowsAreReadFromTheFirstSheet() throws IOException {
+        byte[] workbook = workbook(
+                "<row r=\"1\"><c r=\"A1\" t=\"s\"><v>0</v></c><c r=\"B1\" t=\"s\"><v>1</v></c><c r=\"D1\" t=\"s\"><v>3</v></c></row>"
+                        // row 2 is empty and left out of the file, C3 too
+                        + "<row r=\"3\"><c r=\"A3\" t=\"s\"><v>2</v></c><c r=\"B3\"><v>888</v></c><c r=\"D3\"><f>1+1</f><v>2</v></c></row>"
+                        + "<row r=\"4\"><c r=\"A4\" t=\"inlineStr\"><is><t>Bread</t></is></c><c r=\"B4\"><v>999</v></c><c r=\"D4\"><v>1.5</v></c></row>");
+
+        ProductImportResult result = productImportService.importProducts(file("products.xlsx", workbook), ImportFormat.XLSX);
+
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getFailed());
+        assertEquals(4, result.getErrors().get(0).getRow());
+        assertEquals("stock is not a whole number: 1.5", result.getErrors().get(0).getMessage());
+        Map<String, Object> coffee = jdbcTemplate.queryForMap("SELECT name, stock FROM products WHERE barcode = '888'");
+        assertEquals("Coffee", coffee.get("name"));
+        assertEquals(2, coffee.get("stock"));
+    }
+
+    @Test
+    void unknownColumnsRejectTheFile() {
+        CustomException unknownColumn = assertThrows(CustomException.class, () -> productImportService.importProducts(
+                file("products.csv", "name,barcode,colour\n".getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV));
+        assertEquals("Unknown column: colour", unknownColumn.getMessage());
+        CustomException unknownProperty = assertThrows(CustomException.class, () -> productImportService.importProducts(
+                file("products.csv", "name,barcode,property:size\n".getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV));
+        assertEquals("Product property name not found with name: size", unknownProperty.getMessage());
+        assertThrows(CustomException.class, () -> productImportService.importProducts(
+                file("products.csv", "name,stock\n".getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV));
+    }
+
+    private static MockMultipartFile file(String name, byte[] content) {
+        return new MockMultipartFile("file", name, null, content);
+    }
+
+    // the parts of a workbook the reader looks at, with the sheet behind a relationship id other than sheet1
+    private static byte[] workbook(String rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            put(zip, "xl/workbook.xml", "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+                    + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+                    + "<sheets><sheet name=\"Products\" sheetId=\"1\" r:id=\"rId7\"/></sheets></workbook>");
+            put(zip, "xl/_rels/workbook.xml.rels", "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+                    + "<Relationship Id=\"rId7\" Type=\"worksheet\" Target=\"worksheets/data.xml\"/></Relationships>");
+            put(zip, "xl/sharedStrings.xml", "<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                    + "<si><t>name</t></si><si><t>barcode</t></si>"
+                    + "<si><r><t>Cof</t></r><r><t>fee</t></r><rPh><t>X</t></rPh></si><si><t>stock</t></si></sst>");
+            put(zip, "xl/worksheets/data.xml", "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                    + "<sheetData>" + rows + "</sheetData></worksheet>");
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void put(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
@@ -0,0 +1,118 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.*;
+import com.springboot.store.payload.ProductDTO;
+import com.springboot.store.payload.ProductScanDTO;
+import com.springboot.store.repository.ProductRepository;
+import com.springboot.store.repository.StoreRepository;
+import com.springboot.store.service.*;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// product writes commit on their own like they do behind a request, without a surrounding transaction
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:scans;MODE=MySQL;NON_KEYWORDS=VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ProductServiceImpl.class, ProductScanCacheServiceImpl.class})
+class ProductScanCacheServiceImplTest {
+    @Autowired
+    private ProductServiceImpl productService;
+    @Autowired
+    private ProductScanCacheServiceImpl productScanCacheService;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private StoreRepository storeRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private StaffService staffService;
+    @MockBean
+    private FileService fileService;
+    @MockBean
+    private ActivityLogService activityLogService;
+    @MockBean
+    private PriceTimelineService priceTimelineService;
+    @MockBean
+    private ProductSearchService productSearchService;
+
+    @Test
+    void scanDuringUpdateDoesNotKeepTheOldSnapshot() {
+        Store store = storeRepository.save(Store.builder().name("store").build());
+        when(staffService.getAuthorizedStaff()).thenReturn(Staff.builder().id(1).store(store).build());
+        Product product = productRepository.save(Product.builder()
+                .name("milk")
+                .barcode("8930001")
+                .stock(5)
+                .isDeleted(false)
+                .originalPrices(new ArrayList<>(List.of(OriginalPrice.builder().value(10).createdAt(new Date()).build())))
+                .productPrices(new ArrayList<>(List.of(ProductPrice.builder().value(20).createdAt(new Date()).build())))
+                .images(new ArrayList<>())
+                .properties(new ArrayList<>())
+                .salesUnits(SalesUnits.builder().name("box").basicUnit("pc").exchangeValue(12).store(store).build())
+                .store(store)
+                .build());
+
+        // the upload sits between the start of the update and its save, a till scans the product meanwhile
+        AtomicReference<ProductScanDTO> scannedDuringUpdate = new AtomicReference<>();
+        when(fileService.uploadFile(any())).thenAnswer(invocation -> {
+            scannedDuringUpdate.set(CompletableFuture.supplyAsync(() -> productScanCacheService.getByBarcode("8930001")).join());
+            return null;
+        });
+
+        ProductDTO update = ProductDTO.builder()
+                .name("milk")
+                .barcode("8930001")
+                .stock(9)
+                .originalPrice(10)
+                .productPrice(25)
+                .images(new ArrayList<>())
+                .build();
+        MultipartFile[] files = {new MockMultipartFile("files", "milk.png", "image/png", new byte[]{1})};
+        withRequestEntityManager(() -> productService.updateProduct(product.getId(), files, update));
+
+        assertEquals(5, scannedDuringUpdate.get().getStock());
+        ProductScanDTO scanned = productScanCacheService.getByBarcode("8930001");
+        assertEquals(9, scanned.getStock());
+        assertEquals(25, scanned.getProductPrice());
+    }
+
+    // keeps one entity manager open across the call the way open-in-view does for a request
+    private void withRequestEntityManager(Runnable call) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(entityManager));
+        try {
+            call.run();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            entityManager.close();
+        }
+    }
+}
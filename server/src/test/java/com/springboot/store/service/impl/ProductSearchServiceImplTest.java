@@ -0,0 +1,137 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.Staff;
+import com.springboot.store.entity.Store;
+import com.springboot.store.payload.ProductSearchHit;
+import com.springboot.store.repository.ProductRepository;
+import com.springboot.store.repository.StoreRepository;
+import com.springboot.store.repository.projection.ProductSearchEntry;
+import com.springboot.store.service.StaffService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// searches run under the read lock while product writes replace entries under the write lock
+class ProductSearchServiceImplTest {
+    private static final int STORE_ID = 1;
+    private static final int PRODUCTS = 2_000;
+
+    private ProductRepository productRepository;
+    private ProductSearchServiceImpl productSearchService;
+
+    @BeforeEach
+    void createService() {
+        productRepository = mock(ProductRepository.class);
+        StaffService staffService = mock(StaffService.class);
+        when(staffService.getAuthorizedStaff()).thenReturn(Staff.builder().store(Store.builder().id(STORE_ID).build()).build());
+        List<ProductSearchEntry> entries = new ArrayList<>();
+        for (int id = 1; id <= PRODUCTS; id++) {
+            entries.add(entry(id, "Item " + id + " Alpha", "893" + id));
+        }
+        when(productRepository.findSearchEntriesByStoreId(STORE_ID)).thenReturn(entries);
+        productSearchService = new ProductSearchServiceImpl(productRepository, mock(StoreRepository.class), staffService,
+                mock(PlatformTransactionManager.class), false);
+    }
+
+    @Test
+    void storeIsIndexedOnItsFirstSearch() {
+        assertEquals(100, productSearchService.search("alpha", 100).size());
+        assertEquals(List.of(2000), ids(productSearchService.search("item 2000 alpha", 10)));
+        productSearchService.search("alpha", 1);
+        verify(productRepository, times(1)).findSearchEntriesByStoreId(STORE_ID);
+    }
+
+    @Test
+    void writesOutsideATransactionApplyAtOnce() {
+        productSearchService.search("alpha", 1);
+        productSearchService.indexProduct(STORE_ID, 1999, "Oolong Tea", "111");
+        productSearchService.removeProduct(STORE_ID, 1998);
+
+        assertEquals(List.of(1999), ids(productSearchService.search("oolong", 10)));
+        assertTrue(productSearchService.search("item 1999 alpha", 10).isEmpty());
+        assertTrue(productSearchService.search("item 1998 alpha", 10).isEmpty());
+
+        productSearchService.evictAll();
+        productSearchService.search("alpha", 1);
+        verify(productRepository, times(2)).findSearchEntriesByStoreId(STORE_ID);
+    }
+
+    @Test
+    void searchesNeverSeeAHalfWrittenProduct() throws Exception {
+        productSearchService.search("alpha", 1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            // renames go back and forth between two names, a hit is always under the name that was searched
+            for (int writer = 0; writer < 4; writer++) {
+                int first = writer * (PRODUCTS / 4) + 1;
+                tasks.add(executor.submit(() -> {
+                    for (int round = 0; round < 20; round++) {
+                        for (int id = first; id < first + PRODUCTS / 4; id++) {
+                            productSearchService.indexProduct(STORE_ID, id, "Item " + id + (round % 2 == 0 ? " Beta" : " Alpha"), "893" + id);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int reader = 0; reader < 4; reader++) {
+                tasks.add(executor.submit(() -> {
+                    while (writing.get()) {
+                        for (ProductSearchHit hit : productSearchService.search("alpha", 100)) {
+                            assertTrue(hit.getName().endsWith("Alpha"), hit.getName());
+                        }
+                        for (ProductSearchHit hit : productSearchService.search("beta", 100)) {
+                            assertTrue(hit.getName().endsWith("Beta"), hit.getName());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (int writer = 0; writer < 4; writer++) {
+                tasks.get(writer).get(60, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+            for (Future<?> task : tasks) {
+                task.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            writing.set(false);
+            executor.shutdownNow();
+        }
+
+        assertTrue(productSearchService.search("beta", 10).isEmpty());
+        assertEquals(100, productSearchService.search("alpha", 100).size());
+    }
+
+    private static List<Integer> ids(List<ProductSearchHit> hits) {
+        return hits.stream().map(ProductSearchHit::getId).toList();
+    }
+
+    private static ProductSearchEntry entry(int id, String name, String barcode) {
+        return new ProductSearchEntry() {
+            @Override
+            public int getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getBarcode() {
+                return barcode;
+            }
+        };
+    }
+}
@@ -0,0 +1,394 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.*;
+import com.springboot.store.payload.report.ProductProfit;
+import com.springboot.store.payload.report.SalesReportOfCustomer;
+import com.springboot.store.payload.report.SalesReportOfStaff;
+import com.springboot.store.repository.projection.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// compares the merge of grouped rows against the previous list-scanning merge of whole entities
+class ReportServiceImplTest {
+    private static final int DETAIL_LINES = 1_000_000;
+    private static final int PRODUCTS = 1_000;
+    private static final int CUSTOMERS = 500;
+    private static final int STAFF = 50;
+
+    @Test
+    void productProfitMatchesLegacyMerge() {
+        Random random = new Random(42);
+        Product[] products = new Product[PRODUCTS + 1];
+        for (int id = 1; id <= PRODUCTS; id++) {
+            products[id] = Product.builder().id(id).build();
+        }
+
+        List<Invoice> invoices = new ArrayList<>();
+        int lines = 0;
+        while (lines < DETAIL_LINES) {
+            Set<InvoiceDetail> details = new LinkedHashSet<>();
+            int count = 1 + random.nextInt(8);
+            for (int i = 0; i < count && lines < DETAIL_LINES; i++, lines++) {
+                details.add(InvoiceDetail.builder()
+                        .productId(1 + random.nextInt(PRODUCTS))
+                        .quantity(1 + random.nextInt(5))
+                        .price(1000 + random.nextInt(100) * 500)
+                        .unitCost(random.nextInt(10) == 0 ? null : 500.0 + random.nextInt(50) * 250)
+                        .build());
+            }
+            invoices.add(Invoice.builder().invoiceDetails(details).build());
+        }
+
+        List<ReturnInvoice> returnInvoices = new ArrayList<>();
+        for (int r = 0; r < DETAIL_LINES / 50; r++) {
+            List<ReturnDetail> details = new ArrayList<>();
+            int count = 1 + random.nextInt(3);
+            for (int i = 0; i < count; i++) {
+                details.add(ReturnDetail.builder()
+                        // a few products are only ever returned
+                        .product(products[1 + random.nextInt(PRODUCTS)])
+                        .quantity(1 + random.nextInt(3))
+                        .price(1000 + random.nextInt(100) * 500)
+                        .unitCost(random.nextInt(10) == 0 ? null : 500.0 + random.nextInt(50) * 250)
+                        .build());
+            }
+            returnInvoices.add(ReturnInvoice.builder().returnDetails(details).build());
+        }
+
+        List<ProductProfit> expected = legacyProductProfit(invoices, returnInvoices);
+        List<ProductProfit> actual = ReportServiceImpl.aggregateProductProfit(
+                groupSalesByProduct(invoices), groupReturnsByProduct(returnInvoices));
+
+        assertEquals(expected.size(), actual.size());
+        Map<Integer, ProductProfit> actualById = new HashMap<>();
+        for (int i = 0; i < actual.size(); i++) {
+            actualById.put(actual.get(i).getProductId(), actual.get(i));
+            if (i > 0) assertTrue(actual.get(i - 1).getNetRevenue() >= actual.get(i).getNetRevenue());
+        }
+        for (ProductProfit e : expected) {
+            ProductProfit a = actualById.get(e.getProductId());
+            assertEquals(e.getProductId(), a.getProductId());
+            assertEquals(e.getTotalCustomer(), a.getTotalCustomer());
+            assertEquals(e.getTotalQuantity(), a.getTotalQuantity());
+            assertEquals(e.getRevenue(), a.getRevenue());
+            assertEquals(e.getTotalReturn(), a.getTotalReturn());
+            assertEquals(e.getReturnRevenue(), a.getReturnRevenue());
+            assertEquals(e.getNetRevenue(), a.getNetRevenue());
+            assertEquals(e.getProfit(), a.getProfit(), 1e-6);
+        }
+    }
+
+    @Test
+    void customerReportMatchesLegacyMerge() {
+        Random random = new Random(7);
+        Customer[] customers = new Customer[CUSTOMERS + 1];
+        for (int id = 1; id <= CUSTOMERS; id++) {
+            customers[id] = Customer.builder().id(id).name("Customer " + id).build();
+        }
+
+        // one grouped row per customer, plus the walk-in row
+        List<Object[]> invoiceRows = new ArrayList<>();
+        invoiceRows.add(new Object[]{null, 90000.0, 5000.0, 85000.0});
+        for (int id = 1; id <= CUSTOMERS; id += 1 + random.nextInt(2)) {
+            double subTotal = 10000 + random.nextInt(1000) * 100;
+            double discount = random.nextInt(50) * 100;
+            invoiceRows.add(new Object[]{id, subTotal, discount, subTotal - discount});
+        }
+
+        List<ReturnInvoice> returnInvoices = new ArrayList<>();
+        for (int r = 0; r < DETAIL_LINES / 10; r++) {
+            int id = random.nextInt(CUSTOMERS + 1);
+            Invoice invoice = Invoice.builder().customer(id == 0 ? null : customers[id]).build();
+            returnInvoices.add(ReturnInvoice.builder().invoice(invoice).total(100 + random.nextInt(100) * 100).build());
+        }
+
+        List<SalesReportOfCustomer> expected = legacyCustomerReport(invoiceRows, returnInvoices, customers);
+        List<CustomerSalesSummary> invoiceSummaries = invoiceRows.stream()
+                .map(row -> (CustomerSalesSummary) new CustomerRow((Integer) row[0], row[0] == null ? null : customers[(Integer) row[0]].getName(),
+                        (Double) row[1], (Double) row[2], (Double) row[3]))
+                .toList();
+        List<SalesReportOfCustomer> actual = ReportServiceImpl.aggregateSalesReportOfCustomer(
+                invoiceSummaries, groupReturnsByCustomer(returnInvoices));
+
+        assertEquals(expected.size(), actual.size());
+        Map<Integer, SalesReportOfCustomer> actualById = new HashMap<>();
+        for (SalesReportOfCustomer a : actual) {
+            actualById.put(a.getCustomerId(), a);
+        }
+        for (SalesReportOfCustomer e : expected) {
+            SalesReportOfCustomer a = actualById.get(e.getCustomerId());
+            assertEquals(e.getCustomerId(), a.getCustomerId());
+            assertEquals(e.getCustomerName(), a.getCustomerName());
+            assertEquals(e.getSubTotal(), a.getSubTotal());
+            assertEquals(e.getDiscountValue(), a.getDiscountValue());
+            assertEquals(e.getRevenue(), a.getRevenue());
+            assertEquals(e.getReturnRevenue(), a.getReturnRevenue());
+            assertEquals(e.getNetRevenue(), a.getNetRevenue());
+        }
+    }
+
+    @Test
+    void staffReportMatchesLegacyMerge() {
+        Random random = new Random(3);
+        List<Object[]> invoiceRows = new ArrayList<>();
+        List<Object[]> returnRows = new ArrayList<>();
+        for (int id = 1; id <= STAFF; id++) {
+            if (random.nextInt(4) != 0) {
+                invoiceRows.add(new Object[]{id, (double) random.nextInt(1_000_000)});
+            }
+            if (random.nextInt(3) == 0) {
+                returnRows.add(new Object[]{id, (double) random.nextInt(100_000)});
+            }
+        }
+
+        List<SalesReportOfStaff> expected = legacyStaffReport(invoiceRows, returnRows);
+        List<SalesReportOfStaff> actual = ReportServiceImpl.aggregateSalesReportOfStaff(
+                invoiceRows.stream().map(row -> (StaffSalesSummary) new StaffRow((Integer) row[0], "Staff " + row[0], (Double) row[1])).toList(),
+                returnRows.stream().map(row -> (StaffSalesSummary) new StaffRow((Integer) row[0], "Staff " + row[0], (Double) row[1])).toList());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            SalesReportOfStaff e = expected.get(i);
+            SalesReportOfStaff a = actual.get(i);
+            assertEquals(e.getStaffId(), a.getStaffId());
+            assertEquals(e.getStaffName(), a.getStaffName());
+            assertEquals(e.getRevenueMoney(), a.getRevenueMoney());
+            assertEquals(e.getReturnMoney(), a.getReturnMoney());
+        }
+    }
+
+    @Test
+    void topProductsMatchFullSort() {
+        Random random = new Random(11);
+        List<ProductSalesSummary> salesRows = new ArrayList<>();
+        for (int id = 1; id <= PRODUCTS; id++) {
+            // coarse revenues so many products tie
+            salesRows.add(new ProductRow(id, null, 1, 1, random.nextInt(20) * 1000, 0));
+        }
+        Comparator<ProductProfit> order = Comparator.comparingDouble(ProductProfit::getNetRevenue).reversed()
+                .thenComparing(ProductProfit::getProductId);
+
+        List<ProductProfit> expected = ReportServiceImpl.aggregateProductProfit(salesRows, List.of());
+        expected.sort(order);
+        for (int limit : new int[]{1, 10, 20, PRODUCTS, PRODUCTS + 5}) {
+            List<ProductProfit> actual = ReportServiceImpl.topOf(ReportServiceImpl.mergeProductProfit(salesRows, List.of()), limit, order);
+            assertEquals(expected.subList(0, Math.min(limit, PRODUCTS)).stream().map(ProductProfit::getProductId).toList(),
+                    actual.stream().map(ProductProfit::getProductId).toList());
+        }
+    }
+
+    // the GROUP BY queries, evaluated in memory
+    private static List<ProductSalesSummary> groupSalesByProduct(List<Invoice> invoices) {
+        Map<Integer, ProductRow> rows = new LinkedHashMap<>();
+        for (Invoice invoice : invoices) {
+            for (InvoiceDetail detail : invoice.getInvoiceDetails()) {
+                double unitCost = detail.getUnitCost() != null ? detail.getUnitCost() : 0;
+                rows.merge(detail.getProductId(),
+                        new ProductRow(detail.getProductId(), null, 1, detail.getQuantity(), detail.getPrice() * detail.getQuantity(), unitCost * detail.getQuantity()),
+                        ProductRow::plus);
+            }
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    private static List<ProductSalesSummary> groupReturnsByProduct(List<ReturnInvoice> returnInvoices) {
+        Map<Integer, ProductRow> rows = new LinkedHashMap<>();
+        for (ReturnInvoice returnInvoice : returnInvoices) {
+            for (ReturnDetail detail : returnInvoice.getReturnDetails()) {
+                double unitCost = detail.getUnitCost() != null ? detail.getUnitCost() : 0;
+                int productId = detail.getProduct().getId();
+                rows.merge(productId,
+                        new ProductRow(productId, null, 1, detail.getQuantity(), detail.getPrice() * detail.getQuantity(), unitCost * detail.getQuantity()),
+                        ProductRow::plus);
+            }
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    private static List<CustomerReturnSummary> groupReturnsByCustomer(List<ReturnInvoice> returnInvoices) {
+        Map<Integer, CustomerReturnRow> rows = new LinkedHashMap<>();
+        for (ReturnInvoice returnInvoice : returnInvoices) {
+            Customer customer = returnInvoice.getInvoice().getCustomer();
+            Integer customerId = customer == null ? null : customer.getId();
+            rows.merge(customerId,
+                    new CustomerReturnRow(customerId, customer == null ? null : customer.getName(), returnInvoice.getTotal()),
+                    (a, b) -> new CustomerReturnRow(a.customerId, a.customerName, a.total + b.total));
+        }
+        return new ArrayList<>(rows.values());
+    }
+
+    private record ProductRow(Integer productId, String productName, long lineCount, long quantity, double revenue, double cost)
+            implements ProductSalesSummary {
+        ProductRow plus(ProductRow other) {
+            return new ProductRow(productId, productName, lineCount + other.lineCount, quantity + other.quantity,
+                    revenue + other.revenue, cost + other.cost);
+        }
+
+        public Integer getProductId() { return productId; }
+        public String getProductName() { return productName; }
+        public long getLineCount() { return lineCount; }
+        public long getQuantity() { return quantity; }
+        public double getRevenue() { return revenue; }
+        public double getCost() { return cost; }
+    }
+
+    private record CustomerRow(Integer customerId, String customerName, double subTotal, double discountValue, double total)
+            implements CustomerSalesSummary {
+        public Integer getCustomerId() { return customerId; }
+        public String getCustomerName() { return customerName; }
+        public double getSubTotal() { return subTotal; }
+        public double getDiscountValue() { return discountValue; }
+        public double getTotal() { return total; }
+    }
+
+    private record CustomerReturnRow(Integer customerId, String customerName, double total) implements CustomerReturnSummary {
+        public Integer getCustomerId() { return customerId; }
+        public String getCustomerName() { return customerName; }
+        public double getTotal() { return total; }
+    }
+
+    private record StaffRow(Integer staffId, String staffName, double total) implements StaffSalesSummary {
+        public Integer getStaffId() { return staffId; }
+        public String getStaffName() { return staffName; }
+        public double getTotal() { return total; }
+    }
+
+    private static List<ProductProfit> legacyProductProfit(List<Invoice> invoices, List<ReturnInvoice> returnInvoices) {
+        List<ProductProfit> productProfits = new ArrayList<>();
+        for (Invoice invoice : invoices) {
+            for (InvoiceDetail invoiceDetail : invoice.getInvoiceDetails()) {
+                double unitCost = invoiceDetail.getUnitCost() != null ? invoiceDetail.getUnitCost() : 0;
+                double profit = invoiceDetail.getQuantity() * (invoiceDetail.getPrice() - unitCost);
+                ProductProfit productProfit = ProductProfit.builder()
+                        .productId(invoiceDetail.getProductId())
+                        .profit(profit)
+                        .totalCustomer(1)
+                        .totalQuantity(invoiceDetail.getQuantity())
+                        .revenue(invoiceDetail.getPrice() * invoiceDetail.getQuantity())
+                        .netRevenue(invoiceDetail.getPrice() * invoiceDetail.getQuantity())
+                        .build();
+                boolean found = false;
+                for (ProductProfit productProfit1 : productProfits) {
+                    if (productProfit1.getProductId().equals(productProfit.getProductId())) {
+                        productProfit1.setProfit(productProfit1.getProfit() + profit);
+                        productProfit1.setTotalCustomer(productProfit1.getTotalCustomer() + 1);
+                        productProfit1.setTotalQuantity(productProfit1.getTotalQuantity() + invoiceDetail.getQuantity());
+                        productProfit1.setRevenue(productProfit1.getRevenue() + invoiceDetail.getPrice() * invoiceDetail.getQuantity());
+                        productProfit1.setNetRevenue(productProfit1.getNetRevenue() + invoiceDetail.getPrice() * invoiceDetail.getQuantity());
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    productProfits.add(productProfit);
+                }
+            }
+        }
+        for (ReturnInvoice returnInvoice : returnInvoices) {
+            for (ReturnDetail returnDetail : returnInvoice.getReturnDetails()) {
+                double unitCost = returnDetail.getUnitCost() != null ? returnDetail.getUnitCost() : 0;
+                double profit = returnDetail.getQuantity() * (returnDetail.getPrice() - unitCost);
+                ProductProfit productProfit = ProductProfit.builder()
+                        .productId(returnDetail.getProduct().getId())
+                        .profit(profit)
+                        .totalReturn(1)
+                        .returnRevenue(returnDetail.getPrice() * returnDetail.getQuantity())
+                        .netRevenue(-returnDetail.getPrice() * returnDetail.getQuantity())
+                        .build();
+                boolean found = false;
+                for (ProductProfit productProfit1 : productProfits) {
+                    if (productProfit1.getProductId().equals(productProfit.getProductId())) {
+                        productProfit1.setProfit(productProfit1.getProfit() + profit);
+                        productProfit1.setTotalReturn(productProfit1.getTotalReturn() + 1);
+                        productProfit1.setReturnRevenue(productProfit1.getReturnRevenue() + returnDetail.getPrice() * returnDetail.getQuantity());
+                        productProfit1.setNetRevenue(productProfit1.getNetRevenue() - returnDetail.getPrice() * returnDetail.getQuantity());
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    productProfits.add(productProfit);
+                }
+            }
+        }
+        productProfits.sort(Comparator.comparing(ProductProfit::getNetRevenue).reversed());
+        return productProfits;
+    }
+
+    private static List<SalesReportOfCustomer> legacyCustomerReport(List<Object[]> invoiceRows, List<ReturnInvoice> returnInvoices, Customer[] customers) {
+        List<SalesReportOfCustomer> salesReport = new ArrayList<>();
+        for (Object[] objects : invoiceRows) {
+            salesReport.add(SalesReportOfCustomer.builder()
+                    .customerId(objects[0] == null ? null : Integer.parseInt(objects[0].toString()))
+                    .customerName(objects[0] == null ? "Khách yêu" : customers[Integer.parseInt(objects[0].toString())].getName())
+                    .subTotal(Double.parseDouble(objects[1].toString()))
+                    .discountValue(Double.parseDouble(objects[2].toString()))
+                    .revenue(Double.parseDouble(objects[3].toString()))
+                    .netRevenue(Double.parseDouble(objects[3].toString()) - Double.parseDouble(objects[2].toString()))
+                    .build());
+        }
+        for (ReturnInvoice returnInvoice : returnInvoices) {
+            SalesReportOfCustomer salesReportOfCustomer = SalesReportOfCustomer.builder()
+                    .customerId(returnInvoice.getInvoice().getCustomer() == null ? null : returnInvoice.getInvoice().getCustomer().getId())
+                    .customerName(returnInvoice.getInvoice().getCustomer() == null ? "Khách yêu" : returnInvoice.getInvoice().getCustomer().getName())
+                    .returnRevenue(returnInvoice.getTotal())
+                    .netRevenue(-returnInvoice.getTotal())
+                    .build();
+            boolean found = false;
+            for (SalesReportOfCustomer salesReportOfCustomer1 : salesReport) {
+                if (salesReportOfCustomer1.getCustomerId() == null) {
+                    if (salesReportOfCustomer1.getCustomerName().equals(salesReportOfCustomer.getCustomerName())) {
+                        salesReportOfCustomer1.setReturnRevenue(salesReportOfCustomer1.getReturnRevenue() + returnInvoice.getTotal());
+                        salesReportOfCustomer1.setNetRevenue(salesReportOfCustomer1.getNetRevenue() - returnInvoice.getTotal());
+                        found = true;
+                        break;
+                    }
+                } else if (salesReportOfCustomer1.getCustomerId().equals(salesReportOfCustomer.getCustomerId())) {
+                    salesReportOfCustomer1.setReturnRevenue(salesReportOfCustomer1.getReturnRevenue() + returnInvoice.getTotal());
+                    salesReportOfCustomer1.setNetRevenue(salesReportOfCustomer1.getNetRevenue() - returnInvoice.getTotal());
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                salesReport.add(salesReportOfCustomer);
+            }
+        }
+        salesReport.sort(Comparator.comparing(SalesReportOfCustomer::getNetRevenue).reversed());
+        return salesReport;
+    }
+
+    private static List<SalesReportOfStaff> legacyStaffReport(List<Object[]> invoiceRows, List<Object[]> returnRows) {
+        List<SalesReportOfStaff> salesReport = new ArrayList<>();
+        for (Object[] objects : invoiceRows) {
+            salesReport.add(SalesReportOfStaff.builder()
+                    .staffId(Integer.parseInt(objects[0].toString()))
+                    .staffName("Staff " + objects[0])
+                    .revenueMoney(Double.parseDouble(objects[1].toString()))
+                    .build());
+        }
+        for (Object[] objects : returnRows) {
+            String staffId = objects[0].toString();
+            double returnMoney = Double.parseDouble(objects[1].toString());
+            boolean found = false;
+            for (SalesReportOfStaff salesReportOfStaff : salesReport) {
+                if (salesReportOfStaff.getStaffId().toString().equals(staffId)) {
+                    salesReportOfStaff.setReturnMoney(returnMoney);
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                salesReport.add(SalesReportOfStaff.builder()
+                        .staffId(Integer.parseInt(staffId))
+                        .staffName("Staff " + staffId)
+                        .returnMoney(returnMoney)
+                        .build());
+            }
+        }
+        return salesReport;
+    }
+}
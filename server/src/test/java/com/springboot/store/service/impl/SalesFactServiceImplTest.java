@@ -0,0 +1,152 @@
+package com.springboot.store.service.impl;
+
+import com.springboot.store.entity.Staff;
+import com.springboot.store.entity.Store;
+import com.springboot.store.payload.report.SalesSliceRow;
+import com.springboot.store.repository.InvoiceRepository;
+import com.springboot.store.repository.ReturnInvoiceRepository;
+import com.springboot.store.repository.StoreRepository;
+import com.springboot.store.repository.projection.SalesFact;
+import com.springboot.store.service.StaffService;
+import com.springboot.store.utils.SliceDimension;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+// stores are loaded from the fact streams on their first slice, appends and invalidations keep them current
+class SalesFactServiceImplTest {
+    private static final long DAY = 86_400_000L;
+
+    private InvoiceRepository invoiceRepository;
+    private ReturnInvoiceRepository returnInvoiceRepository;
+    private StaffService staffService;
+    private final AtomicInteger currentStore = new AtomicInteger(1);
+
+    @BeforeEach
+    void createRepositories() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        returnInvoiceRepository = mock(ReturnInvoiceRepository.class);
+        staffService = mock(StaffService.class);
+        when(staffService.getAuthorizedStaff()).thenAnswer(invocation ->
+                Staff.builder().store(Store.builder().id(currentStore.get()).build()).build());
+
+        // both streams come in time order, the return of day 2 is older than the invoices of day 3
+        when(invoiceRepository.streamSalesFacts(1)).thenAnswer(invocation -> List.of(
+                line(1, DAY + 100, 1, 2, 20.0, 12.0),
+                line(2, 2 * DAY + 100, 1, 3, 30.0, 18.0),
+                line(3, 3 * DAY + 100, 2, 4, 60.0, 20.0)).stream());
+        when(returnInvoiceRepository.streamReturnFacts(1)).thenAnswer(invocation -> List.of(
+                line(1, 2 * DAY + 300, 1, 1, 10.0, 6.0)).stream());
+        when(invoiceRepository.streamSalesFacts(2)).thenAnswer(invocation -> List.of(
+                line(7, DAY + 100, 5, 1, 9.0, 4.0)).stream());
+        when(returnInvoiceRepository.streamReturnFacts(2)).thenAnswer(invocation -> List.<SalesFact>of().stream());
+    }
+
+    @Test
+    void returnsAreNettedIntoTheDaysTheyWereMade() {
+        SalesFactServiceImpl service = service(256);
+
+        SalesSliceRow day2 = single(service.slice(new Date(2 * DAY), new Date(2 * DAY), null, Map.of()));
+        assertEquals(2, day2.getLines());
+        assertEquals(2, day2.getQuantity());
+        assertEquals(20.0, day2.getRevenue());
+        assertEquals(12.0, day2.getCost());
+
+        List<SalesSliceRow> products = service.slice(new Date(DAY), new Date(3 * DAY), SliceDimension.PRODUCT, Map.of());
+        assertEquals(List.of(2, 1), products.stream().map(SalesSliceRow::getKey).toList());
+        assertEquals(40.0, products.get(1).getRevenue());
+        verify(invoiceRepository, times(1)).streamSalesFacts(1);
+    }
+
+    @Test
+    void appendsAddNewDocumentsOnlyOnce() {
+        SalesFactServiceImpl service = service(256);
+        service.slice(new Date(DAY), new Date(DAY), null, Map.of());
+        when(invoiceRepository.findSalesFactsOfInvoice(4)).thenReturn(List.of(line(4, 3 * DAY + 200, 1, 1, 11.0, 7.0)));
+        when(invoiceRepository.findSalesFactsOfInvoice(3)).thenReturn(List.of(line(3, 3 * DAY + 100, 2, 4, 60.0, 20.0)));
+        when(returnInvoiceRepository.findSalesFactsOfReturnInvoice(2)).thenReturn(List.of(line(2, 3 * DAY + 300, 2, 1, 15.0, 5.0)));
+
+        service.appendInvoice(1, 4);
+        // already held by the load
+        service.appendInvoice(1, 3);
+        service.appendReturnInvoice(1, 2);
+
+        SalesSliceRow day3 = single(service.slice(new Date(3 * DAY), new Date(3 * DAY), null, Map.of()));
+        assertEquals(3, day3.getLines());
+        assertEquals(4, day3.getQuantity());
+        assertEquals(56.0, day3.getRevenue());
+        verify(invoiceRepository, times(1)).streamSalesFacts(1);
+    }
+
+    @Test
+    void appendsToAStoreThatIsNotLoadedAreLeftToItsLoad() {
+        SalesFactServiceImpl service = service(256);
+        service.appendInvoice(1, 4);
+        verify(invoiceRepository, never()).findSalesFactsOfInvoice(anyInt());
+    }
+
+    @Test
+    void invalidatedStoreIsLoadedAgain() {
+        SalesFactServiceImpl service = service(256);
+        service.slice(new Date(DAY), new Date(DAY), null, Map.of());
+        service.invalidateStore(1);
+        service.slice(new Date(DAY), new Date(DAY), null, Map.of());
+        verify(invoiceRepository, times(2)).streamSalesFacts(1);
+    }
+
+    @Test
+    void leastRecentlySlicedStoreIsDroppedOverTheBudget() {
+        // a budget of zero keeps only the store that was loaded last
+        SalesFactServiceImpl service = service(0);
+
+        assertEquals(20.0, single(service.slice(new Date(DAY), new Date(DAY), null, Map.of())).getRevenue());
+        currentStore.set(2);
+        assertEquals(9.0, single(service.slice(new Date(DAY), new Date(DAY), null, Map.of())).getRevenue());
+        assertEquals(9.0, single(service.slice(new Date(DAY), new Date(DAY), null, Map.of())).getRevenue());
+        currentStore.set(1);
+        assertEquals(20.0, single(service.slice(new Date(DAY), new Date(DAY), null, Map.of())).getRevenue());
+
+        verify(invoiceRepository, times(2)).streamSalesFacts(1);
+        verify(invoiceRepository, times(1)).streamSalesFacts(2);
+    }
+
+    private SalesFactServiceImpl service(long memoryBudgetMb) {
+        return new SalesFactServiceImpl(invoiceRepository, returnInvoiceRepository, mock(StoreRepository.class), staffService,
+                mock(PlatformTransactionManager.class), memoryBudgetMb, false);
+    }
+
+    private static SalesSliceRow single(List<SalesSliceRow> rows) {
+        assertEquals(1, rows.size());
+        return rows.get(0);
+    }
+
+    private static SalesFact line(int documentId, long createdAt, int productId, int quantity, double revenue, double cost) {
+        return new Line(documentId, new Date(createdAt), productId, 10, null, 1, null, quantity, revenue, cost);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Line implements SalesFact {
+        private final int documentId;
+        private final Date createdAt;
+        private final Integer productId;
+        private final Integer groupId;
+        private final Integer brandId;
+        private final Integer staffId;
+        private final Integer customerId;
+        private final int quantity;
+        private final double revenue;
+        private final double cost;
+    }
+}
@@ -0,0 +1,120 @@
+package com.springboot.store.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// search latency over a seeded catalogue of 100k products. Wall-clock timings are left out of the default build,
+// run alone with mvn test -Dtest=ProductSearchIndexBenchmarkTest -Dbenchmark=true
+@Slf4j
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ProductSearchIndexBenchmarkTest {
+    private static final int PRODUCTS = 100_000;
+    private static final int VOCABULARY = 5_000;
+    private static final int WARMUP_QUERIES = 20_000;
+    private static final int MEASURED_QUERIES = 5_000;
+    // the query list is timed this many times over and each query keeps its fastest pass, so a thread preempted
+    // mid-query does not count as a slow search. Whole passes keep a query from running on caches it just warmed
+    private static final int PASSES = 3;
+    private static final long MAX_P99_NANOS = 1_000_000;
+
+    private static final ProductSearchIndex index = new ProductSearchIndex();
+    private static final String[] vocabulary = new String[VOCABULARY];
+
+    @BeforeAll
+    static void createCatalogue() {
+        Random random = new Random(7);
+        for (int i = 0; i < VOCABULARY; i++) {
+            vocabulary[i] = randomWord(random, 4 + random.nextInt(6));
+        }
+        long started = System.nanoTime();
+        for (int id = 1; id <= PRODUCTS; id++) {
+            int words = 2 + random.nextInt(3);
+            StringBuilder name = new StringBuilder();
+            for (int w = 0; w < words; w++) {
+                // a skewed pick so some words are shared by many products, like brands and categories
+                name.append(vocabulary[(int) (VOCABULARY * Math.pow(random.nextDouble(), 2))]).append(' ');
+            }
+            name.append(random.nextInt(1000)).append("g");
+            index.put(id, name.toString(), String.valueOf(8_930_000_000_000L + id));
+        }
+        log.info("Indexed {} products in {} ms", PRODUCTS, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @Test
+    void barcodeQueries() {
+        Random random = new Random(1);
+        measure("barcode", i -> String.valueOf(8_930_000_000_000L + 1 + random.nextInt(PRODUCTS)));
+    }
+
+    @Test
+    void prefixQueries() {
+        Random random = new Random(2);
+        measure("prefix", i -> {
+            String word = vocabulary[random.nextInt(VOCABULARY)];
+            return word.substring(0, 3 + random.nextInt(word.length() - 2));
+        });
+    }
+
+    @Test
+    void twoWordQueries() {
+        Random random = new Random(3);
+        measure("two words", i -> vocabulary[random.nextInt(VOCABULARY)] + " " + vocabulary[random.nextInt(VOCABULARY)].substring(0, 3));
+    }
+
+    @Test
+    void misspelledQueries() {
+        Random random = new Random(4);
+        measure("misspelled", i -> {
+            char[] word = vocabulary[random.nextInt(VOCABULARY)].toCharArray();
+            word[1 + random.nextInt(word.length - 1)] = (char) ('a' + random.nextInt(26));
+            return new String(word);
+        });
+    }
+
+    private static void measure(String kind, IntFunction<String> queries) {
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            index.search(queries.apply(i), 20);
+        }
+        String[] measured = new String[MEASURED_QUERIES];
+        for (int i = 0; i < MEASURED_QUERIES; i++) {
+            measured[i] = queries.apply(i);
+        }
+        long[] nanos = new long[MEASURED_QUERIES];
+        Arrays.fill(nanos, Long.MAX_VALUE);
+        int found = 0;
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int i = 0; i < MEASURED_QUERIES; i++) {
+                long started = System.nanoTime();
+                boolean hit = !index.search(measured[i], 20).isEmpty();
+                nanos[i] = Math.min(nanos[i], System.nanoTime() - started);
+                if (hit && pass == 0) found++;
+            }
+        }
+        Arrays.sort(nanos);
+        long p50 = nanos[MEASURED_QUERIES / 2];
+        long p99 = nanos[MEASURED_QUERIES * 99 / 100];
+        log.info("{} queries over {} products: p50 {} us, p99 {} us, {} of {} with hits",
+                kind, PRODUCTS, p50 / 1000, p99 / 1000, found, MEASURED_QUERIES);
+        assertFalse(found == 0, kind + " queries found nothing");
+        assertTrue(p99 < MAX_P99_NANOS, kind + " p99 " + p99 / 1000 + " us");
+    }
+
+    private static String randomWord(Random random, int length) {
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
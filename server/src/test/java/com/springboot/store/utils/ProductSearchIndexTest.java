@@ -0,0 +1,155 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.payload.ProductSearchHit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void createIndex() {
+        index = new ProductSearchIndex();
+        index.put(1, "Sữa Tươi Vinamilk 180ml", "8934673001");
+        index.put(2, "Milkshake Dâu", "8934673002");
+        index.put(3, "Milk Tea", "8934673003");
+        index.put(4, "Đường Kính Trắng", "8934673004");
+        index.put(5, "Trà Xanh 0 Độ", "8934673005");
+    }
+
+    @Test
+    void namesMatchLowercasedAndWithoutDiacritics() {
+        assertEquals(List.of(1), ids(index.search("sua tuoi", 10)));
+        assertEquals(List.of(1), ids(index.search("SỮA", 10)));
+        assertEquals(List.of(4), ids(index.search("duong kinh", 10)));
+        assertEquals(List.of(5), ids(index.search("tra xanh", 10)));
+    }
+
+    @Test
+    void everyQueryWordMustStartANameWordInAnyOrder() {
+        assertEquals(List.of(1), ids(index.search("vina", 10)));
+        assertEquals(List.of(1), ids(index.search("tuoi sua", 10)));
+        assertEquals(List.of(1), ids(index.search("180", 10)));
+        assertTrue(index.search("sua tea", 10).isEmpty());
+    }
+
+    @Test
+    void wordsAreNotMatchedInTheMiddle() {
+        assertTrue(index.search("amilk", 10).isEmpty());
+        assertTrue(index.search("shake", 10).isEmpty());
+    }
+
+    @Test
+    void exactWordsComeBeforeLongerOnes() {
+        List<ProductSearchHit> hits = index.search("milk", 10);
+        assertEquals(List.of(3, 2), ids(hits));
+        assertTrue(hits.stream().allMatch(hit -> hit.getMatch() == ProductMatch.NAME));
+    }
+
+    @Test
+    void barcodeHitsComeFirst() {
+        index.put(6, "Barcode 8934673003 Label", "111");
+        List<ProductSearchHit> hits = index.search("8934673003", 10);
+        assertEquals(List.of(3, 6), ids(hits));
+        assertEquals(ProductMatch.BARCODE, hits.get(0).getMatch());
+        assertEquals(ProductMatch.NAME, hits.get(1).getMatch());
+    }
+
+    @Test
+    void misspelledWordsMatchTheClosestWords() {
+        List<ProductSearchHit> hits = index.search("vinamik", 10);
+        assertEquals(List.of(1), ids(hits));
+        assertEquals(ProductMatch.FUZZY, hits.get(0).getMatch());
+
+        // a correctly typed word still has to match alongside the corrected one
+        assertEquals(List.of(1), ids(index.search("sua vinamik", 10)));
+        assertTrue(index.search("tea vinamik", 10).isEmpty());
+    }
+
+    @Test
+    void closerCorrectionsRankFirst() {
+        index.put(7, "Chocolate", null);
+        index.put(8, "Chocolates Box", null);
+        List<ProductSearchHit> hits = index.search("chocolat", 10);
+        assertEquals(7, hits.get(0).getId());
+
+        hits = index.search("chocolste", 10);
+        assertEquals(List.of(7, 8), ids(hits));
+        assertTrue(hits.stream().allMatch(hit -> hit.getMatch() == ProductMatch.FUZZY));
+    }
+
+    @Test
+    void numbersAndShortWordsAreNotCorrected() {
+        assertTrue(index.search("181ml", 10).isEmpty());
+        assertTrue(index.search("mx", 10).isEmpty());
+    }
+
+    @Test
+    void limitCutsThePage() {
+        for (int id = 10; id < 40; id++) {
+            index.put(id, "Snack " + id, null);
+        }
+        assertEquals(5, index.search("snack", 5).size());
+        assertTrue(index.search("snack", 0).isEmpty());
+        assertTrue(index.search("  ", 10).isEmpty());
+    }
+
+    @Test
+    void scanStopsAfterTheCapOfCandidates() {
+        for (int id = 100; id < 10_100; id++) {
+            index.put(id, (id % 2 == 0 ? "Alpha " : "Beta ") + id, null);
+        }
+        index.put(20_000, "Alpha Beta", null);
+        index.put(20_001, "Gamma Beta", null);
+
+        // both words are common and only meet past the first 5000 candidates
+        assertTrue(index.search("alpha beta", 10).isEmpty());
+        // a rare word drives the scan and still finds its name
+        assertEquals(List.of(20_001), ids(index.search("gamma beta", 10)));
+    }
+
+    @Test
+    void removedProductsAreNoLongerFound() {
+        index.remove(1);
+        assertTrue(index.search("vinamilk", 10).isEmpty());
+        assertTrue(index.search("8934673001", 10).isEmpty());
+        assertTrue(index.search("vinamik", 10).isEmpty());
+        assertEquals(4, index.size());
+
+        // removing twice or an unknown id changes nothing
+        index.remove(1);
+        index.remove(99);
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void renamedProductsAreFoundUnderTheNewNameOnly() {
+        index.put(3, "Oolong Tea", "8934673099");
+        assertEquals(List.of(2), ids(index.search("milk", 10)));
+        assertEquals(List.of(3), ids(index.search("oolong", 10)));
+        assertEquals(List.of(3), ids(index.search("8934673099", 10)));
+        assertTrue(index.search("8934673003", 10).isEmpty());
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void wordsSharedWithOtherProductsSurviveARemoval() {
+        index.remove(2);
+        assertEquals(List.of(3), ids(index.search("milk", 10)));
+        index.remove(3);
+        assertTrue(index.search("milk", 10).isEmpty());
+        // the freed word slots are reused without mixing up postings
+        index.put(9, "Milo", null);
+        index.put(10, "Milktea Pearl", null);
+        assertEquals(List.of(10, 9), ids(index.search("mil", 10)));
+        assertEquals(List.of(10), ids(index.search("pearl", 10)));
+    }
+
+    private static List<Integer> ids(List<ProductSearchHit> hits) {
+        return hits.stream().map(ProductSearchHit::getId).toList();
+    }
+}
@@ -0,0 +1,134 @@
+package com.springboot.store.utils;
+
+import com.springboot.store.payload.report.SalesSliceRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesFactTableTest {
+    private static final long DAY = 86_400_000L;
+
+    private SalesFactTable table;
+
+    @BeforeEach
+    void createTable() {
+        table = new SalesFactTable(0);
+        // invoices of days 1 to 3, products 1 and 2 of group 10, product 3 without a group
+        invoice(DAY + 100, 9, 1, 10, 2, 20.0, 12.0);
+        invoice(DAY + 200, 9, 2, 10, 1, 15.0, 5.0);
+        invoice(2 * DAY + 100, 14, 1, 10, 3, 30.0, 18.0);
+        invoice(2 * DAY + 200, 14, 3, 0, 1, 8.0, 2.0);
+        invoice(3 * DAY + 100, 18, 2, 10, 4, 60.0, 20.0);
+        // returns of days 2 and 3, appended after every invoice like a load does
+        giveBack(2 * DAY + 300, 15, 1, 10, 1, 10.0, 6.0);
+        giveBack(3 * DAY + 300, 19, 2, 10, 1, 15.0, 5.0);
+    }
+
+    @Test
+    void returnsAppendedAfterTheInvoicesLeaveTheTableUnsortedUntilItIsSorted() {
+        assertFalse(table.isSorted());
+        table.sortByTime();
+        assertTrue(table.isSorted());
+        assertEquals(7, table.size());
+    }
+
+    @Test
+    void rangeSumsNetTheReturns() {
+        table.sortByTime();
+
+        SalesSliceRow day2 = single(table.slice(2 * DAY, 3 * DAY, null, Map.of()));
+        assertEquals(3, day2.getLines());
+        assertEquals(3, day2.getQuantity());
+        assertEquals(28.0, day2.getRevenue());
+        assertEquals(14.0, day2.getCost());
+        assertEquals(14.0, day2.getProfit());
+
+        SalesSliceRow all = single(table.slice(0, 4 * DAY, null, Map.of()));
+        assertEquals(7, all.getLines());
+        assertEquals(9, all.getQuantity());
+        assertEquals(108.0, all.getRevenue());
+        assertEquals(46.0, all.getCost());
+
+        // the upper bound is exclusive
+        assertTrue(table.slice(DAY + 100, DAY + 100, null, Map.of()).isEmpty());
+        assertEquals(1, single(table.slice(DAY + 100, DAY + 101, null, Map.of())).getLines());
+    }
+
+    @Test
+    void groupsAreSortedByRevenueAndFiltersNarrowTheRows() {
+        table.sortByTime();
+
+        List<SalesSliceRow> products = table.slice(0, 4 * DAY, SliceDimension.PRODUCT, Map.of());
+        assertEquals(List.of(2, 1, 3), products.stream().map(SalesSliceRow::getKey).toList());
+        assertEquals(60.0, products.get(0).getRevenue());
+        assertEquals(4, products.get(0).getQuantity());
+        assertEquals(40.0, products.get(1).getRevenue());
+
+        // a line without a group is keyed null, an hour of 0 would stay 0
+        List<SalesSliceRow> groups = table.slice(0, 4 * DAY, SliceDimension.GROUP, Map.of());
+        assertEquals(10, groups.get(0).getKey());
+        assertNull(groups.get(1).getKey());
+
+        SalesSliceRow product1InGroup = single(table.slice(0, 4 * DAY, null, Map.of(SliceDimension.PRODUCT, 1, SliceDimension.GROUP, 10)));
+        assertEquals(3, product1InGroup.getLines());
+        assertEquals(4, product1InGroup.getQuantity());
+        assertEquals(40.0, product1InGroup.getRevenue());
+
+        List<SalesSliceRow> hours = table.slice(2 * DAY, 4 * DAY, SliceDimension.HOUR, Map.of(SliceDimension.PRODUCT, 2));
+        assertEquals(List.of(18, 19), hours.stream().map(SalesSliceRow::getKey).toList());
+        assertEquals(-15.0, hours.get(1).getRevenue());
+    }
+
+    @Test
+    void unsortedTableScansEveryRowWithTheSameSums() {
+        List<SalesSliceRow> unsorted = table.slice(2 * DAY, 3 * DAY, SliceDimension.PRODUCT, Map.of());
+        table.sortByTime();
+        List<SalesSliceRow> sorted = table.slice(2 * DAY, 3 * DAY, SliceDimension.PRODUCT, Map.of());
+
+        assertEquals(keysAndRevenue(sorted), keysAndRevenue(unsorted));
+        assertEquals(List.of(1, 3), sorted.stream().map(SalesSliceRow::getKey).toList());
+        assertEquals(20.0, sorted.get(0).getRevenue());
+    }
+
+    @Test
+    void lateAppendAfterASortFallsBackToAScan() {
+        table.sortByTime();
+        invoice(DAY + 150, 9, 3, 0, 2, 5.0, 1.0);
+
+        assertFalse(table.isSorted());
+        SalesSliceRow day1 = single(table.slice(DAY, 2 * DAY, null, Map.of()));
+        assertEquals(3, day1.getLines());
+        assertEquals(40.0, day1.getRevenue());
+
+        table.sortByTime();
+        assertEquals(40.0, single(table.slice(DAY, 2 * DAY, null, Map.of())).getRevenue());
+        // rows of the same instant keep their append order, appends past the capacity still grow the columns
+        for (int i = 0; i < 40; i++) {
+            invoice(4 * DAY, 0, 1, 10, 1, 1.0, 0.5);
+        }
+        assertTrue(table.isSorted());
+        assertEquals(40.0, single(table.slice(4 * DAY, 5 * DAY, null, Map.of())).getRevenue());
+    }
+
+    private void invoice(long createdAt, int hour, int productId, int groupId, int quantity, double revenue, double cost) {
+        table.append(createdAt, hour, productId, groupId, 0, 1, 0, quantity, revenue, cost);
+    }
+
+    // stored negated, the way the fact service appends return lines
+    private void giveBack(long createdAt, int hour, int productId, int groupId, int quantity, double revenue, double cost) {
+        table.append(createdAt, hour, productId, groupId, 0, 1, 0, -quantity, -revenue, -cost);
+    }
+
+    private static SalesSliceRow single(List<SalesSliceRow> rows) {
+        assertEquals(1, rows.size());
+        return rows.get(0);
+    }
+
+    private static List<String> keysAndRevenue(List<SalesSliceRow> rows) {
+        return rows.stream().map(row -> row.getKey() + "=" + row.getRevenue()).toList();
+    }
+}